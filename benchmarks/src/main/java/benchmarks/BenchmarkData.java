@@ -0,0 +1,116 @@
+package benchmarks;
+
+import common.enums.Sex;
+import common.signal.BitalinoSimulator;
+import pojos.DiagnosisFile;
+import pojos.Patient;
+import pojos.SignalBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Deterministic inputs shaped like what the server sends: patient and diagnosis lists,
+ * and BITalino recordings generated by {@link BitalinoSimulator}.
+ */
+final class BenchmarkData {
+
+    static final int PATIENTS = 1000;
+    static final int FILES_PER_PATIENT = 5;
+    static final int SAMPLING_RATE = SignalBuffer.DEFAULT_SAMPLING_RATE;
+
+    private static final String[] NAMES = {"Lucía", "Hugo", "Martina", "Mateo", "Sofía", "Leo", "Julia", "Daniel"};
+    private static final String[] SURNAMES = {"García", "Rodríguez", "González", "Fernández", "López", "Martínez"};
+    private static final String[] SYMPTOMS = {"Palpitations", "Chest pain", "Dizziness", "Fatigue", "Shortness of breath"};
+
+    private BenchmarkData() {
+    }
+
+    static List<Patient> patients(int count) {
+        Random random = new Random(42);
+        List<Patient> patients = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            String name = NAMES[random.nextInt(NAMES.length)];
+            String surname = SURNAMES[random.nextInt(SURNAMES.length)];
+            Date dob = new Date(-315_619_200_000L + random.nextInt(20_000) * 86_400_000L);
+            patients.add(new Patient(i, name, surname, String.format("%08d%c", 10_000_000 + i, 'A' + i % 26), dob,
+                    name.toLowerCase() + i + "@mail.com", i % 2 == 0 ? Sex.FEMALE : Sex.MALE,
+                    600_000_000 + random.nextInt(99_999_999), 100_000 + i, 700_000_000 + random.nextInt(99_999_999), i));
+        }
+        return patients;
+    }
+
+    static List<DiagnosisFile> diagnosisFiles(int count) {
+        Random random = new Random(7);
+        List<DiagnosisFile> files = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            ArrayList<String> symptoms = new ArrayList<>();
+            for (int s = 0; s < 1 + random.nextInt(3); s++) {
+                symptoms.add(SYMPTOMS[random.nextInt(SYMPTOMS.length)]);
+            }
+            files.add(new DiagnosisFile(i, symptoms, "Sinus rhythm with occasional ectopic beats",
+                    "Bisoprolol 2.5 mg", LocalDate.of(2025, 1, 1).plusDays(random.nextInt(365)),
+                    1 + random.nextInt(PATIENTS)));
+        }
+        return files;
+    }
+
+    static SignalBuffer recording(int seconds) {
+        int samples = seconds * SAMPLING_RATE;
+        BitalinoSimulator simulator = new BitalinoSimulator(SAMPLING_RATE, 72, 1);
+        int[][] channels = new int[2][samples];
+        simulator.next(channels[0], channels[1], 0, samples);
+        return SignalBuffer.fromChannels(channels, SAMPLING_RATE, 0);
+    }
+
+    static List<int[]> frames(SignalBuffer signals) {
+        List<int[]> frames = new ArrayList<>(signals.getSampleCount());
+        for (int i = 0; i < signals.getSampleCount(); i++) {
+            frames.add(new int[]{signals.get(SignalBuffer.CHANNEL_ECG, i), signals.get(SignalBuffer.CHANNEL_EDA, i)});
+        }
+        return frames;
+    }
+
+    // Formato de texto de los servidores antiguos: "[ecg1,ecg2,...;eda1,eda2,...]"
+    static String legacyText(SignalBuffer signals) {
+        StringBuilder sb = new StringBuilder(signals.getSampleCount() * 8);
+        sb.append('[');
+        for (int ch = 0; ch < 2; ch++) {
+            if (ch > 0) sb.append(';');
+            for (int i = 0; i < signals.getSampleCount(); i++) {
+                if (i > 0) sb.append(',');
+                sb.append(signals.get(ch, i));
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+    static byte[] gzip(String text) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static double[] channel(SignalBuffer signals, int channel) {
+        return signals.toDoubleArray(channel);
+    }
+
+    static String[] legacyChannels(SignalBuffer signals) {
+        String text = legacyText(signals);
+        String[] parts = text.split(";");
+        return Arrays.copyOf(parts, 2);
+    }
+}
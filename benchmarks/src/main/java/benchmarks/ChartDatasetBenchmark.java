@@ -0,0 +1,100 @@
+package benchmarks;
+
+import common.signal.Decimator;
+import executable.RecordingOverview;
+import executable.SignalXYDataset;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pojos.SignalBuffer;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building what the ECG chart draws for a fragment (10 s) and for a whole hour:
+ * the former one-XYSeries-item-per-sample dataset of updateChartWithSpecificYAxis
+ * against per-pixel decimation into the reused SignalXYDataset.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class ChartDatasetBenchmark {
+
+    private static final int CHART_WIDTH = 1200;
+    private static final int FRAGMENT_SECONDS = 10;
+
+    @Param({"10", "3600"})
+    public int seconds;
+
+    private double[] ecg;
+    private double[][] fragments;
+    private final SignalXYDataset dataset = new SignalXYDataset("ECG");
+    private final double[] xs = new double[Decimator.maxOutput(CHART_WIDTH)];
+    private final double[] ys = new double[xs.length];
+
+    @Setup
+    public void setup() {
+        ecg = BenchmarkData.channel(BenchmarkData.recording(seconds), SignalBuffer.CHANNEL_ECG);
+        // Los fragmentos llegan del servidor como arrays independientes
+        int fragmentSamples = FRAGMENT_SECONDS * BenchmarkData.SAMPLING_RATE;
+        fragments = new double[(ecg.length + fragmentSamples - 1) / fragmentSamples][];
+        for (int f = 0; f < fragments.length; f++) {
+            int from = f * fragmentSamples;
+            fragments[f] = Arrays.copyOfRange(ecg, from, Math.min(ecg.length, from + fragmentSamples));
+        }
+    }
+
+    @Benchmark
+    public XYSeriesCollection xySeriesPerSample() {
+        XYSeries series = new XYSeries("Signal");
+        for (int i = 0; i < ecg.length; i++) {
+            series.add((double) i / BenchmarkData.SAMPLING_RATE, ecg[i]);
+        }
+        XYSeriesCollection collection = new XYSeriesCollection();
+        collection.addSeries(series);
+        return collection;
+    }
+
+    @Benchmark
+    public SignalXYDataset minMaxIntoSignalDataset() {
+        int count = Decimator.minMax(ecg, 0, ecg.length, 0, 1.0 / BenchmarkData.SAMPLING_RATE, CHART_WIDTH, xs, ys);
+        dataset.setPoints(xs, ys, count);
+        return dataset;
+    }
+
+    @Benchmark
+    public SignalXYDataset lttbIntoSignalDataset() {
+        int count = Decimator.lttb(ecg, 0, ecg.length, 0, 1.0 / BenchmarkData.SAMPLING_RATE, 2 * CHART_WIDTH, xs, ys);
+        dataset.setPoints(xs, ys, count);
+        return dataset;
+    }
+
+    @Benchmark
+    public SignalXYDataset implicitTimeAxis() {
+        dataset.setSamples(ecg, ecg.length, 0, 1.0 / BenchmarkData.SAMPLING_RATE);
+        return dataset;
+    }
+
+    @Benchmark
+    public RecordingOverview buildOverview() {
+        RecordingOverview overview = new RecordingOverview(fragments.length, FRAGMENT_SECONDS);
+        for (int f = 0; f < fragments.length; f++) {
+            overview.addFragment(f, fragments[f], BenchmarkData.SAMPLING_RATE);
+        }
+        return overview;
+    }
+}
@@ -0,0 +1,51 @@
+package benchmarks;
+
+import common.signal.EdaPipeline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pojos.SignalBuffer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EDA pipeline (smoothing, tonic/phasic, SCRs, one feature window per minute) over one hour at
+ * 1000 Hz, fed in 10 s fragments. Batch analysis runs it once per stored recording, so the target
+ * is a few hundred ms on one core.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx2g", "-Djava.awt.headless=true"})
+public class EdaPipelineBenchmark {
+
+    private static final int SECONDS = 3600;
+    private static final int FRAGMENT = 10 * BenchmarkData.SAMPLING_RATE;
+
+    private double[] eda;
+
+    @Setup
+    public void setup() {
+        eda = BenchmarkData.recording(SECONDS).toDoubleArray(SignalBuffer.CHANNEL_EDA);
+    }
+
+    @Benchmark
+    public int pipeline() {
+        int[] windows = new int[1];
+        EdaPipeline pipeline = new EdaPipeline(BenchmarkData.SAMPLING_RATE, w -> windows[0]++);
+        for (int from = 0; from < eda.length; from += FRAGMENT) {
+            pipeline.process(eda, from, Math.min(eda.length, from + FRAGMENT));
+        }
+        pipeline.flush();
+        return pipeline.getResponseCount() + windows[0];
+    }
+}
@@ -0,0 +1,117 @@
+package benchmarks;
+
+import common.protocol.ProtocolException;
+import executable.RecordingCsvExporter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pojos.Patient;
+import pojos.SignalBuffer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text export of a one hour recording (3.6M samples per channel). Each call takes seconds,
+ * so every iteration is a single invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx6g", "-Djava.awt.headless=true"})
+public class ExportBenchmark {
+
+    private static final int SECONDS = 3600;
+
+    private final Patient patient = new Patient();
+    private SignalBuffer signals;
+    private List<int[]> frames;
+    private String ecgText;
+    private String edaText;
+    private final RecordingCsvExporter exporter = new RecordingCsvExporter();
+    private Path csvFile;
+
+    @Setup
+    public void setup() throws IOException {
+        csvFile = Files.createTempFile("export-benchmark", ".csv");
+        signals = BenchmarkData.recording(SECONDS);
+        frames = BenchmarkData.frames(signals);
+        String[] legacy = BenchmarkData.legacyChannels(signals);
+        ecgText = legacy[0];
+        edaText = legacy[1];
+    }
+
+    @Benchmark
+    public String fromAcquiredIntegerToString() {
+        return patient.fromAcquiredIntegerToString(frames, SignalBuffer.CHANNEL_ECG);
+    }
+
+    @Benchmark
+    public String createCSVContent() throws ProtocolException {
+        return createCSVContent(signals);
+    }
+
+    @Benchmark
+    public String createCSVContentLegacyText() {
+        return createCSVContent(ecgText, edaText);
+    }
+
+    // El mismo CSV escrito al fichero; los dos createCSVContent solo construyen el String
+    @Benchmark
+    public long exportToFile() throws IOException {
+        return exporter.export(signals, csvFile);
+    }
+
+    @Benchmark
+    public long exportToFileLegacyText() throws IOException {
+        return exporter.export(ecgText, edaText, csvFile);
+    }
+
+    // Referencia: el export anterior, que construía todo el CSV en un String con String.format
+    private static String createCSVContent(SignalBuffer signals) throws ProtocolException {
+        if (signals == null || signals.getChannelCount() < 2) {
+            throw new ProtocolException("Missing signal data");
+        }
+        StringBuilder csv = new StringBuilder();
+        csv.append(RecordingCsvExporter.HEADER);
+        double msPerSample = 1000.0 / signals.getSamplingRate();
+        for (int i = 0; i < signals.getSampleCount(); i++) {
+            csv.append(String.format("%.3f;%d;%d\n", i * msPerSample,
+                    signals.get(SignalBuffer.CHANNEL_ECG, i), signals.get(SignalBuffer.CHANNEL_EDA, i)));
+        }
+        return csv.toString();
+    }
+
+    private static String createCSVContent(String ecgData, String edaData) {
+        StringBuilder csv = new StringBuilder();
+        csv.append(RecordingCsvExporter.HEADER);
+        String[] ecgSamples = ecgData.substring(1).split(",");
+        String[] edaSamples = edaData.substring(0, edaData.length() - 1).split(",");
+        int maxSamples = Math.max(ecgSamples.length, edaSamples.length);
+        for (int i = 0; i < maxSamples; i++) {
+            double timeMs = i * (1000.0 / SignalBuffer.DEFAULT_SAMPLING_RATE);
+            String ecgValue = i < ecgSamples.length ? ecgSamples[i].trim() : "";
+            String edaValue = i < edaSamples.length ? edaSamples[i].trim() : "";
+            csv.append(String.format("%.3f;%s;%s\n", timeMs, ecgValue, edaValue));
+        }
+        return csv.toString();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(csvFile);
+    }
+}
@@ -0,0 +1,52 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pojos.Interfaces.ChartStatisticsRecording;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time and frequency domain HRV of a 24 h recording (~100 000 beats), reusing the statistics
+ * buffers as the recording analyser does. The beats are generated directly: QRS detection has
+ * its own benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx2g", "-Djava.awt.headless=true"})
+public class HrvStatisticsBenchmark {
+
+    private static final int SECONDS = 24 * 3600;
+
+    private final ChartStatisticsRecording statistics = new ChartStatisticsRecording();
+    private long[] beats;
+    private int beatCount;
+
+    @Setup
+    public void setup() {
+        beats = new long[SECONDS * 2];
+        double t = 0;
+        while (t < SECONDS) {
+            beats[beatCount++] = Math.round(t * BenchmarkData.SAMPLING_RATE);
+            // 800 ms con modulación LF (0.1 Hz) y respiratoria (0.25 Hz)
+            t += (800 + 30 * Math.sin(2 * Math.PI * 0.1 * t) + 20 * Math.sin(2 * Math.PI * 0.25 * t)) / 1000;
+        }
+    }
+
+    @Benchmark
+    public double hrv() {
+        statistics.setBeats(beats, beatCount, BenchmarkData.SAMPLING_RATE);
+        return statistics.getLfHfRatio() + statistics.getSdnnMs();
+    }
+}
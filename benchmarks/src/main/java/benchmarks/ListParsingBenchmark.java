@@ -0,0 +1,81 @@
+package benchmarks;
+
+import common.protocol.PayloadReader;
+import common.protocol.PayloadWriter;
+import common.protocol.ProtocolException;
+import executable.DoctorApplicationGUI;
+import executable.DoctorServerConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pojos.DiagnosisFile;
+import pojos.Patient;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Patient / diagnosis file lists: legacy toString() text (FLAG_TEXT replies) against the binary payload.
+ * 1k patients and 5k diagnosis files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx2g", "-Djava.awt.headless=true"})
+public class ListParsingBenchmark {
+
+    private String patientText;
+    private byte[] patientPayload;
+    private String diagnosisText;
+    private byte[] diagnosisPayload;
+
+    @Setup
+    public void setup() {
+        List<Patient> patients = BenchmarkData.patients(BenchmarkData.PATIENTS);
+        patientText = patients.toString();
+        patientPayload = new PayloadWriter().writePatientList(patients).toByteArray();
+
+        List<DiagnosisFile> files = BenchmarkData.diagnosisFiles(BenchmarkData.PATIENTS * BenchmarkData.FILES_PER_PATIENT);
+        diagnosisText = files.toString();
+        diagnosisPayload = new PayloadWriter().writeDiagnosisFileList(files).toByteArray();
+    }
+
+    @Benchmark
+    public List<Patient> parsePatientList() {
+        return DoctorApplicationGUI.parsePatientList(patientText);
+    }
+
+    @Benchmark
+    public List<Patient> parsePatientListServerConnection() {
+        return DoctorServerConnection.parsePatientList(patientText);
+    }
+
+    @Benchmark
+    public List<Patient> readPatientListBinary() throws ProtocolException {
+        return new PayloadReader(patientPayload).readPatientList();
+    }
+
+    @Benchmark
+    public List<DiagnosisFile> parseDiagnosisFileList() {
+        return DoctorApplicationGUI.parseDiagnosisFileList(diagnosisText);
+    }
+
+    @Benchmark
+    public List<DiagnosisFile> parseDiagnosisFileListServerConnection() {
+        return DoctorServerConnection.parseDiagnosisFileList(diagnosisText);
+    }
+
+    @Benchmark
+    public List<DiagnosisFile> readDiagnosisFileListBinary() throws ProtocolException {
+        return new PayloadReader(diagnosisPayload).readDiagnosisFileList();
+    }
+}
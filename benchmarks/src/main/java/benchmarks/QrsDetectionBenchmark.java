@@ -0,0 +1,58 @@
+package benchmarks;
+
+import common.signal.QrsDetector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pojos.SignalBuffer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QRS detection over one hour at 1000 Hz, fed in 10 s fragments as the recording viewer does.
+ * The target is well under a second on one core.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx2g", "-Djava.awt.headless=true"})
+public class QrsDetectionBenchmark {
+
+    private static final int SECONDS = 3600;
+    private static final int FRAGMENT = 10 * BenchmarkData.SAMPLING_RATE;
+
+    private int[] ecgInts;
+    private double[] ecg;
+
+    @Setup
+    public void setup() {
+        SignalBuffer signals = BenchmarkData.recording(SECONDS);
+        ecgInts = signals.toIntArray(SignalBuffer.CHANNEL_ECG);
+        ecg = signals.toDoubleArray(SignalBuffer.CHANNEL_ECG);
+    }
+
+    @Benchmark
+    public int detectFragments() {
+        QrsDetector detector = new QrsDetector(BenchmarkData.SAMPLING_RATE);
+        for (int from = 0; from < ecg.length; from += FRAGMENT) {
+            detector.process(ecg, from, Math.min(ecg.length, from + FRAGMENT));
+        }
+        return detector.getBeatCount();
+    }
+
+    @Benchmark
+    public int detectIntSamples() {
+        QrsDetector detector = new QrsDetector(BenchmarkData.SAMPLING_RATE);
+        detector.process(ecgInts, 0, ecgInts.length);
+        return detector.getBeatCount();
+    }
+}
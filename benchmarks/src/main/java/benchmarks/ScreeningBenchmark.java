@@ -0,0 +1,73 @@
+package benchmarks;
+
+import executable.RecordingAnalyzer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pojos.DiagnosisFile;
+import pojos.SignalBuffer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A doctor's whole pending list: {@value #RECORDINGS} one hour recordings, already downloaded,
+ * through beat and EDA detection, HRV and the arrhythmia rules, as "Analyze Recordings" does.
+ * The target is under a minute for the batch; every iteration is one batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = {"-Xmx2g", "-Djava.awt.headless=true"})
+public class ScreeningBenchmark {
+
+    private static final int RECORDINGS = 50;
+    private static final int SECONDS = 3600;
+    private static final int FRAGMENT = 10 * BenchmarkData.SAMPLING_RATE;
+
+    private List<DiagnosisFile> files;
+    private double[][][] fragments;
+    private RecordingAnalyzer analyzer;
+
+    @Setup
+    public void setup() {
+        files = BenchmarkData.diagnosisFiles(RECORDINGS);
+        SignalBuffer signals = BenchmarkData.recording(SECONDS);
+        double[] ecg = signals.toDoubleArray(SignalBuffer.CHANNEL_ECG);
+        double[] eda = signals.toDoubleArray(SignalBuffer.CHANNEL_EDA);
+        // Todas las grabaciones comparten las muestras: solo cuenta el cálculo, no la descarga
+        fragments = new double[(ecg.length + FRAGMENT - 1) / FRAGMENT][][];
+        for (int i = 0; i < fragments.length; i++) {
+            int from = i * FRAGMENT;
+            int to = Math.min(ecg.length, from + FRAGMENT);
+            fragments[i] = new double[][]{Arrays.copyOfRange(ecg, from, to), Arrays.copyOfRange(eda, from, to)};
+        }
+        analyzer = new RecordingAnalyzer();
+    }
+
+    @TearDown
+    public void tearDown() {
+        analyzer.close();
+    }
+
+    @Benchmark
+    public int screenPendingRecordings() {
+        int flagged = 0;
+        for (DiagnosisFile file : files) {
+            RecordingAnalyzer.Result result = analyzer.analyze(file, fragments);
+            if (result.screening() != null && result.screening().isFlagged()) flagged++;
+        }
+        return flagged;
+    }
+}
@@ -0,0 +1,74 @@
+package benchmarks;
+
+import common.protocol.PayloadReader;
+import common.protocol.PayloadWriter;
+import common.signal.SignalTextDecoder;
+import executable.DoctorApplicationGUI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pojos.SignalBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recording payloads, one 10 s fragment and a whole hour: the legacy gzip text path
+ * (receiveCompressedData, SignalTextDecoder, which replaced parseSignalData) against the
+ * SignalBuffer encoding ({@link common.signal.ResidualCodec}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class SignalDecodingBenchmark {
+
+    @Param({"10", "3600"})
+    public int seconds;
+
+    private SignalBuffer signals;
+    private byte[] gzipPayload;
+    private byte[] gzipText;
+    private byte[] codecPayload;
+
+    @Setup
+    public void setup() {
+        signals = BenchmarkData.recording(seconds);
+        gzipText = BenchmarkData.gzip(BenchmarkData.legacyText(signals));
+        gzipPayload = new PayloadWriter().writeBytes(gzipText).toByteArray();
+        codecPayload = new PayloadWriter().writeSignalBuffer(signals).toByteArray();
+        System.out.printf("%n%d s: gzip text %d bytes, residual codec %d bytes%n",
+                seconds, gzipText.length, codecPayload.length);
+    }
+
+    @Benchmark
+    public String receiveCompressedData() throws IOException {
+        return DoctorApplicationGUI.receiveCompressedData(new PayloadReader(gzipPayload));
+    }
+
+    @Benchmark
+    public double[][] decodeGzipText() throws IOException {
+        return SignalTextDecoder.get().decodeGzip(ByteBuffer.wrap(gzipText));
+    }
+
+    @Benchmark
+    public SignalBuffer readSignalBuffer() throws IOException {
+        return new PayloadReader(codecPayload).readSignalBuffer();
+    }
+
+    @Benchmark
+    public byte[] writeSignalBuffer() {
+        return new PayloadWriter().writeSignalBuffer(signals).toByteArray();
+    }
+}
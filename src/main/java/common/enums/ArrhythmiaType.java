@@ -0,0 +1,25 @@
+package common.enums;
+
+// Hallazgos de las reglas de cribado; la severidad ordena la lista de pendientes
+public enum ArrhythmiaType {
+    AF("AF", 3),
+    PAUSE("Pause", 3),
+    TACHYCARDIA("Tachycardia", 2),
+    BRADYCARDIA("Bradycardia", 2);
+
+    private final String label;
+    private final int severity;
+
+    ArrhythmiaType(String label, int severity) {
+        this.label = label;
+        this.severity = severity;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public int getSeverity() {
+        return severity;
+    }
+}
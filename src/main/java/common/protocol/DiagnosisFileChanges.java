@@ -0,0 +1,49 @@
+package common.protocol;
+
+import pojos.DiagnosisFile;
+
+import java.util.List;
+
+/**
+ * Reply to {@link OpCode#DIAGNOSIS_FILE_CHANGES}: the diagnosis files of a scope created or
+ * updated after the client's version, plus tombstones (ids that were deleted or left the scope,
+ * e.g. a worklist entry that was completed).
+ *
+ * Request: (byte scope, int scopeId, long sinceVersion), sinceVersion = {@link #NO_VERSION} for everything.
+ * Reply: (long version, boolean full, DiagnosisFile list, int[] removedIds). {@code full} means the
+ * server could not answer from that version and {@code updated} is the complete list.
+ */
+public record DiagnosisFileChanges(long version, boolean full, List<DiagnosisFile> updated, int[] removedIds) {
+
+    public static final long NO_VERSION = -1;
+
+    // Ámbitos: la lista RECENTLY_FINISH del médico, o los diagnosis files de un paciente (scopeId)
+    public static final int SCOPE_RECENTLY_FINISH = 0;
+    public static final int SCOPE_PATIENT = 1;
+
+    public boolean isEmpty() {
+        return !full && updated.isEmpty() && removedIds.length == 0;
+    }
+
+    public static PayloadWriter request(int scope, int scopeId, long sinceVersion) {
+        return new PayloadWriter()
+                .writeByte(scope)
+                .writeInt(scopeId)
+                .writeLong(sinceVersion);
+    }
+
+    public static DiagnosisFileChanges read(PayloadReader r) throws ProtocolException {
+        long version = r.readLong();
+        boolean full = r.readBoolean();
+        List<DiagnosisFile> updated = r.readDiagnosisFileList();
+        int[] removed = r.readIntArray();
+        return new DiagnosisFileChanges(version, full, updated, removed == null ? new int[0] : removed);
+    }
+
+    public PayloadWriter write(PayloadWriter w) {
+        return w.writeLong(version)
+                .writeBoolean(full)
+                .writeDiagnosisFileList(updated)
+                .writeIntArray(removedIds);
+    }
+}
@@ -0,0 +1,93 @@
+package common.protocol;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One message of the doctor/server binary protocol.
+ *
+ * Wire layout (big endian, 12 byte header followed by the payload):
+ * <pre>
+ *   version   u8
+ *   flags     u8
+ *   opcode    u16
+ *   requestId i32
+ *   length    i32
+ *   payload   length bytes
+ * </pre>
+ */
+public final class Frame {
+
+    public static final int PROTOCOL_VERSION = 1;
+    public static final int HEADER_SIZE = 12;
+    // Límite de seguridad: una grabación de una hora cabe con holgura
+    public static final int MAX_PAYLOAD = 128 * 1024 * 1024;
+
+    /** Payload (or the byte blobs inside it) is gzip compressed. */
+    public static final int FLAG_GZIP = 0x01;
+    /** Payload is a legacy UTF-8 toString() text instead of typed binary fields. */
+    public static final int FLAG_TEXT = 0x02;
+    /** The sender does not expect a reply. */
+    public static final int FLAG_ONE_WAY = 0x04;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final OpCode opCode;
+    private final int flags;
+    private final int requestId;
+    private final byte[] payload;
+
+    public Frame(OpCode opCode, int flags, int requestId, byte[] payload) {
+        if (opCode == null) throw new IllegalArgumentException("opCode is null");
+        this.opCode = opCode;
+        this.flags = flags & 0xFF;
+        this.requestId = requestId;
+        this.payload = payload == null ? EMPTY : payload;
+    }
+
+    public Frame(OpCode opCode, int flags, int requestId, PayloadWriter payload) {
+        this(opCode, flags, requestId, payload == null ? null : payload.toByteArray());
+    }
+
+    public OpCode getOpCode() {
+        return opCode;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public boolean hasFlag(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    public int getRequestId() {
+        return requestId;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public int getPayloadLength() {
+        return payload.length;
+    }
+
+    public PayloadReader reader() {
+        return new PayloadReader(payload);
+    }
+
+    // Solo para payloads FLAG_TEXT
+    public String payloadAsText() {
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return "Frame{" +
+                "opCode=" + opCode +
+                ", flags=" + flags +
+                ", requestId=" + requestId +
+                ", length=" + payload.length +
+                '}';
+    }
+}
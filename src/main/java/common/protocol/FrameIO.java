@@ -0,0 +1,75 @@
+package common.protocol;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Reads and writes {@link Frame}s on the blocking socket streams.
+ * Callers are responsible for serialising access to each stream.
+ */
+public final class FrameIO {
+
+    private FrameIO() {
+    }
+
+    public static void write(DataOutputStream out, Frame frame) throws IOException {
+        out.writeByte(Frame.PROTOCOL_VERSION);
+        out.writeByte(frame.getFlags());
+        out.writeShort(frame.getOpCode().getCode());
+        out.writeInt(frame.getRequestId());
+        out.writeInt(frame.getPayloadLength());
+        out.write(frame.getPayload());
+        out.flush();
+    }
+
+    public static Frame read(DataInputStream in) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version != Frame.PROTOCOL_VERSION) {
+            throw new ProtocolException("Unsupported protocol version: " + version);
+        }
+        int flags = in.readUnsignedByte();
+        OpCode opCode = OpCode.fromCode(in.readUnsignedShort());
+        int requestId = in.readInt();
+        int length = in.readInt();
+        if (length < 0 || length > Frame.MAX_PAYLOAD) {
+            throw new ProtocolException("Invalid payload length: " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new Frame(opCode, flags, requestId, payload);
+    }
+
+    /**
+     * Sends a request and blocks until its reply arrives.
+     * An {@link OpCode#ERROR} reply is turned into a {@link ProtocolException} with the server message.
+     */
+    public static Frame exchange(DataOutputStream out, DataInputStream in, Frame request) throws IOException {
+        write(out, request);
+        Frame reply = read(in);
+        if (reply.getRequestId() != request.getRequestId()) {
+            throw new ProtocolException("Reply " + reply.getRequestId() + " does not match request " + request.getRequestId());
+        }
+        return checkError(reply);
+    }
+
+    public static Frame checkError(Frame reply) throws ProtocolException {
+        if (reply.getOpCode() == OpCode.ERROR) {
+            throw new ServerErrorException(errorMessage(reply));
+        }
+        return reply;
+    }
+
+    public static Frame error(int requestId, String message) {
+        return new Frame(OpCode.ERROR, 0, requestId, new PayloadWriter().writeString(message));
+    }
+
+    private static String errorMessage(Frame reply) {
+        try {
+            String msg = reply.reader().readString();
+            return msg == null ? "Server error" : msg;
+        } catch (ProtocolException e) {
+            return "Server error";
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package common.protocol;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * A connection to the server that matches replies to requests by request id, implemented by
+ * {@link NioTransport}. Every frame is the 12-byte header (version, flags, opcode, request id,
+ * payload length) followed by the payload, as in {@link FrameIO}. Each request gets a fresh
+ * non-zero id and the server may answer in any order; frames with id 0 are server pushes, and
+ * {@link Frame#FLAG_ONE_WAY} requests get no reply.
+ *
+ * Futures complete on the transport's I/O thread: callbacks must be short or hop to
+ * another executor (the GUI uses SwingUtilities.invokeLater).
+ */
+public interface FrameTransport extends AutoCloseable {
+
+    /**
+     * Sends a request without waiting. The future completes with the reply frame, or exceptionally
+     * with a {@link ProtocolException} for ERROR replies and an {@link IOException} if the connection drops.
+     */
+    CompletableFuture<Frame> send(OpCode opCode, PayloadWriter payload);
+
+    // Comandos de navegación: el servidor no responde
+    void notify(OpCode opCode) throws IOException;
+
+    // Frames push (request id 0); se ejecuta en el hilo de I/O. Respuestas a peticiones canceladas se descartan
+    void setPushListener(Consumer<Frame> listener);
+
+    boolean isOpen();
+
+    int getPendingCount();
+
+    @Override
+    void close();
+
+    /**
+     * Blocking variant of {@link #send}, for code that already runs off the EDT.
+     * If the calling thread is interrupted the request is abandoned and a late reply is dropped.
+     */
+    default Frame request(OpCode opCode, PayloadWriter payload) throws IOException {
+        CompletableFuture<Frame> reply = send(opCode, payload);
+        try {
+            return reply.get();
+        } catch (InterruptedException e) {
+            reply.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + opCode, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package common.protocol;
+
+import common.enums.Sex;
+import pojos.DiagnosisFile;
+import pojos.Patient;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single-pass parser for the toString() lists that old servers send with {@link Frame#FLAG_TEXT}:
+ * "[Patient{idPatient=1, namePatient='Ana', ..., diagnosisFile=[MedicalRecord{id='3', ...}], userId=7}, ...]".
+ *
+ * One cursor walks the text once and writes every value straight into the Patient/DiagnosisFile:
+ * no per-record map, no substrings for keys or numbers, no reflection. Unknown keys are skipped,
+ * malformed values leave the field at its default.
+ */
+public final class LegacyListParser {
+
+    private static final String PATIENT = "Patient{";
+    private static final String MEDICAL_RECORD = "MedicalRecord{";
+
+    // Date.toString(): "Mon Jan 01 00:00:00 CET 1990"
+    private static final DateTimeFormatter DATE_TO_STRING =
+            DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US);
+    private static final String MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec";
+    private static final ConcurrentHashMap<String, ZoneId> ZONES = new ConcurrentHashMap<>();
+
+    // Mismo orden que antes: por fecha descendente
+    private static final Comparator<DiagnosisFile> BY_DATE = Comparator.comparing(DiagnosisFile::getDate,
+            Comparator.nullsLast(Comparator.<LocalDate>naturalOrder())).reversed();
+
+    private final String text;
+    private int pos;
+    private int valueStart;     // inicio del último valor leído por readValue()
+
+    private LegacyListParser(String text) {
+        this.text = text;
+    }
+
+    public static List<Patient> parsePatientList(String payload) {
+        List<Patient> patients = new ArrayList<>();
+        if (payload == null) return patients;
+        LegacyListParser parser = new LegacyListParser(payload);
+        int end = payload.length();
+        while (parser.next(PATIENT, end)) {
+            patients.add(parser.patient());
+        }
+        return patients;
+    }
+
+    public static List<DiagnosisFile> parseDiagnosisFileList(String payload) {
+        if (payload == null) return new ArrayList<>();
+        LegacyListParser parser = new LegacyListParser(payload);
+        return parser.diagnosisFiles(payload.length());
+    }
+
+    // Avanza hasta justo después del siguiente "Name{" anterior a end
+    private boolean next(String recordStart, int end) {
+        int start = text.indexOf(recordStart, pos);
+        if (start < 0 || start >= end) return false;
+        pos = start + recordStart.length();
+        return true;
+    }
+
+    private List<DiagnosisFile> diagnosisFiles(int end) {
+        List<DiagnosisFile> files = new ArrayList<>();
+        while (next(MEDICAL_RECORD, end)) {
+            files.add(diagnosisFile());
+        }
+        pos = Math.max(pos, end);
+        files.sort(BY_DATE);
+        return files;
+    }
+
+    private Patient patient() {
+        Patient p = new Patient();
+        while (nextKey()) {
+            int keyStart = pos;
+            int keyEnd = text.indexOf('=', pos);
+            pos = keyEnd + 1;
+            if (is(keyStart, keyEnd, "diagnosisFile") || is(keyStart, keyEnd, "diagnosisList")) {
+                if (pos < text.length() && text.charAt(pos) == '[') {
+                    int close = matchingBracket(pos);
+                    p.setDiagnosisList(diagnosisFiles(close));
+                    pos = close + 1;
+                }
+                continue;
+            }
+            int valueEnd = readValue();
+            int valueStart = this.valueStart;
+            if (is(keyStart, keyEnd, "idPatient")) p.setIdPatient(parseInt(valueStart, valueEnd, p.getIdPatient()));
+            else if (is(keyStart, keyEnd, "namePatient")) p.setNamePatient(string(valueStart, valueEnd));
+            else if (is(keyStart, keyEnd, "surnamePatient")) p.setSurnamePatient(string(valueStart, valueEnd));
+            else if (is(keyStart, keyEnd, "dniPatient")) p.setDniPatient(string(valueStart, valueEnd));
+            else if (is(keyStart, keyEnd, "dobPatient")) p.setDobPatient(parseDate(valueStart, valueEnd));
+            else if (is(keyStart, keyEnd, "emailPatient")) p.setEmailPatient(string(valueStart, valueEnd));
+            else if (is(keyStart, keyEnd, "sexPatient")) p.setSexPatient(parseSex(valueStart, valueEnd));
+            else if (is(keyStart, keyEnd, "phoneNumberPatient")) p.setPhoneNumberPatient(parseInt(valueStart, valueEnd, p.getPhoneNumberPatient()));
+            else if (is(keyStart, keyEnd, "healthInsuranceNumberPatient")) p.setHealthInsuranceNumberPatient(parseInt(valueStart, valueEnd, p.getHealthInsuranceNumberPatient()));
+            else if (is(keyStart, keyEnd, "emergencyContactPatient")) p.setEmergencyContactPatient(parseInt(valueStart, valueEnd, p.getEmergencyContactPatient()));
+            else if (is(keyStart, keyEnd, "doctorId")) p.setDoctorId(parseInt(valueStart, valueEnd, p.getDoctorId()));
+            else if (is(keyStart, keyEnd, "MACadress")) p.setMACadress(parseInt(valueStart, valueEnd, p.getMACadress()));
+            else if (is(keyStart, keyEnd, "userId")) p.setUserId(parseInt(valueStart, valueEnd, p.getUserId()));
+            // Cualquier otra clave se ignora
+        }
+        return p;
+    }
+
+    private DiagnosisFile diagnosisFile() {
+        DiagnosisFile df = new DiagnosisFile();
+        while (nextKey()) {
+            int keyStart = pos;
+            int keyEnd = text.indexOf('=', pos);
+            pos = keyEnd + 1;
+            int valueEnd = readValue();
+            int valueStart = this.valueStart;
+            if (is(keyStart, keyEnd, "id")) df.setId(parseInt(valueStart, valueEnd, df.getId()));
+            else if (is(keyStart, keyEnd, "symptoms")) df.setSymptoms(parseSymptoms(valueStart, valueEnd));
+            else if (is(keyStart, keyEnd, "diagnosis")) df.setDiagnosis(string(valueStart, valueEnd));
+            else if (is(keyStart, keyEnd, "medication")) df.setMedication(string(valueStart, valueEnd));
+            else if (is(keyStart, keyEnd, "date")) df.setDate(parseLocalDate(valueStart, valueEnd));
+            else if (is(keyStart, keyEnd, "patient id") || is(keyStart, keyEnd, "patientId")) df.setPatientId(parseInt(valueStart, valueEnd, df.getPatientId()));
+            else if (is(keyStart, keyEnd, "status")) df.setStatus(text.regionMatches(true, valueStart, "true", 0, 4));
+            // Cualquier otra clave se ignora
+        }
+        return df;
+    }
+
+    /**
+     * Skips separators up to the next key. Returns false (and consumes the '}') at the end of the record.
+     */
+    private boolean nextKey() {
+        int n = text.length();
+        while (pos < n) {
+            char c = text.charAt(pos);
+            if (c == '}') {
+                pos++;
+                return false;
+            }
+            if (c != ',' && c != ' ') {
+                return text.indexOf('=', pos) >= 0;
+            }
+            pos++;
+        }
+        return false;
+    }
+
+    /**
+     * Reads the value at the cursor: 'quoted', [bracketed] or plain up to ',' / '}'.
+     * Sets {@link #valueStart} and returns the end (exclusive), quotes and spaces excluded.
+     */
+    private int readValue() {
+        int n = text.length();
+        if (pos < n && text.charAt(pos) == '\'') {
+            // Solo cierra una comilla seguida de ',' o '}': "O'Brien" sigue siendo un valor
+            int start = pos + 1;
+            int q = start;
+            while (q < n) {
+                if (text.charAt(q) == '\'' && (q + 1 == n || text.charAt(q + 1) == ',' || text.charAt(q + 1) == '}')) break;
+                q++;
+            }
+            valueStart = start;
+            pos = Math.min(n, q + 1);
+            return q;
+        }
+        if (pos < n && text.charAt(pos) == '[') {
+            int close = matchingBracket(pos);
+            valueStart = pos;
+            pos = close + 1;
+            return Math.min(n, close + 1);
+        }
+        int start = pos;
+        while (pos < n && text.charAt(pos) != ',' && text.charAt(pos) != '}') pos++;
+        int end = pos;
+        // toString() de DiagnosisFile deja una comilla suelta: "date=2025-01-01'"
+        while (end > start && (text.charAt(end - 1) == '\'' || text.charAt(end - 1) == ' ')) end--;
+        while (start < end && text.charAt(start) == ' ') start++;
+        valueStart = start;
+        return end;
+    }
+
+    private int matchingBracket(int open) {
+        int depth = 0;
+        for (int i = open; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '[') depth++;
+            else if (c == ']' && --depth == 0) return i;
+        }
+        return text.length() - 1;
+    }
+
+    private boolean is(int keyStart, int keyEnd, String key) {
+        int start = keyStart;
+        int end = keyEnd;
+        while (start < end && text.charAt(start) == ' ') start++;
+        while (end > start && text.charAt(end - 1) == ' ') end--;
+        return end - start == key.length() && text.regionMatches(start, key, 0, key.length());
+    }
+
+    private String string(int start, int end) {
+        return text.substring(start, end).trim();
+    }
+
+    private int parseInt(int start, int end, int fallback) {
+        if (start >= end) return fallback;
+        try {
+            // phoneNumber puede venir como long: se trunca a int como antes
+            return (int) Long.parseLong(text, start, end, 10);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private Sex parseSex(int start, int end) {
+        for (Sex sex : Sex.values()) {
+            String name = sex.name();
+            if (end - start == name.length() && text.regionMatches(true, start, name, 0, name.length())) {
+                return sex;
+            }
+        }
+        return null;
+    }
+
+    private LocalDate parseLocalDate(int start, int end) {
+        if (end - start < 10) return null;
+        try {
+            // "yyyy-MM-dd" o "yyyy-MM-ddTHH:mm:ss": la fecha son los 10 primeros caracteres
+            return LocalDate.of(Integer.parseInt(text, start, start + 4, 10),
+                    Integer.parseInt(text, start + 5, start + 7, 10),
+                    Integer.parseInt(text, start + 8, start + 10, 10));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private Date parseDate(int start, int end) {
+        if (start >= end || text.regionMatches(start, "null", 0, 4)) return null;
+        LocalDate iso = parseLocalDate(start, end);
+        if (iso != null && (end - start == 10 || text.charAt(start + 10) == 'T')) {
+            return Date.from(iso.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        }
+        return parseDateToString(start, end);
+    }
+
+    // "Mon Jan 01 00:00:00 CET 1990": campos en posiciones fijas salvo la zona
+    private Date parseDateToString(int start, int end) {
+        int zoneEnd = end - 5;
+        if (zoneEnd - start < 21 || text.charAt(zoneEnd) != ' ' || text.charAt(start + 19) != ' ') return null;
+        try {
+            int month = MONTHS.indexOf(text.substring(start + 4, start + 7)) / 3 + 1;
+            if (month <= 0) return null;
+            LocalDateTime local = LocalDateTime.of(
+                    Integer.parseInt(text, zoneEnd + 1, end, 10), month,
+                    Integer.parseInt(text, start + 8, start + 10, 10),
+                    Integer.parseInt(text, start + 11, start + 13, 10),
+                    Integer.parseInt(text, start + 14, start + 16, 10),
+                    Integer.parseInt(text, start + 17, start + 19, 10));
+            ZoneId zone = zone(start, end, text.substring(start + 20, zoneEnd));
+            return zone == null ? null : Date.from(local.atZone(zone).toInstant());
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Resolver "CET" con el formatter es caro: se hace una vez por abreviatura
+    private ZoneId zone(int start, int end, String abbreviation) {
+        ZoneId zone = ZONES.get(abbreviation);
+        if (zone == null) {
+            try {
+                zone = ZonedDateTime.parse(text.substring(start, end), DATE_TO_STRING).getZone();
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+            ZONES.putIfAbsent(abbreviation, zone);
+        }
+        return zone;
+    }
+
+    // "a, b", "['a','b']" o "[a, b]"
+    private ArrayList<String> parseSymptoms(int start, int end) {
+        ArrayList<String> symptoms = new ArrayList<>();
+        if (start < end && text.charAt(start) == '[') {
+            start++;
+            if (end > start && text.charAt(end - 1) == ']') end--;
+        }
+        int tokenStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || text.charAt(i) == ',') {
+                int a = tokenStart;
+                int b = i;
+                while (a < b && isSymptomPadding(text.charAt(a))) a++;
+                while (b > a && isSymptomPadding(text.charAt(b - 1))) b--;
+                if (a < b) symptoms.add(text.substring(a, b));
+                tokenStart = i + 1;
+            }
+        }
+        return symptoms;
+    }
+
+    private static boolean isSymptomPadding(char c) {
+        return c == ' ' || c == '\'' || c == '"';
+    }
+}
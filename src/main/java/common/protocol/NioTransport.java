@@ -0,0 +1,319 @@
+package common.protocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking client transport: one {@link SocketChannel} driven by a single selector thread.
+ * Requests are queued and the selector thread writes them through a direct buffer; replies are
+ * read through another direct buffer, reassembled into {@link Frame}s and matched to their
+ * pending future by request id. No thread waits per request, so it serves the GUI and headless
+ * clients alike.
+ *
+ * Wire format and request ids as described in {@link FrameTransport}. ERROR replies complete the
+ * future with a {@link ServerErrorException}; a reply whose request is no longer pending (cancelled
+ * or timed out) is dropped, and a closed connection fails every pending future with its cause.
+ */
+public final class NioTransport implements FrameTransport {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+
+    private final SocketChannel channel;
+    private final Selector selector;
+    private final SelectionKey key;
+    private final Map<Integer, CompletableFuture<Frame>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Frame> outbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private final Thread ioThread;
+
+    private volatile Consumer<Frame> pushListener;
+    private volatile IOException closedCause;
+
+    // Estado del hilo selector
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private Frame writing;          // frame a medio copiar en writeBuffer
+    private int writingOffset;      // bytes del payload ya copiados
+    private int readFlags;
+    private OpCode readOpCode;
+    private int readRequestId;
+    private byte[] readPayload;     // null mientras se espera una cabecera
+    private int readPayloadPos;
+
+    private NioTransport(SocketChannel channel, Selector selector, byte[] greeting) throws IOException {
+        this.channel = channel;
+        this.selector = selector;
+        this.writeBuffer.put(greeting);
+        this.key = channel.register(selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        this.ioThread = new Thread(this::ioLoop, "doctor-nio-selector");
+        this.ioThread.setDaemon(true);
+        this.ioThread.start();
+    }
+
+    /**
+     * Connects without blocking the selector and sends the role greeting the server expects
+     * before the first frame (writeUTF format, e.g. "Doctor").
+     */
+    public static NioTransport connect(String host, int port, String role) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        Selector selector = null;
+        try {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            selector = Selector.open();
+            if (!channel.connect(new InetSocketAddress(host, port))) {
+                SelectionKey connectKey = channel.register(selector, SelectionKey.OP_CONNECT);
+                long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MS;
+                while (!channel.finishConnect()) {
+                    long left = deadline - System.currentTimeMillis();
+                    if (left <= 0) throw new IOException("Connection to " + host + ":" + port + " timed out");
+                    selector.select(left);
+                    selector.selectedKeys().clear();
+                }
+                connectKey.cancel();
+                selector.selectNow(); // retira la clave cancelada antes de registrar de nuevo
+            }
+            return new NioTransport(channel, selector, greeting(role));
+        } catch (IOException | RuntimeException e) {
+            if (selector != null) selector.close();
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Frame> send(OpCode opCode, PayloadWriter payload) {
+        CompletableFuture<Frame> future = new CompletableFuture<>();
+        IOException closed = closedCause;
+        if (closed != null) {
+            future.completeExceptionally(closed);
+            return future;
+        }
+        int requestId = newRequestId();
+        pending.put(requestId, future);
+        future.whenComplete((frame, error) -> pending.remove(requestId, future));
+        enqueue(new Frame(opCode, 0, requestId, payload));
+        // Si el hilo selector murió mientras registrábamos la petición
+        if (closedCause != null && !future.isDone()) {
+            future.completeExceptionally(closedCause);
+        }
+        return future;
+    }
+
+    @Override
+    public void notify(OpCode opCode) throws IOException {
+        IOException closed = closedCause;
+        if (closed != null) throw closed;
+        enqueue(new Frame(opCode, Frame.FLAG_ONE_WAY, newRequestId(), new byte[0]));
+    }
+
+    @Override
+    public void setPushListener(Consumer<Frame> listener) {
+        this.pushListener = listener;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return closedCause == null;
+    }
+
+    @Override
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    @Override
+    public void close() {
+        fail(new IOException("Connection closed"));
+        selector.wakeup();
+    }
+
+    private int newRequestId() {
+        // 0 queda reservado para los mensajes push del servidor
+        int id = nextRequestId.incrementAndGet();
+        if (id <= 0) {
+            nextRequestId.compareAndSet(id, 0);
+            id = nextRequestId.incrementAndGet();
+        }
+        return id;
+    }
+
+    private void enqueue(Frame frame) {
+        outbox.add(frame);
+        // Un solo wakeup aunque se encolen varias peticiones seguidas
+        if (wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    private void ioLoop() {
+        try {
+            while (closedCause == null) {
+                selector.select();
+                selector.selectedKeys().clear();
+                wakeupPending.set(false);
+                if (closedCause != null) break;
+                if (key.isValid() && key.isReadable()) {
+                    read();
+                }
+                boolean moreToWrite = write();
+                key.interestOps(moreToWrite ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (RuntimeException e) {
+            fail(new IOException("Selector thread failed", e));
+        } finally {
+            try { selector.close(); } catch (IOException ignored) {}
+            try { channel.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    /**
+     * Copies queued frames into the direct buffer and writes until the socket stops accepting.
+     * Returns true if data is left for the next OP_WRITE.
+     */
+    private boolean write() throws IOException {
+        while (true) {
+            fillWriteBuffer();
+            writeBuffer.flip();
+            if (!writeBuffer.hasRemaining()) {
+                writeBuffer.clear();
+                return false;
+            }
+            channel.write(writeBuffer);
+            boolean blocked = writeBuffer.hasRemaining();
+            writeBuffer.compact();
+            if (blocked) return true;
+        }
+    }
+
+    private void fillWriteBuffer() {
+        while (writeBuffer.hasRemaining()) {
+            if (writing == null) {
+                if (writeBuffer.remaining() < Frame.HEADER_SIZE) return;
+                writing = outbox.poll();
+                if (writing == null) return;
+                // Petición cancelada antes de salir: no ocupa el servidor
+                if ((writing.getFlags() & Frame.FLAG_ONE_WAY) == 0 && !pending.containsKey(writing.getRequestId())) {
+                    writing = null;
+                    continue;
+                }
+                writeBuffer.put((byte) Frame.PROTOCOL_VERSION)
+                        .put((byte) writing.getFlags())
+                        .putShort((short) writing.getOpCode().getCode())
+                        .putInt(writing.getRequestId())
+                        .putInt(writing.getPayloadLength());
+                writingOffset = 0;
+            }
+            int n = Math.min(writeBuffer.remaining(), writing.getPayloadLength() - writingOffset);
+            writeBuffer.put(writing.getPayload(), writingOffset, n);
+            writingOffset += n;
+            if (writingOffset == writing.getPayloadLength()) {
+                writing = null;
+            }
+        }
+    }
+
+    private void read() throws IOException {
+        int n;
+        while ((n = channel.read(readBuffer)) > 0) {
+            readBuffer.flip();
+            parseFrames();
+            readBuffer.compact();
+        }
+        if (n < 0) {
+            throw new IOException("Server closed the connection");
+        }
+    }
+
+    // Una cabecera incompleta se queda en el buffer (compact) hasta la siguiente lectura
+    private void parseFrames() throws IOException {
+        while (true) {
+            if (readPayload == null) {
+                if (readBuffer.remaining() < Frame.HEADER_SIZE) return;
+                int version = readBuffer.get() & 0xFF;
+                if (version != Frame.PROTOCOL_VERSION) {
+                    throw new ProtocolException("Unsupported protocol version: " + version);
+                }
+                readFlags = readBuffer.get() & 0xFF;
+                readOpCode = OpCode.fromCode(readBuffer.getShort() & 0xFFFF);
+                readRequestId = readBuffer.getInt();
+                int length = readBuffer.getInt();
+                if (length < 0 || length > Frame.MAX_PAYLOAD) {
+                    throw new ProtocolException("Invalid payload length: " + length);
+                }
+                readPayload = new byte[length];
+                readPayloadPos = 0;
+            }
+            int n = Math.min(readBuffer.remaining(), readPayload.length - readPayloadPos);
+            readBuffer.get(readPayload, readPayloadPos, n);
+            readPayloadPos += n;
+            if (readPayloadPos < readPayload.length) return;
+            Frame frame = new Frame(readOpCode, readFlags, readRequestId, readPayload);
+            readPayload = null;
+            dispatch(frame);
+        }
+    }
+
+    private void dispatch(Frame frame) {
+        CompletableFuture<Frame> future = pending.remove(frame.getRequestId());
+        if (future == null) {
+            // Respuesta tardía de una petición cancelada o caducada
+            if (frame.getRequestId() != 0) return;
+            Consumer<Frame> listener = pushListener;
+            if (listener == null) {
+                System.err.println("Ignoring unsolicited frame: " + frame);
+                return;
+            }
+            try {
+                listener.accept(frame);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        } else if (frame.getOpCode() == OpCode.ERROR) {
+            try {
+                FrameIO.checkError(frame);
+            } catch (ProtocolException e) {
+                future.completeExceptionally(e);
+            }
+        } else {
+            future.complete(frame);
+        }
+    }
+
+    private void fail(IOException cause) {
+        if (closedCause == null) {
+            closedCause = cause;
+        }
+        for (CompletableFuture<Frame> future : pending.values()) {
+            future.completeExceptionally(closedCause);
+        }
+        pending.clear();
+    }
+
+    // Mismo formato que DataOutputStream.writeUTF (el rol es ASCII)
+    private static byte[] greeting(String role) {
+        byte[] text = role.getBytes(StandardCharsets.UTF_8);
+        byte[] out = new byte[2 + text.length];
+        out[0] = (byte) (text.length >>> 8);
+        out[1] = (byte) text.length;
+        System.arraycopy(text, 0, out, 2, text.length);
+        return out;
+    }
+}
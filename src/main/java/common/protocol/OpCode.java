@@ -0,0 +1,92 @@
+package common.protocol;
+
+/**
+ * Operation codes carried in the header of every {@link Frame}.
+ * A reply uses the same opcode and request id as the request it answers,
+ * except for failures, which come back as {@link #ERROR}.
+ */
+public enum OpCode {
+    HELLO(1),
+    ERROR(2),
+    ACK(3),
+
+    // Autenticación
+    LOGIN(10),
+    SIGNUP(11),
+    LOG_OUT(12),
+
+    // Pacientes
+    SEARCH_PATIENT(20),
+    SEARCH_PATIENTS(21),
+    VIEW_PATIENT(22),
+    // Página de HIN ordenados: (String afterKey, int limit) -> (List<String>, boolean hasMore)
+    SEARCH_PATIENT_PAGE(23),
+    // Caché local: solo se envían los datos si la versión del cliente no es la actual
+    // (int hin, long knownVersion) -> (long version, boolean modified[, Patient])
+    VIEW_PATIENT_IF_MODIFIED(24),
+    // (long knownVersion) -> (long version, boolean modified[, List<String> HIN])
+    SEARCH_PATIENT_IF_MODIFIED(25),
+
+    // Diagnosis files
+    VIEW_DIAGNOSISFILE(30),
+    DOWNLOAD_DIAGNOSISFILE(31),
+    RECENTLY_FINISH(32),
+    COMPLETE_DIAGNOSISFILE(33),
+    SAVE_DIAGNOSISFILE(34),
+    GET_DIAGNOSIS_FILES_BY_PATIENT_ID(35),
+    SYMPTOMS(36),
+    // Cambios desde una versión (altas/modificaciones + borrados), ver DiagnosisFileChanges
+    DIAGNOSIS_FILE_CHANGES(37),
+    // Avisos RECORDING_READY para la worklist del médico: se activan tras el login
+    RECORDING_READY_SUBSCRIBE(38),
+    RECORDING_READY_UNSUBSCRIBE(39),
+
+    // Grabaciones
+    VIEW_RECORDING(40),
+    CHANGE_FRAGMENT(41),
+    DOWNLOAD_RECORDING(42),
+    GET_FRAGMENT_OF_RECORDING(43),
+    GET_FRAGMENT_STATES(44),
+
+    // Monitorización en directo: LIVE_FRAMES llega como push (request id 0)
+    LIVE_SUBSCRIBE(45),
+    LIVE_UNSUBSCRIBE(46),
+    LIVE_FRAMES(47),
+    // Push (request id 0): grabación terminada, ver RecordingReady
+    RECORDING_READY(48),
+
+    // Navegación (one-way, el servidor solo actualiza su estado)
+    BACK_TO_MENU(60),
+    BACK_TO_SEARCH_PATIENT(61),
+    BACK_TO_DIAGNOSISTODO(62),
+    BACK_TO_DIAGNOSIS_TO_COMPLETE(63);
+
+    // Mensaje del ERROR con el que responde un extremo que no conoce la operación
+    public static final String UNKNOWN_OPCODE = "Unknown opcode: ";
+
+    private static final OpCode[] BY_CODE = new OpCode[256];
+
+    static {
+        for (OpCode op : values()) {
+            BY_CODE[op.code] = op;
+        }
+    }
+
+    private final int code;
+
+    OpCode(int code) {
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public static OpCode fromCode(int code) throws ProtocolException {
+        OpCode op = (code >= 0 && code < BY_CODE.length) ? BY_CODE[code] : null;
+        if (op == null) {
+            throw new ProtocolException(UNKNOWN_OPCODE + code);
+        }
+        return op;
+    }
+}
@@ -0,0 +1,216 @@
+package common.protocol;
+
+import common.enums.Sex;
+import pojos.DiagnosisFile;
+import common.signal.ResidualCodec;
+import pojos.Patient;
+import pojos.SignalBuffer;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Reads the fields written by {@link PayloadWriter}, in the same order.
+ */
+public final class PayloadReader {
+
+    private final ByteBuffer buf;
+
+    public PayloadReader(byte[] payload) {
+        this.buf = ByteBuffer.wrap(payload);
+    }
+
+    public int remaining() {
+        return buf.remaining();
+    }
+
+    public boolean hasRemaining() {
+        return buf.hasRemaining();
+    }
+
+    public int readByte() throws ProtocolException {
+        try {
+            return buf.get();
+        } catch (BufferUnderflowException e) {
+            throw truncated();
+        }
+    }
+
+    public boolean readBoolean() throws ProtocolException {
+        return readByte() != 0;
+    }
+
+    public int readInt() throws ProtocolException {
+        try {
+            return buf.getInt();
+        } catch (BufferUnderflowException e) {
+            throw truncated();
+        }
+    }
+
+    public long readLong() throws ProtocolException {
+        try {
+            return buf.getLong();
+        } catch (BufferUnderflowException e) {
+            throw truncated();
+        }
+    }
+
+    private int readLength(int elementSize) throws ProtocolException {
+        int n = readInt();
+        if (n < -1 || (n > 0 && (long) n * elementSize > buf.remaining())) {
+            throw new ProtocolException("Invalid length " + n + " with " + buf.remaining() + " bytes left");
+        }
+        return n;
+    }
+
+    public String readString() throws ProtocolException {
+        int n = readLength(1);
+        if (n < 0) return null;
+        String s = new String(buf.array(), buf.arrayOffset() + buf.position(), n, StandardCharsets.UTF_8);
+        buf.position(buf.position() + n);
+        return s;
+    }
+
+    public byte[] readBytes() throws ProtocolException {
+        int n = readLength(1);
+        if (n < 0) return null;
+        byte[] data = new byte[n];
+        buf.get(data);
+        return data;
+    }
+
+    // Vista sobre el payload, sin copiar los bytes
+    public ByteBuffer readByteBuffer() throws ProtocolException {
+        int n = readLength(1);
+        if (n < 0) return null;
+        ByteBuffer slice = buf.slice();
+        slice.limit(n);
+        buf.position(buf.position() + n);
+        return slice;
+    }
+
+    public int[] readIntArray() throws ProtocolException {
+        int n = readLength(4);
+        if (n < 0) return null;
+        int[] values = new int[n];
+        buf.asIntBuffer().get(values);
+        buf.position(buf.position() + n * 4);
+        return values;
+    }
+
+    public ArrayList<String> readStringList() throws ProtocolException {
+        int n = readLength(4);
+        if (n < 0) return null;
+        ArrayList<String> values = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            values.add(readString());
+        }
+        return values;
+    }
+
+    public Date readDate() throws ProtocolException {
+        long millis = readLong();
+        return millis == Long.MIN_VALUE ? null : new Date(millis);
+    }
+
+    public LocalDate readLocalDate() throws ProtocolException {
+        long epochDay = readLong();
+        return epochDay == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    public <E extends Enum<E>> E readEnum(Class<E> type) throws ProtocolException {
+        int ordinal = readByte();
+        if (ordinal < 0) return null;
+        E[] constants = type.getEnumConstants();
+        if (ordinal >= constants.length) {
+            throw new ProtocolException("Invalid " + type.getSimpleName() + " ordinal: " + ordinal);
+        }
+        return constants[ordinal];
+    }
+
+    // ---- Decodificadores de POJOs ----
+
+    public Patient readPatient() throws ProtocolException {
+        Patient p = new Patient();
+        p.setIdPatient(readInt());
+        p.setNamePatient(readString());
+        p.setSurnamePatient(readString());
+        p.setDniPatient(readString());
+        p.setDobPatient(readDate());
+        p.setEmailPatient(readString());
+        p.setSexPatient(readEnum(Sex.class));
+        p.setPhoneNumberPatient(readInt());
+        p.setHealthInsuranceNumberPatient(readInt());
+        p.setEmergencyContactPatient(readInt());
+        p.setDoctorId(readInt());
+        p.setMACadress(readInt());
+        p.setUserId(readInt());
+        p.setDiagnosisList(readDiagnosisFileList());
+        return p;
+    }
+
+    public List<Patient> readPatientList() throws ProtocolException {
+        int n = readLength(1);
+        List<Patient> patients = new ArrayList<>(Math.max(n, 0));
+        for (int i = 0; i < n; i++) {
+            patients.add(readPatient());
+        }
+        return patients;
+    }
+
+    public DiagnosisFile readDiagnosisFile() throws ProtocolException {
+        DiagnosisFile df = new DiagnosisFile();
+        df.setId(readInt());
+        df.setSymptoms(readStringList());
+        df.setDiagnosis(readString());
+        df.setMedication(readString());
+        df.setDate(readLocalDate());
+        df.setPatientId(readInt());
+        df.setStatus(readBoolean());
+        return df;
+    }
+
+    public List<DiagnosisFile> readDiagnosisFileList() throws ProtocolException {
+        int n = readLength(1);
+        List<DiagnosisFile> files = new ArrayList<>(Math.max(n, 0));
+        for (int i = 0; i < n; i++) {
+            files.add(readDiagnosisFile());
+        }
+        return files;
+    }
+
+    public SignalBuffer readSignalBuffer() throws ProtocolException {
+        int channels = readByte();
+        if (channels == 0) return null;
+        if (channels < 0) {
+            throw new ProtocolException("Invalid channel count: " + channels);
+        }
+        int samplingRate = readInt();
+        long start = readLong();
+        if (samplingRate <= 0) {
+            throw new ProtocolException("Invalid sampling rate: " + samplingRate);
+        }
+        int[][] values = new int[channels][];
+        for (int ch = 0; ch < channels; ch++) {
+            ByteBuffer block = readByteBuffer();
+            if (block == null) {
+                throw new ProtocolException("Missing channel " + ch);
+            }
+            values[ch] = ResidualCodec.decode(block);
+            if (values[ch].length != values[0].length) {
+                throw new ProtocolException("Channel " + ch + " length mismatch");
+            }
+        }
+        return SignalBuffer.fromChannels(values, samplingRate, start);
+    }
+
+    private ProtocolException truncated() {
+        return new ProtocolException("Truncated payload");
+    }
+}
@@ -0,0 +1,202 @@
+package common.protocol;
+
+import pojos.DiagnosisFile;
+import common.signal.ResidualCodec;
+import pojos.Patient;
+import pojos.SignalBuffer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Builds the binary payload of a {@link Frame}.
+ * Strings and byte blobs are length prefixed with an int (-1 means null), so there is no 64 KB limit
+ * like with writeUTF, and numeric data is written as raw big endian values instead of text.
+ */
+public final class PayloadWriter {
+
+    private byte[] buf;
+    private int size;
+
+    public PayloadWriter() {
+        this(64);
+    }
+
+    public PayloadWriter(int initialCapacity) {
+        buf = new byte[Math.max(16, initialCapacity)];
+    }
+
+    private void ensure(int extra) {
+        int needed = size + extra;
+        if (needed < 0 || needed > Frame.MAX_PAYLOAD) {
+            throw new IllegalStateException("Payload too large: " + needed);
+        }
+        if (needed > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(needed, buf.length * 2));
+        }
+    }
+
+    public PayloadWriter writeByte(int v) {
+        ensure(1);
+        buf[size++] = (byte) v;
+        return this;
+    }
+
+    public PayloadWriter writeBoolean(boolean v) {
+        return writeByte(v ? 1 : 0);
+    }
+
+    public PayloadWriter writeInt(int v) {
+        ensure(4);
+        buf[size++] = (byte) (v >>> 24);
+        buf[size++] = (byte) (v >>> 16);
+        buf[size++] = (byte) (v >>> 8);
+        buf[size++] = (byte) v;
+        return this;
+    }
+
+    public PayloadWriter writeLong(long v) {
+        writeInt((int) (v >>> 32));
+        return writeInt((int) v);
+    }
+
+    public PayloadWriter writeString(String s) {
+        if (s == null) return writeInt(-1);
+        return writeBytes(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public PayloadWriter writeBytes(byte[] data) {
+        if (data == null) return writeInt(-1);
+        return writeBytes(data, 0, data.length);
+    }
+
+    public PayloadWriter writeBytes(byte[] data, int offset, int length) {
+        writeInt(length);
+        ensure(length);
+        System.arraycopy(data, offset, buf, size, length);
+        size += length;
+        return this;
+    }
+
+    public PayloadWriter writeIntArray(int[] values) {
+        if (values == null) return writeInt(-1);
+        return writeIntArray(values, 0, values.length);
+    }
+
+    public PayloadWriter writeIntArray(int[] values, int offset, int length) {
+        writeInt(length);
+        ensure(length * 4);
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int v = values[i];
+            buf[size++] = (byte) (v >>> 24);
+            buf[size++] = (byte) (v >>> 16);
+            buf[size++] = (byte) (v >>> 8);
+            buf[size++] = (byte) v;
+        }
+        return this;
+    }
+
+    public PayloadWriter writeStringList(List<String> values) {
+        if (values == null) return writeInt(-1);
+        writeInt(values.size());
+        for (String s : values) {
+            writeString(s);
+        }
+        return this;
+    }
+
+    public PayloadWriter writeDate(Date date) {
+        return writeLong(date == null ? Long.MIN_VALUE : date.getTime());
+    }
+
+    public PayloadWriter writeLocalDate(LocalDate date) {
+        return writeLong(date == null ? Long.MIN_VALUE : date.toEpochDay());
+    }
+
+    public PayloadWriter writeEnum(Enum<?> value) {
+        return writeByte(value == null ? -1 : value.ordinal());
+    }
+
+    // ---- Codificadores de POJOs ----
+
+    public PayloadWriter writePatient(Patient p) {
+        writeInt(p.getIdPatient());
+        writeString(p.getNamePatient());
+        writeString(p.getSurnamePatient());
+        writeString(p.getDniPatient());
+        writeDate(p.getDobPatient());
+        writeString(p.getEmailPatient());
+        writeEnum(p.getSexPatient());
+        writeInt(p.getPhoneNumberPatient());
+        writeInt(p.getHealthInsuranceNumberPatient());
+        writeInt(p.getEmergencyContactPatient());
+        writeInt(p.getDoctorId());
+        writeInt(p.getMACadress());
+        writeInt(p.getUserId());
+        return writeDiagnosisFileList(p.getDiagnosisList());
+    }
+
+    public PayloadWriter writePatientList(List<Patient> patients) {
+        writeInt(patients == null ? 0 : patients.size());
+        if (patients != null) {
+            for (Patient p : patients) {
+                writePatient(p);
+            }
+        }
+        return this;
+    }
+
+    public PayloadWriter writeDiagnosisFile(DiagnosisFile df) {
+        writeInt(df.getId());
+        writeStringList(df.getSymptoms());
+        writeString(df.getDiagnosis());
+        writeString(df.getMedication());
+        writeLocalDate(df.getDate());
+        writeInt(df.getPatientId());
+        return writeBoolean(df.getStatus());
+    }
+
+    public PayloadWriter writeDiagnosisFileList(List<DiagnosisFile> files) {
+        writeInt(files == null ? 0 : files.size());
+        if (files != null) {
+            for (DiagnosisFile df : files) {
+                writeDiagnosisFile(df);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Writes every channel as a length prefixed {@link ResidualCodec} block:
+     * second order predictor for ECG, first order for the rest.
+     */
+    public PayloadWriter writeSignalBuffer(SignalBuffer signals) {
+        if (signals == null) return writeByte(0);
+        int channels = signals.getChannelCount();
+        int n = signals.getSampleCount();
+        writeByte(channels);
+        writeInt(signals.getSamplingRate());
+        writeLong(signals.getStartTimestamp());
+        int[] samples = new int[n];
+        for (int ch = 0; ch < channels; ch++) {
+            signals.copyTo(ch, 0, n, samples, 0);
+            int order = ch == SignalBuffer.CHANNEL_ECG ? ResidualCodec.ORDER_2 : ResidualCodec.ORDER_1;
+            ensure(4 + ResidualCodec.maxEncodedSize(n));
+            int written = ResidualCodec.encode(samples, 0, n, order, buf, size + 4);
+            writeInt(written);
+            size += written;
+        }
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, size);
+    }
+}
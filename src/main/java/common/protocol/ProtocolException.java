@@ -0,0 +1,18 @@
+package common.protocol;
+
+import java.io.IOException;
+
+/**
+ * Raised when a frame is malformed or when the server answers with an {@link OpCode#ERROR} frame
+ * ({@link ServerErrorException}).
+ */
+public class ProtocolException extends IOException {
+
+    public ProtocolException(String message) {
+        super(message);
+    }
+
+    public ProtocolException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,22 @@
+package common.protocol;
+
+/**
+ * Push {@link OpCode#RECORDING_READY}: a patient finished uploading a recording and its diagnosis
+ * file is waiting in the doctor's RECENTLY_FINISH worklist. {@code version} is the worklist version
+ * after the change, the same token {@link DiagnosisFileChanges} uses, so a client that already holds
+ * it can ignore the event.
+ *
+ * Payload: (int diagnosisFileId, int patientId, long version).
+ */
+public record RecordingReady(int diagnosisFileId, int patientId, long version) {
+
+    public static RecordingReady read(PayloadReader r) throws ProtocolException {
+        return new RecordingReady(r.readInt(), r.readInt(), r.readLong());
+    }
+
+    public PayloadWriter write(PayloadWriter w) {
+        return w.writeInt(diagnosisFileId)
+                .writeInt(patientId)
+                .writeLong(version);
+    }
+}
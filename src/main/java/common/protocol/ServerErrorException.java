@@ -0,0 +1,17 @@
+package common.protocol;
+
+/**
+ * An {@link OpCode#ERROR} reply: the request arrived and the other end refused it or failed.
+ * The message is the one sent by the server.
+ */
+public class ServerErrorException extends ProtocolException {
+
+    public ServerErrorException(String message) {
+        super(message);
+    }
+
+    // El servidor no conoce la operación pedida (servidor antiguo)
+    public boolean isUnknownOpCode() {
+        return getMessage() != null && getMessage().contains(OpCode.UNKNOWN_OPCODE);
+    }
+}
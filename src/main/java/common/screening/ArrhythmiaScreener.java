@@ -0,0 +1,147 @@
+package common.screening;
+
+import common.signal.EdaPipeline;
+import org.kie.api.KieServices;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.rule.FactHandle;
+import org.kie.api.runtime.rule.QueryResultsRow;
+import pojos.DiagnosisFile;
+import pojos.Interfaces.ChartAndStatisticsInterface;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Arrhythmia screening on the rule base of the kjar ({@code rules/screening.drl}): candidate AF,
+ * bradycardia, tachycardia and pauses. One stateful session is fed incrementally: {@link #begin}
+ * with the diagnosis file (its symptoms), then {@link #addFragment} per 10 s fragment and
+ * {@link #addEda} per EDA window as they become available, firing the rules after each one, and
+ * {@link #finish} to collect the findings and retract the facts of the recording.
+ *
+ * Several recordings can be open at once; the session is not thread safe, so calls must not overlap.
+ */
+public final class ArrhythmiaScreener implements AutoCloseable {
+
+    public static final String SESSION = "screeningSession";
+    // Más largo que esto es pérdida de señal, no una pausa
+    private static final double MAX_PAUSE_MS = 10_000;
+
+    private final KieSession session;
+    private final Map<Integer, List<FactHandle>> facts = new HashMap<>();
+
+    public ArrhythmiaScreener() {
+        this(KieServices.Factory.get().getKieClasspathContainer());
+    }
+
+    public ArrhythmiaScreener(KieContainer container) {
+        this.session = container.newKieSession(SESSION);
+    }
+
+    public void begin(DiagnosisFile file) {
+        int id = file.getId();
+        if (facts.containsKey(id)) {
+            throw new IllegalStateException("Recording " + id + " is already being screened");
+        }
+        facts.put(id, new ArrayList<>());
+        if (file.getSymptoms() != null) {
+            for (String symptom : file.getSymptoms()) {
+                if (symptom != null && !symptom.isBlank()) {
+                    insert(id, new Symptom(id, symptom.trim().toLowerCase(Locale.ROOT)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Derives the {@link HrWindow} of fragment {@code index}, samples [start, end), from the beats
+     * detected so far and fires the rules.
+     *
+     * @param beats R peak sample indices of the recording in ascending order, {@code beatCount} of them
+     */
+    public void addFragment(int recordingId, int index, long start, long end, long[] beats, int beatCount,
+                            int samplingRate) {
+        int first = lowerBound(beats, beatCount, start);
+        int last = lowerBound(beats, beatCount, end);
+        double msPerSample = 1000.0 / samplingRate;
+        double sum = 0;
+        double minRr = Double.MAX_VALUE;
+        double maxRr = 0;
+        double maxAnyRr = 0;
+        int count = 0;
+        double diffSq = 0;
+        int diffCount = 0;
+        double previousRr = Double.NaN;
+        for (int i = Math.max(1, first); i < last; i++) {
+            double rr = (beats[i] - beats[i - 1]) * msPerSample;
+            if (rr <= MAX_PAUSE_MS) maxAnyRr = Math.max(maxAnyRr, rr);
+            if (rr < ChartAndStatisticsInterface.MIN_RR_MS || rr > ChartAndStatisticsInterface.MAX_RR_MS) {
+                previousRr = Double.NaN;
+                continue;
+            }
+            sum += rr;
+            minRr = Math.min(minRr, rr);
+            maxRr = Math.max(maxRr, rr);
+            count++;
+            if (!Double.isNaN(previousRr)) {
+                diffSq += (rr - previousRr) * (rr - previousRr);
+                diffCount++;
+            }
+            previousRr = rr;
+        }
+        double meanRr = count > 0 ? sum / count : Double.NaN;
+        insert(recordingId, new HrWindow(recordingId, index, start / (double) samplingRate,
+                end / (double) samplingRate, count,
+                60_000 / meanRr,
+                count > 0 ? 60_000 / maxRr : Double.NaN,
+                count > 0 ? 60_000 / minRr : Double.NaN,
+                maxAnyRr,
+                diffCount > 0 ? Math.sqrt(diffSq / diffCount) / meanRr : Double.NaN));
+        session.fireAllRules();
+    }
+
+    public void addEda(int recordingId, EdaPipeline.Window window, int samplingRate) {
+        insert(recordingId, EdaWindow.of(recordingId, window, samplingRate));
+        session.fireAllRules();
+    }
+
+    // Hallazgos de la grabación; sus hechos salen de la sesión
+    public ScreeningResult finish(int recordingId) {
+        List<FactHandle> handles = facts.remove(recordingId);
+        if (handles == null) {
+            throw new IllegalStateException("Recording " + recordingId + " is not being screened");
+        }
+        // Los Finding los insertan las reglas: no están en handles, se buscan con la consulta
+        List<Finding> findings = new ArrayList<>();
+        for (QueryResultsRow row : session.getQueryResults("findings", recordingId)) {
+            findings.add((Finding) row.get("$finding"));
+            handles.add(row.getFactHandle("$finding"));
+        }
+        for (FactHandle h : handles) session.delete(h);
+        findings.sort(Comparator.comparingInt(Finding::getIndex));
+        return new ScreeningResult(recordingId, findings);
+    }
+
+    @Override
+    public void close() {
+        session.dispose();
+    }
+
+    private void insert(int recordingId, Object fact) {
+        List<FactHandle> handles = facts.get(recordingId);
+        if (handles == null) {
+            throw new IllegalStateException("Recording " + recordingId + " is not being screened");
+        }
+        handles.add(session.insert(fact));
+    }
+
+    private static int lowerBound(long[] beats, int beatCount, long sample) {
+        int i = Arrays.binarySearch(beats, 0, beatCount, sample);
+        return i < 0 ? -i - 1 : i;
+    }
+}
@@ -0,0 +1,54 @@
+package common.screening;
+
+import common.signal.EdaPipeline;
+
+// Features EDA de una ventana de EdaPipeline, como hecho para las reglas
+public class EdaWindow {
+
+    private final int recordingId;
+    private final double startSeconds;
+    private final double endSeconds;
+    private final double sclMean;
+    private final double sclSlope;
+    private final int scrCount;
+
+    public EdaWindow(int recordingId, double startSeconds, double endSeconds, double sclMean, double sclSlope, int scrCount) {
+        this.recordingId = recordingId;
+        this.startSeconds = startSeconds;
+        this.endSeconds = endSeconds;
+        this.sclMean = sclMean;
+        this.sclSlope = sclSlope;
+        this.scrCount = scrCount;
+    }
+
+    public static EdaWindow of(int recordingId, EdaPipeline.Window window, int samplingRate) {
+        return new EdaWindow(recordingId,
+                window.start() / (double) samplingRate,
+                (window.start() + window.samples()) / (double) samplingRate,
+                window.sclMean(), window.sclSlope(), window.scrCount());
+    }
+
+    public int getRecordingId() {
+        return recordingId;
+    }
+
+    public double getStartSeconds() {
+        return startSeconds;
+    }
+
+    public double getEndSeconds() {
+        return endSeconds;
+    }
+
+    public double getSclMean() {
+        return sclMean;
+    }
+
+    public double getSclSlope() {
+        return sclSlope;
+    }
+
+    public int getScrCount() {
+        return scrCount;
+    }
+}
@@ -0,0 +1,92 @@
+package common.screening;
+
+import common.enums.ArrhythmiaType;
+
+/**
+ * A candidate arrhythmia inserted by the rules: one episode, from fragment {@code index} to
+ * {@code lastIndex}, which the rules extend while the following fragments still meet its criteria.
+ * Other rules mark it as symptomatic (the patient reported a related symptom) or as coinciding with
+ * sympathetic arousal on the EDA, which raise and lower its severity.
+ */
+public class Finding {
+
+    private final int recordingId;
+    private final ArrhythmiaType type;
+    private final int index;
+    private final double startSeconds;
+    private int lastIndex;
+    private double endSeconds;
+    private boolean symptomatic;
+    private boolean arousal;
+
+    public Finding(int recordingId, ArrhythmiaType type, int index, int lastIndex,
+                   double startSeconds, double endSeconds) {
+        this.recordingId = recordingId;
+        this.type = type;
+        this.index = index;
+        this.lastIndex = lastIndex;
+        this.startSeconds = startSeconds;
+        this.endSeconds = endSeconds;
+    }
+
+    public int getRecordingId() {
+        return recordingId;
+    }
+
+    public ArrhythmiaType getType() {
+        return type;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public double getStartSeconds() {
+        return startSeconds;
+    }
+
+    public int getLastIndex() {
+        return lastIndex;
+    }
+
+    public double getEndSeconds() {
+        return endSeconds;
+    }
+
+    public double getDurationSeconds() {
+        return endSeconds - startSeconds;
+    }
+
+    // El episodio sigue en el fragmento lastIndex
+    public void extend(int lastIndex, double endSeconds) {
+        this.lastIndex = lastIndex;
+        this.endSeconds = endSeconds;
+    }
+
+    public boolean isSymptomatic() {
+        return symptomatic;
+    }
+
+    public void setSymptomatic(boolean symptomatic) {
+        this.symptomatic = symptomatic;
+    }
+
+    public boolean isArousal() {
+        return arousal;
+    }
+
+    public void setArousal(boolean arousal) {
+        this.arousal = arousal;
+    }
+
+    public int getSeverity() {
+        return type.getSeverity() + (symptomatic ? 1 : 0) - (arousal ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return type.getLabel() + " at " + (int) startSeconds + "s for " + (int) getDurationSeconds() + "s"
+                + (symptomatic ? " (symptomatic)" : "")
+                + (arousal ? " (with EDA arousal)" : "");
+    }
+}
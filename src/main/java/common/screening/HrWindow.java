@@ -0,0 +1,84 @@
+package common.screening;
+
+/**
+ * Beat intervals of one fragment (10 s), as a fact for the screening rules. Intervals belong to
+ * the fragment of the beat that closes them.
+ */
+public class HrWindow {
+
+    private final int recordingId;
+    private final int index;
+    private final double startSeconds;
+    private final double endSeconds;
+    private final int rrCount;
+    private final double meanHr;
+    private final double minHr;
+    private final double maxHr;
+    private final double maxRrMs;
+    private final double irregularity;
+
+    /**
+     * @param rrCount intervals within the heart rate range, the ones the rates are computed from
+     * @param maxRrMs longest interval, in or out of range (a pause is out of it)
+     * @param irregularity RMSSD / mean RR of the intervals in range (normalised RMSSD)
+     */
+    public HrWindow(int recordingId, int index, double startSeconds, double endSeconds, int rrCount,
+                    double meanHr, double minHr, double maxHr, double maxRrMs, double irregularity) {
+        this.recordingId = recordingId;
+        this.index = index;
+        this.startSeconds = startSeconds;
+        this.endSeconds = endSeconds;
+        this.rrCount = rrCount;
+        this.meanHr = meanHr;
+        this.minHr = minHr;
+        this.maxHr = maxHr;
+        this.maxRrMs = maxRrMs;
+        this.irregularity = irregularity;
+    }
+
+    public int getRecordingId() {
+        return recordingId;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public double getStartSeconds() {
+        return startSeconds;
+    }
+
+    public double getEndSeconds() {
+        return endSeconds;
+    }
+
+    public int getRrCount() {
+        return rrCount;
+    }
+
+    public double getMeanHr() {
+        return meanHr;
+    }
+
+    public double getMinHr() {
+        return minHr;
+    }
+
+    public double getMaxHr() {
+        return maxHr;
+    }
+
+    public double getMaxRrMs() {
+        return maxRrMs;
+    }
+
+    public double getIrregularity() {
+        return irregularity;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HrWindow{recording=%d, index=%d, rr=%d, hr=%.0f (%.0f-%.0f), maxRr=%.0f ms, nRMSSD=%.3f}",
+                recordingId, index, rrCount, meanHr, minHr, maxHr, maxRrMs, irregularity);
+    }
+}
@@ -0,0 +1,65 @@
+package common.screening;
+
+import common.enums.ArrhythmiaType;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Findings of the screening rules for one recording, in fragment order.
+ */
+public record ScreeningResult(int recordingId, List<Finding> findings) {
+
+    // Triage: mayor severidad primero y, a igual severidad, más hallazgos
+    public static final Comparator<ScreeningResult> TRIAGE_ORDER = Comparator
+            .comparingInt(ScreeningResult::getPriority)
+            .thenComparingInt(r -> r.findings().size())
+            .reversed();
+
+    public ScreeningResult {
+        findings = List.copyOf(findings);
+    }
+
+    // 0 si no hay hallazgos
+    public int getPriority() {
+        int priority = 0;
+        for (Finding f : findings) {
+            priority = Math.max(priority, f.getSeverity());
+        }
+        return priority;
+    }
+
+    public boolean isFlagged() {
+        return !findings.isEmpty();
+    }
+
+    public int count(ArrhythmiaType type) {
+        int count = 0;
+        for (Finding f : findings) {
+            if (f.getType() == type) count++;
+        }
+        return count;
+    }
+
+    // "AF x3 (symptomatic), Pause x1", o "no flags"
+    public String toShortString() {
+        if (findings.isEmpty()) {
+            return "no flags";
+        }
+        Map<ArrhythmiaType, int[]> counts = new EnumMap<>(ArrhythmiaType.class);
+        Map<ArrhythmiaType, Boolean> symptomatic = new EnumMap<>(ArrhythmiaType.class);
+        for (Finding f : findings) {
+            counts.computeIfAbsent(f.getType(), t -> new int[1])[0]++;
+            symptomatic.merge(f.getType(), f.isSymptomatic(), Boolean::logicalOr);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<ArrhythmiaType, int[]> e : counts.entrySet()) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(e.getKey().getLabel()).append(" x").append(e.getValue()[0]);
+            if (symptomatic.get(e.getKey())) sb.append(" (symptomatic)");
+        }
+        return sb.toString();
+    }
+}
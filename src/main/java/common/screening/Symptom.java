@@ -0,0 +1,21 @@
+package common.screening;
+
+// Un síntoma de DiagnosisFile.getSymptoms(), en minúsculas
+public class Symptom {
+
+    private final int recordingId;
+    private final String name;
+
+    public Symptom(int recordingId, String name) {
+        this.recordingId = recordingId;
+        this.name = name;
+    }
+
+    public int getRecordingId() {
+        return recordingId;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
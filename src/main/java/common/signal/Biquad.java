@@ -0,0 +1,55 @@
+package common.signal;
+
+/**
+ * Second order IIR section (RBJ cookbook, Butterworth Q = 1/sqrt(2)) in direct form I.
+ * Keeps its state between calls, so a signal can be filtered chunk by chunk.
+ */
+public final class Biquad {
+
+    private final double b0, b1, b2, a1, a2;
+    private double x1, x2, y1, y2;
+    private boolean started;
+
+    private Biquad(double[] c) {
+        b0 = c[0]; b1 = c[1]; b2 = c[2]; a1 = c[3]; a2 = c[4];
+    }
+
+    public static Biquad lowPass(double cutoffHz, double samplingRate) {
+        return new Biquad(coefficients(cutoffHz, samplingRate, false));
+    }
+
+    public static Biquad highPass(double cutoffHz, double samplingRate) {
+        return new Biquad(coefficients(cutoffHz, samplingRate, true));
+    }
+
+    /**
+     * Filters the next sample. The first one sets the state as if the input had always been
+     * at that level, so an offset (e.g. the ADC mid scale) does not produce a start-up step.
+     */
+    public double filter(double x) {
+        if (!started) {
+            started = true;
+            double dc = x * (b0 + b1 + b2) / (1 + a1 + a2); // ganancia en continua: 1 paso bajo, 0 paso alto
+            x1 = x2 = x;
+            y1 = y2 = dc;
+        }
+        double y = b0 * x + b1 * x1 + b2 * x2 - a1 * y1 - a2 * y2;
+        x2 = x1; x1 = x;
+        y2 = y1; y1 = y;
+        return y;
+    }
+
+    // {b0, b1, b2, a1, a2} normalizados por a0
+    private static double[] coefficients(double cutoffHz, double samplingRate, boolean highPass) {
+        if (cutoffHz <= 0 || cutoffHz >= samplingRate / 2) {
+            throw new IllegalArgumentException("cutoff must be between 0 and samplingRate / 2");
+        }
+        double w0 = 2 * Math.PI * cutoffHz / samplingRate;
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / Math.sqrt(2);
+        double a0 = 1 + alpha;
+        double b0 = (highPass ? (1 + cos) : (1 - cos)) / 2;
+        double b1 = highPass ? -(1 + cos) : (1 - cos);
+        return new double[]{b0 / a0, b1 / a0, b0 / a0, -2 * cos / a0, (1 - alpha) / a0};
+    }
+}
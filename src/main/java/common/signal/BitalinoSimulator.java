@@ -0,0 +1,90 @@
+package common.signal;
+
+import java.util.Random;
+
+/**
+ * Synthetic BITalino ECG + EDA source (10 bit ADC counts) for trying the live view
+ * without a device or a server stream.
+ *
+ * ECG: P-QRS-T built from gaussians, with beat-to-beat RR variability and baseline wander.
+ * EDA: slow tonic drift plus a skin conductance response every few tens of seconds.
+ */
+public final class BitalinoSimulator {
+
+    private static final int ADC_MID = 512;
+
+    // Ondas del latido: posición (fracción del RR), anchura (s), amplitud (cuentas)
+    private static final double[][] WAVES = {
+            {0.16, 0.025, 25},    // P
+            {0.245, 0.008, -35},  // Q
+            {0.26, 0.010, 320},   // R
+            {0.275, 0.009, -70},  // S
+            {0.50, 0.045, 60},    // T
+    };
+
+    private final int samplingRate;
+    private final double meanRr;
+    private final Random random;
+
+    private long sample;
+    private long beatStart;
+    private int beatLength;
+    private double scr;
+    private long nextScr;
+
+    public BitalinoSimulator(int samplingRate, double heartRateBpm, long seed) {
+        if (samplingRate <= 0 || heartRateBpm <= 0) {
+            throw new IllegalArgumentException("samplingRate and heartRateBpm must be > 0");
+        }
+        this.samplingRate = samplingRate;
+        this.meanRr = 60.0 / heartRateBpm;
+        this.random = new Random(seed);
+        this.beatLength = nextBeatLength();
+        this.nextScr = (long) (samplingRate * (5 + random.nextInt(20)));
+    }
+
+    public int getSamplingRate() {
+        return samplingRate;
+    }
+
+    /**
+     * Writes the next {@code count} samples of each channel.
+     */
+    public void next(int[] ecg, int[] eda, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            if (sample - beatStart >= beatLength) {
+                beatStart = sample;
+                beatLength = nextBeatLength();
+            }
+            double t = (double) (sample - beatStart) / samplingRate;
+            double rr = (double) beatLength / samplingRate;
+            double seconds = (double) sample / samplingRate;
+
+            double v = 15 * Math.sin(2 * Math.PI * 0.25 * seconds); // respiración
+            for (double[] w : WAVES) {
+                double d = (t - w[0] * rr) / w[1];
+                v += w[2] * Math.exp(-0.5 * d * d);
+            }
+            v += random.nextGaussian() * 3;
+            ecg[offset + i] = clamp(ADC_MID + v);
+
+            if (sample == nextScr) {
+                scr += 60 + random.nextInt(80);
+                nextScr = sample + (long) samplingRate * (8 + random.nextInt(30));
+            }
+            scr *= 1 - 1.0 / (4.0 * samplingRate); // decae en unos 4 s
+            double tonic = 300 + 20 * Math.sin(2 * Math.PI * seconds / 120);
+            eda[offset + i] = clamp(tonic + scr + random.nextGaussian());
+            sample++;
+        }
+    }
+
+    private int nextBeatLength() {
+        double rr = meanRr * (1 + 0.05 * random.nextGaussian());
+        return Math.max(samplingRate / 4, (int) (rr * samplingRate));
+    }
+
+    private static int clamp(double v) {
+        return (int) Math.max(0, Math.min(1023, Math.round(v)));
+    }
+}
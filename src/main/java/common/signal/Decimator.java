@@ -0,0 +1,139 @@
+package common.signal;
+
+/**
+ * Level-of-detail reduction of evenly sampled signals before they reach the chart.
+ * The output size depends on the number of pixel columns, not on the number of samples,
+ * so the renderer always draws O(pixels) points.
+ *
+ * Sample i is placed at x = x0 + i * dx. Output arrays must hold at least
+ * {@link #maxOutput(int)} values.
+ */
+public final class Decimator {
+
+    private Decimator() {
+    }
+
+    public static int maxOutput(int buckets) {
+        return 2 * buckets + 2;
+    }
+
+    /**
+     * Per-bucket min/max: keeps every spike (QRS peaks survive), two points per bucket,
+     * emitted in sample order so the line does not fold back.
+     * Returns the number of points written.
+     */
+    public static int minMax(double[] y, int from, int to, double x0, double dx,
+                             int buckets, double[] outX, double[] outY) {
+        return minMax(y, from, to, x0, dx, buckets, outX, outY, 0);
+    }
+
+    /**
+     * Same as {@link #minMax(double[], int, int, double, double, int, double[], double[])},
+     * writing from {@code outOffset} so callers can reuse one buffer with extra points around.
+     */
+    public static int minMax(double[] y, int from, int to, double x0, double dx,
+                             int buckets, double[] outX, double[] outY, int outOffset) {
+        if (buckets <= 0) {
+            throw new IllegalArgumentException("buckets must be > 0");
+        }
+        int n = to - from;
+        if (n <= 0) return 0;
+        if (n <= 2 * buckets) {
+            return copy(y, from, to, x0, dx, outX, outY, outOffset);
+        }
+        int count = outOffset;
+        for (int b = 0; b < buckets; b++) {
+            int start = from + (int) ((long) n * b / buckets);
+            int end = from + (int) ((long) n * (b + 1) / buckets);
+            int minIdx = start;
+            int maxIdx = start;
+            double min = y[start];
+            double max = y[start];
+            for (int i = start + 1; i < end; i++) {
+                double v = y[i];
+                if (v < min) { min = v; minIdx = i; }
+                else if (v > max) { max = v; maxIdx = i; }
+            }
+            int first = Math.min(minIdx, maxIdx);
+            int second = Math.max(minIdx, maxIdx);
+            outX[count] = x0 + first * dx;
+            outY[count++] = y[first];
+            if (second != first) {
+                outX[count] = x0 + second * dx;
+                outY[count++] = y[second];
+            }
+        }
+        return count - outOffset;
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets (Steinarsson, 2013): keeps the first and last sample and,
+     * for every bucket in between, the sample forming the largest triangle with the previously
+     * kept point and the average of the next bucket. Visually smoother than min/max for the
+     * same number of points. Returns the number of points written.
+     */
+    public static int lttb(double[] y, int from, int to, double x0, double dx,
+                           int threshold, double[] outX, double[] outY) {
+        int n = to - from;
+        if (n <= 0) return 0;
+        if (threshold < 3 || n <= threshold) {
+            return copy(y, from, to, x0, dx, outX, outY, 0);
+        }
+        double every = (double) (n - 2) / (threshold - 2);
+        int count = 0;
+        int a = from;
+        outX[count] = x0 + a * dx;
+        outY[count++] = y[a];
+
+        for (int b = 0; b < threshold - 2; b++) {
+            // Media del siguiente bucket
+            int avgStart = from + (int) Math.floor((b + 1) * every) + 1;
+            int avgEnd = Math.min(from + (int) Math.floor((b + 2) * every) + 1, to);
+            double avgX = 0;
+            double avgY = 0;
+            int avgLen = avgEnd - avgStart;
+            if (avgLen <= 0) {
+                avgStart = to - 1;
+                avgLen = 1;
+                avgEnd = to;
+            }
+            for (int i = avgStart; i < avgEnd; i++) {
+                avgX += i;
+                avgY += y[i];
+            }
+            avgX /= avgLen;
+            avgY /= avgLen;
+
+            int rangeStart = from + (int) Math.floor(b * every) + 1;
+            int rangeEnd = from + (int) Math.floor((b + 1) * every) + 1;
+            double ax = a;
+            double ay = y[a];
+            double maxArea = -1;
+            int next = rangeStart;
+            for (int i = rangeStart; i < rangeEnd; i++) {
+                double area = Math.abs((ax - avgX) * (y[i] - ay) - (ax - i) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = i;
+                }
+            }
+            outX[count] = x0 + next * dx;
+            outY[count++] = y[next];
+            a = next;
+        }
+
+        outX[count] = x0 + (to - 1) * dx;
+        outY[count++] = y[to - 1];
+        return count;
+    }
+
+    private static int copy(double[] y, int from, int to, double x0, double dx,
+                            double[] outX, double[] outY, int outOffset) {
+        int count = outOffset;
+        for (int i = from; i < to; i++) {
+            outX[count] = x0 + i * dx;
+            outY[count++] = y[i];
+        }
+        return count - outOffset;
+    }
+}
@@ -0,0 +1,202 @@
+package common.signal;
+
+import java.util.List;
+
+/**
+ * Streaming EDA analysis, fed chunk by chunk in recording order with constant memory:
+ * <ol>
+ *     <li>1 Hz low-pass (the same smoothing {@link ScrDetector} uses);</li>
+ *     <li>tonic level (SCL): {@value #TONIC_HZ} Hz low-pass of the smoothed signal, held at the
+ *     onset level while a response rises and until it has recovered half its amplitude
+ *     (at most {@value #RECOVERY_S} s), so the responses do not leak into it;</li>
+ *     <li>phasic component: smoothed signal minus tonic level;</li>
+ *     <li>SCR onset/peak detection on the smoothed signal ({@link ScrDetector});</li>
+ *     <li>one {@link Window} of features every {@code windowSeconds}, sent to the listener as soon as
+ *     the window closes. Call {@link #flush()} at the end of the recording for the last one.</li>
+ * </ol>
+ * Levels are in the units of the input (BITalino ADC counts by default).
+ */
+public final class EdaPipeline {
+
+    public static final double DEFAULT_WINDOW_SECONDS = 60;
+    static final double TONIC_HZ = 0.05;
+    private static final double RECOVERY_S = 10;
+
+    public interface Listener extends ScrDetector.Listener {
+        @Override
+        default void response(long onset, long peak, double amplitude) {
+        }
+
+        void window(Window window);
+    }
+
+    /**
+     * Features of one window. SCRs belong to the window of their peak; amplitude and rise time
+     * are 0 when there are none.
+     *
+     * @param sclSlope change of the tonic level per minute
+     */
+    public record Window(long start, int samples, double sclMean, double sclSlope,
+                         double phasicMean, double phasicMax,
+                         int scrCount, double scrAmplitudeMean, double scrRiseTimeMean) {
+
+        // Nombres de las columnas de toVector()
+        public static final List<String> FEATURES = List.of("sclMean", "sclSlope", "phasicMean", "phasicMax",
+                "scrCount", "scrAmplitudeMean", "scrRiseTimeMean");
+
+        public double[] toVector() {
+            return new double[]{sclMean, sclSlope, phasicMean, phasicMax, scrCount, scrAmplitudeMean, scrRiseTimeMean};
+        }
+    }
+
+    private final int samplingRate;
+    private final int windowSamples;
+    private final Listener listener;
+    private final Biquad smoothing;
+    private final Biquad tonicFilter;
+    private final ScrDetector scr;
+
+    private long sample;
+    private double tonic;
+    private double phasic;
+
+    // Respuesta recuperándose: el nivel tónico sigue en holdLevel
+    private boolean recovering;
+    private double holdLevel;
+    private double recoveryLevel;
+    private long recoveryEnd;
+
+    // Ventana en curso
+    private long windowStart;
+    private int windowCount;
+    private double sclSum;
+    private double sclFirst;
+    private double phasicSum;
+    private double phasicMax;
+    private int scrCount;
+    private double amplitudeSum;
+    private long riseSum;
+
+    public EdaPipeline(int samplingRate, Listener listener) {
+        this(samplingRate, DEFAULT_WINDOW_SECONDS, listener);
+    }
+
+    public EdaPipeline(int samplingRate, double windowSeconds, Listener listener) {
+        if (windowSeconds * samplingRate < 1) {
+            throw new IllegalArgumentException("window must be at least one sample");
+        }
+        this.samplingRate = samplingRate;
+        this.windowSamples = (int) Math.round(windowSeconds * samplingRate);
+        this.listener = listener;
+        this.smoothing = Biquad.lowPass(ScrDetector.SMOOTHING_HZ, samplingRate);
+        this.tonicFilter = Biquad.lowPass(TONIC_HZ, samplingRate);
+        this.scr = new ScrDetector(samplingRate, this::response);
+    }
+
+    public int process(int[] samples, int from, int to) {
+        int before = scr.getResponseCount();
+        for (int i = from; i < to; i++) {
+            step(samples[i]);
+        }
+        return scr.getResponseCount() - before;
+    }
+
+    // Devuelve el número de respuestas encontradas en este trozo
+    public int process(double[] samples, int from, int to) {
+        int before = scr.getResponseCount();
+        for (int i = from; i < to; i++) {
+            step(samples[i]);
+        }
+        return scr.getResponseCount() - before;
+    }
+
+    // Cierra la ventana en curso aunque esté incompleta (final de la grabación)
+    public void flush() {
+        if (windowCount > 0) {
+            closeWindow();
+        }
+    }
+
+    public int getResponseCount() {
+        return scr.getResponseCount();
+    }
+
+    public long getSampleCount() {
+        return sample;
+    }
+
+    // Nivel tónico y componente fásica de la última muestra
+    public double getTonic() {
+        return tonic;
+    }
+
+    public double getPhasic() {
+        return phasic;
+    }
+
+    public int getSamplingRate() {
+        return samplingRate;
+    }
+
+    private void step(double x) {
+        double y = smoothing.filter(x);
+        // Puede cerrar una respuesta con pico en la muestra anterior, que es aún de esta ventana
+        scr.stepSmoothed(y);
+        if (windowCount == windowSamples) {
+            closeWindow();
+        }
+
+        double input;
+        if (scr.isRising()) {
+            input = scr.getOnsetLevel();
+        } else if (recovering && y > recoveryLevel && sample < recoveryEnd) {
+            input = holdLevel;
+        } else {
+            recovering = false;
+            input = y;
+        }
+        tonic = tonicFilter.filter(input);
+        phasic = y - tonic;
+
+        if (windowCount == 0) {
+            windowStart = sample;
+            sclFirst = tonic;
+            phasicMax = phasic;
+        }
+        windowCount++;
+        sclSum += tonic;
+        phasicSum += phasic;
+        phasicMax = Math.max(phasicMax, phasic);
+        sample++;
+    }
+
+    private void response(long onset, long peak, double amplitude) {
+        recovering = true;
+        holdLevel = scr.getOnsetLevel();
+        recoveryLevel = holdLevel + amplitude / 2;
+        recoveryEnd = peak + (long) (RECOVERY_S * samplingRate);
+        scrCount++;
+        amplitudeSum += amplitude;
+        riseSum += peak - onset;
+        if (listener != null) listener.response(onset, peak, amplitude);
+    }
+
+    private void closeWindow() {
+        double seconds = windowCount / (double) samplingRate;
+        Window window = new Window(windowStart, windowCount,
+                sclSum / windowCount,
+                (tonic - sclFirst) / seconds * 60,
+                phasicSum / windowCount,
+                phasicMax,
+                scrCount,
+                scrCount > 0 ? amplitudeSum / scrCount : 0,
+                scrCount > 0 ? riseSum / (double) scrCount / samplingRate : 0);
+        windowCount = 0;
+        sclSum = 0;
+        phasicSum = 0;
+        scrCount = 0;
+        amplitudeSum = 0;
+        riseSum = 0;
+        if (listener != null) listener.window(window);
+    }
+}
@@ -0,0 +1,310 @@
+package common.signal;
+
+import java.util.Arrays;
+
+/**
+ * Incremental Pan-Tompkins QRS detector (Pan &amp; Tompkins, 1985). ECG samples are fed chunk by
+ * chunk in recording order (e.g. the 10 s fragments) and every filter keeps its state across calls,
+ * so the beats found do not depend on where the chunks are cut.
+ *
+ * Pipeline per sample: 5-15 Hz band-pass (two biquads) -> five point derivative -> square ->
+ * 150 ms moving window integration. Each local maximum of the integrated signal is classified
+ * against the adaptive thresholds (SPKI/NPKI), with a 200 ms refractory period, the T wave slope
+ * check up to 360 ms and search-back when no beat is seen for 166% of the mean RR. The R peak is
+ * then located on the raw signal, so beat positions are sample indices of the recording.
+ *
+ * A beat is reported once its integrated peak has passed, about 150-250 ms after the R peak.
+ */
+public final class QrsDetector {
+
+    private static final double LOW_CUT_HZ = 5;
+    private static final double HIGH_CUT_HZ = 15;
+    private static final double INTEGRATION_S = 0.150;
+    private static final double REFRACTORY_S = 0.200;
+    private static final double T_WAVE_S = 0.360;
+    private static final double TRAINING_S = 2.0;
+    private static final double SEARCH_MARGIN_S = 0.025;
+    private static final int RR_AVERAGE = 8;
+
+    private final int samplingRate;
+    private final int window;
+    private final int refractory;
+    private final int tWave;
+    private final int training;
+    private final int margin;
+
+    // Paso banda: paso alto + paso bajo
+    private final Biquad highPass;
+    private final Biquad lowPass;
+
+    // Derivada de cinco puntos sobre la señal filtrada
+    private double d1, d2, d3, d4;
+
+    // Integración en ventana móvil
+    private final double[] squared;
+    private int squaredPos;
+    private double integral;
+    private double integralPrev;
+    private double integralPrev2;
+
+    // Historia reciente (señal original y pendiente) para situar el pico R
+    private final double[] rawHistory;
+    private final double[] slopeHistory;
+    private final int historyMask;
+
+    private long sample;
+
+    // Umbrales adaptativos
+    private double spki;
+    private double npki;
+    private double threshold1;
+    private double threshold2;
+
+    // Fase de aprendizaje: picos candidatos de los primeros 2 s
+    private boolean trained;
+    private double trainingMax;
+    private double trainingSum;
+    private long[] pendingR = new long[16];
+    private double[] pendingPeak = new double[16];
+    private double[] pendingSlope = new double[16];
+    private int pendingCount;
+
+    private long lastBeat = -1;
+    private double lastSlope;
+    private final long[] rrRecent = new long[RR_AVERAGE];
+    private int rrCount;
+    private long rrMissed = Long.MAX_VALUE;
+
+    // Mejor pico de ruido desde el último latido (search-back)
+    private long searchBackR = -1;
+    private double searchBackPeak;
+    private double searchBackSlope;
+
+    private long[] beats = new long[256];
+    private int beatCount;
+
+    public QrsDetector(int samplingRate) {
+        if (samplingRate < 4 * HIGH_CUT_HZ) {
+            throw new IllegalArgumentException("samplingRate must be >= " + (int) (4 * HIGH_CUT_HZ) + " Hz");
+        }
+        this.samplingRate = samplingRate;
+        this.window = Math.max(1, (int) Math.round(INTEGRATION_S * samplingRate));
+        this.refractory = (int) Math.round(REFRACTORY_S * samplingRate);
+        this.tWave = (int) Math.round(T_WAVE_S * samplingRate);
+        this.training = (int) Math.round(TRAINING_S * samplingRate);
+        this.margin = Math.max(1, (int) Math.round(SEARCH_MARGIN_S * samplingRate));
+
+        this.highPass = Biquad.highPass(LOW_CUT_HZ, samplingRate);
+        this.lowPass = Biquad.lowPass(HIGH_CUT_HZ, samplingRate);
+
+        this.squared = new double[window];
+        int history = Integer.highestOneBit(2 * (window + 2 * margin + 4) - 1);
+        this.rawHistory = new double[history];
+        this.slopeHistory = new double[history];
+        this.historyMask = history - 1;
+    }
+
+    public int process(int[] samples, int from, int to) {
+        int before = beatCount;
+        for (int i = from; i < to; i++) {
+            step(samples[i]);
+        }
+        return beatCount - before;
+    }
+
+    /**
+     * Feeds the next chunk of the recording. Returns the number of beats confirmed by it
+     * (they may belong to the end of the previous chunk).
+     */
+    public int process(double[] samples, int from, int to) {
+        int before = beatCount;
+        for (int i = from; i < to; i++) {
+            step(samples[i]);
+        }
+        return beatCount - before;
+    }
+
+    public int getSamplingRate() {
+        return samplingRate;
+    }
+
+    // Muestras procesadas hasta ahora
+    public long getSampleCount() {
+        return sample;
+    }
+
+    public int getBeatCount() {
+        return beatCount;
+    }
+
+    // Índice (muestra de la grabación) del pico R del latido i
+    public long getBeat(int i) {
+        if (i < 0 || i >= beatCount) throw new IndexOutOfBoundsException(i);
+        return beats[i];
+    }
+
+    public long[] getBeats() {
+        return Arrays.copyOf(beats, beatCount);
+    }
+
+    // Primer latido con muestra >= sampleIndex (beatCount si no hay)
+    public int firstBeatAtOrAfter(long sampleIndex) {
+        int lo = 0;
+        int hi = beatCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (beats[mid] < sampleIndex) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // Intervalo RR que termina en el latido i, en ms; NaN para el primero
+    public double getRrMillis(int i) {
+        if (i <= 0 || i >= beatCount) return Double.NaN;
+        return (beats[i] - beats[i - 1]) * 1000.0 / samplingRate;
+    }
+
+    // Frecuencia cardiaca instantánea (lpm) en el latido i; NaN para el primero
+    public double getHeartRate(int i) {
+        if (i <= 0 || i >= beatCount) return Double.NaN;
+        return 60.0 * samplingRate / (beats[i] - beats[i - 1]);
+    }
+
+    private void step(double x) {
+        double b = lowPass.filter(highPass.filter(x));
+
+        // Derivada y cuadrado
+        double d = (2 * b + d1 - d3 - 2 * d4) * 0.125;
+        d4 = d3; d3 = d2; d2 = d1; d1 = b;
+        double sq = d * d;
+
+        // Ventana móvil: suma corriente
+        integral += sq - squared[squaredPos];
+        squared[squaredPos] = sq;
+        if (++squaredPos == window) squaredPos = 0;
+        if (integral < 0) integral = 0; // error de redondeo de la suma corriente
+
+        int h0 = (int) (sample & historyMask);
+        rawHistory[h0] = x;
+        slopeHistory[h0] = Math.abs(d);
+
+        if (!trained) {
+            trainingSum += integral;
+            if (integral > trainingMax) trainingMax = integral;
+        }
+
+        // Máximo local del integrado en la muestra anterior
+        if (integralPrev > integralPrev2 && integralPrev >= integral && sample > window) {
+            peak(sample - 1, integralPrev);
+        }
+        integralPrev2 = integralPrev;
+        integralPrev = integral;
+
+        if (!trained && sample + 1 >= training) {
+            endTraining();
+        }
+        // Search-back: sin latido durante 1.66 RR se acepta el mayor pico por encima de threshold2
+        if (searchBackR >= 0 && sample - lastBeat > rrMissed) {
+            acceptBeat(searchBackR, searchBackSlope);
+            spki = 0.25 * searchBackPeak + 0.75 * spki;
+            updateThresholds();
+        }
+        sample++;
+    }
+
+    private void peak(long at, double value) {
+        // El QRS está en la ventana de integración que acaba en este pico
+        long from = Math.max(Math.max(0, sample - historyMask), at - window - margin);
+        double mean = 0;
+        double slope = 0;
+        for (long i = from; i <= at; i++) {
+            int k = (int) (i & historyMask);
+            mean += rawHistory[k];
+            if (slopeHistory[k] > slope) slope = slopeHistory[k];
+        }
+        mean /= at - from + 1;
+        // Pico R: la mayor desviación de la señal original en la ventana (vale también para QRS invertidos)
+        long r = at;
+        double best = -1;
+        for (long i = from; i <= at; i++) {
+            double dev = Math.abs(rawHistory[(int) (i & historyMask)] - mean);
+            if (dev > best) {
+                best = dev;
+                r = i;
+            }
+        }
+
+        if (!trained) {
+            if (pendingCount == pendingR.length) {
+                pendingR = Arrays.copyOf(pendingR, pendingCount * 2);
+                pendingPeak = Arrays.copyOf(pendingPeak, pendingCount * 2);
+                pendingSlope = Arrays.copyOf(pendingSlope, pendingCount * 2);
+            }
+            pendingR[pendingCount] = r;
+            pendingPeak[pendingCount] = value;
+            pendingSlope[pendingCount++] = slope;
+            return;
+        }
+        classify(r, value, slope);
+    }
+
+    private void classify(long r, double value, double slope) {
+        if (lastBeat >= 0 && r - lastBeat < refractory) {
+            return;
+        }
+        boolean qrs = value > threshold1;
+        // Entre 200 y 360 ms: con menos de la mitad de pendiente es una onda T
+        if (qrs && lastBeat >= 0 && r - lastBeat < tWave && slope < 0.5 * lastSlope) {
+            qrs = false;
+        }
+        if (qrs) {
+            acceptBeat(r, slope);
+            spki = 0.125 * value + 0.875 * spki;
+        } else {
+            npki = 0.125 * value + 0.875 * npki;
+            if (value > threshold2 && (searchBackR < 0 || value > searchBackPeak)) {
+                searchBackR = r;
+                searchBackPeak = value;
+                searchBackSlope = slope;
+            }
+        }
+        updateThresholds();
+    }
+
+    private void acceptBeat(long r, double slope) {
+        if (lastBeat >= 0) {
+            rrRecent[rrCount++ % RR_AVERAGE] = r - lastBeat;
+            long sum = 0;
+            int n = Math.min(rrCount, RR_AVERAGE);
+            for (int i = 0; i < n; i++) sum += rrRecent[i];
+            rrMissed = (long) (1.66 * sum / n);
+        }
+        if (beatCount == beats.length) {
+            beats = Arrays.copyOf(beats, beatCount * 2);
+        }
+        beats[beatCount++] = r;
+        lastBeat = r;
+        lastSlope = slope;
+        searchBackR = -1;
+    }
+
+    private void endTraining() {
+        trained = true;
+        spki = trainingMax / 3;
+        npki = trainingSum / (sample + 1) / 2;
+        updateThresholds();
+        for (int i = 0; i < pendingCount; i++) {
+            classify(pendingR[i], pendingPeak[i], pendingSlope[i]);
+        }
+        pendingR = null;
+        pendingPeak = null;
+        pendingSlope = null;
+        pendingCount = 0;
+    }
+
+    private void updateThresholds() {
+        threshold1 = npki + 0.25 * (spki - npki);
+        threshold2 = 0.5 * threshold1;
+    }
+}
@@ -0,0 +1,75 @@
+package common.signal;
+
+import pojos.Interfaces.ChartAndStatisticsInterface;
+import pojos.Interfaces.ChartStatisticsRecording;
+
+import java.util.List;
+
+/**
+ * Whole-recording figures for reviewing a recording at a glance: heart rate and HRV (time and
+ * frequency domain, see {@link ChartAndStatisticsInterface}) from the R peaks, and the skin
+ * conductance level and responses ({@link EdaPipeline}, one feature window per minute).
+ * Values that cannot be computed (e.g. fewer than two beats) are NaN.
+ */
+public record RecordingSummary(double durationSeconds, int beatCount,
+                               double meanHr, double minHr, double maxHr,
+                               double sdnnMs, double rmssdMs, double pnn50,
+                               double lfPower, double hfPower, double lfHfRatio,
+                               int edaResponses, double edaResponsesPerMinute,
+                               double sclMean, double scrAmplitudeMean, List<EdaPipeline.Window> edaWindows) {
+
+    public RecordingSummary {
+        edaWindows = List.copyOf(edaWindows);
+    }
+
+    /**
+     * @param beats R peak sample indices in ascending order, {@code beatCount} of them
+     * @param samples length of the recording in samples
+     */
+    public static RecordingSummary of(long[] beats, int beatCount, int samplingRate, long samples,
+                                      List<EdaPipeline.Window> edaWindows) {
+        return of(new ChartStatisticsRecording(), beats, beatCount, samplingRate, samples, edaWindows);
+    }
+
+    // Con un hrv reutilizado (sus buffers no se vuelven a reservar en cada grabación)
+    public static RecordingSummary of(ChartAndStatisticsInterface hrv, long[] beats, int beatCount, int samplingRate,
+                                      long samples, List<EdaPipeline.Window> edaWindows) {
+        hrv.setBeats(beats, beatCount, samplingRate);
+        double duration = samples / (double) samplingRate;
+        long edaSamples = 0;
+        double sclSum = 0;
+        int edaResponses = 0;
+        double amplitudeSum = 0;
+        for (EdaPipeline.Window w : edaWindows) {
+            edaSamples += w.samples();
+            sclSum += w.sclMean() * w.samples();
+            edaResponses += w.scrCount();
+            amplitudeSum += w.scrAmplitudeMean() * w.scrCount();
+        }
+        return new RecordingSummary(duration, beatCount,
+                60_000 / hrv.getMeanRrMs(),
+                60_000 / hrv.getMaxRrMs(),
+                60_000 / hrv.getMinRrMs(),
+                hrv.getSdnnMs(),
+                hrv.getRmssdMs(),
+                hrv.getPnn50(),
+                hrv.getLfPower(),
+                hrv.getHfPower(),
+                hrv.getLfHfRatio(),
+                edaResponses,
+                duration > 0 ? edaResponses * 60 / duration : Double.NaN,
+                edaSamples > 0 ? sclSum / edaSamples : Double.NaN,
+                edaResponses > 0 ? amplitudeSum / edaResponses : Double.NaN,
+                edaWindows);
+    }
+
+    // Una línea para las listas: "HR 72 bpm (60-85) | SDNN 45 ms | RMSSD 30 ms | pNN50 12% | LF/HF 1.8 | SCR 2.1/min"
+    public String toShortString() {
+        if (Double.isNaN(meanHr)) {
+            return String.format("no beats detected | SCR %.1f/min", edaResponsesPerMinute);
+        }
+        String lfHf = Double.isNaN(lfHfRatio) ? "" : String.format(" | LF/HF %.1f", lfHfRatio);
+        return String.format("HR %.0f bpm (%.0f-%.0f) | SDNN %.0f ms | RMSSD %.0f ms | pNN50 %.0f%%%s | SCR %.1f/min",
+                meanHr, minHr, maxHr, sdnnMs, rmssdMs, pnn50, lfHf, edaResponsesPerMinute);
+    }
+}
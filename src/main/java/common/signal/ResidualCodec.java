@@ -0,0 +1,325 @@
+package common.signal;
+
+import common.protocol.ProtocolException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Per-channel codec for integer sample streams: a predictor, zig-zag and an entropy coder.
+ *
+ * <ul>
+ *   <li>{@link #ORDER_1}: residual = x[i] - x[i-1] (EDA, slow signals)</li>
+ *   <li>{@link #ORDER_2}: residual = x[i] - (2*x[i-1] - x[i-2]) (ECG, smooth between beats)</li>
+ * </ul>
+ *
+ * Block layout: format u8 ({@link #RICE} | order), count as an LEB128 varint, then the zig-zag residuals
+ * (the first samples are predicted from 0, so they are stored as plain values) as a bit stream,
+ * MSB first and padded to a byte, in groups of {@value #GROUP}. Each group starts with an 8 bit header:
+ * <ul>
+ *   <li>{@code k} (0..31): Rice code, unary {@code zz >>> k}, a 1, then the low {@code k} bits;</li>
+ *   <li>{@code 0x40 | w} (w 0..32): every residual in {@code w} plain bits (jumps, saturation).</li>
+ * </ul>
+ * The encoder picks whichever is smaller for each group. On 10 bit BITalino channels at 1000 Hz most
+ * residuals are a few counts, so a sample takes 3-6 bits.
+ */
+public final class ResidualCodec {
+
+    public static final int ORDER_1 = 1;
+    public static final int ORDER_2 = 2;
+
+    static final int RICE = 0x10;
+    static final int GROUP = 64;
+    private static final int FIXED = 0x40;
+    private static final int MAX_K = 31;
+
+    private ResidualCodec() {
+    }
+
+    /**
+     * Upper bound of the encoded size, to size buffers before encoding.
+     */
+    public static int maxEncodedSize(int count) {
+        // Peor caso: todos los grupos en 32 bits fijos más su cabecera
+        return 1 + 5 + 4 * count + (count + GROUP - 1) / GROUP;
+    }
+
+    public static byte[] encode(int[] values, int offset, int count, int order) {
+        byte[] out = new byte[maxEncodedSize(count)];
+        int n = encode(values, offset, count, order, out, 0);
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Encodes into {@code out} starting at {@code outOffset}; returns the number of bytes written.
+     * {@code out} must have room for {@link #maxEncodedSize(int)} bytes.
+     */
+    public static int encode(int[] values, int offset, int count, int order, byte[] out, int outOffset) {
+        checkOrder(order);
+        int pos = outOffset;
+        out[pos++] = (byte) (RICE | order);
+        pos = writeCount(count, out, pos);
+        BitWriter bits = new BitWriter(out, pos);
+        int[] zz = new int[Math.min(count, GROUP)];
+        int prev1 = 0;
+        int prev2 = 0;
+        for (int from = 0; from < count; from += GROUP) {
+            int n = Math.min(GROUP, count - from);
+            for (int j = 0; j < n; j++) {
+                int x = values[offset + from + j];
+                int predicted = order == ORDER_2 ? 2 * prev1 - prev2 : prev1;
+                int residual = x - predicted;
+                zz[j] = (residual << 1) ^ (residual >> 31);
+                prev2 = prev1;
+                prev1 = x;
+            }
+            writeGroup(zz, n, bits);
+        }
+        return bits.finish() - outOffset;
+    }
+
+    /**
+     * Number of samples of the block starting at the buffer position, without consuming it.
+     */
+    public static int peekCount(ByteBuffer in) throws ProtocolException {
+        ByteBuffer dup = in.duplicate();
+        try {
+            readFormat(dup);
+            return readCount(dup);
+        } catch (BufferUnderflowException e) {
+            throw new ProtocolException("Truncated signal block");
+        }
+    }
+
+    public static int[] decode(ByteBuffer in) throws ProtocolException {
+        int count = peekCount(in);
+        // Cada muestra ocupa al menos un bit: evita reservar arrays absurdos con datos corruptos
+        if (count < 0 || count > 8L * in.remaining()) {
+            throw new ProtocolException("Invalid sample count: " + count);
+        }
+        int[] values = new int[count];
+        decode(in, values, 0);
+        return values;
+    }
+
+    /**
+     * Decodes one block into {@code dst}; returns the number of samples written.
+     */
+    public static int decode(ByteBuffer in, int[] dst, int dstOffset) throws ProtocolException {
+        try {
+            int format = readFormat(in);
+            int order = format & ~RICE;
+            int count = readCount(in);
+            if (count < 0 || count > dst.length - dstOffset) {
+                throw new ProtocolException("Invalid sample count: " + count);
+            }
+            decodeGroups(in, order, count, dst, dstOffset);
+            return count;
+        } catch (BufferUnderflowException e) {
+            throw new ProtocolException("Truncated signal block");
+        }
+    }
+
+    // Elige para el grupo el código más corto: Rice con el mejor k o ancho fijo
+    private static void writeGroup(int[] zz, int n, BitWriter bits) {
+        long sum = 0;
+        int or = 0;
+        for (int j = 0; j < n; j++) {
+            sum += Integer.toUnsignedLong(zz[j]);
+            or |= zz[j];
+        }
+        int width = 32 - Integer.numberOfLeadingZeros(or);
+        long bestCost = (long) width * n;
+        int bestK = -1;
+        // k óptimo cerca de log2 de la media (como FLAC); se prueban los vecinos
+        int guess = 63 - Long.numberOfLeadingZeros(Math.max(1, sum / n));
+        for (int k = Math.max(0, guess - 1); k <= Math.min(MAX_K, guess + 1); k++) {
+            long cost = (long) (k + 1) * n;
+            for (int j = 0; j < n; j++) {
+                cost += Integer.toUnsignedLong(zz[j]) >>> k;
+            }
+            if (cost < bestCost) {
+                bestCost = cost;
+                bestK = k;
+            }
+        }
+        if (bestK < 0) {
+            bits.write(FIXED | width, 8);
+            for (int j = 0; j < n; j++) {
+                bits.write(zz[j], width);
+            }
+        } else {
+            bits.write(bestK, 8);
+            for (int j = 0; j < n; j++) {
+                bits.writeZeros((int) (Integer.toUnsignedLong(zz[j]) >>> bestK));
+                bits.write(1, 1);
+                bits.write(zz[j], bestK);
+            }
+        }
+    }
+
+    private static void decodeGroups(ByteBuffer in, int order, int count, int[] dst, int dstOffset)
+            throws ProtocolException {
+        BitReader bits = new BitReader(in);
+        int prev1 = 0;
+        int prev2 = 0;
+        for (int from = 0; from < count; from += GROUP) {
+            int n = Math.min(GROUP, count - from);
+            int header = bits.read(8);
+            boolean fixed = (header & FIXED) != 0;
+            int width = header & ~FIXED;
+            if (header > (FIXED | 32) || (!fixed && width > MAX_K)) {
+                throw new ProtocolException("Invalid residual group header: " + header);
+            }
+            for (int j = 0; j < n; j++) {
+                int zz;
+                if (fixed) {
+                    zz = bits.read(width);
+                } else {
+                    long q = bits.readUnary();
+                    if (q > (0xFFFFFFFFL >>> width)) {
+                        throw new ProtocolException("Malformed Rice code");
+                    }
+                    zz = (int) (q << width) | bits.read(width);
+                }
+                int residual = (zz >>> 1) ^ -(zz & 1);
+                int x = (order == ORDER_2 ? 2 * prev1 - prev2 : prev1) + residual;
+                dst[dstOffset + from + j] = x;
+                prev2 = prev1;
+                prev1 = x;
+            }
+        }
+        bits.finish();
+    }
+
+    private static int readFormat(ByteBuffer in) throws ProtocolException {
+        int format = in.get();
+        int order = format & ~RICE;
+        if ((format & RICE) == 0 || (order != ORDER_1 && order != ORDER_2)) {
+            throw new ProtocolException("Unsupported signal block format: " + format);
+        }
+        return format;
+    }
+
+    private static void checkOrder(int order) {
+        if (order != ORDER_1 && order != ORDER_2) {
+            throw new IllegalArgumentException("Unsupported predictor order: " + order);
+        }
+    }
+
+    // Número de muestras en LEB128: 7 bits por byte, el bit alto indica que sigue otro
+    private static int writeCount(int v, byte[] out, int pos) {
+        while ((v & ~0x7F) != 0) {
+            out[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out[pos++] = (byte) v;
+        return pos;
+    }
+
+    private static int readCount(ByteBuffer in) throws ProtocolException {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.get();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new ProtocolException("Malformed sample count");
+    }
+
+    // Bits MSB primero sobre el array de salida
+    private static final class BitWriter {
+        private final byte[] out;
+        private int pos;
+        private long acc;
+        private int pending;
+
+        BitWriter(byte[] out, int pos) {
+            this.out = out;
+            this.pos = pos;
+        }
+
+        // Los n bits bajos de v, n <= 32
+        void write(int v, int n) {
+            if (n == 0) return;
+            acc = (acc << n) | (v & (-1L >>> (64 - n)));
+            pending += n;
+            while (pending >= 8) {
+                pending -= 8;
+                out[pos++] = (byte) (acc >>> pending);
+            }
+        }
+
+        void writeZeros(int n) {
+            for (; n > 32; n -= 32) {
+                write(0, 32);
+            }
+            write(0, n);
+        }
+
+        // Rellena el último byte con ceros; devuelve la posición final
+        int finish() {
+            if (pending > 0) {
+                out[pos++] = (byte) (acc << (8 - pending));
+                pending = 0;
+            }
+            return pos;
+        }
+    }
+
+    /**
+     * Reads ahead whole bytes; {@link #finish()} gives back the ones not used, so the buffer ends
+     * right after the block.
+     */
+    private static final class BitReader {
+        private final ByteBuffer in;
+        private long bits;
+        private int available;
+
+        BitReader(ByteBuffer in) {
+            this.in = in;
+        }
+
+        int read(int n) {
+            if (n == 0) return 0;
+            if (available < n) {
+                refill();
+                if (available < n) throw new BufferUnderflowException();
+            }
+            available -= n;
+            return (int) ((bits >>> available) & (-1L >>> (64 - n)));
+        }
+
+        // Número de ceros antes del siguiente 1 (que también se consume)
+        long readUnary() {
+            long zeros = 0;
+            while (true) {
+                long window = available == 0 ? 0 : bits & (-1L >>> (64 - available));
+                if (window != 0) {
+                    int skip = available - (64 - Long.numberOfLeadingZeros(window));
+                    available -= skip + 1;
+                    return zeros + skip;
+                }
+                zeros += available;
+                available = 0;
+                refill();
+                if (available == 0) throw new BufferUnderflowException();
+            }
+        }
+
+        private void refill() {
+            while (available <= 48 && in.hasRemaining()) {
+                bits = (bits << 8) | (in.get() & 0xFF);
+                available += 8;
+            }
+        }
+
+        void finish() {
+            in.position(in.position() - available / 8);
+            available = 0;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package common.signal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer ring of multi-channel samples for live monitoring.
+ * One thread writes (the connection reader or a simulator), any thread reads.
+ *
+ * The producer never waits: once the ring is full the oldest samples are overwritten,
+ * which is what a monitor wants when the screen cannot keep up. Samples are addressed by
+ * their absolute index since the stream started; an index is readable while it lies in
+ * [{@link #getOldestIndex()}, {@link #getWriteIndex()}).
+ */
+public final class SampleRingBuffer {
+
+    private final int[][] channels;
+    private final int mask;
+    // Índice absoluto de la siguiente muestra; se publica con lazySet (release) tras escribir el lote
+    private final AtomicLong writeIndex = new AtomicLong();
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public SampleRingBuffer(int channelCount, int capacity) {
+        if (channelCount <= 0) {
+            throw new IllegalArgumentException("channelCount must be > 0");
+        }
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        this.channels = new int[channelCount][size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Appends {@code count} samples per channel taken from {@code values[ch][offset...]}.
+     * Producer thread only.
+     */
+    public void write(int[][] values, int offset, int count) {
+        if (values.length < channels.length) {
+            throw new IllegalArgumentException("Expected " + channels.length + " channels");
+        }
+        long w = writeIndex.get();
+        for (int ch = 0; ch < channels.length; ch++) {
+            int[] dst = channels[ch];
+            int[] src = values[ch];
+            int pos = (int) (w & mask);
+            int first = Math.min(count, dst.length - pos);
+            System.arraycopy(src, offset, dst, pos, first);
+            if (first < count) {
+                System.arraycopy(src, offset + first, dst, 0, count - first);
+            }
+        }
+        writeIndex.lazySet(w + count);
+    }
+
+    /**
+     * Appends one frame holding one sample per channel. Producer thread only.
+     */
+    public void write(int[] frame) {
+        long w = writeIndex.get();
+        int pos = (int) (w & mask);
+        for (int ch = 0; ch < channels.length; ch++) {
+            channels[ch][pos] = frame[ch];
+        }
+        writeIndex.lazySet(w + 1);
+    }
+
+    public long getWriteIndex() {
+        return writeIndex.get();
+    }
+
+    public long getOldestIndex() {
+        return Math.max(0, writeIndex.get() - channels[0].length);
+    }
+
+    /**
+     * Sample at an absolute index; the caller checks it is still in the readable window.
+     */
+    public int get(int channel, long index) {
+        return channels[channel][(int) (index & mask)];
+    }
+
+    /**
+     * Copies [from, to) of one channel. Returns false if part of the range was overwritten
+     * while copying (the reader fell more than a whole ring behind).
+     */
+    public boolean copy(int channel, long from, long to, int[] dst, int dstOffset) {
+        if (from < getOldestIndex() || to > writeIndex.get() || from > to) {
+            return false;
+        }
+        int[] src = channels[channel];
+        for (long i = from; i < to; i++) {
+            dst[dstOffset++] = src[(int) (i & mask)];
+        }
+        return from >= getOldestIndex();
+    }
+
+    public int getCapacity() {
+        return channels[0].length;
+    }
+
+    public int getChannelCount() {
+        return channels.length;
+    }
+}
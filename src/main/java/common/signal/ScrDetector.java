@@ -0,0 +1,119 @@
+package common.signal;
+
+/**
+ * Streaming skin conductance response (SCR) detector for EDA samples fed chunk by chunk in
+ * recording order. The signal is smoothed with a 1 Hz low-pass; a response starts when the
+ * slope rises above {@code onsetSlope} and peaks where the slope falls back to zero, and it is
+ * reported if the rise is at least {@code minAmplitude}. Memory use does not grow with the
+ * recording: responses go to the listener as they are found.
+ *
+ * Thresholds are in the units of the input (BITalino ADC counts by default) per second.
+ */
+public final class ScrDetector {
+
+    public interface Listener {
+        void response(long onset, long peak, double amplitude);
+    }
+
+    public static final double DEFAULT_ONSET_SLOPE = 2.0;
+    public static final double DEFAULT_MIN_AMPLITUDE = 5.0;
+    static final double SMOOTHING_HZ = 1.0;
+
+    private final int samplingRate;
+    private final double onsetSlope;
+    private final double minAmplitude;
+    private final Listener listener;
+    private final Biquad smoothing;
+
+    private long sample;
+    private double previous;
+    private boolean rising;
+    private long onset;
+    private double onsetLevel;
+    private int responseCount;
+
+    public ScrDetector(int samplingRate, Listener listener) {
+        this(samplingRate, DEFAULT_ONSET_SLOPE, DEFAULT_MIN_AMPLITUDE, listener);
+    }
+
+    public ScrDetector(int samplingRate, double onsetSlope, double minAmplitude, Listener listener) {
+        if (samplingRate <= 4 * SMOOTHING_HZ) {
+            throw new IllegalArgumentException("samplingRate must be > " + (int) (4 * SMOOTHING_HZ) + " Hz");
+        }
+        this.samplingRate = samplingRate;
+        this.onsetSlope = onsetSlope;
+        this.minAmplitude = minAmplitude;
+        this.listener = listener;
+        this.smoothing = Biquad.lowPass(SMOOTHING_HZ, samplingRate);
+    }
+
+    public int process(int[] samples, int from, int to) {
+        int before = responseCount;
+        for (int i = from; i < to; i++) {
+            step(samples[i]);
+        }
+        return responseCount - before;
+    }
+
+    // Devuelve el número de respuestas encontradas en este trozo
+    public int process(double[] samples, int from, int to) {
+        int before = responseCount;
+        for (int i = from; i < to; i++) {
+            step(samples[i]);
+        }
+        return responseCount - before;
+    }
+
+    public int getResponseCount() {
+        return responseCount;
+    }
+
+    public long getSampleCount() {
+        return sample;
+    }
+
+    // Nivel suavizado de la última muestra
+    public double getLevel() {
+        return previous;
+    }
+
+    public int getSamplingRate() {
+        return samplingRate;
+    }
+
+    // Respuesta en curso (subida): nivel suavizado en el inicio
+    boolean isRising() {
+        return rising;
+    }
+
+    double getOnsetLevel() {
+        return onsetLevel;
+    }
+
+    private void step(double x) {
+        stepSmoothed(smoothing.filter(x));
+    }
+
+    // Muestra ya suavizada a 1 Hz; EdaPipeline la comparte con su nivel tónico
+    void stepSmoothed(double y) {
+        if (sample == 0) previous = y;
+        double slope = (y - previous) * samplingRate;
+        if (!rising) {
+            if (slope > onsetSlope) {
+                rising = true;
+                onset = sample - 1;
+                onsetLevel = previous;
+            }
+        } else if (slope <= 0) {
+            // El pico es la muestra anterior
+            rising = false;
+            double amplitude = previous - onsetLevel;
+            if (amplitude >= minAmplitude) {
+                responseCount++;
+                if (listener != null) listener.response(onset, sample - 1, amplitude);
+            }
+        }
+        previous = y;
+        sample++;
+    }
+}
@@ -0,0 +1,225 @@
+package common.signal;
+
+import common.protocol.ProtocolException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Inflates a gzip'd recording fragment ("ecg1,ecg2,...;eda1,eda2,...") and parses the ASCII
+ * samples straight into primitive arrays, one channel per ';' separated section.
+ *
+ * The inflate buffer, the Inflater and the per-channel scratch arrays are reused between calls,
+ * so no intermediate String/String[] is created. An instance is not thread safe; use {@link #get()}
+ * to obtain the decoder of the current thread, from a pooled platform thread: a virtual thread would
+ * build (and drop) a new 1 MB decoder and Inflater for every task.
+ */
+public final class SignalTextDecoder {
+
+    private static final ThreadLocal<SignalTextDecoder> PER_THREAD = ThreadLocal.withInitial(SignalTextDecoder::new);
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_CHANNELS = 8;
+
+    // Flags de la cabecera gzip (RFC 1952)
+    private static final int FHCRC = 0x02;
+    private static final int FEXTRA = 0x04;
+    private static final int FNAME = 0x08;
+    private static final int FCOMMENT = 0x10;
+
+    private static final double[] POW10 = new double[23];
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10;
+    }
+
+    private final Inflater inflater = new Inflater(true);
+    private final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+    private final double[][] channels = new double[MAX_CHANNELS][];
+    private final int[] counts = new int[MAX_CHANNELS];
+
+    // Estado del parser entre trozos inflados
+    private int channel;
+    private long mantissa;
+    private int fractionDigits;
+    private int exponent;
+    private boolean negative;
+    private boolean negativeExponent;
+    private boolean inNumber;
+    private boolean inFraction;
+    private boolean inExponent;
+    private boolean invalid;
+
+    public SignalTextDecoder() {
+        for (int i = 0; i < MAX_CHANNELS; i++) {
+            channels[i] = new double[16 * 1024];
+        }
+    }
+
+    public static SignalTextDecoder get() {
+        if (Thread.currentThread().isVirtual()) {
+            throw new IllegalStateException("SignalTextDecoder.get() called from a virtual thread");
+        }
+        return PER_THREAD.get();
+    }
+
+    /**
+     * Decodes one gzip member. The returned arrays are exact sized copies owned by the caller.
+     */
+    public double[][] decodeGzip(ByteBuffer gzip) throws ProtocolException {
+        reset();
+        skipGzipHeader(gzip);
+        inflater.reset();
+        inflater.setInput(gzip);
+        try {
+            while (!inflater.finished()) {
+                chunk.clear();
+                int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new ProtocolException("Truncated gzip signal data");
+                }
+                chunk.flip();
+                parse(chunk);
+            }
+        } catch (DataFormatException e) {
+            throw new ProtocolException("Corrupt gzip signal data", e);
+        }
+        return finish();
+    }
+
+    /**
+     * Parses already inflated ASCII text (for servers that send the fragment uncompressed).
+     */
+    public double[][] decodeText(ByteBuffer text) {
+        reset();
+        parse(text);
+        return finish();
+    }
+
+    private void reset() {
+        channel = 0;
+        Arrays.fill(counts, 0);
+        resetNumber();
+    }
+
+    private void resetNumber() {
+        mantissa = 0;
+        fractionDigits = 0;
+        exponent = 0;
+        negative = false;
+        negativeExponent = false;
+        inNumber = false;
+        inFraction = false;
+        inExponent = false;
+        invalid = false;
+    }
+
+    private void parse(ByteBuffer text) {
+        while (text.hasRemaining()) {
+            int c = text.get();
+            if (c >= '0' && c <= '9') {
+                inNumber = true;
+                if (inExponent) {
+                    exponent = exponent * 10 + (c - '0');
+                } else if (mantissa < 100_000_000_000_000_000L) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (inFraction) fractionDigits++;
+                } else if (!inFraction) {
+                    // Más dígitos de los que caben: se conserva la magnitud
+                    exponent++;
+                }
+            } else if (c == ',') {
+                endSample();
+            } else if (c == ';') {
+                endSample();
+                if (channel < MAX_CHANNELS - 1) channel++;
+            } else if (c == '-') {
+                if (inExponent) negativeExponent = true;
+                else if (!inNumber) negative = true;
+                else invalid = true;
+                inNumber = true;
+            } else if (c == '.') {
+                inFraction = true;
+                inNumber = true;
+            } else if ((c == 'e' || c == 'E') && inNumber) {
+                inExponent = true;
+            } else if (c == '+' || c == '[' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                // separadores que se ignoran
+            } else {
+                invalid = true;
+                inNumber = true;
+            }
+        }
+    }
+
+    private void endSample() {
+        if (!inNumber) {
+            resetNumber();
+            return;
+        }
+        double value = 0.0; // igual que antes: una muestra mal formada vale 0
+        if (!invalid) {
+            int scale = (negativeExponent ? -exponent : exponent) - fractionDigits;
+            value = mantissa;
+            if (scale < 0) {
+                value = -scale < POW10.length ? value / POW10[-scale] : value * Math.pow(10, scale);
+            } else if (scale > 0) {
+                value = scale < POW10.length ? value * POW10[scale] : value * Math.pow(10, scale);
+            }
+            if (negative) value = -value;
+        }
+        double[] values = channels[channel];
+        int n = counts[channel];
+        if (n == values.length) {
+            values = Arrays.copyOf(values, n * 2);
+            channels[channel] = values;
+        }
+        values[n] = value;
+        counts[channel] = n + 1;
+        resetNumber();
+    }
+
+    private double[][] finish() {
+        endSample();
+        double[][] result = new double[channel + 1][];
+        for (int i = 0; i <= channel; i++) {
+            result[i] = Arrays.copyOf(channels[i], counts[i]);
+        }
+        return result;
+    }
+
+    private static void skipGzipHeader(ByteBuffer in) throws ProtocolException {
+        try {
+            readGzipHeader(in);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new ProtocolException("Truncated gzip header");
+        }
+    }
+
+    private static void readGzipHeader(ByteBuffer in) throws ProtocolException {
+        if (in.remaining() < 10 || (in.get() & 0xFF) != 0x1F || (in.get() & 0xFF) != 0x8B) {
+            throw new ProtocolException("Not a gzip stream");
+        }
+        if (in.get() != 8) {
+            throw new ProtocolException("Unsupported gzip compression method");
+        }
+        int flags = in.get() & 0xFF;
+        in.position(in.position() + 6); // mtime, xfl, os
+        if ((flags & FEXTRA) != 0) {
+            int xlen = (in.get() & 0xFF) | ((in.get() & 0xFF) << 8);
+            in.position(in.position() + xlen);
+        }
+        if ((flags & FNAME) != 0) {
+            while (in.get() != 0) { }
+        }
+        if ((flags & FCOMMENT) != 0) {
+            while (in.get() != 0) { }
+        }
+        if ((flags & FHCRC) != 0) {
+            in.position(in.position() + 2);
+        }
+    }
+}
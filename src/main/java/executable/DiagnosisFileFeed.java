@@ -0,0 +1,172 @@
+package executable;
+
+import common.protocol.DiagnosisFileChanges;
+import common.protocol.Frame;
+import common.protocol.FrameTransport;
+import common.protocol.LegacyListParser;
+import common.protocol.OpCode;
+import common.protocol.PayloadWriter;
+import common.protocol.ServerErrorException;
+import pojos.DiagnosisFile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Client copy of one scope of diagnosis files (the RECENTLY_FINISH worklist or one patient's files),
+ * kept current with DIAGNOSIS_FILE_CHANGES: every poll sends the version held and gets back only
+ * what changed since, which is merged in place. Updated files keep their position, new ones are
+ * appended and tombstones are removed; a poll with no changes costs a header and two fields.
+ *
+ * Servers without DIAGNOSIS_FILE_CHANGES answer ERROR "Unknown opcode"; from then on each poll
+ * downloads the whole list with the old request and it is merged as a full change set. Any other
+ * failure of a poll is thrown and the next one tries the changes again.
+ *
+ * {@link #fetch} may run on any thread. {@link #apply} and the listener run on one thread (the EDT in the GUI).
+ */
+public class DiagnosisFileFeed {
+
+    /**
+     * Receives the merge one change at a time, with the index in {@link #getFiles()} at that moment.
+     */
+    public interface Listener {
+        void added(int index, DiagnosisFile file);
+
+        void changed(int index, DiagnosisFile file);
+
+        void removed(int index, DiagnosisFile file);
+    }
+
+    private static final Listener IGNORE = new Listener() {
+        @Override public void added(int index, DiagnosisFile file) {}
+        @Override public void changed(int index, DiagnosisFile file) {}
+        @Override public void removed(int index, DiagnosisFile file) {}
+    };
+
+    private final int scope;
+    private final int scopeId;
+    private final List<DiagnosisFile> files = new ArrayList<>();
+    private volatile long version = DiagnosisFileChanges.NO_VERSION;
+    private volatile boolean deltaSupported = true;
+
+    private DiagnosisFileFeed(int scope, int scopeId) {
+        this.scope = scope;
+        this.scopeId = scopeId;
+    }
+
+    public static DiagnosisFileFeed recentlyFinished() {
+        return new DiagnosisFileFeed(DiagnosisFileChanges.SCOPE_RECENTLY_FINISH, 0);
+    }
+
+    public static DiagnosisFileFeed ofPatient(int patientId) {
+        return new DiagnosisFileFeed(DiagnosisFileChanges.SCOPE_PATIENT, patientId);
+    }
+
+    // Pide los cambios desde la versión actual; no toca la lista (apply lo hace en su hilo)
+    public DiagnosisFileChanges fetch(FrameTransport connection) throws IOException {
+        if (connection == null) {
+            throw new IOException("Not connected to server");
+        }
+        if (deltaSupported) {
+            try {
+                Frame reply = connection.request(OpCode.DIAGNOSIS_FILE_CHANGES,
+                        DiagnosisFileChanges.request(scope, scopeId, version));
+                return DiagnosisFileChanges.read(reply.reader());
+            } catch (ServerErrorException e) {
+                // Servidor antiguo: no se vuelve a intentar en esta sesión.
+                // Otros errores (temporales, respuesta mal formada) son solo de esta petición
+                if (!e.isUnknownOpCode()) throw e;
+                deltaSupported = false;
+            }
+        }
+        Frame reply = scope == DiagnosisFileChanges.SCOPE_PATIENT
+                ? connection.request(OpCode.GET_DIAGNOSIS_FILES_BY_PATIENT_ID, new PayloadWriter().writeInt(scopeId))
+                : connection.request(OpCode.RECENTLY_FINISH, null);
+        List<DiagnosisFile> all = reply.hasFlag(Frame.FLAG_TEXT)
+                ? LegacyListParser.parseDiagnosisFileList(reply.payloadAsText())
+                : reply.reader().readDiagnosisFileList();
+        return new DiagnosisFileChanges(DiagnosisFileChanges.NO_VERSION, true, all, new int[0]);
+    }
+
+    /**
+     * Merges {@code changes} into the list and reports every change to {@code listener}.
+     * Replies older than the version already applied are ignored. Returns false if nothing changed.
+     */
+    public boolean apply(DiagnosisFileChanges changes, Listener listener) {
+        if (listener == null) listener = IGNORE;
+        if (!changes.full() && changes.version() < version) return false;
+        boolean modified = false;
+
+        if (changes.full()) {
+            // Lista completa: lo que no viene es un borrado
+            Set<Integer> present = new HashSet<>();
+            for (DiagnosisFile df : changes.updated()) present.add(df.getId());
+            for (int i = files.size() - 1; i >= 0; i--) {
+                if (!present.contains(files.get(i).getId())) {
+                    listener.removed(i, files.remove(i));
+                    modified = true;
+                }
+            }
+        } else {
+            for (int id : changes.removedIds()) {
+                int index = indexOf(id);
+                if (index >= 0) {
+                    listener.removed(index, files.remove(index));
+                    modified = true;
+                }
+            }
+        }
+
+        for (DiagnosisFile df : changes.updated()) {
+            int index = indexOf(df.getId());
+            if (index < 0) {
+                files.add(df);
+                listener.added(files.size() - 1, df);
+                modified = true;
+            } else if (!changes.full() || !sameContent(files.get(index), df)) {
+                // equals() solo compara el id: en una lista completa se compara el contenido
+                files.set(index, df);
+                listener.changed(index, df);
+                modified = true;
+            }
+        }
+        version = changes.version();
+        return modified;
+    }
+
+    // Campo a campo; la señal no se compara (las listas no la traen)
+    static boolean sameContent(DiagnosisFile a, DiagnosisFile b) {
+        return a.getId() == b.getId()
+                && a.getPatientId() == b.getPatientId()
+                && a.getStatus() == b.getStatus()
+                && Objects.equals(a.getDiagnosis(), b.getDiagnosis())
+                && Objects.equals(a.getMedication(), b.getMedication())
+                && Objects.equals(a.getDate(), b.getDate())
+                && Objects.equals(a.getSymptoms(), b.getSymptoms());
+    }
+
+    // Atajo para quien no necesita el detalle (cliente de consola): fetch + apply
+    public List<DiagnosisFile> poll(FrameTransport connection) throws IOException {
+        apply(fetch(connection), null);
+        return getFiles();
+    }
+
+    public List<DiagnosisFile> getFiles() {
+        return new ArrayList<>(files);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    private int indexOf(int id) {
+        for (int i = 0; i < files.size(); i++) {
+            if (files.get(i).getId() == id) return i;
+        }
+        return -1;
+    }
+}
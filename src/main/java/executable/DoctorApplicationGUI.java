@@ -1,37 +1,74 @@
 package executable;
 
 import common.enums.Sex;
+import common.protocol.DiagnosisFileChanges;
+import common.protocol.Frame;
+import common.protocol.FrameTransport;
+import common.protocol.LegacyListParser;
+import common.protocol.NioTransport;
+import common.protocol.OpCode;
+import common.protocol.PayloadReader;
+import common.protocol.PayloadWriter;
+import common.protocol.ProtocolException;
+import common.protocol.RecordingReady;
+import common.protocol.ServerErrorException;
+import common.screening.ScreeningResult;
+import common.signal.BitalinoSimulator;
+import common.signal.Decimator;
+import common.signal.ResidualCodec;
+import common.signal.EdaPipeline;
+import common.signal.QrsDetector;
+import common.signal.RecordingSummary;
+import common.signal.SampleRingBuffer;
+import common.signal.SignalTextDecoder;
 import org.jfree.chart.plot.XYPlot;
 import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
 import pojos.DiagnosisFile;
 import pojos.Patient;
+import pojos.SignalBuffer;
 
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import javax.swing.plaf.basic.BasicButtonUI;
 import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.*;
-import java.lang.reflect.Method;
-import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Pattern;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartPanel;
 import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.ValueAxis;
+import org.jfree.chart.event.AxisChangeEvent;
+import org.jfree.chart.event.AxisChangeListener;
+import org.jfree.chart.plot.IntervalMarker;
 import org.jfree.chart.plot.PlotOrientation;
-import org.jfree.data.xy.XYSeries;
-import org.jfree.data.xy.XYSeriesCollection;
 
 public class DoctorApplicationGUI extends JFrame {
 
@@ -49,6 +86,7 @@ public class DoctorApplicationGUI extends JFrame {
     private static final String VIEW_RECORDING_PANEL = "View Recording Panel";
     private static final String RECENTLY_FINISH_PANEL = "Recently Finish Panel";
     private static final String COMPLETE_DIAGNOSISFILE_PANEL = "Complete Diagnosis File Panel";
+    private static final String LIVE_MONITOR_PANEL = "Live Monitor Panel";
 
     private String currentState = "AUTH";
 
@@ -63,11 +101,19 @@ public class DoctorApplicationGUI extends JFrame {
     private ViewRecordingPanel viewRecordingPanel;
     private RecentlyFinishPanel recentlyFinishPanel;
     private CompleteDiagnosisFilePanel completeDiagnosisFilePanel;
+    private LiveMonitorPanel liveMonitorPanel;
 
     // Conexión y datos
-    private Socket socket;
-    private DataOutputStream out;
-    private DataInputStream in;
+    // Varias peticiones pueden estar en vuelo a la vez sobre la misma conexión (NIO, sin hilo por petición)
+    private volatile FrameTransport connection;
+    // Peticiones de la interfaz: hilos virtuales, con plazo. La clave es la pantalla que espera la respuesta
+    private final RequestExecutor requests = new RequestExecutor();
+    private static final java.time.Duration BULK_EXPORT_DEADLINE = java.time.Duration.ofMinutes(30);
+    // Análisis de grabaciones completas (ForkJoinPool propio, hilos daemon)
+    private final RecordingAnalyzer analyzer = new RecordingAnalyzer();
+    private static final java.time.Duration ANALYSIS_DEADLINE = java.time.Duration.ofMinutes(10);
+    // Pacientes y diagnosis files ya descargados (SQLite); null sin sesión o si no se pudo abrir
+    private volatile LocalPatientCache localCache;
 
     private String lastHost = null;
     private int lastPort = -1;
@@ -78,9 +124,11 @@ public class DoctorApplicationGUI extends JFrame {
     private Patient currentPatient =  null;
     private String currentPatientInfo = null;
     private String currentDiagnosisFiles = null;
-    private String currentRecordingData = null;
+    private double[][] currentRecordingData = null;
     private String currentSequences = null;
     private int currentDiagnosisFileId = -1;
+    // Diagnosis files avisados por RECORDING_READY que el médico no ha visto aún (EDT)
+    private final Set<Integer> unseenReady = new HashSet<>();
 
     public DoctorApplicationGUI() {
         super("Doctor Application");
@@ -114,6 +162,7 @@ public class DoctorApplicationGUI extends JFrame {
         viewRecordingPanel = new ViewRecordingPanel();
         recentlyFinishPanel = new RecentlyFinishPanel();
         completeDiagnosisFilePanel = new CompleteDiagnosisFilePanel();
+        liveMonitorPanel = new LiveMonitorPanel();
 
         // Añadimos los paneles al panel principal
         cardsPanel.add(authPanel, AUTH_PANEL);
@@ -126,6 +175,7 @@ public class DoctorApplicationGUI extends JFrame {
         cardsPanel.add(viewRecordingPanel, VIEW_RECORDING_PANEL);
         cardsPanel.add(recentlyFinishPanel, RECENTLY_FINISH_PANEL);
         cardsPanel.add(completeDiagnosisFilePanel, COMPLETE_DIAGNOSISFILE_PANEL);
+        cardsPanel.add(liveMonitorPanel, LIVE_MONITOR_PANEL);
 
         setLayout(new BorderLayout());
         add(buildTopBar(), BorderLayout.NORTH);
@@ -143,6 +193,8 @@ public class DoctorApplicationGUI extends JFrame {
     // Cambiar de estado
     public void changeState(String newState) {
         this.currentState = newState;
+        // Lo que esperaban las pantallas que dejamos ya no se va a mostrar
+        requests.cancelAllExcept(newState);
 
         switch (currentState) {
             case "AUTH":
@@ -158,27 +210,12 @@ public class DoctorApplicationGUI extends JFrame {
                 showPanel(DOCTOR_MENU_PANEL);
                 break;
             case "SEARCH_PATIENT":
-                try {
-                    System.out.println(in.available());
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
                 showPanel(SEARCH_PATIENT_PANEL);
-                try {
-                    System.out.println(in.available());
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
                 try {
                    searchPatientPanel.loadPatientList();
                } catch (Exception ignored){
                    System.out.println("error");
                }
-                try {
-                    System.out.println(in.available());
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
                 break;
             case "VIEW_PATIENT":
                 showPanel(VIEW_PATIENT_PANEL);
@@ -195,6 +232,10 @@ public class DoctorApplicationGUI extends JFrame {
             case "COMPLETE_DIAGNOSISFILE":
                 showPanel(COMPLETE_DIAGNOSISFILE_PANEL);
                 break;
+            case "LIVE_MONITOR":
+                showPanel(LIVE_MONITOR_PANEL);
+                liveMonitorPanel.start();
+                break;
             default:
                 System.out.println("Unknown state: " + currentState);
         }
@@ -503,6 +544,9 @@ public class DoctorApplicationGUI extends JFrame {
 
     // Panel del menú principal del doctor
     class DoctorMenuPanel extends JPanel {
+        // Grabaciones terminadas que el médico aún no ha visto en Recently Finished
+        private final JLabel readyBadge = new JLabel();
+
         public DoctorMenuPanel() {
             setLayout(new GridBagLayout());
             setBackground(new Color(171, 191, 234));
@@ -530,6 +574,27 @@ public class DoctorApplicationGUI extends JFrame {
             recentlyFinishButton.setPreferredSize(new Dimension(300, 60));
             recentlyFinishButton.addActionListener(e -> handleRecentlyFinish());
 
+            readyBadge.setFont(readyBadge.getFont().deriveFont(Font.BOLD, 14f));
+            readyBadge.setForeground(Color.WHITE);
+            readyBadge.setBackground(new Color(200, 0, 0));
+            readyBadge.setOpaque(true);
+            readyBadge.setBorder(BorderFactory.createEmptyBorder(2, 8, 2, 8));
+            readyBadge.setVisible(false);
+            JPanel recentlyFinishRow = new JPanel(new FlowLayout(FlowLayout.CENTER, 8, 0));
+            recentlyFinishRow.setOpaque(false);
+            recentlyFinishRow.add(recentlyFinishButton);
+            recentlyFinishRow.add(readyBadge);
+
+            JButton liveMonitorButton = new JButton("Live Monitor");
+            liveMonitorButton.setFont(liveMonitorButton.getFont().deriveFont(Font.BOLD, 20f));
+            liveMonitorButton.setBackground(new Color(182, 118, 45));
+            liveMonitorButton.setForeground(Color.WHITE);
+            liveMonitorButton.setOpaque(true);
+            liveMonitorButton.setBorderPainted(false);
+            liveMonitorButton.setFocusPainted(false);
+            liveMonitorButton.setPreferredSize(new Dimension(300, 60));
+            liveMonitorButton.addActionListener(e -> changeState("LIVE_MONITOR"));
+
             JButton logoutButton = new JButton("Logout");
             logoutButton.setFont(logoutButton.getFont().deriveFont(Font.BOLD, 16f));
             logoutButton.setBackground(new Color(200, 0, 0));
@@ -548,18 +613,31 @@ public class DoctorApplicationGUI extends JFrame {
             add(searchPatientButton, g);
 
             g.gridy = 1;
-            add(recentlyFinishButton, g);
+            add(recentlyFinishRow, g);
 
             g.gridy = 2;
+            add(liveMonitorButton, g);
+
+            g.gridy = 3;
             g.weighty = 0;
             add(logoutButton, g);
         }
+
+        public void setReadyCount(int count) {
+            readyBadge.setText(count > 99 ? "99+" : String.valueOf(count));
+            readyBadge.setToolTipText(count + " new recording" + (count == 1 ? "" : "s") + " ready for review");
+            readyBadge.setVisible(count > 0);
+            revalidate();
+        }
     }
 
     // Panel de búsqueda de pacientes
     class SearchPatientPanel extends JPanel {
-        private JComboBox<String> patientComboBox;
-        private DefaultComboBoxModel<String> patientModel;
+        // Pacientes por página: la pantalla abre con una sola petición pequeña
+        private static final int PAGE_SIZE = 100;
+
+        private JList<String> patientList;
+        private PagedPatientListModel patientModel;
 
         public SearchPatientPanel() {
 
@@ -578,14 +656,33 @@ public class DoctorApplicationGUI extends JFrame {
             g.anchor = GridBagConstraints.CENTER;
             add(label, g);
 
-            patientModel = new DefaultComboBoxModel<>();
-            patientComboBox = new JComboBox<>(patientModel);
-            patientComboBox.setPreferredSize(new Dimension(200, 30));
+            patientModel = new PagedPatientListModel(this::loadPage, PAGE_SIZE);
+            patientList = new JList<>(patientModel);
+            patientList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+            // Altura fija: el JList no recorre todo el modelo para calcular el tamaño de las filas
+            patientList.setPrototypeCellValue("0000000000000");
+            patientList.setFixedCellHeight(24);
+            patientList.setVisibleRowCount(10);
+            patientList.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    if (e.getClickCount() == 2 && getSelectedPatient() != null) {
+                        handleSelectPatient();
+                    }
+                }
+            });
+            JScrollPane scrollPane = new JScrollPane(patientList);
+            scrollPane.setPreferredSize(new Dimension(200, 260));
+            // Al desplazarse, y también cuando la lista crece con una página que no llena la vista
+            scrollPane.getViewport().addChangeListener(e -> {
+                int last = patientList.getLastVisibleIndex();
+                if (last >= 0) patientModel.visibleUpTo(last);
+            });
 
             g.gridwidth = 2;
             g.gridy = 1;
             g.weightx = 1.0;
-            add(patientComboBox, g);
+            add(scrollPane, g);
 
             JButton searchButton = new JButton("Select Patient");
             searchButton.setBackground(new Color(11, 87, 147));
@@ -614,54 +711,94 @@ public class DoctorApplicationGUI extends JFrame {
         }
 
         public String getSelectedPatient() {
-            return (String) patientComboBox.getSelectedItem();
+            int index = patientList.getSelectedIndex();
+            return patientModel.isPatient(index) ? patientModel.getElementAt(index) : null;
         }
 
         private void loadPatientList() {
-            new SwingWorker<Void, Void>() {
-                private String patientList = null;
+            patientList.clearSelection();
+            patientModel.reset();
+            revalidatePatientList();
+        }
+
+        // Comprueba en segundo plano si la lista guardada sigue al día; si cambió se guarda y se recarga
+        private void revalidatePatientList() {
+            LocalPatientCache cache = localCache;
+            if (cache == null) return;
+            requests.submit(() -> {
+                long knownVersion = cache.getPatientListVersion();
+                Frame reply;
+                try {
+                    reply = request(OpCode.SEARCH_PATIENT_IF_MODIFIED, new PayloadWriter().writeLong(knownVersion));
+                } catch (ServerErrorException e) {
+                    if (!e.isUnknownOpCode()) throw e; // se informa abajo
+                    return false; // servidor sin versiones: se sigue paginando contra el servidor
+                }
+                PayloadReader payload = reply.reader();
+                long version = payload.readLong();
+                if (!payload.readBoolean()) return false;
+                List<String> keys = payload.readStringList();
+                cache.storePatientList(version, keys == null ? List.of() : keys);
+                return true;
+            }, (changed, error) -> {
+                if (error != null) {
+                    System.err.println("Patient list revalidation failed: " + error.getMessage());
+                } else if (changed && cache == localCache) {
+                    patientList.clearSelection();
+                    patientModel.reset();
+                }
+            });
+        }
 
-                @Override
-                protected Void doInBackground() {
-                    try {
-                        //out.writeUTF("SEARCH_PATIENT");
-                        //out.flush();
-                        patientList = in.readUTF();
-                    } catch (IOException ex) {
-                        patientList = "Error loading patient list";
-                    }
+        private CompletableFuture<PagedPatientListModel.Page> loadPage(String afterKey, int limit) {
+            LocalPatientCache cache = localCache;
+            if (cache == null) {
+                return loadRemotePage(afterKey, limit);
+            }
+            // Con la lista ya guardada la página es una consulta local; la lista no viaja por la red
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return cache.hasPatientList() ? cache.patientPage(afterKey, limit) : null;
+                } catch (SQLException e) {
+                    System.err.println("Local cache read failed: " + e.getMessage());
                     return null;
                 }
+            }, requests.executor()).thenCompose(page -> page != null
+                    ? CompletableFuture.completedFuture(page)
+                    : loadRemotePage(afterKey, limit));
+        }
 
-                @Override
-                protected void done() {
-                    patientModel.removeAllElements();
-                    if (patientList != null && !patientList.startsWith("Error")) {
-                        String[] patients = patientList.split(", ");
-                        for (String patient : patients) {
-                            patientModel.addElement(patient);
+        private CompletableFuture<PagedPatientListModel.Page> loadRemotePage(String afterKey, int limit) {
+            FrameTransport c = connection;
+            if (c == null) {
+                return CompletableFuture.failedFuture(new IOException("Not connected to server"));
+            }
+            PayloadWriter payload = new PayloadWriter()
+                    .writeString(afterKey == null ? "" : afterKey)
+                    .writeInt(limit);
+            return c.send(OpCode.SEARCH_PATIENT_PAGE, payload)
+                    .thenApply(reply -> {
+                        try {
+                            return PagedPatientListModel.Page.read(reply);
+                        } catch (IOException e) {
+                            throw new CompletionException(e);
                         }
-                    } else {
-                        patientModel.addElement("No patients available");
-                    }
-                }
-            }.execute();
+                    })
+                    .exceptionallyCompose(error -> afterKey == null && isUnknownOpCode(error)
+                            ? loadAllAsOnePage(c)
+                            : CompletableFuture.failedFuture(error));
         }
 
-        private static String[] getAllHIN(DataOutputStream out, DataInputStream in) throws IOException {
-            out.writeUTF("SEARCH_PATIENT");
-            out.flush();
-            String listHIN = null;
-            listHIN = in.readUTF();
-            if (listHIN == null || listHIN.isBlank()) {
-                return new String[0];
-            }
-            listHIN = listHIN.trim();
-            if (listHIN.isEmpty()) {
-                return new String[0];
-            }
-            String[] hinArray = listHIN.split("\\s*,\\s*");
-            return Arrays.stream(hinArray).map(String::trim).toArray(String[]::new);
+        // Servidores sin SEARCH_PATIENT_PAGE: la lista completa como una sola página
+        private CompletableFuture<PagedPatientListModel.Page> loadAllAsOnePage(FrameTransport c) {
+            return c.send(OpCode.SEARCH_PATIENT, null).thenApply(reply -> {
+                try {
+                    List<String> all = reply.reader().readStringList();
+                    return new PagedPatientListModel.Page(all == null ? List.of() : all, false);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            });
         }
     }
 
@@ -770,10 +907,14 @@ public class DoctorApplicationGUI extends JFrame {
             viewDiagnosisButton.setFocusPainted(false);
             viewDiagnosisButton.addActionListener(e -> handleViewDiagnosisFile());
 
+            JButton exportButton = new JButton("Export Recordings");
+            exportButton.addActionListener(e -> handleExportRecordings());
+
             JButton backButton = new JButton("Back to Search");
             backButton.addActionListener(e -> handleBackToSearchPatientFromViewPatient());
 
             panel.add(viewDiagnosisButton);
+            panel.add(exportButton);
             panel.add(backButton);
 
             return panel;
@@ -1145,12 +1286,48 @@ public class DoctorApplicationGUI extends JFrame {
         private int selectedFragmentIndex = 0;
         private static final int SAMPLING_RATE = 1000;
         private static final int FRAGMENT_DURATION = 10;
+        // ~64 MB: unos 400 fragmentos de 10 s (más de una hora de grabación)
+        private static final long FRAGMENT_CACHE_BYTES = 64L * 1024 * 1024;
+
+        private final FragmentCache fragmentCache = new FragmentCache(FRAGMENT_CACHE_BYTES);
+        private final Map<Long, CompletableFuture<double[][]>> fragmentsInFlight = new ConcurrentHashMap<>();
+        // Peticiones en vuelo cuya respuesta va a la caché (no las que solo pide el overview)
+        private final Set<Long> cacheOnArrival = ConcurrentHashMap.newKeySet();
 
         // Chart panels for real-time plotting
         private ChartPanel ecgChartPanel;
         private ChartPanel edaChartPanel;
         private JFreeChart ecgChart;
         private JFreeChart edaChart;
+        private DetailTrace ecgTrace;
+        private DetailTrace edaTrace;
+
+        // Tira con la envolvente de toda la grabación (ECG)
+        private ChartPanel overviewChartPanel;
+        private JFreeChart overviewChart;
+        private final SignalXYDataset overviewDataset = new SignalXYDataset("Overview");
+        private double[] overviewXs = new double[0];
+        private double[] overviewYs = new double[0];
+        private RecordingOverview overview = new RecordingOverview(0, FRAGMENT_DURATION);
+        // Carga del fragmento elegido por el usuario: el overview no compite con ella
+        private CompletableFuture<?> foregroundFetch = CompletableFuture.completedFuture(null);
+
+        // Latidos: el detector recibe los fragmentos en orden (el mismo recorrido que el overview)
+        private JLabel heartRateLabel;
+        private QrsDetector qrs = new QrsDetector(SAMPLING_RATE);
+        private int qrsFragments;
+        // Muestra en la que empieza cada fragmento ya pasado al detector (los fragmentos no miden siempre 10 s)
+        private long[] fragmentStarts = new long[1];
+        private final SignalXYDataset beatDataset = new SignalXYDataset("R peaks");
+        private double[] beatXs = new double[0];
+        private double[] beatYs = new double[0];
+        private int shownFragmentIndex = -1;
+        private double[] shownEcg;
+
+        // EDA: mismo recorrido, con una ventana de features por fragmento (se cierra al final de cada uno)
+        private JLabel edaLabel;
+        private final List<EdaPipeline.Window> edaWindows = new ArrayList<>();
+        private EdaPipeline eda = new EdaPipeline(SAMPLING_RATE, FRAGMENT_DURATION, edaWindows::add);
 
         public ViewRecordingPanel() {
             setLayout(new BorderLayout());
@@ -1195,14 +1372,18 @@ public class DoctorApplicationGUI extends JFrame {
             leftPanel.add(listScrollPane, BorderLayout.CENTER);
 
             // Info panel with duration, section, and sampling rate
-            JPanel infoPanel = new JPanel(new GridLayout(3, 1));
+            JPanel infoPanel = new JPanel(new GridLayout(5, 1));
             infoPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
             durationLabel = new JLabel("Complete Recording Duration: 0sec");
             sectionLabel = new JLabel("Section Selected: sec0-sec0");
             samplingLabel = new JLabel("Sampling Rate: 1000 Hz");
+            heartRateLabel = new JLabel("Heart Rate: -");
+            edaLabel = new JLabel("EDA: -");
             infoPanel.add(durationLabel);
             infoPanel.add(sectionLabel);
             infoPanel.add(samplingLabel);
+            infoPanel.add(heartRateLabel);
+            infoPanel.add(edaLabel);
             leftPanel.add(infoPanel, BorderLayout.SOUTH);
 
             // Right panel - Graphs (2/3 of width)
@@ -1223,6 +1404,8 @@ public class DoctorApplicationGUI extends JFrame {
             graphPanel.add(createChartPanel(edaChartPanel, "EDA Signal"));
 
             rightPanel.add(graphPanel, BorderLayout.CENTER);
+            rightPanel.add(createChartPanel(overviewChartPanel,
+                    "Whole Recording (ECG) - click to jump, drag on a chart to zoom"), BorderLayout.SOUTH);
 
             // Add panels to content with proper weights (1:2 ratio)
             gbc.gridx = 0;
@@ -1258,8 +1441,8 @@ public class DoctorApplicationGUI extends JFrame {
 
         private void initializeCharts() {
             // Create empty datasets
-            XYSeriesCollection ecgDataset = new XYSeriesCollection();
-            XYSeriesCollection edaDataset = new XYSeriesCollection();
+            SignalXYDataset ecgDataset = new SignalXYDataset("ECG");
+            SignalXYDataset edaDataset = new SignalXYDataset("EDA");
 
             // Create ECG chart WITHOUT title
             ecgChart = ChartFactory.createXYLineChart(
@@ -1295,6 +1478,185 @@ public class DoctorApplicationGUI extends JFrame {
             // Set preferred sizes for charts
             ecgChartPanel.setPreferredSize(new Dimension(600, 250));
             edaChartPanel.setPreferredSize(new Dimension(600, 250));
+
+            // Picos R encima del ECG: segundo dataset, solo puntos
+            XYPlot ecgPlot = ecgChart.getXYPlot();
+            ecgPlot.setDataset(1, beatDataset);
+            XYLineAndShapeRenderer beatRenderer = new XYLineAndShapeRenderer(false, true);
+            beatRenderer.setSeriesPaint(0, new Color(220, 50, 50));
+            beatRenderer.setSeriesShape(0, new Ellipse2D.Double(-3, -3, 6, 6));
+            ecgPlot.setRenderer(1, beatRenderer);
+
+            // El gráfico de detalle se vuelve a decimar cuando cambia el zoom
+            ecgTrace = new DetailTrace(ecgChart, ecgChartPanel, ecgDataset);
+            edaTrace = new DetailTrace(edaChart, edaChartPanel, edaDataset);
+
+            overviewChart = ChartFactory.createXYLineChart(
+                    null, null, null, overviewDataset,
+                    PlotOrientation.VERTICAL, false, false, false);
+            customizeChart(overviewChart, new Color(0, 112, 192));
+            overviewChartPanel = new ChartPanel(overviewChart);
+            overviewChartPanel.setMouseZoomable(false);
+            overviewChartPanel.setPreferredSize(new Dimension(600, 90));
+            overviewChartPanel.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    jumpToOverviewPosition(e.getX());
+                }
+            });
+        }
+
+        private void jumpToOverviewPosition(int screenX) {
+            Rectangle2D area = overviewChartPanel.getScreenDataArea();
+            if (area == null || area.getWidth() <= 0 || listModel.isEmpty()) return;
+            ValueAxis axis = overviewChart.getXYPlot().getDomainAxis();
+            double fraction = (screenX - area.getX()) / area.getWidth();
+            double seconds = axis.getLowerBound() + fraction * (axis.getUpperBound() - axis.getLowerBound());
+            int index = (int) Math.floor(seconds / FRAGMENT_DURATION);
+            index = Math.max(0, Math.min(listModel.size() - 1, index));
+            fragmentList.setSelectedIndex(index);
+            fragmentList.ensureIndexIsVisible(index);
+        }
+
+        private void refreshOverview() {
+            if (overviewXs.length < overview.maxPoints()) {
+                overviewXs = new double[overview.maxPoints()];
+                overviewYs = new double[overview.maxPoints()];
+            }
+            overviewDataset.setPoints(overviewXs, overviewYs, overview.fill(overviewXs, overviewYs));
+            XYPlot plot = overviewChart.getXYPlot();
+            plot.clearDomainMarkers();
+            double start = selectedFragmentIndex * FRAGMENT_DURATION;
+            IntervalMarker marker = new IntervalMarker(start, start + FRAGMENT_DURATION);
+            marker.setPaint(new Color(255, 200, 0));
+            marker.setAlpha(0.35f);
+            plot.addDomainMarker(marker);
+            if (overview.getFragmentCount() > 0) {
+                plot.getDomainAxis().setRange(0, overview.getFragmentCount() * overview.getFragmentSeconds());
+            }
+        }
+
+        // Carga en segundo plano, de uno en uno, los fragmentos que faltan en el overview
+        private void loadOverview(int diagnosisFileId, RecordingOverview target, int fromIndex) {
+            int index = fromIndex;
+            while (index < target.getFragmentCount() && target.isLoaded(index) && index < qrsFragments) index++;
+            if (index >= target.getFragmentCount()) return;
+
+            final int next = index;
+            // Ni cuenta en las estadísticas de la caché ni guarda lo que descarga (el overview ya se queda con el mín/máx)
+            double[][] cached = fragmentCache.peek(diagnosisFileId, next);
+            CompletableFuture<double[][]> data = cached != null
+                    ? CompletableFuture.completedFuture(cached)
+                    : fetchFragment(diagnosisFileId, next, false);
+            data.whenComplete((fragment, error) -> SwingUtilities.invokeLater(() -> {
+                if (target != overview) return; // se abrió otra grabación
+                if (fragment != null && fragment.length > 0) {
+                    if (!target.isLoaded(next)) {
+                        target.addFragment(next, fragment[0], SAMPLING_RATE);
+                        refreshOverview();
+                    }
+                    feedQrs(diagnosisFileId, next, fragment);
+                }
+                if (error == null) {
+                    loadOverview(diagnosisFileId, target, next + 1);
+                } else if (data.isCancelled()) {
+                    // Cancelada al cambiar de fragmento: se vuelve a pedir cuando llegue el elegido, no antes
+                    foregroundFetch.handle((v, e) -> null).thenRun(() -> SwingUtilities.invokeLater(() -> {
+                        if (target == overview) loadOverview(diagnosisFileId, target, next);
+                    }));
+                } else {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    System.err.println("Overview: fragment " + next + " of diagnosis file " + diagnosisFileId
+                            + " failed: " + cause.getMessage());
+                    FrameTransport c = connection;
+                    // Sin conexión fallarían todos: el overview se queda como está
+                    if (c != null && c.isOpen()) {
+                        loadOverview(diagnosisFileId, target, next + 1);
+                    }
+                }
+            }));
+        }
+
+        /**
+         * Señal a resolución completa de un gráfico de detalle. Al gráfico solo llega
+         * una versión min/max decimada al ancho en píxeles del rango visible.
+         */
+        private class DetailTrace implements AxisChangeListener {
+            private final JFreeChart chart;
+            private final ChartPanel panel;
+            private final SignalXYDataset dataset;
+            private double[] values = new double[0];
+            private double[] xs = new double[0];
+            private double[] ys = new double[0];
+            private boolean updating;
+
+            DetailTrace(JFreeChart chart, ChartPanel panel, SignalXYDataset dataset) {
+                this.chart = chart;
+                this.panel = panel;
+                this.dataset = dataset;
+                chart.getXYPlot().getDomainAxis().addChangeListener(this);
+                panel.addComponentListener(new ComponentAdapter() {
+                    @Override
+                    public void componentResized(ComponentEvent e) {
+                        render(); // el número de columnas depende del ancho
+                    }
+                });
+            }
+
+            void setValues(double[] values) {
+                this.values = values;
+                updating = true;
+                try {
+                    // Cada fragmento nuevo empieza sin zoom
+                    chart.getXYPlot().getDomainAxis().setAutoRange(true);
+                } finally {
+                    updating = false;
+                }
+                render();
+            }
+
+            @Override
+            public void axisChanged(AxisChangeEvent event) {
+                if (!updating) render();
+            }
+
+            private void render() {
+                int n = values.length;
+                ValueAxis axis = chart.getXYPlot().getDomainAxis();
+                int from = 0;
+                int to = n;
+                if (!axis.isAutoRange()) {
+                    from = (int) Math.max(0, Math.floor(axis.getLowerBound() * SAMPLING_RATE));
+                    to = (int) Math.min(n, Math.ceil(axis.getUpperBound() * SAMPLING_RATE) + 1);
+                    from = Math.min(from, to);
+                }
+                int buckets = Math.max(200, panel.getWidth());
+                int capacity = Decimator.maxOutput(buckets) + 2;
+                if (xs.length < capacity) {
+                    xs = new double[capacity];
+                    ys = new double[capacity];
+                }
+                double dx = 1.0 / SAMPLING_RATE;
+
+                // Primer y último punto del fragmento: el auto-rango sigue abarcando todo
+                int count = 0;
+                if (from > 0) {
+                    xs[count] = 0;
+                    ys[count++] = values[0];
+                }
+                count += Decimator.minMax(values, from, to, 0, dx, buckets, xs, ys, count);
+                if (to < n) {
+                    xs[count] = (n - 1) * dx;
+                    ys[count++] = values[n - 1];
+                }
+                // Los buffers se reutilizan: un solo evento de cambio, sin objetos por punto
+                updating = true;
+                try {
+                    dataset.setPoints(xs, ys, count);
+                } finally {
+                    updating = false;
+                }
+            }
         }
 
         private void customizeChart(JFreeChart chart, Color color) {
@@ -1327,7 +1689,7 @@ public class DoctorApplicationGUI extends JFrame {
             return panel;
         }
 
-        public void setRecordingData(String data, String sequences, int diagnosisFileId) {
+        public void setRecordingData(double[][] data, String sequences, int diagnosisFileId) {
             this.currentDiagnosisFileId = diagnosisFileId;
             this.currentSequences = sequences;
 
@@ -1343,13 +1705,33 @@ public class DoctorApplicationGUI extends JFrame {
             durationLabel.setText("Complete Recording Duration: " + totalDuration + "sec");
 
             // Store the current fragment data and update graphs
+            fragmentCache.put(diagnosisFileId, 0, data);
             updateGraphsWithRealData(data);
 
+            // El overview (y la detección de latidos) se completa en segundo plano, fragmento a fragmento
+            overview = new RecordingOverview(listModel.size(), FRAGMENT_DURATION);
+            qrs = new QrsDetector(SAMPLING_RATE);
+            qrsFragments = 0;
+            fragmentStarts = new long[listModel.size() + 1];
+            edaWindows.clear();
+            eda = new EdaPipeline(SAMPLING_RATE, FRAGMENT_DURATION, edaWindows::add);
+            shownFragmentIndex = 0;
+            shownEcg = sampleCount(data) >= 0 ? data[0] : null;
+            if (sampleCount(data) > 0) {
+                overview.addFragment(0, data[0], SAMPLING_RATE);
+                feedQrs(diagnosisFileId, 0, data);
+            } else {
+                updateBeatOverlay();
+            }
+            refreshOverview();
+            loadOverview(diagnosisFileId, overview, 1);
+
             // Select first fragment by default
             if (listModel.size() > 0) {
                 fragmentList.setSelectedIndex(0);
                 selectedFragmentIndex = 0;
-                updateSectionLabel(0, data);
+                updateSectionLabel(0, sampleCount(data));
+                prefetchNeighbours(0);
             }
         }
 
@@ -1367,55 +1749,241 @@ public class DoctorApplicationGUI extends JFrame {
         private void loadSelectedFragment() {
             if (currentDiagnosisFileId == -1) return;
 
-            new SwingWorker<Void, Void>() {
-                private String fragmentData = null;
-                private boolean success = false;
+            // Con peticiones en paralelo, solo pintamos la respuesta del último clic
+            final int requestedIndex = selectedFragmentIndex;
+            final int diagnosisFileId = currentDiagnosisFileId;
 
-                @Override
-                protected Void doInBackground() {
-                    try {
-
-                        out.writeUTF("CHANGE_FRAGMENT");
-                        out.writeUTF(currentDiagnosisFileId + "," + selectedFragmentIndex);
-                        out.flush();
-
-                        //fragmentData = in.readUTF();
-                        fragmentData =receiveCompressedData(in);
-                        success = true;
-                    } catch (IOException ex) {
-                        fragmentData = "Error loading fragment: " + ex.getMessage();
-                    }
-                    return null;
-                }
+            double[][] cached = fragmentCache.get(diagnosisFileId, requestedIndex);
+            if (cached != null) {
+                showFragment(requestedIndex, cached);
+                prefetchNeighbours(requestedIndex);
+                return;
+            }
 
-                @Override
-                protected void done() {
-                    if (success) {
-                        updateGraphsWithRealData(fragmentData);
-                        updateSectionLabel(selectedFragmentIndex, fragmentData);
-
-                        // Update total duration if this is the last fragment and has different duration
-                        if (selectedFragmentIndex == listModel.size() - 1) {
-                            updateTotalDuration(fragmentData);
+            // Lo que ya no está cerca del fragmento elegido deja de ocupar la cola del servidor
+            cancelFetchesAwayFrom(diagnosisFileId, requestedIndex);
+
+            CompletableFuture<double[][]> fetch = fetchFragment(diagnosisFileId, requestedIndex);
+            foregroundFetch = fetch;
+            // Un clic nuevo cancela la espera anterior (misma clave)
+            requests.submit("VIEW_RECORDING", fetch::get,
+                    (fragmentData, error) -> {
+                        if (requestedIndex != selectedFragmentIndex || diagnosisFileId != currentDiagnosisFileId) {
+                            return;
                         }
-                    } else {
-                        JOptionPane.showMessageDialog(ViewRecordingPanel.this,
-                                fragmentData, "Error", JOptionPane.ERROR_MESSAGE);
-                    }
+                        if (error == null) {
+                            showFragment(requestedIndex, fragmentData);
+                            prefetchNeighbours(requestedIndex);
+                        } else {
+                            if (error instanceof TimeoutException) {
+                                cancelFetch(diagnosisFileId, requestedIndex);
+                            }
+                            JOptionPane.showMessageDialog(ViewRecordingPanel.this,
+                                    "Error loading fragment: " + error.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                        }
+                    });
+        }
+
+        private void cancelFetch(int diagnosisFileId, int fragmentIndex) {
+            CompletableFuture<double[][]> pending = fragmentsInFlight.get(FragmentCache.key(diagnosisFileId, fragmentIndex));
+            if (pending != null) pending.cancel(false);
+        }
+
+        // Cancela las cargas de fragmentos que no son el elegido ni sus vecinos (o son de otra grabación)
+        private void cancelFetchesAwayFrom(int diagnosisFileId, int fragmentIndex) {
+            for (Map.Entry<Long, CompletableFuture<double[][]>> e : fragmentsInFlight.entrySet()) {
+                long key = e.getKey();
+                int fileId = (int) (key >>> 32);
+                int index = (int) key;
+                if (fileId != diagnosisFileId || Math.abs(index - fragmentIndex) > 1) {
+                    e.getValue().cancel(false);
+                }
+            }
+        }
+
+        private void showFragment(int fragmentIndex, double[][] fragmentData) {
+            updateGraphsWithRealData(fragmentData);
+            updateSectionLabel(fragmentIndex, sampleCount(fragmentData));
+            shownFragmentIndex = fragmentIndex;
+            shownEcg = sampleCount(fragmentData) >= 0 ? fragmentData[0] : null;
+            if (fragmentIndex == qrsFragments && shownEcg != null) {
+                feedQrs(currentDiagnosisFileId, fragmentIndex, fragmentData); // también pinta los latidos
+            } else {
+                updateBeatOverlay();
+            }
+
+            // Update total duration if this is the last fragment and has different duration
+            if (fragmentIndex == listModel.size() - 1) {
+                updateTotalDuration(sampleCount(fragmentData));
+            }
+
+            if (!overview.isLoaded(fragmentIndex) && sampleCount(fragmentData) > 0) {
+                overview.addFragment(fragmentIndex, fragmentData[0], SAMPLING_RATE);
+            }
+            refreshOverview();
+        }
+
+        // Pasa al detector el fragmento si es el siguiente que espera, y los ya cacheados que le sigan
+        private void feedQrs(int diagnosisFileId, int fragmentIndex, double[][] fragmentData) {
+            if (diagnosisFileId != currentDiagnosisFileId || fragmentIndex != qrsFragments) return;
+            int before = qrsFragments;
+            double[][] data = fragmentData;
+            while (data != null && sampleCount(data) >= 0 && qrsFragments + 1 < fragmentStarts.length) {
+                qrs.process(data[0], 0, data[0].length);
+                if (data.length > 1) {
+                    eda.process(data[1], 0, data[1].length);
+                    eda.flush();
+                }
+                fragmentStarts[qrsFragments + 1] = fragmentStarts[qrsFragments] + data[0].length;
+                qrsFragments++;
+                data = fragmentCache.peek(diagnosisFileId, qrsFragments);
+            }
+            // Los latidos del final de un fragmento se confirman con el siguiente
+            if (shownFragmentIndex >= before - 1 && shownFragmentIndex < qrsFragments) {
+                updateBeatOverlay();
+            }
+        }
+
+        // Picos R, frecuencia cardiaca y EDA del fragmento que se muestra
+        private void updateBeatOverlay() {
+            updateEdaLabel();
+            double[] ecg = shownEcg;
+            if (ecg == null || shownFragmentIndex < 0 || shownFragmentIndex >= qrsFragments) {
+                beatDataset.setPoints(beatXs, beatYs, 0);
+                heartRateLabel.setText(ecg == null ? "Heart Rate: -" : "Heart Rate: analysing...");
+                return;
+            }
+            long start = fragmentStarts[shownFragmentIndex];
+            int first = qrs.firstBeatAtOrAfter(start);
+            int last = qrs.firstBeatAtOrAfter(start + ecg.length);
+            int count = last - first;
+            if (beatXs.length < count) {
+                beatXs = new double[count];
+                beatYs = new double[count];
+            }
+            double hrSum = 0;
+            double hrMin = Double.MAX_VALUE;
+            double hrMax = 0;
+            int hrCount = 0;
+            for (int i = first; i < last; i++) {
+                int offset = (int) (qrs.getBeat(i) - start);
+                beatXs[i - first] = (double) offset / SAMPLING_RATE;
+                beatYs[i - first] = ecg[offset];
+                double hr = qrs.getHeartRate(i);
+                if (!Double.isNaN(hr)) {
+                    hrSum += hr;
+                    hrMin = Math.min(hrMin, hr);
+                    hrMax = Math.max(hrMax, hr);
+                    hrCount++;
+                }
+            }
+            beatDataset.setPoints(beatXs, beatYs, count);
+            heartRateLabel.setText(hrCount == 0 ? "Heart Rate: -"
+                    : String.format("Heart Rate: %.0f bpm (%.0f-%.0f), %d beats",
+                    hrSum / hrCount, hrMin, hrMax, count));
+        }
+
+        private void updateEdaLabel() {
+            EdaPipeline.Window w = shownFragmentIndex >= 0 && shownFragmentIndex < qrsFragments
+                    ? edaWindowAt(fragmentStarts[shownFragmentIndex]) : null;
+            if (w == null) {
+                edaLabel.setText(shownEcg == null ? "EDA: -" : "EDA: analysing...");
+                return;
+            }
+            edaLabel.setText(w.scrCount() == 0
+                    ? String.format("EDA: SCL %.0f, no SCRs", w.sclMean())
+                    : String.format("EDA: SCL %.0f, %d SCRs (amp %.0f, rise %.1f s)",
+                    w.sclMean(), w.scrCount(), w.scrAmplitudeMean(), w.scrRiseTimeMean()));
+        }
+
+        // Ventana EDA del fragmento que empieza en la muestra start (un fragmento vacío no tiene)
+        private EdaPipeline.Window edaWindowAt(long start) {
+            int low = 0;
+            int high = edaWindows.size() - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long s = edaWindows.get(mid).start();
+                if (s < start) low = mid + 1;
+                else if (s > start) high = mid - 1;
+                else return edaWindows.get(mid);
+            }
+            return null;
+        }
+
+        // Precarga en segundo plano los fragmentos i-1 e i+1
+        private void prefetchNeighbours(int fragmentIndex) {
+            int diagnosisFileId = currentDiagnosisFileId;
+            for (int neighbour : new int[]{fragmentIndex + 1, fragmentIndex - 1}) {
+                if (neighbour >= 0 && neighbour < listModel.size()
+                        && !fragmentCache.contains(diagnosisFileId, neighbour)) {
+                    fetchFragment(diagnosisFileId, neighbour);
                 }
-            }.execute();
+            }
+        }
+
+        /**
+         * Pide un fragmento al servidor sin bloquear; si ya hay una petición en vuelo
+         * para el mismo fragmento (p.ej. una precarga) se reutiliza. El resultado se guarda en la caché.
+         */
+        private CompletableFuture<double[][]> fetchFragment(int diagnosisFileId, int fragmentIndex) {
+            return fetchFragment(diagnosisFileId, fragmentIndex, true);
+        }
+
+        // cache = false para lo que solo lee el overview: no debe echar de la caché a los vecinos del fragmento visto
+        private CompletableFuture<double[][]> fetchFragment(int diagnosisFileId, int fragmentIndex, boolean cache) {
+            long key = FragmentCache.key(diagnosisFileId, fragmentIndex);
+            // Antes de buscar la petición en vuelo: si ya la hay, la respuesta se guardará igualmente
+            if (cache) cacheOnArrival.add(key);
+            CompletableFuture<double[][]> pending = fragmentsInFlight.get(key);
+            if (pending != null) return pending;
+
+            CompletableFuture<double[][]> created = new CompletableFuture<>();
+            pending = fragmentsInFlight.putIfAbsent(key, created);
+            if (pending != null) return pending;
+
+            FrameTransport c = connection;
+            if (c == null) {
+                fragmentsInFlight.remove(key, created);
+                cacheOnArrival.remove(key);
+                created.completeExceptionally(new IOException("Not connected to server"));
+                return created;
+            }
+            CompletableFuture<Frame> sent = c.send(OpCode.CHANGE_FRAGMENT, new PayloadWriter()
+                    .writeInt(diagnosisFileId)
+                    .writeInt(fragmentIndex));
+            created.whenComplete((data, error) -> {
+                fragmentsInFlight.remove(key, created);
+                // Cancelada: si aún no ha salido no se envía, y si la respuesta llega tarde se descarta
+                if (created.isCancelled()) sent.cancel(false);
+            });
+            // Decodificar fuera del hilo de I/O, en los hilos de plataforma del analizador
+            sent.thenApplyAsync(reply -> {
+                        if (created.isDone()) throw new CancellationException();
+                        try {
+                            return receiveSignalData(reply, reply.reader());
+                        } catch (IOException e) {
+                            throw new CompletionException(e);
+                        }
+                    }, analyzer.executor())
+                    .whenComplete((data, error) -> {
+                        if (cacheOnArrival.remove(key) && data != null) {
+                            fragmentCache.put(diagnosisFileId, fragmentIndex, data);
+                        }
+                        if (error != null) created.completeExceptionally(error);
+                        else created.complete(data);
+                    });
+            return created;
         }
 
-        private void updateGraphsWithRealData(String fragmentData) {
-            // Parse fragment data: "ecg1,ecg2,...;eda1,eda2,..."
-            String[] signals = fragmentData.split(";");
-            if (signals.length == 2) {
-                String ecgData = signals[0].trim();
-                String edaData = signals[1].trim();
+        public FragmentCache getFragmentCache() {
+            return fragmentCache;
+        }
 
-                // Parse ECG data and create chart
-                double[] ecgValues = parseSignalData(ecgData);
-                double[] edaValues = parseSignalData(edaData);
+        private void updateGraphsWithRealData(double[][] signals) {
+            // Canal 0 = ECG, canal 1 = EDA (ya decodificados por SignalTextDecoder)
+            if (signals != null && signals.length >= 2) {
+                double[] ecgValues = signals[0];
+                double[] edaValues = signals[1];
 
                 // Calculate actual duration based on sample count
                 double actualDuration = (double) ecgValues.length / SAMPLING_RATE;
@@ -1429,32 +1997,15 @@ public class DoctorApplicationGUI extends JFrame {
             }
         }
 
-        private double[] parseSignalData(String data) {
-            String[] samples = data.split(",");
-            double[] values = new double[samples.length];
-            for (int i = 0; i < samples.length; i++) {
-                try {
-                    values[i] = Double.parseDouble(samples[i].trim());
-                } catch (NumberFormatException e) {
-                    values[i] = 0.0;
-                }
-            }
-            return values;
+        // Número de muestras ECG del fragmento; -1 si no trae las dos señales
+        private int sampleCount(double[][] signals) {
+            return signals != null && signals.length >= 2 ? signals[0].length : -1;
         }
 
         private void updateChartWithSpecificYAxis(JFreeChart chart, double[] values, double duration, String signalType) {
-            XYSeries series = new XYSeries("Signal");
-
-            // Add data points (time in seconds, amplitude)
-            for (int i = 0; i < values.length; i++) {
-                double time = (double) i / SAMPLING_RATE;
-                series.add(time, values[i]);
-            }
-
-            XYSeriesCollection dataset = new XYSeriesCollection();
-            dataset.addSeries(series);
-
-            chart.getXYPlot().setDataset(dataset);
+            // El gráfico recibe solo la versión decimada (min/max por columna de píxeles)
+            DetailTrace trace = chart == ecgChart ? ecgTrace : edaTrace;
+            trace.setValues(values);
 
             // Use signal-specific Y-axis adjustment
             if ("ECG".equals(signalType)) {
@@ -1558,17 +2109,14 @@ public class DoctorApplicationGUI extends JFrame {
             }
         }
 
-        private void updateSectionLabel(int fragmentIndex, String fragmentData) {
+        private void updateSectionLabel(int fragmentIndex, int ecgSamples) {
             int startSec = fragmentIndex * FRAGMENT_DURATION;
 
             // Calculate actual duration of this fragment
-            String[] signals = fragmentData.split(";");
             double fragmentDuration = FRAGMENT_DURATION;
 
-            if (signals.length == 2) {
-                String ecgData = signals[0].trim();
-                String[] ecgSamples = ecgData.split(",");
-                fragmentDuration = (double) ecgSamples.length / SAMPLING_RATE;
+            if (ecgSamples >= 0) {
+                fragmentDuration = (double) ecgSamples / SAMPLING_RATE;
             }
 
             double endSec = startSec + fragmentDuration;
@@ -1581,13 +2129,10 @@ public class DoctorApplicationGUI extends JFrame {
             }
         }
 
-        private void updateTotalDuration(String lastFragmentData) {
+        private void updateTotalDuration(int ecgSamples) {
             // Recalculate total duration with actual last fragment duration
-            String[] signals = lastFragmentData.split(";");
-            if (signals.length == 2) {
-                String ecgData = signals[0].trim();
-                String[] ecgSamples = ecgData.split(",");
-                double lastFragmentDuration = (double) ecgSamples.length / SAMPLING_RATE;
+            if (ecgSamples >= 0) {
+                double lastFragmentDuration = (double) ecgSamples / SAMPLING_RATE;
 
                 int totalDuration = (listModel.size() - 1) * FRAGMENT_DURATION + (int)Math.ceil(lastFragmentDuration);
                 durationLabel.setText("Complete Recording Duration: " + totalDuration + "sec");
@@ -1595,13 +2140,8 @@ public class DoctorApplicationGUI extends JFrame {
         }
 
         private void handleBackToDiagnosis() {
-            try {
-                out.writeUTF("BACK_TO_DIAGNOSIS_TO_COMPLETE");   // server: COMPLETE_DIAGNOSISFILE -> RECENTLY_FINISH
-                out.flush();
-                handleCompleteDiagnosis();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            notifyServer(OpCode.BACK_TO_DIAGNOSIS_TO_COMPLETE);   // server: COMPLETE_DIAGNOSISFILE -> RECENTLY_FINISH
+            handleCompleteDiagnosis();
             changeState("COMPLETE_DIAGNOSISFILE_PANEL");
 
         }
@@ -1612,104 +2152,47 @@ public class DoctorApplicationGUI extends JFrame {
                 return;
             }
 
-            new SwingWorker<Void, Void>() {
-                private boolean success = false;
-
-                @Override
-                protected Void doInBackground() {
-                    try {
-
-                        out.writeUTF("DOWNLOAD_RECORDING");
-                        out.writeInt(currentDiagnosisFileId);
-                        out.flush();
-
-                        String response = in.readUTF();
-                        if ("DOWNLOAD_RECORDING_STARTED".equals(response)) {
-                            //String ecgData = in.readUTF();
-                            String ecgData = receiveCompressedData(in);
-                            //String edaData = in.readUTF();
-                            String edaData = receiveCompressedData(in);
-                            String finishResponse = in.readUTF();
-
-                            if ("DOWNLOAD_FINISHED".equals(finishResponse)) {
-                                String csvContent = createCSVContent(ecgData, edaData);
-                                saveToFile("recording_" + currentDiagnosisFileId + "_" +
-                                        java.time.LocalDate.now() + ".csv", csvContent);
-                                success = true;
-                            }
-                        }
-                    } catch (IOException ex) {
-                        ex.printStackTrace();
-                    }
-                    return null;
-                }
-
-                @Override
-                protected void done() {
-                    if (success) {
-                        JOptionPane.showMessageDialog(ViewRecordingPanel.this,
-                                "Recording downloaded successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
-                    } else {
-                        JOptionPane.showMessageDialog(ViewRecordingPanel.this,
-                                "Error downloading recording", "Error", JOptionPane.ERROR_MESSAGE);
-                    }
-                }
-            }.execute();
-        }
-
-
-
-
-
-        private String createCSVContent(String ecgData, String edaData) {
-            StringBuilder csv = new StringBuilder();
-            csv.append("Time(ms);ECG;EDA\n");
-            ecgData= ecgData.substring(1, ecgData.length());
-            edaData= edaData.substring(0, edaData.length()-1);
-
-            String[] ecgSamples = ecgData.split(",");
-            String[] edaSamples = edaData.split(",");
-
-            int maxSamples = Math.max(ecgSamples.length, edaSamples.length);
-
-            for (int i = 0; i < maxSamples; i++) {
-                double timeMs = (double) i * (1000.0 / SAMPLING_RATE);
-                String ecgValue = i < ecgSamples.length ? ecgSamples[i].trim() : "";
-                String edaValue = i < edaSamples.length ? edaSamples[i].trim() : "";
-
-                csv.append(String.format("%.3f;%s;%s\n", timeMs, ecgValue, edaValue));
+            final int diagnosisFileId = currentDiagnosisFileId;
+            // El JFileChooser se abre antes: la grabación se escribe al fichero según se formatea
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setSelectedFile(new File("recording_" + diagnosisFileId + "_" + java.time.LocalDate.now() + ".csv"));
+            if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
             }
-
-            return csv.toString();
+            final java.nio.file.Path file = fileChooser.getSelectedFile().toPath();
+            requests.submit(() -> {
+                Frame reply = request(OpCode.DOWNLOAD_RECORDING, new PayloadWriter().writeInt(diagnosisFileId));
+                return new RecordingCsvExporter().export(reply, file);
+            }, (bytes, error) -> {
+                if (error != null) {
+                    error.printStackTrace();
+                    JOptionPane.showMessageDialog(ViewRecordingPanel.this,
+                            "Error downloading recording: " + error.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                JOptionPane.showMessageDialog(ViewRecordingPanel.this,
+                        "Recording downloaded successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
+            });
         }
+    }
 
+    // Fragmento -> un double[] por señal (mismo decodificador que el análisis por lotes)
+    public double[][] receiveSignalData(Frame reply, PayloadReader payload) throws IOException {
+        return RecordingAnalyzer.decodeFragment(reply, payload);
+    }
 
-        private void saveToFile(String fileName, String content) {
-            JFileChooser fileChooser = new JFileChooser();
-            fileChooser.setSelectedFile(new File(fileName));
-
-            if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-                File file = fileChooser.getSelectedFile();
-                try (PrintWriter writer = new PrintWriter(file)) {
-                    writer.write(content);
-                } catch (FileNotFoundException ex) {
-                    JOptionPane.showMessageDialog(this, "Error saving file: " + ex.getMessage(),
-                            "Error", JOptionPane.ERROR_MESSAGE);
-                }
-            }
-        }
+    // ERROR de un servidor antiguo que no conoce la operación; cualquier otro fallo no es motivo para degradar
+    private static boolean isUnknownOpCode(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof ServerErrorException e && e.isUnknownOpCode();
     }
 
-    public String receiveCompressedData(DataInputStream in) throws IOException {
-        String header = in.readUTF();
-        if (!"COMPRESSED_DATA".equals(header)) {
-            throw new IOException("Unexpected header: " + header);
+    public static String receiveCompressedData(PayloadReader payload) throws IOException {
+        byte[] compressed = payload.readBytes();
+        if (compressed == null) {
+            throw new ProtocolException("Missing compressed data");
         }
 
-        int length = in.readInt();
-        byte[] compressed = new byte[length];
-        in.readFully(compressed);
-
         ByteArrayInputStream bais = new ByteArrayInputStream(compressed);
         try (GZIPInputStream gzip = new GZIPInputStream(bais)) {
             return new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
@@ -1795,10 +2278,266 @@ public class DoctorApplicationGUI extends JFrame {
     }
 
 
+    // Panel de monitorización en directo (streams del servidor o simulador BITalino local)
+    class LiveMonitorPanel extends JPanel {
+        private static final int REFRESH_FPS = 40;
+        private static final double SWEEP_SECONDS = 5;
+        private static final int RING_SECONDS = 16;
+
+        private final JPanel tracesPanel = new JPanel(new GridLayout(0, 1, 0, 6));
+        private final JTextField patientIdField = new JTextField(6);
+        // El repintado va a ritmo fijo, independiente de la llegada de muestras
+        private final javax.swing.Timer repaintTimer;
+        // Streams del servidor; el hilo lector de la conexión es su único productor
+        private final Map<Integer, SampleRingBuffer> serverRings = new ConcurrentHashMap<>();
+        // LIVE_SUBSCRIBE sin respuesta aún: paciente -> generación en la que se pidió
+        private final Map<Integer, Integer> pendingSubscriptions = new HashMap<>();
+        // Protege pendingSubscriptions y los cambios de serverRings (la lectura en el hilo lector va sin lock)
+        private final Object subscriptionLock = new Object();
+        // stopAll() la incrementa: una respuesta de una suscripción anterior ya no registra nada
+        private volatile int generation;
+        private int[][] pushScratch = new int[2][0];
+        private final List<ScheduledFuture<?>> simulators = new ArrayList<>();
+        private ScheduledExecutorService simulatorExecutor;
+        private int simulatorCount = 0;
+
+        public LiveMonitorPanel() {
+            setLayout(new BorderLayout(10, 10));
+            setBackground(new Color(171, 191, 234));
+            setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+            JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+            controls.setOpaque(false);
+            controls.add(new JLabel("Patient ID:"));
+            controls.add(patientIdField);
+
+            JButton watchButton = new JButton("Watch Patient");
+            watchButton.addActionListener(e -> watchPatient());
+            controls.add(watchButton);
+
+            JButton simulateButton = new JButton("Simulate BITalino");
+            simulateButton.addActionListener(e -> addSimulator());
+            controls.add(simulateButton);
+
+            JButton stopButton = new JButton("Stop All");
+            stopButton.addActionListener(e -> stopAll());
+            controls.add(stopButton);
+
+            JButton backButton = new JButton("Back to Menu");
+            backButton.addActionListener(e -> handleBackToMenuFromLiveMonitor());
+            controls.add(backButton);
+
+            add(controls, BorderLayout.NORTH);
+
+            tracesPanel.setBackground(Color.BLACK);
+            add(new JScrollPane(tracesPanel), BorderLayout.CENTER);
+
+            repaintTimer = new javax.swing.Timer(1000 / REFRESH_FPS, e -> tracesPanel.repaint());
+            repaintTimer.setCoalesce(true); // si el EDT va tarde no se acumulan repintados
+        }
+
+        public void start() {
+            repaintTimer.start();
+        }
+
+        public void stop() {
+            repaintTimer.stop();
+        }
+
+        private void watchPatient() {
+            int patientId;
+            try {
+                patientId = Integer.parseInt(patientIdField.getText().trim());
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(this, "Please enter a numeric patient ID", "Warning", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            FrameTransport c = connection;
+            if (c == null) {
+                JOptionPane.showMessageDialog(this, "Not connected to server", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            int requestGeneration;
+            synchronized (subscriptionLock) {
+                if (serverRings.containsKey(patientId) || pendingSubscriptions.containsKey(patientId)) return;
+                requestGeneration = generation;
+                pendingSubscriptions.put(patientId, requestGeneration);
+            }
+            // La respuesta se procesa en el hilo lector: el ring queda registrado antes del primer push
+            c.send(OpCode.LIVE_SUBSCRIBE, new PayloadWriter().writeInt(patientId))
+                    .whenComplete((reply, error) -> {
+                        Throwable failure = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        SampleRingBuffer ring = null;
+                        int samplingRate = 0;
+                        if (failure == null) {
+                            try {
+                                samplingRate = reply.reader().readInt();
+                                ring = new SampleRingBuffer(2, samplingRate * RING_SECONDS);
+                            } catch (IOException | RuntimeException e) {
+                                failure = e;
+                            }
+                        }
+                        boolean current;
+                        boolean orphan;
+                        synchronized (subscriptionLock) {
+                            // Tras stopAll() ya no está: la suscripción llegó tarde
+                            current = pendingSubscriptions.remove(patientId, requestGeneration);
+                            if (current && ring != null) {
+                                serverRings.put(patientId, ring);
+                            }
+                            // Si el paciente se ha vuelto a pedir, esa suscripción nueva es la que vale
+                            orphan = !current && failure == null
+                                    && !serverRings.containsKey(patientId) && !pendingSubscriptions.containsKey(patientId);
+                        }
+                        if (!current) {
+                            if (orphan) unsubscribe(c, patientId);
+                            return;
+                        }
+                        if (failure != null) {
+                            String message = failure.getMessage();
+                            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(LiveMonitorPanel.this,
+                                    "Cannot watch patient " + patientId + ": " + message,
+                                    "Error", JOptionPane.ERROR_MESSAGE));
+                            return;
+                        }
+                        SampleRingBuffer registered = ring;
+                        int rate = samplingRate;
+                        SwingUtilities.invokeLater(() -> {
+                            if (generation != requestGeneration) return; // stopAll() entre medias
+                            addTrace(new SweepPanel("Patient " + patientId, registered, rate, SWEEP_SECONDS));
+                        });
+                    });
+        }
+
+        private void unsubscribe(FrameTransport c, int patientId) {
+            if (c == null) return;
+            c.send(OpCode.LIVE_UNSUBSCRIBE, new PayloadWriter().writeInt(patientId))
+                    .whenComplete((reply, error) -> {
+                        // Los push que aún lleguen se descartan en onLiveFrames (no hay ring)
+                        if (error != null) {
+                            System.err.println("LIVE_UNSUBSCRIBE of patient " + patientId + " failed: " + error.getMessage());
+                        }
+                    });
+        }
+
+        // Hilo lector de la conexión: decodifica el bloque directamente en el ring, sin pasar por el EDT
+        void onLiveFrames(Frame frame) throws IOException {
+            PayloadReader reader = frame.reader();
+            int patientId = reader.readInt();
+            SampleRingBuffer ring = serverRings.get(patientId);
+            if (ring == null) return; // ya no lo estamos viendo
+
+            int channels = reader.readByte();
+            reader.readInt();  // frecuencia de muestreo (ya conocida por LIVE_SUBSCRIBE)
+            reader.readLong(); // timestamp de inicio del bloque
+            if (channels < ring.getChannelCount()) {
+                throw new ProtocolException("Live block with " + channels + " channels");
+            }
+            int count = 0;
+            for (int ch = 0; ch < channels; ch++) {
+                ByteBuffer block = reader.readByteBuffer();
+                if (ch >= ring.getChannelCount()) continue;
+                int n = ResidualCodec.peekCount(block);
+                if (pushScratch[ch].length < n) {
+                    pushScratch[ch] = new int[Math.max(n, 2 * pushScratch[ch].length)];
+                }
+                count = ResidualCodec.decode(block, pushScratch[ch], 0);
+            }
+            ring.write(pushScratch, 0, count);
+        }
+
+        private void addSimulator() {
+            int samplingRate = SignalBuffer.DEFAULT_SAMPLING_RATE;
+            int heartRate = 55 + new Random().nextInt(50);
+            BitalinoSimulator simulator = new BitalinoSimulator(samplingRate, heartRate, System.nanoTime());
+            SampleRingBuffer ring = new SampleRingBuffer(2, samplingRate * RING_SECONDS);
+            simulatorCount++;
+            addTrace(new SweepPanel("Simulated BITalino #" + simulatorCount + " (" + heartRate + " bpm)",
+                    ring, samplingRate, SWEEP_SECONDS));
+
+            if (simulatorExecutor == null) {
+                simulatorExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "bitalino-simulator");
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+            long startNanos = System.nanoTime();
+            int[][] scratch = new int[2][samplingRate / 10];
+            long[] produced = {0};
+            simulators.add(simulatorExecutor.scheduleAtFixedRate(() -> {
+                // Genera las muestras que tocan según el reloj: la tasa se mantiene aunque el hilo se retrase
+                long due = (System.nanoTime() - startNanos) * samplingRate / 1_000_000_000L;
+                while (produced[0] < due) {
+                    int n = (int) Math.min(scratch[0].length, due - produced[0]);
+                    simulator.next(scratch[0], scratch[1], 0, n);
+                    ring.write(scratch, 0, n);
+                    produced[0] += n;
+                }
+            }, 0, 10, TimeUnit.MILLISECONDS));
+        }
+
+        private void addTrace(SweepPanel trace) {
+            tracesPanel.add(trace);
+            tracesPanel.revalidate();
+        }
+
+        public void stopAll() {
+            for (ScheduledFuture<?> simulator : simulators) {
+                simulator.cancel(false);
+            }
+            simulators.clear();
+            List<Integer> watched;
+            synchronized (subscriptionLock) {
+                generation++;
+                pendingSubscriptions.clear(); // sus respuestas se darán de baja al llegar
+                watched = new ArrayList<>(serverRings.keySet());
+                serverRings.clear();
+            }
+            FrameTransport c = connection;
+            for (int patientId : watched) {
+                unsubscribe(c, patientId);
+            }
+            tracesPanel.removeAll();
+            tracesPanel.revalidate();
+            tracesPanel.repaint();
+        }
+    }
+
+
     // Panel de recientemente terminados
     class RecentlyFinishPanel extends JPanel {
         private JList<String> recentList;
         private DefaultListModel<String> recentModel;
+        private final List<DiagnosisFile> recentFiles = new ArrayList<>();   // orden del feed
+        private final List<DiagnosisFile> shownFiles = new ArrayList<>();    // orden de triage, el de recentModel
+        private static final String NO_RECENT = "No recent diagnoses available";
+        // Resumen y cribado de cada grabación ya analizada, por id de diagnosis file (EDT)
+        private final Map<Integer, RecordingSummary> summaries = new HashMap<>();
+        private final Map<Integer, ScreeningResult> screenings = new HashMap<>();
+        private JButton analyzeButton;
+        // Cada refresco solo trae los cambios desde la última versión (nuevo feed en cada sesión)
+        private volatile DiagnosisFileFeed recentFeed = DiagnosisFileFeed.recentlyFinished();
+        private DiagnosisFileFeed shownFeed;   // feed cuyo contenido está en recentFiles (EDT)
+        private boolean syncRunning;            // petición de cambios lanzada por un push en curso (EDT)
+        private boolean syncQueued;
+        private final DiagnosisFileFeed.Listener recentListener = new DiagnosisFileFeed.Listener() {
+            @Override
+            public void added(int index, DiagnosisFile file) {
+                recentFiles.add(index, file);
+            }
+
+            @Override
+            public void changed(int index, DiagnosisFile file) {
+                recentFiles.set(index, file);
+            }
+
+            @Override
+            public void removed(int index, DiagnosisFile file) {
+                recentFiles.remove(index);
+            }
+        };
 
         public RecentlyFinishPanel() {
             setLayout(new BorderLayout());
@@ -1827,11 +2566,15 @@ public class DoctorApplicationGUI extends JFrame {
             JButton refreshButton = new JButton("Refresh");
             refreshButton.addActionListener(e -> loadRecentlyFinished());
 
+            analyzeButton = new JButton("Analyze Recordings");
+            analyzeButton.addActionListener(e -> analyzeRecordings());
+
             JButton backButton = new JButton("Back to Menu");
             backButton.addActionListener(e -> handleBackToMenuFromLoadRecentlyFinished());
 
             buttonPanel.add(completeButton);
             buttonPanel.add(refreshButton);
+            buttonPanel.add(analyzeButton);
             buttonPanel.add(backButton);
             add(buttonPanel, BorderLayout.SOUTH);
 
@@ -1844,10 +2587,14 @@ public class DoctorApplicationGUI extends JFrame {
         }
 
         public DiagnosisFile getSelectedDiagnosisFile() {
+            int index = recentList.getSelectedIndex();
+            if (index >= 0 && index < shownFiles.size()) {
+                return shownFiles.get(index);
+            }
             String selected = getSelectedDiagnosis();
             System.out.println(selected);
 
-            if (selected != null) {
+            if (selected != null && selected.startsWith("MedicalRecord{")) {
                 try {
                     // Crear un nuevo objeto DiagnosisFile
                     DiagnosisFile diagnosisFile = new DiagnosisFile();
@@ -1887,10 +2634,8 @@ public class DoctorApplicationGUI extends JFrame {
                     String statusStr = selected.split("status=")[1].split("'")[0];
                     diagnosisFile.setStatus(Boolean.parseBoolean(statusStr));
 
-                    // Los campos sensorDataECG y sensorDataEDA no están en el string,
-                    // así que los dejamos como null o valores por defecto
-                    diagnosisFile.setSensorDataECG(null);
-                    diagnosisFile.setSensorDataEDA(null);
+                    // Las señales no están en el string, así que las dejamos como null
+                    diagnosisFile.setSignals(null);
 
                     return diagnosisFile;
 
@@ -1905,55 +2650,171 @@ public class DoctorApplicationGUI extends JFrame {
 
 
         private void loadRecentlyFinished() {
-            new SwingWorker<Void, Void>() {
-                private String recentData = null;
+            DiagnosisFileFeed feed = recentFeed;
+            requests.submit("RECENTLY_FINISH", () -> feed.fetch(connection),
+                    (changes, error) -> applyChanges(feed, changes, error));
+        }
+
+        private void applyChanges(DiagnosisFileFeed feed, DiagnosisFileChanges changes, Throwable error) {
+            if (feed != recentFeed) return; // se cerró la sesión mientras tanto
+            if (feed != shownFeed) {
+                // Primera carga de esta sesión: se descarta lo de la anterior
+                recentFiles.clear();
+                summaries.clear();
+                screenings.clear();
+                shownFeed = feed;
+            }
+            if (error != null) {
+                System.err.println("Error loading recently finished diagnoses: " + error.getMessage());
+            } else {
+                feed.apply(changes, recentListener);
+            }
+            updateList();
+        }
+
+        /**
+         * Triage: first the recordings the screening rules flagged, most severe first; the rest keep
+         * the server order. Only the rows that change are touched, and the selection follows its file.
+         */
+        private void updateList() {
+            int selectedIndex = recentList.getSelectedIndex();
+            DiagnosisFile selected = selectedIndex >= 0 && selectedIndex < shownFiles.size()
+                    ? shownFiles.get(selectedIndex) : null;
+            shownFiles.clear();
+            shownFiles.addAll(recentFiles);
+            shownFiles.sort((a, b) -> {   // estable: a igualdad, orden del feed
+                ScreeningResult ra = screenings.get(a.getId());
+                ScreeningResult rb = screenings.get(b.getId());
+                boolean flaggedA = ra != null && ra.isFlagged();
+                boolean flaggedB = rb != null && rb.isFlagged();
+                if (flaggedA != flaggedB) return flaggedA ? -1 : 1;
+                return flaggedA ? ScreeningResult.TRIAGE_ORDER.compare(ra, rb) : 0;
+            });
 
-                @Override
-                protected Void doInBackground() {
-                    try {
-                        out.writeUTF("RECENTLY_FINISH");
-                        out.flush();
-
-                        /*String response = in.readUTF();
-                        if ("RECENTLY_FINISH_LIST".equals(response)) {
-                            recentData = in.readUTF();
-                        }*/
-
-                        StringBuilder sb = new StringBuilder();
-                        while (true) {
-                            String line = in.readUTF();
-                            if ("RECENTLY_FINISHED".equals(line)) {
-                                break; // end of list from server
-                            }
-                            if (sb.length() > 0) sb.append(" ");
-                            sb.append(line);
-                        }
-                        recentData = sb.toString();
+            if (shownFiles.isEmpty()) {
+                if (recentModel.size() != 1 || !NO_RECENT.equals(recentModel.get(0))) {
+                    recentModel.clear();
+                    recentModel.addElement(NO_RECENT);
+                }
+                return;
+            }
+            // La fila de "lista vacía" no es un diagnosis file
+            if (recentModel.size() == 1 && NO_RECENT.equals(recentModel.get(0))) recentModel.clear();
+            for (int i = 0; i < shownFiles.size(); i++) {
+                String label = label(shownFiles.get(i));
+                if (i >= recentModel.size()) {
+                    recentModel.addElement(label);
+                } else if (!label.equals(recentModel.get(i))) {
+                    recentModel.set(i, label);
+                }
+            }
+            while (recentModel.size() > shownFiles.size()) {
+                recentModel.remove(recentModel.size() - 1);
+            }
+            int index = selected == null ? -1 : shownFiles.indexOf(selected);
+            if (index >= 0) {
+                recentList.setSelectedIndex(index);
+            } else {
+                recentList.clearSelection();
+            }
+        }
 
+        /**
+         * RECORDING_READY: pide solo los cambios desde la versión que ya tenemos y los aplica sobre la lista,
+         * aunque el panel no esté visible. Los avisos que llegan durante una petición se juntan en una sola más.
+         * Devuelve false si la versión del aviso ya estaba aplicada.
+         */
+        private boolean syncRecordingReady(RecordingReady event) {
+            DiagnosisFileFeed feed = recentFeed;
+            if (feed == shownFeed && event.version() <= feed.getVersion()) return false;
+            if (syncRunning) {
+                syncQueued = true;
+            } else {
+                syncChanges();
+            }
+            return true;
+        }
 
-                    } catch (IOException ex) {
-                        recentData = "Error loading recent diagnoses";
-                    }
-                    return null;
+        private void syncChanges() {
+            DiagnosisFileFeed feed = recentFeed;
+            syncRunning = true;
+            requests.submit(() -> feed.fetch(connection), (changes, error) -> {
+                syncRunning = false;
+                applyChanges(feed, changes, error);
+                if (syncQueued) {
+                    syncQueued = false;
+                    syncChanges();
                 }
+            });
+        }
 
-                @Override
-                protected void done() {
-                    recentModel.clear();
-                    if (recentData != null && !recentData.startsWith("Error")) {
-                        // Parsear la lista de DiagnosisFile del formato toString()
-                        String[] diagnoses = recentData.split("MedicalRecord\\{");
-                        for (String diagnosis : diagnoses) {
-                            if (!diagnosis.trim().isEmpty()) {
+        // Al cerrar sesión: la siguiente carga empieza de cero
+        private void resetRecentlyFinished() {
+            recentFeed = DiagnosisFileFeed.recentlyFinished();
+        }
+
+        // El diagnosis file y, si ya se analizó, los avisos del cribado y el resumen de su grabación
+        private String label(DiagnosisFile file) {
+            RecordingSummary summary = summaries.get(file.getId());
+            if (summary == null) return file.toString();
+            ScreeningResult screening = screenings.get(file.getId());
+            String flags = screening != null && screening.isFlagged() ? "[" + screening.toShortString() + "]  " : "";
+            return file + "  ->  " + flags + summary.toShortString();
+        }
 
-                                recentModel.addElement("MedicalRecord{" + diagnosis.trim());
+        /**
+         * Analiza en paralelo las grabaciones de la lista que aún no tienen resumen; cada fila se
+         * actualiza en cuanto termina la suya. Sin clave: sigue aunque se cambie de pantalla.
+         */
+        private void analyzeRecordings() {
+            List<DiagnosisFile> pending = new ArrayList<>();
+            for (DiagnosisFile df : recentFiles) {
+                if (!summaries.containsKey(df.getId())) pending.add(df);
+            }
+            if (pending.isEmpty()) {
+                JOptionPane.showMessageDialog(this, recentFiles.isEmpty() ? "No recordings to analyze"
+                        : "All recordings are already analyzed", "Analyze Recordings", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+            DiagnosisFileFeed feed = recentFeed;
+            FrameTransport c = connection;
+            analyzeButton.setEnabled(false);
+            long started = System.nanoTime();
+            requests.submit(null, ANALYSIS_DEADLINE,
+                    () -> analyzer.analyzeAll(c, pending, result -> SwingUtilities.invokeLater(() -> {
+                        if (feed == recentFeed && result.ok()) showResult(result);
+                    })),
+                    (results, error) -> {
+                        analyzeButton.setEnabled(true);
+                        if (error != null) {
+                            JOptionPane.showMessageDialog(this, "Error analyzing recordings: " + error.getMessage(),
+                                    "Error", JOptionPane.ERROR_MESSAGE);
+                            return;
+                        }
+                        int failed = 0;
+                        int flagged = 0;
+                        for (RecordingAnalyzer.Result r : results) {
+                            if (!r.ok()) {
+                                failed++;
+                                System.err.println("Analysis of diagnosis file " + r.file().getId() + " failed: " + r.error());
+                            } else if (r.screening() != null && r.screening().isFlagged()) {
+                                flagged++;
                             }
                         }
-                    } else {
-                        recentModel.addElement("No recent diagnoses available");
-                    }
-                }
-            }.execute();
+                        System.out.printf("Analyzed %d recordings (%d flagged) in %d ms%n", results.size(), flagged,
+                                (System.nanoTime() - started) / 1_000_000);
+                        if (failed > 0) {
+                            JOptionPane.showMessageDialog(this, failed + " of " + results.size()
+                                    + " recordings could not be analyzed", "Analyze Recordings", JOptionPane.WARNING_MESSAGE);
+                        }
+                    });
+        }
+
+        private void showResult(RecordingAnalyzer.Result result) {
+            int id = result.file().getId();
+            summaries.put(id, result.summary());
+            if (result.screening() != null) screenings.put(id, result.screening());
+            updateList();
         }
     }
 
@@ -2179,50 +3040,38 @@ public class DoctorApplicationGUI extends JFrame {
             return;
         }
 
-        new SwingWorker<Void, Void>() {
-            private String serverMsg = null;
-            private boolean success = false;
-
-            @Override
-            protected Void doInBackground() {
-                try {
-                    out.writeUTF("LOGIN");
-                    out.writeUTF(username);
-                    out.writeUTF(pass);
-                    out.flush();
-
-
-                    String response = in.readUTF();
-                    if ("LOGIN_RESULT".equals(response)) {
-                        success = in.readBoolean();
-                        serverMsg = in.readUTF();
-                        serverMsg = serverMsg+ "-> "+ in.readUTF();
-                        if (success) currentUsername = username;
-                    } else {
-                        serverMsg = "Unexpected server response: " + response;
-                        serverMsg = serverMsg+ "->"+ in.readUTF();
-                    }
-                } catch (IOException ex) {
-                    serverMsg = "Connection error: " + ex.getMessage();
-                }
-                return null;
-            }
-
-            @Override
-            protected void done() {
-                if (success) {
-                    JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
-                            serverMsg == null ? "Login successful" : serverMsg,
-                            "Success", JOptionPane.INFORMATION_MESSAGE);
-                    changeState("DOCTOR_MENU");
-                    loginPanel.clearFields();
-                } else {
-                    JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
-                            "Login failed: " + (serverMsg == null ? "unknown error" : serverMsg),
-                            "Error", JOptionPane.ERROR_MESSAGE);
-                }
+        record LoginReply(boolean success, String message) {}
+        requests.submit(() -> {
+            Frame reply = request(OpCode.LOGIN, new PayloadWriter()
+                    .writeString(username)
+                    .writeString(pass));
+
+            PayloadReader payload = reply.reader();
+            boolean success = payload.readBoolean();
+            String serverMsg = payload.readString();
+            if (payload.hasRemaining()) {
+                serverMsg = serverMsg + "-> " + payload.readString();
+            }
+            if (success) openLocalCache(username);
+            return new LoginReply(success, serverMsg);
+        }, (reply, error) -> {
+            String serverMsg = error == null ? reply.message()
+                    : error instanceof ProtocolException ? error.getMessage()
+                    : "Connection error: " + error.getMessage();
+            if (error == null && reply.success()) {
+                currentUsername = username;
+                subscribeRecordingReady();
+                JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
+                        serverMsg == null ? "Login successful" : serverMsg,
+                        "Success", JOptionPane.INFORMATION_MESSAGE);
+                changeState("DOCTOR_MENU");
+                loginPanel.clearFields();
+            } else {
+                JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
+                        "Login failed: " + (serverMsg == null ? "unknown error" : serverMsg),
+                        "Error", JOptionPane.ERROR_MESSAGE);
             }
-        }.execute();
+        });
     }
 
     private void handleRegisterCreate() {
@@ -2246,66 +3095,45 @@ public class DoctorApplicationGUI extends JFrame {
             return;
         }
 
-        new SwingWorker<Void, Void>() {
-            private String msg = null;
-            private boolean ok = false;
-
-            @Override
-            protected Void doInBackground() {
-                try {
-                    out.writeUTF("SIGNUP");
-                    out.writeUTF(formData.get("username"));
-                    out.writeUTF(formData.get("password"));
-                    out.writeUTF(formData.get("name"));
-                    out.writeUTF(formData.get("surname"));
-                    out.writeUTF(formData.get("birthday"));
-                    out.writeUTF(formData.get("sex"));
-                    out.writeUTF(formData.get("email"));
-                    out.writeUTF(formData.get("specialty"));
-                    out.writeUTF(formData.get("license"));
-                    out.writeUTF(formData.get("dni"));
-                    out.flush();
-
-                    String resp = in.readUTF();
-                    if ("ACK".equals(resp)) {
-                        ok = true;
-                        msg = in.readUTF();
-                        msg=msg+ "->" + in.readUTF();
-                    } else if ("ERROR".equals(resp)) {
-                        msg = in.readUTF();
-                    } else {
-                        msg = "Unexpected server response: " + resp;
-                    }
-                } catch (IOException ex) {
-                    msg = "Connection error: " + ex.getMessage();
-                }
-                return null;
-            }
-
-            @Override
-            protected void done() {
-                if (ok) {
-                    JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
-                            msg != null ? msg : "Account created successfully",
-                            "Success", JOptionPane.INFORMATION_MESSAGE);
-                    changeState("DOCTOR_MENU");
-                    registerPanel.clearFields();
-                } else {
-                    JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
-                            "Registration failed: " + (msg != null ? msg : "Unknown error"),
-                            "Error", JOptionPane.ERROR_MESSAGE);
-                }
+        requests.submit(() -> {
+            Frame reply = request(OpCode.SIGNUP, new PayloadWriter()
+                    .writeString(formData.get("username"))
+                    .writeString(formData.get("password"))
+                    .writeString(formData.get("name"))
+                    .writeString(formData.get("surname"))
+                    .writeString(formData.get("birthday"))
+                    .writeString(formData.get("sex"))
+                    .writeString(formData.get("email"))
+                    .writeString(formData.get("specialty"))
+                    .writeString(formData.get("license"))
+                    .writeString(formData.get("dni")));
+
+            // Los errores llegan como frame ERROR -> ProtocolException
+            PayloadReader payload = reply.reader();
+            String msg = payload.readString();
+            if (payload.hasRemaining()) {
+                msg = msg + "->" + payload.readString();
+            }
+            return msg;
+        }, (msg, error) -> {
+            if (error == null) {
+                JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
+                        msg != null ? msg : "Account created successfully",
+                        "Success", JOptionPane.INFORMATION_MESSAGE);
+                changeState("DOCTOR_MENU");
+                registerPanel.clearFields();
+            } else {
+                String reason = error instanceof ProtocolException ? error.getMessage()
+                        : "Connection error: " + error.getMessage();
+                JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
+                        "Registration failed: " + (reason != null ? reason : "Unknown error"),
+                        "Error", JOptionPane.ERROR_MESSAGE);
             }
-        }.execute();
+        });
     }
 
     private void handleSearchPatient() {
-        try {
-            out.writeUTF("SEARCH_PATIENT");
-            out.flush();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        // loadPatientList envía la petición SEARCH_PATIENT
         changeState("SEARCH_PATIENT");
     }
 
@@ -2313,107 +3141,128 @@ public class DoctorApplicationGUI extends JFrame {
         String selectedPatient = searchPatientPanel.getSelectedPatient();
         System.out.println("The selected patient is:" + selectedPatient);
 
-        if (selectedPatient == null || selectedPatient.equals("No patients available")) {
+        if (selectedPatient == null) {
             JOptionPane.showMessageDialog(this, "Please select a patient", "Warning", JOptionPane.WARNING_MESSAGE);
             return;
         }
 
-        new SwingWorker<Void, Void>() {
-            private String patientInfo = null;
-            private boolean success = false;
-            private Patient patient = null; // Inicializar como null
-
-            @Override
-            protected Void doInBackground() {
-                try {
-                    // Limpiar el buffer de entrada si hay datos disponibles
-                    if (socket.isClosed()) {
-                        System.out.println("socket closed");
-                    }
-
-                    out.writeUTF("VIEW_PATIENT");
-                    out.writeInt(Integer.parseInt(selectedPatient));
-                    out.flush();
-
-                    String patientString = in.readUTF();
-                    System.out.println("Patient data received: " + patientString); // Debug
-
-                    if (patientString == null || patientString.isBlank()) {
-                        patientInfo = "Received empty patient data";
-                        return null;
-                    }
-
-                    String resp = in.readUTF();
-                    System.out.println("selected patient sent to server");
-                    System.out.println(in.available());
-
-
-                    System.out.println("Server response: " + resp); // Debug
-
-                    if (!"PATIENT_OVERVIEW_SENT".equals(resp)) {
-                        patientInfo = "Unexpected response: " + resp;
-                        return null;
-                    }
-
-
-
-                    // Parsear el paciente
-                    List<Patient> patients = parsePatientList(patientString);
-                    if (patients == null || patients.isEmpty()) {
-                        patientInfo = "No patient data could be parsed";
-                        return null;
-                    }
-
-                    this.patient = patients.get(0);
-                    currentPatient = patient;
-                    debugPatientData(this.patient);// Tomar el primer paciente
-                    if (this.patient == null) {
-                        patientInfo = "Parsed patient is null";
-                        return null;
-                    }
-
-                    // Verificar que los datos esenciales no sean null
-                    if (this.patient.getDobPatient() == null) {
-                        patientInfo = "Patient date of birth is null";
-                        return null;
-                    }
+        // Clave SEARCH_PATIENT: si el usuario sale de la búsqueda antes de la respuesta, se descarta
+        requests.submit("SEARCH_PATIENT", () -> {
+            if (connection == null || !connection.isOpen()) {
+                System.out.println("connection closed");
+            }
 
-                    patientInfo = "Patient data loaded successfully";
-                    success = true;
+            Patient patient = fetchPatient(Integer.parseInt(selectedPatient));
+            debugPatientData(patient);
+            if (patient == null) {
+                throw new IllegalStateException("Parsed patient is null");
+            }
 
-                } catch (IOException e) {
-                    patientInfo = "I/O error while getting patient info: " + e.getMessage();
-                    e.printStackTrace();
-                } catch (NumberFormatException e) {
+            // Verificar que los datos esenciales no sean null
+            if (patient.getDobPatient() == null) {
+                throw new IllegalStateException("Patient date of birth is null");
+            }
+            return patient;
+        }, (patient, error) -> {
+            if (error != null) {
+                String patientInfo;
+                if (error instanceof IOException) {
+                    patientInfo = "I/O error while getting patient info: " + error.getMessage();
+                } else if (error instanceof NumberFormatException) {
                     patientInfo = "Invalid patient ID format: " + selectedPatient;
-                    e.printStackTrace();
-                } catch (Exception e) {
-                    patientInfo = "Unexpected error: " + e.getMessage();
-                    e.printStackTrace();
+                } else if (error instanceof IllegalStateException) {
+                    patientInfo = error.getMessage();
+                } else {
+                    patientInfo = "Unexpected error: " + error.getMessage();
                 }
-                return null;
+                error.printStackTrace();
+                JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
+                        patientInfo, "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            try {
+                currentPatient = patient;
+                viewPatientPanel.setPatientInfo(patient);
+                currentPatientInfo = "Patient data loaded successfully";
+                changeState("VIEW_PATIENT");
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
+                        "Error displaying patient: " + ex.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                ex.printStackTrace();
             }
+        });
+    }
 
-            @Override
-            protected void done() {
+    /**
+     * VIEW_PATIENT through the local cache: the server is asked with the cached version and only
+     * sends the patient if it changed. Servers without VIEW_PATIENT_IF_MODIFIED get a plain VIEW_PATIENT.
+     */
+    private Patient fetchPatient(int healthInsuranceNumber) throws IOException {
+        LocalPatientCache cache = localCache;
+        LocalPatientCache.Cached cached = null;
+        if (cache != null) {
+            try {
+                cached = cache.findPatient(healthInsuranceNumber);
+            } catch (SQLException e) {
+                System.err.println("Local cache read failed: " + e.getMessage());
+            }
+            long knownVersion = cached == null ? LocalPatientCache.NO_VERSION : cached.version();
+            Frame reply = null;
+            try {
+                reply = request(OpCode.VIEW_PATIENT_IF_MODIFIED, new PayloadWriter()
+                        .writeInt(healthInsuranceNumber)
+                        .writeLong(knownVersion));
+            } catch (ServerErrorException e) {
+                // Servidor sin versiones: se pide como siempre. Cualquier otro error llega a quien llama
+                if (!e.isUnknownOpCode()) throw e;
+            }
+            if (reply != null) {
+                PayloadReader payload = reply.reader();
+                long version = payload.readLong();
+                boolean modified = payload.readBoolean();
+                if (!modified && cached != null) {
+                    System.out.println("Patient " + healthInsuranceNumber + " served from local cache (v" + version + ")");
+                    return cached.patient();
+                }
+                Patient patient = payload.readPatient();
                 try {
-                    if (success && patient != null) {
-                        viewPatientPanel.setPatientInfo(patient);
-                        currentPatientInfo = patientInfo;
-                        changeState("VIEW_PATIENT");
-                    } else {
-                        JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
-                                patientInfo != null ? patientInfo : "Unknown error occurred",
-                                "Error", JOptionPane.ERROR_MESSAGE);
-                    }
-                } catch (Exception ex) {
-                    JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
-                            "Error displaying patient: " + ex.getMessage(),
-                            "Error", JOptionPane.ERROR_MESSAGE);
-                    ex.printStackTrace();
+                    cache.storePatient(patient, version);
+                } catch (SQLException e) {
+                    System.err.println("Local cache write failed: " + e.getMessage());
                 }
+                return patient;
             }
-        }.execute();
+        }
+
+        Frame reply = request(OpCode.VIEW_PATIENT, new PayloadWriter().writeInt(healthInsuranceNumber));
+        System.out.println("Patient data received: " + reply); // Debug
+
+        if (reply.getPayloadLength() == 0) {
+            throw new IllegalStateException("Received empty patient data");
+        }
+
+        // Decodificar el paciente
+        List<Patient> patients = decodePatients(reply);
+        if (patients == null || patients.isEmpty()) {
+            throw new IllegalStateException("No patient data could be parsed");
+        }
+        return patients.get(0); // Tomar el primer paciente
+    }
+
+    private void openLocalCache(String username) {
+        closeLocalCache();
+        try {
+            localCache = LocalPatientCache.open(LocalPatientCache.defaultFile(lastHost, lastPort, username));
+        } catch (SQLException e) {
+            System.err.println("Local cache disabled: " + e.getMessage());
+        }
+    }
+
+    private void closeLocalCache() {
+        LocalPatientCache cache = localCache;
+        localCache = null;
+        if (cache != null) cache.close();
     }
 
     private void debugPatientData(Patient patient) {
@@ -2439,465 +3288,50 @@ public class DoctorApplicationGUI extends JFrame {
         }
     }
 
+    // Texto toString() de servidores antiguos (FLAG_TEXT)
     public static List<Patient> parsePatientList(String payload) {
-        List<Patient> patients = new ArrayList<>();
-        if (payload == null) return patients;
-        payload = payload.trim();
-        if (payload.isEmpty()) return patients;
-
-        int pos = 0;
-        while (true) {
-            int start = payload.indexOf("Patient{", pos);
-            if (start < 0) break;
-            start = payload.indexOf('{', start);
-            if (start < 0) break;
-            int brace = start + 1;
-            int depth = 1;
-            while (brace < payload.length() && depth > 0) {
-                char c = payload.charAt(brace);
-                if (c == '{') depth++;
-                else if (c == '}') depth--;
-                brace++;
-            }
-            if (depth != 0) break;
-            String body = payload.substring(start + 1, brace - 1).trim();
-            pos = brace;
-
-            // parse key=value pairs
-            Map<String, String> map = new LinkedHashMap<>();
-            int i = 0;
-            while (i < body.length()) {
-                int eq = body.indexOf('=', i);
-                if (eq < 0) break;
-                String key = body.substring(i, eq).trim();
-                i = eq + 1;
-
-                String value;
-                if (i < body.length() && body.charAt(i) == '\'') {
-                    // quoted string with single quote
-                    i++; // skip '
-                    StringBuilder sb = new StringBuilder();
-                    while (i < body.length()) {
-                        char ch = body.charAt(i++);
-                        if (ch == '\'') break;
-                        if (ch == '\\' && i < body.length()) {
-                            sb.append(body.charAt(i++));
-                        } else {
-                            sb.append(ch);
-                        }
-                    }
-                    value = sb.toString();
-                    while (i < body.length() && (body.charAt(i) == ',' || Character.isWhitespace(body.charAt(i)))) i++;
-                } else if (i < body.length() && body.charAt(i) == '[') {
-                    // bracketed list
-                    int j = i;
-                    int d = 0;
-                    StringBuilder sb = new StringBuilder();
-                    while (j < body.length()) {
-                        char ch = body.charAt(j);
-                        sb.append(ch);
-                        if (ch == '[') d++;
-                        else if (ch == ']') {
-                            d--;
-                            if (d == 0) { j++; break; }
-                        }
-                        j++;
-                    }
-                    value = sb.toString();
-                    i = j;
-                    while (i < body.length() && (body.charAt(i) == ',' || Character.isWhitespace(body.charAt(i)))) i++;
-                } else {
-                    // plain until comma
-                    int comma = i;
-                    while (comma < body.length() && body.charAt(comma) != ',') comma++;
-                    value = body.substring(i, comma).trim();
-                    i = comma + 1;
-                    while (i < body.length() && Character.isWhitespace(body.charAt(i))) i++;
-                }
-                map.put(key, value);
-            }
-
-            // build Patient
-            Patient p = new Patient();
-            try {
-                if (map.containsKey("idPatient")) {
-                    String v = map.get("idPatient").replace("'", "").trim();
-                    try { setFieldIfExists(p, "idPatient", Integer.parseInt(v)); } catch (Exception e) { setFieldIfExists(p, "idPatient", v); }
-                }
-                if (map.containsKey("namePatient")) setFieldIfExists(p, "namePatient", map.get("namePatient").replace("'", "").trim());
-                if (map.containsKey("surnamePatient")) setFieldIfExists(p, "surnamePatient", map.get("surnamePatient").replace("'", "").trim());
-                if (map.containsKey("dniPatient")) setFieldIfExists(p, "dniPatient", map.get("dniPatient").replace("'", "").trim());
-                if (map.containsKey("dobPatient")) {
-                    String dob = map.get("dobPatient").replace("'", "").trim();
-                    if (!dob.isEmpty()) {
-                        // prova ISO_LOCAL_DATE e fallback a stringa
-                        try {
-                            java.time.LocalDate ld = java.time.LocalDate.parse(dob, DateTimeFormatter.ISO_LOCAL_DATE);
-                            setFieldIfExists(p, "dobPatient", ld);
-                        } catch (Exception ex) {
-                            setFieldIfExists(p, "dobPatient", dob);
-                        }
-                    }
-                }
-                if (map.containsKey("emailPatient")) setFieldIfExists(p, "emailPatient", map.get("emailPatient").replace("'", "").trim());
-                if (map.containsKey("sexPatient")) setFieldIfExists(p, "sexPatient", map.get("sexPatient").replace("'", "").trim());
-                if (map.containsKey("phoneNumberPatient")) {
-                    String v = map.get("phoneNumberPatient").replace("'", "").trim();
-                    try { setFieldIfExists(p, "phoneNumberPatient", Long.parseLong(v)); } catch (Exception e) { setFieldIfExists(p, "phoneNumberPatient", v); }
-                }
-                if (map.containsKey("healthInsuranceNumberPatient")) {
-                    String v = map.get("healthInsuranceNumberPatient").replace("'", "").trim();
-                    try { setFieldIfExists(p, "healthInsuranceNumberPatient", Integer.parseInt(v)); } catch (Exception e) { setFieldIfExists(p, "healthInsuranceNumberPatient", v); }
-                }
-                if (map.containsKey("emergencyContactPatient")) setFieldIfExists(p, "emergencyContactPatient", map.get("emergencyContactPatient").replace("'", "").trim());
-                if (map.containsKey("doctorId")) {
-                    String v = map.get("doctorId").replace("'", "").trim();
-                    try { setFieldIfExists(p, "doctorId", Integer.parseInt(v)); } catch (Exception e) { setFieldIfExists(p, "doctorId", v); }
-                }
-                if (map.containsKey("MACadress")) setFieldIfExists(p, "MACadress", map.get("MACadress").replace("'", "").trim());
-
-                // diagnosisList: usa il parser dedicato per ottenere List<DiagnosisFile>
-                if (map.containsKey("diagnosisFile") || map.containsKey("diagnosisList")) {
-                    String key = map.containsKey("diagnosisFile") ? "diagnosisFile" : "diagnosisList";
-                    String raw = map.get(key).trim();
-                    List<DiagnosisFile> diagFiles = parseDiagnosisFileList(raw);
-                    setFieldIfExists(p, "diagnosisList", diagFiles);
-                }
-
-                if (map.containsKey("userId")) {
-                    String v = map.get("userId").replace("'", "").trim();
-                    try { setFieldIfExists(p, "userId", Integer.parseInt(v)); } catch (Exception e) { setFieldIfExists(p, "userId", v); }
-                }
-            } catch (Throwable ignored) {}
-
-            patients.add(p);
-        }
-
-        return patients;
+        return LegacyListParser.parsePatientList(payload);
     }
-    private static void setFieldIfExists(Object target, String name, Object value) {
-        if (target == null || name == null) return;
-        Class<?> cls = target.getClass();
-        String setterName = "set" + name;
 
-        try {
-            // cerca setter (case-insensitive)
-            for (Method m : cls.getMethods()) {
-                if (m.getName().equalsIgnoreCase(setterName) && m.getParameterCount() == 1) {
-                    Object arg = convertToParameterType(value, m.getParameterTypes()[0]);
-                    m.invoke(target, arg);
-                    return;
-                }
-            }
-
-            try {
-                java.lang.reflect.Field f = cls.getDeclaredField(name);
-                f.setAccessible(true);
-                Object arg = convertToParameterType(value, f.getType());
-                f.set(target, arg);
-            } catch (NoSuchFieldException ignored) {
-            }
-
-        } catch (Throwable ignored) {
-        }
-    }
-
-    @SuppressWarnings("unchecked")
-    public static Object convertToParameterType(Object value, Class<?> targetType) {
-        if (value == null) return null;
-        if (targetType.isAssignableFrom(value.getClass())) return value;
-
-        String s = value.toString();
-        try {
-            if (targetType == String.class) return s;
-
-            if (targetType == Integer.class || targetType == int.class) {
-                if (value instanceof Number) return ((Number) value).intValue();
-                return Integer.parseInt(s);
-            }
-            if (targetType == Long.class || targetType == long.class) {
-                if (value instanceof Number) return ((Number) value).longValue();
-                return Long.parseLong(s);
-            }
-            if (targetType == java.time.LocalDateTime.class) {
-                if (value instanceof java.time.LocalDateTime) return value;
-                if (value instanceof java.time.LocalDate) return ((java.time.LocalDate) value).atStartOfDay();
-                return java.time.LocalDateTime.parse(s, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-            }
-            if (targetType == java.time.LocalDate.class) {
-                if (value instanceof java.time.LocalDate) return value;
-                if (value instanceof java.time.LocalDateTime) return ((java.time.LocalDateTime) value).toLocalDate();
-                return java.time.LocalDate.parse(s, DateTimeFormatter.ISO_LOCAL_DATE);
-            }
-            if (java.util.Date.class.isAssignableFrom(targetType)) {
-                if (value instanceof java.util.Date) return value;
-                if (value instanceof java.time.LocalDateTime) {
-                    return java.util.Date.from(((java.time.LocalDateTime) value).atZone(java.time.ZoneId.systemDefault()).toInstant());
-                }
-                if (value instanceof java.time.LocalDate) {
-                    return java.util.Date.from(((java.time.LocalDate) value).atStartOfDay(java.time.ZoneId.systemDefault()).toInstant());
-                }
-
-                java.time.LocalDateTime ldt = java.time.LocalDateTime.parse(s, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-                return java.util.Date.from(ldt.atZone(java.time.ZoneId.systemDefault()).toInstant());
-            }
-
-            if (java.util.List.class.isAssignableFrom(targetType)) {
-                if (value instanceof java.util.List) return value;
-                // se è una stringa separata da virgole, creiamo una ArrayList
-                java.util.List<String> list = new java.util.ArrayList<>();
-                if (s != null && !s.isBlank()) {
-                    for (String part : s.split(",")) {
-                        String t = part.trim();
-                        if (!t.isEmpty()) list.add(t);
-                    }
-                }
-                return list;
-            }
-
-            if (targetType.isEnum()) {
-                @SuppressWarnings({"rawtypes", "unchecked"})
-                Object e = Enum.valueOf((Class<Enum>) targetType, s);
-                return e;
-            }
-
-        } catch (Exception ignored) {
-            // fallback al valore originale
-        }
-        return value;
-    }
-
-    // java
     public static List<DiagnosisFile> parseDiagnosisFileList(String payload) {
-        List<DiagnosisFile> files = new ArrayList<>();
-        if (payload == null) return files;
-        payload = payload.trim();
-        if (payload.isEmpty() || payload.equals("[]")) return files;
-
-        int pos = 0;
-        while (true) {
-            int start = payload.indexOf("MedicalRecord{", pos);
-            if (start < 0) break;
-            start = payload.indexOf('{', start);
-            if (start < 0) break;
-            int brace = start + 1;
-            int depth = 1;
-            while (brace < payload.length() && depth > 0) {
-                char c = payload.charAt(brace);
-                if (c == '{') depth++;
-                else if (c == '}') depth--;
-                brace++;    // brace increases until I reach the } position that closes the MedicalRecord{
-            }
-            if (depth != 0) break;
-            String body = payload.substring(start + 1, brace - 1).trim();
-            pos = brace;
-
-            // parse key=value pairs in body
-            Map<String, String> map = new LinkedHashMap<>();
-            int i = 0;
-            while (i < body.length()) {
-                // read key
-                int eq = body.indexOf('=', i);
-                if (eq < 0) break;
-                String key = body.substring(i, eq).trim();
-                i = eq + 1;
-
-                // read value: could start with ' (quoted), [ (list), or plain until comma
-                String value;
-                if (i < body.length() && body.charAt(i) == '\'') {
-                    // quoted string
-                    i++; // skip '
-                    StringBuilder sb = new StringBuilder();
-                    while (i < body.length()) {
-                        char c = body.charAt(i++);
-                        if (c == '\'') break;
-                        if (c == '\\' && i < body.length()) { // support escaped chars
-                            sb.append(body.charAt(i++));
-                        } else {
-                            sb.append(c);
-                        }
-                    }
-                    value = sb.toString();
-                    // skip optional comma and space
-                    while (i < body.length() && (body.charAt(i) == ',' || Character.isWhitespace(body.charAt(i)))) i++;
-                } else if (i < body.length() && body.charAt(i) == '[') {
-                    // bracketed list - read until matching ]
-                    int j = i;
-                    int d = 0;
-                    StringBuilder sb = new StringBuilder();
-                    while (j < body.length()) {
-                        char c = body.charAt(j);
-                        if (c == '[') d++;
-                        else if (c == ']') {
-                            d--;
-                            if (d == 0) { sb.append(c); j++; break; }
-                        }
-                        sb.append(c);
-                        j++;
-                    }
-                    value = sb.toString();
-                    i = j;
-                    // skip optional comma and spaces
-                    while (i < body.length() && (body.charAt(i) == ',' || Character.isWhitespace(body.charAt(i)))) i++;
-                } else {
-                    // plain token until comma
-                    int comma = i;
-                    while (comma < body.length() && body.charAt(comma) != ',') comma++;
-                    value = body.substring(i, comma).trim();
-                    i = comma + 1;
-                    while (i < body.length() && Character.isWhitespace(body.charAt(i))) i++;
-                }
-                map.put(key, value);
-            }
-
-            // costruisci DiagnosisFile usando setFieldIfExists
-            DiagnosisFile df = new DiagnosisFile();
-            try {
-                // id (può essere "id='123'" oppure "id=123")
-                String idStr = map.get("id");
-                if (idStr != null) {
-                    idStr = idStr.replace("'", "").trim();
-                    try { setFieldIfExists(df, "id", Integer.parseInt(idStr)); } catch (Exception e) { setFieldIfExists(df, "id", idStr); }
-                }
-
-                // symptoms: può essere "['a','b']" o "[a, b]" o "a,b"
-                String symptomsRaw = map.get("symptoms");
-                if (symptomsRaw != null) {
-                    String s = symptomsRaw.trim();
-                    List<String> symptoms = new ArrayList<>();
-                    if (s.startsWith("[")) {
-                        // rimuovi [ ]
-                        String inner = s.substring(1, Math.max(1, s.length()-1));
-                        // split rispettando apici
-                        StringBuilder cur = new StringBuilder();
-                        boolean inQuote = false;
-                        for (int k = 0; k < inner.length(); k++) {
-                            char c = inner.charAt(k);
-                            if (c == '\'' || c == '\"') {
-                                inQuote = !inQuote;
-                                continue;
-                            }
-                            if (c == ',' && !inQuote) {
-                                String t = cur.toString().trim();
-                                if (!t.isEmpty()) symptoms.add(t);
-                                cur.setLength(0);
-                            } else {
-                                cur.append(c);
-                            }
-                        }
-                        String last = cur.toString().trim();
-                        if (!last.isEmpty()) symptoms.add(last);
-                    } else {
-                        // comma separated plain
-                        for (String part : s.split(",")) {
-                            String t = part.replace("'", "").replace("\"","").trim();
-                            if (!t.isEmpty()) symptoms.add(t);
-                        }
-                    }
-                    setFieldIfExists(df, "symptoms", symptoms);
-                }
-
-                // diagnosis, medication
-                if (map.containsKey("diagnosis")) setFieldIfExists(df, "diagnosis", map.get("diagnosis").replace("'", "").trim());
-                if (map.containsKey("medication")) setFieldIfExists(df, "medication", map.get("medication").replace("'", "").trim());
-
-                // date
-                if (map.containsKey("date")) {
-                    String dateRaw = map.get("date").replace("'", "").trim();
-                    if (!dateRaw.isEmpty()) {
-                        // tenta ISO_LOCAL_DATE_TIME e fallback a stringa
-                        try {
-                            LocalDateTime ldt = LocalDateTime.parse(dateRaw, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-                            setFieldIfExists(df, "date", ldt);
-                        } catch (Exception ex) {
-                            setFieldIfExists(df, "date", dateRaw);
-                        }
-                    }
-                }
-
-                // patient id
-                if (map.containsKey("patient id")) {
-                    String pid = map.get("patient id").replace("'", "").trim();
-                    try { setFieldIfExists(df, "patientId", Integer.parseInt(pid)); } catch (Exception e) { setFieldIfExists(df, "patientId", pid); }
-                } else if (map.containsKey("patientId")) {
-                    String pid = map.get("patientId").replace("'", "").trim();
-                    try { setFieldIfExists(df, "patientId", Integer.parseInt(pid)); } catch (Exception e) { setFieldIfExists(df, "patientId", pid); }
-                }
-
-                // status
-                if (map.containsKey("status")) {
-                    String statusStr = map.get("status").replace("'", "").trim();
-                    try { setFieldIfExists(df, "status", Boolean.parseBoolean(statusStr)); } catch (Exception e) { setFieldIfExists(df, "status", statusStr); }
-                }
-
-            } catch (Throwable ignored) {}
-
-            files.add(df);
-        }
-
-        // ordina come prima
-        files.sort(java.util.Comparator.comparing(DiagnosisFile::getDate,
-                java.util.Comparator.nullsLast(java.util.Comparator.naturalOrder())).reversed());
-
-        return files;
+        return LegacyListParser.parseDiagnosisFileList(payload);
     }
 
     private void handleBackToMenuFromSearchPatient(){
-        try {
-            out.writeUTF("BACK_TO_MENU");
-            System.out.println();
-            out.flush();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        notifyServer(OpCode.BACK_TO_MENU);
         currentUsername = null;
         //cleanupResources();
         changeState("DOCTOR_MENU");
     }
 
     private void handleBackToSearchPatientFromViewPatient(){
-        try {
-            out.writeUTF("BACK_TO_SEARCH_PATIENT");
-            out.flush();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        notifyServer(OpCode.BACK_TO_SEARCH_PATIENT);
         currentUsername = null;
         //cleanupResources();
         changeState("SEARCH_PATIENT");
     }
 
     private void handleBackToMenuFromLoadRecentlyFinished(){
-        try {
-            out.writeUTF("BACK_TO_MENU");
-            System.out.println();
-            out.flush();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        notifyServer(OpCode.BACK_TO_MENU);
         currentUsername = null;
         //cleanupResources();
         changeState("DOCTOR_MENU");
     }
 
+    private void handleBackToMenuFromLiveMonitor() {
+        liveMonitorPanel.stopAll();
+        liveMonitorPanel.stop();
+        changeState("DOCTOR_MENU");
+    }
+
     // Back from COMPLETE_DIAGNOSISFILE to RECENTLY_FINISH
     private void handleBackToRecentlyFinishFromComplete() {
-        try {
-            out.writeUTF("BACK_TO_DIAGNOSISTODO");   // server: COMPLETE_DIAGNOSISFILE -> RECENTLY_FINISH
-            out.flush();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        notifyServer(OpCode.BACK_TO_DIAGNOSISTODO);   // server: COMPLETE_DIAGNOSISFILE -> RECENTLY_FINISH
         changeState("RECENTLY_FINISH");
     }
 
     private void handleBackToViewPatientFromViewDiagnosisFile() {
-        try {
-            out.writeUTF("BACK_TO_MENU");
-            out.flush();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        notifyServer(OpCode.BACK_TO_MENU);
         changeState("VIEW_PATIENT");
     }
 
@@ -2919,15 +3353,73 @@ public class DoctorApplicationGUI extends JFrame {
 
         DiagnosisFile chosen = currentPatient.getDiagnosisList().get(selectedIndex);
         viewDiagnosisFilePanel.showDiagnosis(chosen, currentPatient);
-        try {
-            out.writeUTF("VIEW_DIAGNOSISFILE");
-            out.flush();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        notifyServer(OpCode.VIEW_DIAGNOSISFILE);
         changeState("VIEW_DIAGNOSISFILE");
     }
 
+    // Exporta todas las grabaciones del paciente (opcionalmente entre dos fechas) a una carpeta, en paralelo
+    private void handleExportRecordings() {
+        if (currentPatient == null || currentPatient.getDiagnosisList() == null
+                || currentPatient.getDiagnosisList().isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No recordings to export", "Warning", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        JTextField fromField = new JTextField(10);
+        JTextField toField = new JTextField(10);
+        JPanel range = new JPanel(new GridLayout(2, 2, 5, 5));
+        range.add(new JLabel("From (yyyy-MM-dd, optional):"));
+        range.add(fromField);
+        range.add(new JLabel("To (yyyy-MM-dd, optional):"));
+        range.add(toField);
+        if (JOptionPane.showConfirmDialog(this, range, "Export Recordings",
+                JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        LocalDate from;
+        LocalDate to;
+        try {
+            from = fromField.getText().isBlank() ? null : LocalDate.parse(fromField.getText().trim());
+            to = toField.getText().isBlank() ? null : LocalDate.parse(toField.getText().trim());
+        } catch (java.time.format.DateTimeParseException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid date: " + ex.getParsedString(), "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        List<DiagnosisFile> selected = RecordingCsvExporter.inRange(currentPatient.getDiagnosisList(), from, to);
+        if (selected.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No recordings in that date range", "Warning", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        chooser.setDialogTitle("Export " + selected.size() + " recordings to");
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        final java.nio.file.Path directory = chooser.getSelectedFile().toPath();
+        final FrameTransport c = connection;
+        // Sin clave: sigue aunque se cambie de pantalla; varias grabaciones largas superan el plazo normal
+        requests.submit(null, BULK_EXPORT_DEADLINE,
+                () -> RecordingCsvExporter.exportAll(c, selected, directory),
+                (results, error) -> {
+                    if (error != null) {
+                        error.printStackTrace();
+                        JOptionPane.showMessageDialog(this, "Error exporting recordings: " + error.getMessage(),
+                                "Error", JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
+                    StringBuilder failed = new StringBuilder();
+                    int ok = 0;
+                    for (RecordingCsvExporter.Result r : results) {
+                        if (r.ok()) ok++;
+                        else failed.append("\n").append(r.path().getFileName()).append(": ").append(r.error().getMessage());
+                    }
+                    JOptionPane.showMessageDialog(this,
+                            "Exported " + ok + " of " + results.size() + " recordings to " + directory + failed,
+                            "Export Recordings",
+                            failed.length() == 0 ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+                });
+    }
 
     private void handleViewRecording() {
         int diagnosisId = currentDiagnosisFileId;
@@ -2936,45 +3428,34 @@ public class DoctorApplicationGUI extends JFrame {
             return;
         }
 
-        new SwingWorker<Void, Void>() {
-            private String recordingData = null;
-            private String sequences = null;
-            private boolean success = false;
+        record Recording(double[][] data, String sequences) {}
+        // Se pide desde VIEW_DIAGNOSISFILE o COMPLETE_DIAGNOSISFILE; si el usuario sale antes de la respuesta, se cancela
+        requests.submit(currentState, () -> {
+            Frame reply = request(OpCode.VIEW_RECORDING, new PayloadWriter()
+                    .writeInt(diagnosisId)
+                    .writeInt(1)); // Empezar con el fragmento 0
 
-            @Override
-            protected Void doInBackground() {
+            // La tarea corre en un hilo virtual: el decodificador es por hilo, así que se decodifica en el pool
+            return CompletableFuture.supplyAsync(() -> {
                 try {
-                    out.writeUTF("VIEW_RECORDING");
-                    out.writeUTF("VIEW_RECORDING");
-                    out.writeUTF("VIEW_RECORDING");
-                    out.writeUTF(diagnosisId + ",1"); // Empezar con el fragmento 0
-                    out.flush();
-
-
-
-                    //recordingData = in.readUTF();
-                    recordingData =receiveCompressedData(in);
-                    sequences = in.readUTF();
-                    success = true;
-                } catch (IOException ex) {
-                    recordingData = "Error loading recording: " + ex.getMessage();
-                }
-                return null;
-            }
-
-            @Override
-            protected void done() {
-                if (success) {
-                    viewRecordingPanel.setRecordingData(recordingData, sequences, diagnosisId);
-                    currentRecordingData = recordingData;
-                    currentSequences = sequences;
-                    changeState("VIEW_RECORDING");
-                } else {
-                    JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
-                            recordingData, "Error", JOptionPane.ERROR_MESSAGE);
+                    PayloadReader payload = reply.reader();
+                    double[][] recordingData = receiveSignalData(reply, payload);
+                    return new Recording(recordingData, payload.readString());
+                } catch (IOException e) {
+                    throw new CompletionException(e);
                 }
+            }, analyzer.executor()).get();
+        }, (recording, error) -> {
+            if (error == null) {
+                viewRecordingPanel.setRecordingData(recording.data(), recording.sequences(), diagnosisId);
+                currentRecordingData = recording.data();
+                currentSequences = recording.sequences();
+                changeState("VIEW_RECORDING");
+            } else {
+                JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
+                        "Error loading recording: " + error.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             }
-        }.execute();
+        });
     }
 
 
@@ -2985,101 +3466,65 @@ public class DoctorApplicationGUI extends JFrame {
             return;
         }
 
-        new SwingWorker<String, Void>() {
-            private boolean success = false;
-            private String errorMsg = null;
-
-            @Override
-            protected String doInBackground() {
-                try {
-                    out.writeUTF("DOWNLOAD_DIAGNOSISFILE");
-                    out.writeUTF(String.valueOf(diagnosisId));
-                    out.flush();
-
-                    String response = in.readUTF();
-                    if (!"DOWNLOAD_DIAGNOSISFILE_STARTED".equals(response)) {
-                        errorMsg = "Unexpected response from server -->" + response;
-                        return null;
-                    }
-
-                    String diagnosisContent = in.readUTF();
-                    List<DiagnosisFile> dfList = parseDiagnosisFileList(diagnosisContent);
-                    if (dfList.isEmpty()) {
-                        errorMsg = "No diagnosis file received from server.";
-                        return null;
-                    }
-                    DiagnosisFile df = dfList.get(0);
-
-                    if (currentPatient == null) {
-                        errorMsg = "No patient loaded in the UI.";
-                        return null;
-                    }
-
-                    StringBuilder sb = new StringBuilder();
-                    sb.append("DIAGNOSIS FILE\n\n");
-                    sb.append("Patient information\n");
-                    sb.append("Name: ").append(Optional.ofNullable(currentPatient.getNamePatient()).orElse("-")).append("\n");
-                    sb.append("Surname: ").append(Optional.ofNullable(currentPatient.getSurnamePatient()).orElse("-")).append("\n");
-                    sb.append("Health Insurance number: ").append(Optional.ofNullable(currentPatient.getHealthInsuranceNumberPatient()).map(Object::toString).orElse("-")).append("\n");
-                    sb.append("Sex: ").append(Optional.ofNullable(currentPatient.getSexPatient()).map(Object::toString).orElse("-")).append("\n");
-                    sb.append("Date of birth: ").append(Optional.ofNullable(currentPatient.getDobPatient()).map(d -> {
-                        try { return d.toString(); } catch (Exception ex) { return d.toString(); }
-                    }).orElse("-")).append("\n\n");
-
-
-                    sb.append("Diagnosis File information\n");
-                    sb.append("Symptoms: ").append(df.getSymptoms() == null ? "-" : df.getSymptoms().toString()).append("\n");
-                    sb.append("Diagnosis: ").append(Optional.ofNullable(df.getDiagnosis()).orElse("-")).append("\n");
-                    sb.append("Medication: ").append(Optional.ofNullable(df.getMedication()).orElse("-")).append("\n");
-                    sb.append("Date: ").append(Optional.ofNullable(df.getDate()).map(Object::toString).orElse("-")).append("\n");
-
-                    success = true;
-                    return sb.toString();
-                } catch (IOException ex) {
-                    errorMsg = "I/O error: " + ex.getMessage();
-                    return null;
-                } catch (Exception ex) {
-                    errorMsg = "Unexpected error: " + ex.getMessage();
-                    return null;
-                }
+        final Patient patient = currentPatient;
+        requests.submit(() -> {
+            Frame reply = request(OpCode.DOWNLOAD_DIAGNOSISFILE, new PayloadWriter().writeInt(diagnosisId));
+            List<DiagnosisFile> dfList = decodeDiagnosisFiles(reply);
+            if (dfList.isEmpty()) {
+                throw new IllegalStateException("No diagnosis file received from server.");
+            }
+            DiagnosisFile df = dfList.get(0);
+
+            if (patient == null) {
+                throw new IllegalStateException("No patient loaded in the UI.");
+            }
+
+            StringBuilder sb = new StringBuilder();
+            sb.append("DIAGNOSIS FILE\n\n");
+            sb.append("Patient information\n");
+            sb.append("Name: ").append(Optional.ofNullable(patient.getNamePatient()).orElse("-")).append("\n");
+            sb.append("Surname: ").append(Optional.ofNullable(patient.getSurnamePatient()).orElse("-")).append("\n");
+            sb.append("Health Insurance number: ").append(Optional.ofNullable(patient.getHealthInsuranceNumberPatient()).map(Object::toString).orElse("-")).append("\n");
+            sb.append("Sex: ").append(Optional.ofNullable(patient.getSexPatient()).map(Object::toString).orElse("-")).append("\n");
+            sb.append("Date of birth: ").append(Optional.ofNullable(patient.getDobPatient()).map(Object::toString).orElse("-")).append("\n\n");
+
+
+            sb.append("Diagnosis File information\n");
+            sb.append("Symptoms: ").append(df.getSymptoms() == null ? "-" : df.getSymptoms().toString()).append("\n");
+            sb.append("Diagnosis: ").append(Optional.ofNullable(df.getDiagnosis()).orElse("-")).append("\n");
+            sb.append("Medication: ").append(Optional.ofNullable(df.getMedication()).orElse("-")).append("\n");
+            sb.append("Date: ").append(Optional.ofNullable(df.getDate()).map(Object::toString).orElse("-")).append("\n");
+            return sb.toString();
+        }, (fileContent, error) -> {
+            if (error != null) {
+                String errorMsg = error instanceof IOException ? "I/O error: " + error.getMessage()
+                        : error instanceof IllegalStateException ? error.getMessage()
+                        : "Unexpected error: " + error.getMessage();
+                JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
+                        "Error downloading diagnosis: " + (errorMsg == null ? "Unknown error" : errorMsg),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                return;
             }
 
-            @Override
-            protected void done() {
-                try {
-                    String fileContent = get();
-                    if (!success) {
-                        JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
-                                "Error downloading diagnosis: " + (errorMsg == null ? "Unknown error" : errorMsg),
-                                "Error", JOptionPane.ERROR_MESSAGE);
-                        return;
-                    }
-
-                    String suggestedName = "diagnosis_" + diagnosisId + "_" + LocalDate.now() + ".txt";
-                    JFileChooser fileChooser = new JFileChooser();
-                    fileChooser.setSelectedFile(new File(suggestedName));
-                    int choice = fileChooser.showSaveDialog(DoctorApplicationGUI.this);
-                    if (choice == JFileChooser.APPROVE_OPTION) {
-                        File outFile = fileChooser.getSelectedFile();
-                        try (BufferedWriter bw = new BufferedWriter(new FileWriter(outFile))) {
-                            bw.write(fileContent);
-                        } catch (IOException ioEx) {
-                            JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
-                                    "Error saving file: " + ioEx.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                            return;
-                        }
-                        JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
-                                "Diagnosis downloaded successfully to:\n" + outFile.getAbsolutePath(),
-                                "Success", JOptionPane.INFORMATION_MESSAGE);
-                        System.out.println("Saved diagnosis file to: " + outFile.getAbsolutePath());
-                    }
-                } catch (Exception ex) {
+            String suggestedName = "diagnosis_" + diagnosisId + "_" + LocalDate.now() + ".txt";
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setSelectedFile(new File(suggestedName));
+            int choice = fileChooser.showSaveDialog(DoctorApplicationGUI.this);
+            if (choice == JFileChooser.APPROVE_OPTION) {
+                File outFile = fileChooser.getSelectedFile();
+                try (BufferedWriter bw = new BufferedWriter(new FileWriter(outFile))) {
+                    bw.write(fileContent);
+                } catch (IOException ioEx) {
                     JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
-                            "Error while finishing download: " + ex.getMessage(),
-                            "Error", JOptionPane.ERROR_MESSAGE);
+                            "Error saving file: " + ioEx.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
                 }
+                JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
+                        "Diagnosis downloaded successfully to:\n" + outFile.getAbsolutePath(),
+                        "Success", JOptionPane.INFORMATION_MESSAGE);
+                System.out.println("Saved diagnosis file to: " + outFile.getAbsolutePath());
             }
-        }.execute();
+        });
     }
 
     private void handleDownloadRecording() {
@@ -3089,55 +3534,44 @@ public class DoctorApplicationGUI extends JFrame {
             return;
         }
 
-        new SwingWorker<Void, Void>() {
-            private boolean success = false;
-
-            @Override
-            protected Void doInBackground() {
-                try {
-                    out.writeUTF("DOWNLOAD_RECORDING");
-                    out.writeUTF(String.valueOf(diagnosisId));
-                    out.flush();
-
-                    String response = in.readUTF();
-                    if ("DOWNLOAD_RECORDING_STARTED".equals(response)) {
-                        String ecgData = in.readUTF();
-                        String edaData = in.readUTF();
-                        String finishResponse = in.readUTF();
-
-                        if ("DOWNLOAD_FINISHED".equals(finishResponse)) {
-                            String content = "ECG Data:\n" + ecgData + "\n\nEDA Data:\n" + edaData;
-                            saveToFile("recording_" + diagnosisId + "_" + LocalDate.now() + ".txt", content);
-                            success = true;
-                        }
-                    }
-                } catch (IOException ex) {
-                    // Error ya manejado en saveToFile
-                }
-                return null;
-            }
-
-            @Override
-            protected void done() {
-                if (success) {
-                    JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
-                            "Recording downloaded successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
-                } else {
-                    JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
-                            "Error downloading recording", "Error", JOptionPane.ERROR_MESSAGE);
-                }
+        requests.submit(() -> {
+            Frame reply = request(OpCode.DOWNLOAD_RECORDING, new PayloadWriter().writeInt(diagnosisId));
+            PayloadReader payload = reply.reader();
+            String ecgData;
+            String edaData;
+            if (reply.hasFlag(Frame.FLAG_GZIP)) {
+                ecgData = receiveCompressedData(payload);
+                edaData = receiveCompressedData(payload);
+            } else {
+                SignalBuffer signals = payload.readSignalBuffer();
+                if (signals == null) throw new ProtocolException("Missing signal data");
+                ecgData = Arrays.toString(signals.toIntArray(SignalBuffer.CHANNEL_ECG));
+                edaData = Arrays.toString(signals.toIntArray(SignalBuffer.CHANNEL_EDA));
+            }
+
+            return "ECG Data:\n" + ecgData + "\n\nEDA Data:\n" + edaData;
+        }, (content, error) -> {
+            if (error == null) {
+                saveToFile("recording_" + diagnosisId + "_" + LocalDate.now() + ".txt", content);
+                JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
+                        "Recording downloaded successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(DoctorApplicationGUI.this,
+                        "Error downloading recording", "Error", JOptionPane.ERROR_MESSAGE);
             }
-        }.execute();
+        });
     }
 
     private void handleRecentlyFinish() {
+        unseenReady.clear();
+        doctorMenuPanel.setReadyCount(0);
         recentlyFinishPanel.loadRecentlyFinished();
         changeState("RECENTLY_FINISH");
     }
 
     private void handleCompleteDiagnosis() {
         DiagnosisFile df = recentlyFinishPanel.getSelectedDiagnosisFile();
-        int dfId= df.getId();
+        int dfId = df == null ? -1 : df.getId();
         System.out.println(dfId);
         currentDiagnosisFileId=dfId;
         if (dfId == -1) {
@@ -3145,24 +3579,8 @@ public class DoctorApplicationGUI extends JFrame {
             return;
         }
         try {
-            out.writeUTF("COMPLETE_DIAGNOSISFILE");
-            out.writeInt(dfId);
-            out.flush();
-            String patinetDFString= in.readUTF();
-
-            String[] datos = patinetDFString.split(",");
-
-            String name = datos[0];
-            String surname = datos[1];
-
-
-            LocalDateTime dofLDT = LocalDate.parse(datos[2]).atStartOfDay();
-            Date dob = Date.from(dofLDT.atZone(ZoneId.systemDefault()).toInstant());
-            int hin = Integer.parseInt(datos[3]);
-            Sex sex = Sex.valueOf(datos[4]);
-
-            Patient patientDF= new Patient(name, surname, dob, sex, hin);
-            currentPatient=patientDF;
+            Frame reply = request(OpCode.COMPLETE_DIAGNOSISFILE, new PayloadWriter().writeInt(dfId));
+            currentPatient = reply.reader().readPatient();
 
 
         } catch (IOException e) {
@@ -3194,17 +3612,16 @@ public class DoctorApplicationGUI extends JFrame {
         // Enviar al servidor
         try {
 
-            // Enviar comando COMPLETE_DIAGNOSISFILE
-
-            out.writeUTF(diagnosis);
-            out.writeUTF(medication);
-            out.flush();
+            Frame reply = request(OpCode.SAVE_DIAGNOSISFILE, new PayloadWriter()
+                    .writeInt(currentDiagnosisFileId)
+                    .writeString(diagnosis)
+                    .writeString(medication));
 
             // Recibir confirmación
-            String response = in.readUTF();
-            System.out.println(response);
+            boolean saved = reply.reader().readBoolean();
+            System.out.println(reply);
 
-            if ("COMPLETE_DIAGNOSISFILE_SAVED".equals(response)) {
+            if (saved) {
                 JOptionPane.showMessageDialog(this, "Diagnosis saved successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
                 handleBackToRecentlyFinishFromComplete();
             } else {
@@ -3219,13 +3636,14 @@ public class DoctorApplicationGUI extends JFrame {
 
 
     private void handleLogout() {
-        try {
-            out.writeUTF("LOG_OUT");
-            out.flush();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        FrameTransport c = connection;
+        if (c != null) c.send(OpCode.RECORDING_READY_UNSUBSCRIBE, null);
+        unseenReady.clear();
+        doctorMenuPanel.setReadyCount(0);
+        notifyServer(OpCode.LOG_OUT);
         currentUsername = null;
+        closeLocalCache();
+        recentlyFinishPanel.resetRecentlyFinished();
         //cleanupResources();
         changeState("AUTH");
     }
@@ -3337,40 +3755,26 @@ public class DoctorApplicationGUI extends JFrame {
             }
             btnConnect.setEnabled(false);
             status.setText("Connecting...");
-            new SwingWorker<Void, Void>() {
-                private String msg = null;
-                private boolean ok = false;
-
-                @Override
-                protected Void doInBackground() {
-                    try {
-                        connectToServer(host, port);
-                        ok = true;
-                        msg = "Connected to server";
-                    } catch (IOException ex) {
-                        msg = "Connect failed: " + ex.getMessage();
-                        cleanupResources();
-                    }
-                    return null;
-                }
-
-                @Override
-                protected void done() {
-                    btnConnect.setEnabled(true);
+            requests.submit(() -> {
+                connectToServer(host, port);
+                return "Connected to server";
+            }, (msg, error) -> {
+                btnConnect.setEnabled(true);
+                if (error == null) {
                     status.setText(msg);
-                    if (ok) {
-                        lastHost = host;
-                        lastPort = port;
-                        connectedFlag = true;
-                        authPanel.setLoginEnabled(true);
-                        authPanel.setRegisterEnabled(true);
-                        JOptionPane.showMessageDialog(dlg, "Connected!", "Info", JOptionPane.INFORMATION_MESSAGE);
-                        dlg.dispose();
-                    } else {
-                        JOptionPane.showMessageDialog(dlg, msg, "Error", JOptionPane.ERROR_MESSAGE);
-                    }
+                    lastHost = host;
+                    lastPort = port;
+                    connectedFlag = true;
+                    authPanel.setLoginEnabled(true);
+                    authPanel.setRegisterEnabled(true);
+                    JOptionPane.showMessageDialog(dlg, "Connected!", "Info", JOptionPane.INFORMATION_MESSAGE);
+                    dlg.dispose();
+                } else {
+                    cleanupResources();
+                    status.setText("Connect failed: " + error.getMessage());
+                    JOptionPane.showMessageDialog(dlg, "Connect failed: " + error.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
                 }
-            }.execute();
+            });
         });
 
         dlg.setContentPane(p);
@@ -3380,23 +3784,100 @@ public class DoctorApplicationGUI extends JFrame {
 
     private synchronized void connectToServer(String host, int port) throws IOException {
         cleanupResources();
-        socket = new Socket(host, port);
-        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
-        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
-        out.writeUTF("Doctor");
-        out.flush();
+        connection = NioTransport.connect(host, port, "Doctor");
+        connection.setPushListener(this::handlePush);
+        Frame hello = request(OpCode.HELLO, new PayloadWriter().writeInt(Frame.PROTOCOL_VERSION));
+        int serverVersion = hello.reader().readInt();
+        if (serverVersion != Frame.PROTOCOL_VERSION) {
+            cleanupResources();
+            throw new ProtocolException("Server speaks protocol version " + serverVersion);
+        }
         lastHost = host;
         lastPort = port;
         connectedFlag = true;
     }
 
+    // Envía una petición y espera su respuesta; un frame ERROR se lanza como ProtocolException
+    // No se sincroniza: el multiplexor empareja cada respuesta con su petición
+    private Frame request(OpCode opCode, PayloadWriter payload) throws IOException {
+        FrameTransport c = connection;
+        if (c == null) {
+            throw new IOException("Not connected to server");
+        }
+        return c.request(opCode, payload);
+    }
+
+    // Avisos de grabaciones terminadas; servidores sin suscripción responden ERROR y se sigue refrescando a mano
+    private void subscribeRecordingReady() {
+        FrameTransport c = connection;
+        if (c == null) return;
+        c.send(OpCode.RECORDING_READY_SUBSCRIBE, null).whenComplete((reply, error) -> {
+            if (error != null) {
+                System.out.println("Recording notifications not available: " + error.getMessage());
+            }
+        });
+    }
+
+    // En el EDT: actualiza la worklist y, si el médico no la está mirando, el contador del menú
+    private void onRecordingReady(RecordingReady event) {
+        if (currentUsername == null) return;
+        boolean isNew = recentlyFinishPanel.syncRecordingReady(event);
+        if (isNew && !"RECENTLY_FINISH".equals(currentState) && unseenReady.add(event.diagnosisFileId())) {
+            doctorMenuPanel.setReadyCount(unseenReady.size());
+        }
+    }
+
+    // Mensajes que el servidor envía sin petición previa; se ejecuta en el hilo lector de la conexión
+    private void handlePush(Frame frame) {
+        try {
+            switch (frame.getOpCode()) {
+                case LIVE_FRAMES:
+                    liveMonitorPanel.onLiveFrames(frame);
+                    break;
+                case RECORDING_READY:
+                    RecordingReady event = RecordingReady.read(frame.reader());
+                    SwingUtilities.invokeLater(() -> onRecordingReady(event));
+                    break;
+                default:
+                    System.out.println("Unexpected push frame: " + frame);
+            }
+        } catch (IOException e) {
+            System.out.println("Invalid push frame: " + e.getMessage());
+        }
+    }
+
+    // Comandos de navegación: el servidor no responde
+    private void notifyServer(OpCode opCode) {
+        FrameTransport c = connection;
+        if (c == null) return;
+        try {
+            c.notify(opCode);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Un servidor antiguo puede seguir enviando el toString() de la lista (FLAG_TEXT)
+    private static List<Patient> decodePatients(Frame reply) throws IOException {
+        if (reply.hasFlag(Frame.FLAG_TEXT)) {
+            return parsePatientList(reply.payloadAsText());
+        }
+        return reply.reader().readPatientList();
+    }
+
+    private static List<DiagnosisFile> decodeDiagnosisFiles(Frame reply) throws IOException {
+        if (reply.hasFlag(Frame.FLAG_TEXT)) {
+            return parseDiagnosisFileList(reply.payloadAsText());
+        }
+        return reply.reader().readDiagnosisFileList();
+    }
+
     private void cleanupResources() {
-        try { if (out != null) out.close(); } catch (IOException ignored) {}
-        try { if (in != null) in.close(); } catch (IOException ignored) {}
-        try { if (socket != null) socket.close(); } catch (IOException ignored) {}
-        out = null;
-        in = null;
-        socket = null;
+        requests.cancelAll();
+        closeLocalCache();
+        if (recentlyFinishPanel != null) recentlyFinishPanel.resetRecentlyFinished();
+        if (connection != null) connection.close();
+        connection = null;
         connectedFlag = false;
     }
 
@@ -0,0 +1,139 @@
+package executable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of decoded recording fragments, keyed by (diagnosisFileId, fragmentIndex)
+ * and bounded by the bytes of the sample arrays it holds.
+ * Thread safe: the prefetch callbacks fill it from background threads.
+ */
+public class FragmentCache {
+
+    private final long maxBytes;
+    // El primero es el menos usado recientemente: get() y put() mueven la entrada al final
+    private final LinkedHashMap<Long, double[][]> entries = new LinkedHashMap<>(64, 0.75f);
+    private long sizeBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public FragmentCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be > 0");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    public static long key(int diagnosisFileId, int fragmentIndex) {
+        return ((long) diagnosisFileId << 32) | (fragmentIndex & 0xFFFFFFFFL);
+    }
+
+    public synchronized double[][] get(int diagnosisFileId, int fragmentIndex) {
+        long key = key(diagnosisFileId, fragmentIndex);
+        double[][] data = entries.remove(key);
+        if (data != null) {
+            entries.put(key, data);
+            hits++;
+        } else {
+            misses++;
+        }
+        return data;
+    }
+
+    // Como get(), pero sin contar acierto/fallo ni cambiar el orden LRU (lecturas en segundo plano)
+    public synchronized double[][] peek(int diagnosisFileId, int fragmentIndex) {
+        return entries.get(key(diagnosisFileId, fragmentIndex));
+    }
+
+    // No cuenta como acierto/fallo ni cambia el orden LRU (lo usa la precarga)
+    public synchronized boolean contains(int diagnosisFileId, int fragmentIndex) {
+        return entries.containsKey(key(diagnosisFileId, fragmentIndex));
+    }
+
+    public synchronized void put(int diagnosisFileId, int fragmentIndex, double[][] data) {
+        long bytes = sizeOf(data);
+        if (bytes > maxBytes) {
+            return; // no cabe ni solo
+        }
+        long key = key(diagnosisFileId, fragmentIndex);
+        double[][] previous = entries.remove(key);
+        entries.put(key, data);
+        if (previous != null) {
+            sizeBytes -= sizeOf(previous);
+        }
+        sizeBytes += bytes;
+        Iterator<Map.Entry<Long, double[][]>> it = entries.entrySet().iterator();
+        while (sizeBytes > maxBytes && it.hasNext()) {
+            Map.Entry<Long, double[][]> eldest = it.next();
+            sizeBytes -= sizeOf(eldest.getValue());
+            it.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void invalidate(int diagnosisFileId) {
+        Iterator<Map.Entry<Long, double[][]>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, double[][]> e = it.next();
+            if ((int) (e.getKey() >>> 32) == diagnosisFileId) {
+                sizeBytes -= sizeOf(e.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        sizeBytes = 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    private static long sizeOf(double[][] data) {
+        long bytes = 16;
+        for (double[] channel : data) {
+            bytes += 16 + 8L * channel.length;
+        }
+        return bytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "FragmentCache{" +
+                "entries=" + entries.size() +
+                ", bytes=" + sizeBytes + "/" + maxBytes +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                '}';
+    }
+}
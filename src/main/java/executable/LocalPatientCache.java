@@ -0,0 +1,286 @@
+package executable;
+
+import common.enums.Sex;
+import common.protocol.PayloadReader;
+import common.protocol.PayloadWriter;
+import common.protocol.ProtocolException;
+import pojos.DiagnosisFile;
+import pojos.Patient;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Read-through cache of the doctor's patients and their diagnosis files in a local SQLite file
+ * (one per server and doctor). Every entry is stored with the version the server gave it, so
+ * VIEW_PATIENT_IF_MODIFIED / SEARCH_PATIENT_IF_MODIFIED only transfer data that changed.
+ *
+ * WAL journal and prepared statements created once; writes are batched in one transaction.
+ * Thread safe: all methods are synchronized on the single JDBC connection.
+ */
+public class LocalPatientCache implements AutoCloseable {
+
+    public static final long NO_VERSION = -1;
+    private static final String PATIENT_LIST_VERSION = "patient_list_version";
+
+    private final Connection db;
+    private final PreparedStatement selectPatient;
+    private final PreparedStatement selectDiagnosisFiles;
+    private final PreparedStatement upsertPatient;
+    private final PreparedStatement deleteDiagnosisFiles;
+    private final PreparedStatement insertDiagnosisFile;
+    private final PreparedStatement selectPage;
+    private final PreparedStatement insertKey;
+    private final PreparedStatement selectMeta;
+    private final PreparedStatement upsertMeta;
+
+    public record Cached(Patient patient, long version) {
+    }
+
+    private LocalPatientCache(Connection db) throws SQLException {
+        this.db = db;
+        try (Statement st = db.createStatement()) {
+            st.execute("PRAGMA journal_mode=WAL");
+            st.execute("PRAGMA synchronous=NORMAL");
+            st.execute("CREATE TABLE IF NOT EXISTS patient ("
+                    + "hin INTEGER PRIMARY KEY, id INTEGER NOT NULL, name TEXT, surname TEXT, dni TEXT,"
+                    + " dob INTEGER, email TEXT, sex TEXT, phone INTEGER, emergency_contact INTEGER,"
+                    + " doctor_id INTEGER, mac INTEGER, user_id INTEGER, version INTEGER NOT NULL)");
+            st.execute("CREATE INDEX IF NOT EXISTS patient_by_id ON patient(id)");
+            st.execute("CREATE TABLE IF NOT EXISTS diagnosis_file ("
+                    + "id INTEGER PRIMARY KEY, patient_id INTEGER NOT NULL, symptoms BLOB, diagnosis TEXT,"
+                    + " medication TEXT, date INTEGER, status INTEGER NOT NULL)");
+            st.execute("CREATE INDEX IF NOT EXISTS diagnosis_file_by_patient ON diagnosis_file(patient_id)");
+            // Lista de HIN tal como la pagina el servidor (orden de texto)
+            st.execute("CREATE TABLE IF NOT EXISTS patient_key (hin TEXT PRIMARY KEY) WITHOUT ROWID");
+            st.execute("CREATE TABLE IF NOT EXISTS meta (key TEXT PRIMARY KEY, value INTEGER NOT NULL)");
+        }
+        selectPatient = db.prepareStatement("SELECT * FROM patient WHERE hin = ?");
+        selectDiagnosisFiles = db.prepareStatement("SELECT * FROM diagnosis_file WHERE patient_id = ? ORDER BY id");
+        upsertPatient = db.prepareStatement("INSERT OR REPLACE INTO patient (hin, id, name, surname, dni, dob, email,"
+                + " sex, phone, emergency_contact, doctor_id, mac, user_id, version)"
+                + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        deleteDiagnosisFiles = db.prepareStatement("DELETE FROM diagnosis_file WHERE patient_id = ?");
+        insertDiagnosisFile = db.prepareStatement("INSERT OR REPLACE INTO diagnosis_file (id, patient_id, symptoms,"
+                + " diagnosis, medication, date, status) VALUES (?, ?, ?, ?, ?, ?, ?)");
+        selectPage = db.prepareStatement("SELECT hin FROM patient_key WHERE hin > ? ORDER BY hin LIMIT ?");
+        insertKey = db.prepareStatement("INSERT OR IGNORE INTO patient_key (hin) VALUES (?)");
+        selectMeta = db.prepareStatement("SELECT value FROM meta WHERE key = ?");
+        upsertMeta = db.prepareStatement("INSERT OR REPLACE INTO meta (key, value) VALUES (?, ?)");
+    }
+
+    public static LocalPatientCache open(Path file) throws SQLException {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        } catch (IOException e) {
+            throw new SQLException("Cannot create " + file.getParent(), e);
+        }
+        Connection db = DriverManager.getConnection("jdbc:sqlite:" + file.toAbsolutePath());
+        try {
+            return new LocalPatientCache(db);
+        } catch (SQLException e) {
+            db.close();
+            throw e;
+        }
+    }
+
+    // ~/.cardiolink/cache-<host>_<port>-<usuario>.db: cada médico y servidor tiene su fichero
+    public static Path defaultFile(String host, int port, String username) {
+        String name = ("cache-" + host + "_" + port + "-" + username).replaceAll("[^A-Za-z0-9._-]", "_");
+        return Paths.get(System.getProperty("user.home"), ".cardiolink", name + ".db");
+    }
+
+    // ---- Pacientes ----
+
+    public synchronized Cached findPatient(int healthInsuranceNumber) throws SQLException {
+        Patient p;
+        long version;
+        selectPatient.setInt(1, healthInsuranceNumber);
+        try (ResultSet rs = selectPatient.executeQuery()) {
+            if (!rs.next()) return null;
+            p = new Patient();
+            p.setHealthInsuranceNumberPatient(rs.getInt("hin"));
+            p.setIdPatient(rs.getInt("id"));
+            p.setNamePatient(rs.getString("name"));
+            p.setSurnamePatient(rs.getString("surname"));
+            p.setDniPatient(rs.getString("dni"));
+            long dob = rs.getLong("dob");
+            p.setDobPatient(rs.wasNull() ? null : new Date(dob));
+            p.setEmailPatient(rs.getString("email"));
+            String sex = rs.getString("sex");
+            p.setSexPatient(sex == null ? null : Sex.valueOf(sex));
+            p.setPhoneNumberPatient(rs.getInt("phone"));
+            p.setEmergencyContactPatient(rs.getInt("emergency_contact"));
+            p.setDoctorId(rs.getInt("doctor_id"));
+            p.setMACadress(rs.getInt("mac"));
+            p.setUserId(rs.getInt("user_id"));
+            version = rs.getLong("version");
+        }
+        p.setDiagnosisList(findDiagnosisFiles(p.getIdPatient()));
+        return new Cached(p, version);
+    }
+
+    private List<DiagnosisFile> findDiagnosisFiles(int patientId) throws SQLException {
+        List<DiagnosisFile> files = new ArrayList<>();
+        selectDiagnosisFiles.setInt(1, patientId);
+        try (ResultSet rs = selectDiagnosisFiles.executeQuery()) {
+            while (rs.next()) {
+                DiagnosisFile df = new DiagnosisFile();
+                df.setId(rs.getInt("id"));
+                df.setPatientId(rs.getInt("patient_id"));
+                byte[] symptoms = rs.getBytes("symptoms");
+                try {
+                    df.setSymptoms(symptoms == null ? null : new PayloadReader(symptoms).readStringList());
+                } catch (ProtocolException e) {
+                    throw new SQLException("Corrupt symptoms of diagnosis file " + df.getId(), e);
+                }
+                df.setDiagnosis(rs.getString("diagnosis"));
+                df.setMedication(rs.getString("medication"));
+                long day = rs.getLong("date");
+                df.setDate(rs.wasNull() ? null : LocalDate.ofEpochDay(day));
+                df.setStatus(rs.getInt("status") != 0);
+                files.add(df);
+            }
+        }
+        return files;
+    }
+
+    // Sustituye el paciente y todos sus diagnosis files
+    public synchronized void storePatient(Patient p, long version) throws SQLException {
+        inTransaction(() -> {
+            upsertPatient.setInt(1, p.getHealthInsuranceNumberPatient());
+            upsertPatient.setInt(2, p.getIdPatient());
+            upsertPatient.setString(3, p.getNamePatient());
+            upsertPatient.setString(4, p.getSurnamePatient());
+            upsertPatient.setString(5, p.getDniPatient());
+            if (p.getDobPatient() == null) upsertPatient.setNull(6, Types.INTEGER);
+            else upsertPatient.setLong(6, p.getDobPatient().getTime());
+            upsertPatient.setString(7, p.getEmailPatient());
+            upsertPatient.setString(8, p.getSexPatient() == null ? null : p.getSexPatient().name());
+            upsertPatient.setInt(9, p.getPhoneNumberPatient());
+            upsertPatient.setInt(10, p.getEmergencyContactPatient());
+            upsertPatient.setInt(11, p.getDoctorId());
+            upsertPatient.setInt(12, p.getMACadress());
+            upsertPatient.setInt(13, p.getUserId());
+            upsertPatient.setLong(14, version);
+            upsertPatient.executeUpdate();
+
+            deleteDiagnosisFiles.setInt(1, p.getIdPatient());
+            deleteDiagnosisFiles.executeUpdate();
+            if (p.getDiagnosisList() != null && !p.getDiagnosisList().isEmpty()) {
+                for (DiagnosisFile df : p.getDiagnosisList()) {
+                    insertDiagnosisFile.setInt(1, df.getId());
+                    insertDiagnosisFile.setInt(2, p.getIdPatient());
+                    if (df.getSymptoms() == null) insertDiagnosisFile.setNull(3, Types.BLOB);
+                    else insertDiagnosisFile.setBytes(3, new PayloadWriter().writeStringList(df.getSymptoms()).toByteArray());
+                    insertDiagnosisFile.setString(4, df.getDiagnosis());
+                    insertDiagnosisFile.setString(5, df.getMedication());
+                    if (df.getDate() == null) insertDiagnosisFile.setNull(6, Types.INTEGER);
+                    else insertDiagnosisFile.setLong(6, df.getDate().toEpochDay());
+                    insertDiagnosisFile.setInt(7, df.getStatus() ? 1 : 0);
+                    insertDiagnosisFile.addBatch();
+                }
+                insertDiagnosisFile.executeBatch();
+            }
+        });
+    }
+
+    // ---- Lista de pacientes (HIN) ----
+
+    public synchronized long getPatientListVersion() throws SQLException {
+        return getMeta(PATIENT_LIST_VERSION);
+    }
+
+    public synchronized boolean hasPatientList() throws SQLException {
+        return getMeta(PATIENT_LIST_VERSION) != NO_VERSION;
+    }
+
+    /**
+     * Replaces the list of health insurance numbers. Patients that left the list are
+     * dropped together with their diagnosis files.
+     */
+    public synchronized void storePatientList(long version, List<String> keys) throws SQLException {
+        inTransaction(() -> {
+            try (Statement st = db.createStatement()) {
+                st.executeUpdate("DELETE FROM patient_key");
+            }
+            for (String key : keys) {
+                if (key == null || key.isBlank()) continue;
+                insertKey.setString(1, key.trim());
+                insertKey.addBatch();
+            }
+            insertKey.executeBatch();
+            try (Statement st = db.createStatement()) {
+                st.executeUpdate("DELETE FROM diagnosis_file WHERE patient_id IN (SELECT id FROM patient"
+                        + " WHERE CAST(hin AS TEXT) NOT IN (SELECT hin FROM patient_key))");
+                st.executeUpdate("DELETE FROM patient WHERE CAST(hin AS TEXT) NOT IN (SELECT hin FROM patient_key)");
+            }
+            setMeta(PATIENT_LIST_VERSION, version);
+        });
+    }
+
+    // Misma semántica que SEARCH_PATIENT_PAGE: como mucho limit claves estrictamente después de afterKey
+    public synchronized PagedPatientListModel.Page patientPage(String afterKey, int limit) throws SQLException {
+        List<String> keys = new ArrayList<>(limit);
+        selectPage.setString(1, afterKey == null ? "" : afterKey);
+        selectPage.setInt(2, limit + 1);
+        try (ResultSet rs = selectPage.executeQuery()) {
+            while (rs.next()) keys.add(rs.getString(1));
+        }
+        boolean hasMore = keys.size() > limit;
+        if (hasMore) keys.remove(limit);
+        return new PagedPatientListModel.Page(keys, hasMore);
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            db.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing local cache: " + e.getMessage());
+        }
+    }
+
+    private long getMeta(String key) throws SQLException {
+        selectMeta.setString(1, key);
+        try (ResultSet rs = selectMeta.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : NO_VERSION;
+        }
+    }
+
+    private void setMeta(String key, long value) throws SQLException {
+        upsertMeta.setString(1, key);
+        upsertMeta.setLong(2, value);
+        upsertMeta.executeUpdate();
+    }
+
+    private interface SqlWork {
+        void run() throws SQLException;
+    }
+
+    private void inTransaction(SqlWork work) throws SQLException {
+        db.setAutoCommit(false);
+        try {
+            work.run();
+            db.commit();
+        } catch (SQLException | RuntimeException e) {
+            db.rollback();
+            throw e;
+        } finally {
+            db.setAutoCommit(true);
+        }
+    }
+}
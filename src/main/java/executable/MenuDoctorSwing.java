@@ -1,11 +1,20 @@
 package executable;
 
+import common.protocol.Frame;
+import common.protocol.FrameIO;
+import common.protocol.OpCode;
+import common.protocol.PayloadReader;
+import common.protocol.PayloadWriter;
+import common.protocol.ProtocolException;
+
 import javax.swing.*;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.plaf.basic.BasicButtonUI;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -22,6 +31,7 @@ public class MenuDoctorSwing extends JFrame {
     private Socket socket;
     private DataOutputStream out;
     private DataInputStream in;
+    private int nextRequestId = 0;
 
     private JButton btnLogin;
     private JButton btnRegister;
@@ -203,8 +213,8 @@ public class MenuDoctorSwing extends JFrame {
                 protected Void doInBackground() {
                     try {
                         Socket s = new Socket(host, port);
-                        DataOutputStream o = new DataOutputStream(s.getOutputStream());
-                        DataInputStream i = new DataInputStream(s.getInputStream());
+                        DataOutputStream o = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                        DataInputStream i = new DataInputStream(new BufferedInputStream(s.getInputStream()));
 
                         // Identificarse como Doctor para que el servidor cree el hilo correcto
                         o.writeUTF("Doctor");
@@ -214,7 +224,9 @@ public class MenuDoctorSwing extends JFrame {
                             socket = s;
                             out = o;
                             in = i;
+                            nextRequestId = 0;
                         }
+                        request(OpCode.HELLO, new PayloadWriter().writeInt(Frame.PROTOCOL_VERSION));
                     } catch (Exception ex) {
                         error = ex;
                     }
@@ -280,22 +292,17 @@ public class MenuDoctorSwing extends JFrame {
                         return false;
                     }
                     try {
-                        synchronized (out) {
-                            out.writeUTF("LOGIN");
-                            out.writeUTF(user);
-                            out.writeUTF(pass);
-                            out.flush();
-
-                            String response = in.readUTF();
-                            if ("LOGIN_RESULT".equals(response)) {
-                                boolean ok = in.readBoolean();
-                                serverMsg = in.readUTF();   // mensaje del servidor
-                                return ok;
-                            } else {
-                                serverMsg = "Unexpected response: " + response;
-                                return false;
-                            }
-                        }
+                        Frame reply = request(OpCode.LOGIN, new PayloadWriter()
+                                .writeString(user)
+                                .writeString(pass));
+
+                        PayloadReader payload = reply.reader();
+                        boolean ok = payload.readBoolean();
+                        serverMsg = payload.readString();   // mensaje del servidor
+                        return ok;
+                    } catch (ProtocolException ex) {
+                        serverMsg = ex.getMessage();
+                        return false;
                     } catch (IOException ex) {
                         serverMsg = "I/O error: " + ex.getMessage();
                         return false;
@@ -415,32 +422,24 @@ public class MenuDoctorSwing extends JFrame {
                         return false;
                     }
                     try {
-                        synchronized (out) {
-                            out.writeUTF("SIGNUP");
-                            out.writeUTF(user);
-                            out.writeUTF(pass);
-                            out.writeUTF(name);
-                            out.writeUTF(surname);
-                            out.writeUTF(birthday);
-                            out.writeUTF(sex);
-                            out.writeUTF(email);
-                            out.writeUTF(specialty);
-                            out.writeUTF(license);
-                            out.writeUTF(dni);
-                            out.flush();
-
-                            String resp = in.readUTF();
-                            if ("ACK".equals(resp)) {
-                                serverMsg = in.readUTF();
-                                return true;
-                            } else if ("ERROR".equals(resp)) {
-                                serverMsg = in.readUTF();
-                                return false;
-                            } else {
-                                serverMsg = "Unexpected response: " + resp;
-                                return false;
-                            }
-                        }
+                        Frame reply = request(OpCode.SIGNUP, new PayloadWriter()
+                                .writeString(user)
+                                .writeString(pass)
+                                .writeString(name)
+                                .writeString(surname)
+                                .writeString(birthday)
+                                .writeString(sex)
+                                .writeString(email)
+                                .writeString(specialty)
+                                .writeString(license)
+                                .writeString(dni));
+
+                        serverMsg = reply.reader().readString();
+                        return true;
+                    } catch (ProtocolException ex) {
+                        // El servidor responde con un frame ERROR
+                        serverMsg = ex.getMessage();
+                        return false;
                     } catch (IOException ex) {
                         serverMsg = "I/O error: " + ex.getMessage();
                         return false;
@@ -500,12 +499,34 @@ public class MenuDoctorSwing extends JFrame {
     }
 
     // Clase interna Pantalla2 con desplegable buscable de pacientes
+    // Petición/respuesta con frames; un solo hilo a la vez usa el socket
+    private Frame request(OpCode opCode, PayloadWriter payload) throws IOException {
+        DataOutputStream o;
+        DataInputStream i;
+        synchronized (this) {
+            o = out;
+            i = in;
+        }
+        if (o == null || i == null) {
+            throw new IOException("No server connection");
+        }
+        synchronized (o) {
+            return FrameIO.exchange(o, i, new Frame(opCode, 0, ++nextRequestId, payload));
+        }
+    }
+
     private class Pantalla2 extends JFrame {
+        private static final int SEARCH_DEBOUNCE_MS = 120;
+        private static final int MAX_RESULTS = 500;
         private class Patient {
             final int id;
             final String name;
             final String surname;
-            Patient(int id, String name, String surname) { this.id = id; this.name = name; this.surname = surname; }
+            final String dni;
+            final int hin;
+            Patient(int id, String name, String surname, String dni, int hin) {
+                this.id = id; this.name = name; this.surname = surname; this.dni = dni; this.hin = hin;
+            }
             String display() { return name + " " + surname + " (id:" + id + ")"; }
         }
 
@@ -589,6 +610,7 @@ public class MenuDoctorSwing extends JFrame {
             DefaultListModel<String> listModel = new DefaultListModel<>();
             JList<String> resultsList = new JList<>(listModel);
             resultsList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+            resultsList.setPrototypeCellValue("Nombre Apellido Apellido (id:000000)");
             JScrollPane scroll = new JScrollPane(resultsList);
             p.add(scroll, BorderLayout.CENTER);
 
@@ -601,29 +623,30 @@ public class MenuDoctorSwing extends JFrame {
 
             dlg.setContentPane(p);
 
+            // Solo se tocan en el EDT: done() los publica cuando la carga ha terminado
             final List<Patient> allPatients = new ArrayList<>();
             final List<Patient> displayedPatients = new ArrayList<>();
+            final PatientSearchIndex[] index = new PatientSearchIndex[1];
 
+            // La búsqueda va sobre el índice; la lista solo cambia en lo que difiere del resultado anterior
             Runnable filterList = () -> {
-                String q = txtSearch.getText().trim().toLowerCase();
-                SwingUtilities.invokeLater(() -> {
-                    listModel.clear();
-                    displayedPatients.clear();
-                    for (Patient pt : allPatients) {
-                        String combined = (pt.name + " " + pt.surname).toLowerCase();
-                        if (q.isEmpty() || combined.contains(q)) {
-                            listModel.addElement(pt.display());
-                            displayedPatients.add(pt);
-                        }
-                    }
-                });
+                if (index[0] == null) return; // aún cargando
+                int[] hits = index[0].search(txtSearch.getText(), MAX_RESULTS);
+                List<Patient> next = new ArrayList<>(hits.length);
+                for (int hit : hits) next.add(allPatients.get(hit));
+                updateResults(listModel, displayedPatients, next);
             };
 
+            // Debounce: se busca cuando el usuario deja de teclear
+            Timer debounce = new Timer(SEARCH_DEBOUNCE_MS, ev -> filterList.run());
+            debounce.setRepeats(false);
+
             txtSearch.getDocument().addDocumentListener(new DocumentListener() {
-                public void insertUpdate(DocumentEvent e) { filterList.run(); }
-                public void removeUpdate(DocumentEvent e) { filterList.run(); }
-                public void changedUpdate(DocumentEvent e) { filterList.run(); }
+                public void insertUpdate(DocumentEvent e) { debounce.restart(); }
+                public void removeUpdate(DocumentEvent e) { debounce.restart(); }
+                public void changedUpdate(DocumentEvent e) { debounce.restart(); }
             });
+            txtSearch.addActionListener(ev -> { debounce.stop(); filterList.run(); });
 
             resultsList.addMouseListener(new MouseAdapter() {
                 public void mouseClicked(MouseEvent e) {
@@ -648,32 +671,28 @@ public class MenuDoctorSwing extends JFrame {
                 // Aquí se puede ampliar: pedir más datos al servidor con psel.id
             });
 
-            btnClose.addActionListener(ev -> dlg.dispose());
+            btnClose.addActionListener(ev -> { debounce.stop(); dlg.dispose(); });
 
             new SwingWorker<Void, Void>() {
                 private String error = null;
+                private final List<Patient> loaded = new ArrayList<>();
+                private PatientSearchIndex loadedIndex;
+
                 @Override
                 protected Void doInBackground() {
                     try {
-                        synchronized (out) {
-                            out.writeUTF("SEARCH_PATIENTS");
-                            out.flush();
-
-                            String resp = in.readUTF();
-                            if (!"PATIENT_LIST".equals(resp)) {
-                                error = "Unexpected response: " + resp;
-                                return null;
-                            }
-                            int n = in.readInt();
-                            allPatients.clear();
-                            for (int i = 0; i < n; i++) {
-                                int id = in.readInt();
-                                String name = in.readUTF();
-                                String surname = in.readUTF();
-                                String dni = in.readUTF(); // se recibe pero no se usa
-                                allPatients.add(new Patient(id, name, surname));
-                            }
+                        Frame reply = request(OpCode.SEARCH_PATIENTS, null);
+                        List<pojos.Patient> patients = reply.reader().readPatientList();
+                        String[][] fields = new String[patients.size()][];
+                        for (pojos.Patient p : patients) {
+                            Patient pt = new Patient(p.getIdPatient(), p.getNamePatient(), p.getSurnamePatient(),
+                                    p.getDniPatient(), p.getHealthInsuranceNumberPatient());
+                            fields[loaded.size()] = new String[] {pt.name, pt.surname, pt.dni,
+                                    pt.hin != 0 ? Integer.toString(pt.hin) : null};
+                            loaded.add(pt);
                         }
+                        // Se construye una vez, fuera del EDT
+                        loadedIndex = new PatientSearchIndex(fields);
                     } catch (IOException ex) {
                         error = "I/O error: " + ex.getMessage();
                     }
@@ -685,6 +704,9 @@ public class MenuDoctorSwing extends JFrame {
                     if (error != null) {
                         JOptionPane.showMessageDialog(dlg, error, "Error", JOptionPane.ERROR_MESSAGE);
                     } else {
+                        // done() va después de doInBackground(): aquí ya se pueden leer sin sincronizar
+                        allPatients.addAll(loaded);
+                        index[0] = loadedIndex;
                         filterList.run();
                         txtSearch.requestFocus();
                     }
@@ -693,6 +715,32 @@ public class MenuDoctorSwing extends JFrame {
 
             dlg.setVisible(true);
         }
+
+        /*
+         * Lleva listModel de "shown" a "next" tocando solo el tramo que cambia:
+         * se conservan el prefijo y el sufijo comunes (al teclear suele ser casi todo).
+         */
+        private void updateResults(DefaultListModel<String> listModel, List<Patient> shown, List<Patient> next) {
+            int prefix = 0;
+            int max = Math.min(shown.size(), next.size());
+            while (prefix < max && shown.get(prefix) == next.get(prefix)) prefix++;
+            int suffix = 0;
+            while (suffix < max - prefix
+                    && shown.get(shown.size() - 1 - suffix) == next.get(next.size() - 1 - suffix)) suffix++;
+
+            int removeEnd = shown.size() - suffix;
+            if (removeEnd > prefix) {
+                listModel.removeRange(prefix, removeEnd - 1);
+                shown.subList(prefix, removeEnd).clear();
+            }
+            List<Patient> added = next.subList(prefix, next.size() - suffix);
+            if (!added.isEmpty()) {
+                List<String> rows = new ArrayList<>(added.size());
+                for (Patient pt : added) rows.add(pt.display());
+                listModel.addAll(prefix, rows);
+                shown.addAll(prefix, added);
+            }
+        }
     }
 
     public static void main(String[] args) {
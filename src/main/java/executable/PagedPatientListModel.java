@@ -0,0 +1,154 @@
+package executable;
+
+import common.protocol.Frame;
+import common.protocol.PayloadReader;
+
+import javax.swing.AbstractListModel;
+import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Lazy ListModel over the doctor's patients (health insurance numbers), fetched in
+ * pages of "N keys after K". Only the first page is requested when the list opens;
+ * the view reports the last row it shows with {@link #visibleUpTo(int)} (from its viewport),
+ * and the next page is requested once that is within half a page of the end of what has arrived.
+ * Reading the model has no side effects.
+ *
+ * Must be used from the EDT; the loader may complete on any thread.
+ */
+public class PagedPatientListModel extends AbstractListModel<String> {
+
+    public static final String LOADING = "Loading...";
+    public static final String EMPTY = "No patients available";
+
+    /**
+     * Requests the page of at most {@code limit} keys strictly after {@code afterKey}
+     * ({@code null} for the first page).
+     */
+    public interface PageLoader {
+        CompletableFuture<Page> load(String afterKey, int limit);
+    }
+
+    public record Page(List<String> keys, boolean hasMore) {
+
+        // Respuesta de SEARCH_PATIENT_PAGE: lista de HIN + hay más
+        public static Page read(Frame reply) throws IOException {
+            PayloadReader r = reply.reader();
+            List<String> keys = r.readStringList();
+            boolean hasMore = r.hasRemaining() && r.readBoolean();
+            return new Page(keys == null ? List.of() : keys, hasMore);
+        }
+    }
+
+    private final PageLoader loader;
+    private final int pageSize;
+    private final List<String> keys = new ArrayList<>();
+    private boolean hasMore = true;
+    private boolean loading;
+    private boolean failed;
+    private int generation;    // invalida respuestas de una lista anterior tras reset()
+
+    public PagedPatientListModel(PageLoader loader, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be > 0");
+        }
+        this.loader = loader;
+        this.pageSize = pageSize;
+    }
+
+    // Vacía la lista y pide la primera página
+    public void reset() {
+        int oldSize = getSize();
+        keys.clear();
+        hasMore = true;
+        loading = false;
+        failed = false;
+        generation++;
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+        fireIntervalAdded(this, 0, 0);
+        loadNextPage();
+    }
+
+    @Override
+    public int getSize() {
+        // Fila extra al final: "Loading..." mientras queden páginas, o el aviso de lista vacía
+        return keys.size() + (hasMore || keys.isEmpty() ? 1 : 0);
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        if (index < keys.size()) {
+            return keys.get(index);
+        }
+        if (hasMore && !failed) {
+            return LOADING;
+        }
+        return failed ? "Could not load patients" : EMPTY;
+    }
+
+    // Filas de estado ("Loading...", lista vacía) no son pacientes
+    public boolean isPatient(int index) {
+        return index >= 0 && index < keys.size();
+    }
+
+    public int getLoadedCount() {
+        return keys.size();
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    // Última fila visible en la vista; pide la página siguiente si queda poco para el final
+    public void visibleUpTo(int lastVisibleIndex) {
+        if (lastVisibleIndex >= keys.size() - pageSize / 2) {
+            loadNextPage();
+        }
+    }
+
+    public void loadNextPage() {
+        if (loading || !hasMore || failed) return;
+        loading = true;
+        int requestGeneration = generation;
+        String after = keys.isEmpty() ? null : keys.get(keys.size() - 1);
+        loader.load(after, pageSize).whenComplete((page, error) ->
+                SwingUtilities.invokeLater(() -> onPage(requestGeneration, page, error)));
+    }
+
+    private void onPage(int requestGeneration, Page page, Throwable error) {
+        if (requestGeneration != generation) return;
+        loading = false;
+        int statusRow = keys.size();
+        if (error != null || page == null) {
+            failed = true;
+            fireContentsChanged(this, statusRow, statusRow);
+            return;
+        }
+        int added = 0;
+        for (String key : page.keys()) {
+            if (key == null || key.isBlank()) continue;
+            keys.add(key.trim());
+            added++;
+        }
+        hasMore = page.hasMore() && added > 0;
+        boolean hasStatusRow = hasMore || keys.isEmpty();
+        // La fila de estado pasa a ser el primer paciente nuevo
+        if (added > 0) {
+            fireContentsChanged(this, statusRow, statusRow);
+            int lastNew = statusRow + added - 1;
+            int newEnd = hasStatusRow ? lastNew + 1 : lastNew;
+            if (newEnd > statusRow) {
+                fireIntervalAdded(this, statusRow + 1, newEnd);
+            }
+        } else if (!hasStatusRow) {
+            fireIntervalRemoved(this, statusRow, statusRow);
+        } else {
+            fireContentsChanged(this, statusRow, statusRow);
+        }
+    }
+}
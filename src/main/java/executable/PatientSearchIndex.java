@@ -0,0 +1,309 @@
+package executable;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-memory search over the patients returned by SEARCH_PATIENTS, built once per list.
+ * Matches name, surname, DNI and health insurance number, case and accent insensitive.
+ *
+ * Query words of 3+ characters go through a trigram index (substring match); words of 1-2
+ * characters through precomputed word-prefix lists. Both lists carry the rank of each entry,
+ * so words of up to 3 characters never look at the text. Every word of the query must match.
+ * Results are ranked: exact field &gt; field prefix &gt; word prefix &gt; substring, then by
+ * insertion order. While typing, the query usually extends the previous one: only the previous
+ * matches are re-checked, and only for the word that changed.
+ *
+ * Not thread safe: build it anywhere, then search from one thread (the EDT).
+ */
+public class PatientSearchIndex {
+
+    private static final char FIELD_SEPARATOR = '\u0001';
+    private static final Postings NO_MATCHES = new Postings(new int[0], new byte[0]);
+
+    private final String[] texts;
+    private final Map<Long, Postings> trigrams;
+    private final Map<String, Postings> shortPrefixes;
+
+    // Última búsqueda, sin limitar, para refinar al seguir escribiendo
+    private String lastQuery;
+    private int lastTokenCount;
+    private int[] lastMatches;
+    private byte[] lastScores;       // puntuación total
+    private byte[] lastBaseScores;   // puntuación sin la última palabra
+
+    // Entradas en orden ascendente con la mejor puntuación de cada una
+    private record Postings(int[] entries, byte[] scores) {
+    }
+
+    /**
+     * @param fields one array per entry: name, surname, DNI, HIN (any may be null)
+     */
+    public PatientSearchIndex(String[][] fields) {
+        int n = fields.length;
+        texts = new String[n];
+        Map<Long, PostingsBuilder> postings = new HashMap<>();
+        Map<String, PostingsBuilder> prefixes = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (String f : fields[i]) {
+                if (sb.length() > 0) sb.append(FIELD_SEPARATOR);
+                if (f != null) sb.append(normalize(f));
+            }
+            String text = sb.toString();
+            texts[i] = text;
+            for (int c = 0; c + 3 <= text.length(); c++) {
+                long key = trigram(text, c);
+                if (key < 0) continue;
+                int score = c == 0 || isSeparator(text.charAt(c - 1)) ? wordScore(text, c, 3) : 3;
+                postings.computeIfAbsent(key, k -> new PostingsBuilder()).add(i, score);
+            }
+            // Prefijos de 1 y 2 letras de cada palabra
+            for (int c = 0; c < text.length(); c++) {
+                if (isSeparator(text.charAt(c)) || (c > 0 && !isSeparator(text.charAt(c - 1)))) continue;
+                for (int length = 1; length <= 2 && c + length <= text.length(); length++) {
+                    if (isSeparator(text.charAt(c + length - 1))) break;
+                    prefixes.computeIfAbsent(text.substring(c, c + length), k -> new PostingsBuilder())
+                            .add(i, wordScore(text, c, length));
+                }
+            }
+        }
+        trigrams = new HashMap<>(postings.size() * 2);
+        for (Map.Entry<Long, PostingsBuilder> e : postings.entrySet()) {
+            trigrams.put(e.getKey(), e.getValue().build());
+        }
+        shortPrefixes = new HashMap<>(prefixes.size() * 2);
+        for (Map.Entry<String, PostingsBuilder> e : prefixes.entrySet()) {
+            shortPrefixes.put(e.getKey(), e.getValue().build());
+        }
+    }
+
+    public int size() {
+        return texts.length;
+    }
+
+    /**
+     * Returns up to {@code limit} entry indexes matching every word of {@code query}, best first.
+     * An empty query returns the first {@code limit} entries in insertion order.
+     */
+    public int[] search(String query, int limit) {
+        String q = normalize(query == null ? "" : query).trim();
+        String[] tokens = q.isEmpty() ? new String[0] : q.split("\\s+");
+        if (tokens.length == 0) {
+            lastQuery = null;
+            lastMatches = null;
+            int[] all = new int[Math.min(limit, texts.length)];
+            for (int i = 0; i < all.length; i++) all[i] = i;
+            return all;
+        }
+
+        if (tokens.length == 1 && tokens[0].length() <= 3) {
+            // Una palabra de hasta 3 letras: la lista precalculada ya es el resultado
+            Postings p = postingsFor(tokens[0]);
+            remember(q, tokens.length, p.entries(), p.scores(), new byte[p.entries().length]);
+            return top(p.entries(), p.scores(), p.entries().length, 3, limit);
+        }
+
+        int[] candidates;
+        byte[] base = null;   // puntuación ya conocida de las palabras que no cambian
+        int firstToken = 0;
+        if (canRefine(lastQuery, q)) {
+            // "ana g" -> "ana ga": los resultados nuevos están dentro de los anteriores
+            candidates = lastMatches;
+            boolean newWord = q.length() > lastQuery.length() && q.charAt(lastQuery.length()) == ' ';
+            firstToken = newWord ? lastTokenCount : lastTokenCount - 1;
+            base = newWord ? lastScores : lastBaseScores;
+        } else {
+            candidates = null;
+            for (String token : tokens) {
+                int[] c = candidatesFor(token);
+                if (candidates == null || c.length < candidates.length) candidates = c;
+            }
+        }
+
+        // Palabras de hasta 3 letras: se cruzan con su lista (ambas en orden) en vez de buscar en el texto
+        Postings[] shortPostings = new Postings[tokens.length];
+        int[] cursor = new int[tokens.length];
+        for (int t = firstToken; t < tokens.length; t++) {
+            if (tokens[t].length() <= 3) shortPostings[t] = postingsFor(tokens[t]);
+        }
+
+        int[] matches = new int[candidates.length];
+        byte[] scores = new byte[candidates.length];
+        byte[] baseScores = new byte[candidates.length];
+        int count = 0;
+        int last = tokens.length - 1;
+        for (int i = 0; i < candidates.length; i++) {
+            int entry = candidates[i];
+            int score = base == null ? 0 : base[i];
+            int withoutLast = score;
+            for (int t = firstToken; t <= last && score >= 0; t++) {
+                if (t == last) withoutLast = score;
+                int s;
+                Postings p = shortPostings[t];
+                if (p != null) {
+                    int[] entries = p.entries();
+                    int c = cursor[t];
+                    while (c < entries.length && entries[c] < entry) c++;
+                    cursor[t] = c;
+                    s = c < entries.length && entries[c] == entry ? p.scores()[c] : -1;
+                } else {
+                    s = score(texts[entry], tokens[t]);
+                }
+                score = s < 0 ? -1 : score + s;
+            }
+            if (score < 0) continue;
+            matches[count] = entry;
+            scores[count] = (byte) score;
+            baseScores[count++] = (byte) withoutLast;
+        }
+        remember(q, tokens.length, Arrays.copyOf(matches, count), Arrays.copyOf(scores, count),
+                Arrays.copyOf(baseScores, count));
+        return top(matches, scores, count, 3 * tokens.length, limit);
+    }
+
+    private void remember(String q, int tokenCount, int[] matches, byte[] scores, byte[] baseScores) {
+        lastQuery = q;
+        lastTokenCount = tokenCount;
+        lastMatches = matches;
+        lastScores = scores;
+        lastBaseScores = baseScores;
+    }
+
+    // Pocas puntuaciones posibles: counting sort estable, se mantiene el orden de inserción dentro de cada una
+    private static int[] top(int[] matches, byte[] scores, int count, int maxScore, int limit) {
+        int[] start = new int[maxScore + 2];
+        for (int i = 0; i < count; i++) start[scores[i] + 1]++;
+        for (int i = 1; i < start.length; i++) start[i] += start[i - 1];
+        int[] result = new int[Math.min(limit, count)];
+        for (int i = 0; i < count; i++) {
+            int slot = start[scores[i]]++;
+            if (slot < result.length) result[slot] = matches[i];
+        }
+        return result;
+    }
+
+    /*
+     * Los resultados de "prev" contienen los de "q" si q solo añade caracteres, salvo cuando la última
+     * palabra pasa de 2 a 3 letras: de prefijo de palabra a subcadena, que encuentra más.
+     */
+    private static boolean canRefine(String prev, String q) {
+        if (prev == null || !q.startsWith(prev)) return false;
+        if (q.length() == prev.length() || q.charAt(prev.length()) == ' ') return true;
+        int wordStart = prev.lastIndexOf(' ') + 1;
+        int prevLength = prev.length() - wordStart;
+        int end = q.indexOf(' ', prev.length());
+        int newLength = (end < 0 ? q.length() : end) - wordStart;
+        return prevLength >= 3 || newLength < 3;
+    }
+
+    private int[] candidatesFor(String token) {
+        if (token.length() <= 3) {
+            return postingsFor(token).entries();
+        }
+        // La lista de trigramas más corta; score() comprueba después la subcadena completa
+        int[] best = null;
+        for (int c = 0; c + 3 <= token.length(); c++) {
+            int[] list = postingsFor(token.substring(c, c + 3)).entries();
+            if (best == null || list.length < best.length) best = list;
+        }
+        return best;
+    }
+
+    // Prefijos de palabra para 1-2 letras, trigramas (subcadena) para 3
+    private Postings postingsFor(String token) {
+        Postings p;
+        if (token.length() < 3) {
+            p = shortPrefixes.get(token);
+        } else {
+            long key = trigram(token, 0);
+            p = key < 0 ? null : trigrams.get(key);
+        }
+        return p != null ? p : NO_MATCHES;
+    }
+
+    // 0 campo exacto, 1 inicio de campo, 2 inicio de palabra, 3 subcadena; -1 no aparece (palabras de 3+ letras)
+    private static int score(String text, String token) {
+        int best = -1;
+        int from = 0;
+        while (true) {
+            int at = text.indexOf(token, from);
+            if (at < 0) break;
+            int s = at == 0 || isSeparator(text.charAt(at - 1)) ? wordScore(text, at, token.length()) : 3;
+            if (best < 0 || s < best) best = s;
+            if (best == 0) break;
+            from = at + 1;
+        }
+        return best;
+    }
+
+    // 0 campo exacto, 1 inicio de campo, 2 inicio de palabra
+    private static int wordScore(String text, int at, int length) {
+        if (at != 0 && text.charAt(at - 1) != FIELD_SEPARATOR) return 2;
+        int end = at + length;
+        return end == text.length() || text.charAt(end) == FIELD_SEPARATOR ? 0 : 1;
+    }
+
+    private static long trigram(String s, int at) {
+        char a = s.charAt(at);
+        char b = s.charAt(at + 1);
+        char c = s.charAt(at + 2);
+        if (a == FIELD_SEPARATOR || b == FIELD_SEPARATOR || c == FIELD_SEPARATOR) return -1;
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == FIELD_SEPARATOR || c == ' ' || c == '-' || c == '\'';
+    }
+
+    // "Núñez" -> "nunez"
+    static String normalize(String s) {
+        String lower = s.toLowerCase(Locale.ROOT);
+        boolean ascii = true;
+        for (int i = 0; i < lower.length() && ascii; i++) ascii = lower.charAt(i) < 128;
+        if (ascii) return lower;
+        String decomposed = Normalizer.normalize(lower, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    // Las entradas llegan en orden: una misma entrada solo puede repetirse al final
+    private static final class PostingsBuilder extends IntList {
+        byte[] scores = new byte[4];
+
+        void add(int entry, int score) {
+            if (size > 0 && values[size - 1] == entry) {
+                if (score < scores[size - 1]) scores[size - 1] = (byte) score;
+                return;
+            }
+            add(entry);
+            if (scores.length < values.length) scores = Arrays.copyOf(scores, values.length);
+            scores[size - 1] = (byte) score;
+        }
+
+        Postings build() {
+            return new Postings(toArray(), Arrays.copyOf(scores, size));
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package executable;
+
+import common.protocol.Frame;
+import common.protocol.FrameTransport;
+import common.protocol.OpCode;
+import common.protocol.PayloadReader;
+import common.protocol.PayloadWriter;
+import common.protocol.ProtocolException;
+import common.screening.ArrhythmiaScreener;
+import common.screening.ScreeningResult;
+import common.signal.EdaPipeline;
+import common.signal.QrsDetector;
+import common.signal.RecordingSummary;
+import common.signal.SignalTextDecoder;
+import pojos.DiagnosisFile;
+import pojos.Interfaces.ChartStatisticsRecording;
+import pojos.SignalBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Batch analysis of whole recordings. All the 10 s fragments of a recording are requested at once
+ * over the multiplexed connection and decoded as they arrive; then a fork/join task per fragment
+ * runs beat detection ({@link QrsDetector}) while one more task streams the EDA through an
+ * {@link EdaPipeline}, and the results are merged into a {@link RecordingSummary}, HRV included,
+ * still on the pool.
+ *
+ * Fragment edges: each beat task also feeds the detector {@value #WARM_UP_S} s of the previous fragment
+ * (it learns its thresholds in 2 s) and {@value #LOOK_AHEAD_S} s of the next one (a beat is
+ * confirmed after its R peak), and keeps only the beats that fall inside its own fragment, so
+ * nothing is counted twice or lost at a boundary. The EDA goes in one pass instead: its tonic
+ * level needs tens of seconds of history, and at one biquad stage per sample it is not the
+ * bottleneck.
+ *
+ * {@link #analyzeAll} also screens each recording for arrhythmias ({@link ArrhythmiaScreener}),
+ * feeding the rules fragment by fragment once its beats are known. The rule session is not thread
+ * safe, so screening runs on a thread of its own after detection, while the pool goes on with the
+ * next recordings.
+ *
+ * Uses its own ForkJoinPool (one worker per core), screening thread and rule session; close it when done.
+ */
+public final class RecordingAnalyzer implements AutoCloseable {
+
+    public static final int SAMPLING_RATE = SignalBuffer.DEFAULT_SAMPLING_RATE;
+    private static final double WARM_UP_S = 3.0;
+    private static final double LOOK_AHEAD_S = 1.0;
+    // Grabaciones descargadas a la vez: una hora son ~60 MB en double[]
+    private static final int RECORDINGS_IN_FLIGHT = 4;
+
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    // Buffers del tacograma y de la FFT, uno por hilo del pool
+    private final ThreadLocal<ChartStatisticsRecording> hrv = ThreadLocal.withInitial(ChartStatisticsRecording::new);
+    // Una sola sesión de reglas, creada al primer uso y usada solo desde el hilo de cribado
+    private final ExecutorService screening = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "arrhythmia-screening");
+        t.setDaemon(true);
+        return t;
+    });
+    private ArrhythmiaScreener screener;
+
+    // screening es null si el cribado falló (el resumen sigue valiendo)
+    public record Result(DiagnosisFile file, RecordingSummary summary, ScreeningResult screening, Throwable error) {
+        public boolean ok() {
+            return error == null;
+        }
+    }
+
+    /**
+     * Analyses {@code files} with up to {@value #RECORDINGS_IN_FLIGHT} recordings downloading at a time.
+     * {@code onResult} (may be null) is called from a pool thread as each recording finishes;
+     * the returned list keeps the order of {@code files}.
+     */
+    public List<Result> analyzeAll(FrameTransport connection, List<DiagnosisFile> files, Consumer<Result> onResult)
+            throws InterruptedException {
+        Semaphore inFlight = new Semaphore(RECORDINGS_IN_FLIGHT);
+        List<CompletableFuture<Result>> results = new ArrayList<>();
+        // Si se interrumpe, no se piden más grabaciones; las que ya están en vuelo terminan solas
+        for (DiagnosisFile df : files) {
+            inFlight.acquire();
+            CompletableFuture<Result> result = fetchFragments(connection, df.getId())
+                    .thenApplyAsync(this::detect, pool)
+                    .thenCompose(detection -> screen(df, detection))
+                    .handle((r, error) -> r != null ? r : new Result(df, null, null,
+                            error instanceof CompletionException && error.getCause() != null ? error.getCause() : error));
+            result.whenComplete((r, error) -> {
+                inFlight.release();
+                if (r != null && onResult != null) onResult.accept(r);
+            });
+            results.add(result);
+        }
+        try {
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e); // handle() no deja pasar errores
+        }
+        List<Result> list = new ArrayList<>(results.size());
+        for (CompletableFuture<Result> r : results) list.add(r.join());
+        return list;
+    }
+
+    public CompletableFuture<RecordingSummary> analyze(FrameTransport connection, int diagnosisFileId) {
+        return fetchFragments(connection, diagnosisFileId).thenApplyAsync(this::analyze, pool);
+    }
+
+    /**
+     * Requests every fragment of the recording: VIEW_RECORDING brings fragment 0 and the list of
+     * sequences, then all the CHANGE_FRAGMENT requests go out together. Decoding runs on the pool.
+     * The first failure, or cancelling the returned future, cancels the requests still in flight.
+     */
+    public CompletableFuture<double[][][]> fetchFragments(FrameTransport connection, int diagnosisFileId) {
+        if (connection == null) {
+            return CompletableFuture.failedFuture(new IOException("Not connected to server"));
+        }
+        // Falla con el primer error (o al cancelar): corta las peticiones que aún no han llegado
+        CompletableFuture<Void> abort = new CompletableFuture<>();
+        CompletableFuture<Frame> first = connection.send(OpCode.VIEW_RECORDING, new PayloadWriter()
+                .writeInt(diagnosisFileId)
+                .writeInt(1));
+        CompletableFuture<double[][][]> all = first.thenComposeAsync(reply -> {
+            double[][] fragment0;
+            int count;
+            try {
+                PayloadReader payload = reply.reader();
+                fragment0 = checked(decodeFragment(reply, payload));
+                count = Math.max(1, payload.readString().split(",").length);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+            double[][][] fragments = new double[count][][];
+            fragments[0] = fragment0;
+            CompletableFuture<?>[] pending = new CompletableFuture<?>[count - 1];
+            for (int i = 1; i < count; i++) {
+                final int index = i;
+                CompletableFuture<Frame> request = connection.send(OpCode.CHANGE_FRAGMENT, new PayloadWriter()
+                        .writeInt(diagnosisFileId)
+                        .writeInt(index));
+                // Si ya se abortó, se cancela en el acto
+                abort.whenComplete((v, error) -> request.cancel(false));
+                pending[i - 1] = request
+                        .thenAcceptAsync(r -> {
+                            try {
+                                fragments[index] = checked(decodeFragment(r, r.reader()));
+                            } catch (IOException e) {
+                                throw new CompletionException(e);
+                            }
+                        }, pool)
+                        .whenComplete((v, error) -> {
+                            if (error != null) abort.completeExceptionally(error);
+                        });
+            }
+            return CompletableFuture.allOf(pending).handle((v, error) -> {
+                if (error == null) return fragments;
+                // El primer fallo, no las cancelaciones que provocó en los demás
+                Throwable cause = abort.handle((x, e) -> e).join();
+                throw cause instanceof CompletionException ce ? ce : new CompletionException(cause);
+            });
+        }, pool);
+        all.whenComplete((v, error) -> {
+            if (all.isCancelled()) {
+                first.cancel(false);
+                abort.cancel(false);
+            }
+        });
+        return all;
+    }
+
+    /**
+     * Fork/join over the fragments of one recording, already in memory ({@code fragments[i][0]} ECG,
+     * {@code fragments[i][1]} EDA, every fragment but the last with the same length).
+     */
+    public RecordingSummary analyze(double[][][] fragments) {
+        return detect(fragments).summary();
+    }
+
+    // Resumen y cribado de una grabación ya en memoria
+    public Result analyze(DiagnosisFile file, double[][][] fragments) {
+        return screen(file, detect(fragments)).join();
+    }
+
+    private Detection detect(double[][][] fragments) {
+        long[] offsets = new long[fragments.length + 1];
+        for (int i = 0; i < fragments.length; i++) {
+            offsets[i + 1] = offsets[i] + fragments[i][0].length;
+        }
+        ForkJoinTask<List<EdaPipeline.Window>> eda = pool.submit(() -> analyzeEda(fragments));
+        Partial total = fragments.length == 0 ? new Partial(new long[0], 0)
+                : pool.invoke(new FragmentTask(fragments, offsets, 0, fragments.length));
+        List<EdaPipeline.Window> windows = eda.join();
+        RecordingSummary summary = RecordingSummary.of(hrv.get(), total.beats, total.beatCount, SAMPLING_RATE,
+                offsets[fragments.length], windows);
+        return new Detection(offsets, total, windows, summary);
+    }
+
+    // En el hilo de cribado; si falla, el resultado lleva el resumen sin cribado
+    private CompletableFuture<Result> screen(DiagnosisFile file, Detection detection) {
+        return CompletableFuture.supplyAsync(() -> {
+            ScreeningResult result = null;
+            try {
+                result = runRules(file, detection);
+            } catch (RuntimeException e) {
+                System.err.println("Screening of diagnosis file " + file.getId() + " failed: " + e);
+            }
+            return new Result(file, detection.summary(), result, null);
+        }, screening);
+    }
+
+    // Alimenta las reglas fragmento a fragmento, y cada ventana EDA en cuanto los fragmentos la cubren
+    private ScreeningResult runRules(DiagnosisFile file, Detection detection) {
+        if (screener == null) {
+            screener = new ArrhythmiaScreener();
+        }
+        int id = file.getId();
+        long[] offsets = detection.offsets();
+        List<EdaPipeline.Window> windows = detection.edaWindows();
+        screener.begin(file);
+        try {
+            int w = 0;
+            for (int i = 0; i + 1 < offsets.length; i++) {
+                screener.addFragment(id, i, offsets[i], offsets[i + 1],
+                        detection.beats().beats, detection.beats().beatCount, SAMPLING_RATE);
+                while (w < windows.size() && windows.get(w).start() + windows.get(w).samples() <= offsets[i + 1]) {
+                    screener.addEda(id, windows.get(w++), SAMPLING_RATE);
+                }
+            }
+        } catch (RuntimeException e) {
+            screener.finish(id); // que no queden sus hechos en la sesión
+            throw e;
+        }
+        return screener.finish(id);
+    }
+
+    // Una ventana de features EDA por minuto, en un solo recorrido
+    private static List<EdaPipeline.Window> analyzeEda(double[][][] fragments) {
+        List<EdaPipeline.Window> windows = new ArrayList<>();
+        EdaPipeline pipeline = new EdaPipeline(SAMPLING_RATE, windows::add);
+        for (double[][] fragment : fragments) {
+            pipeline.process(fragment[1], 0, fragment[1].length);
+        }
+        pipeline.flush();
+        return windows;
+    }
+
+    // Fragmento -> un double[] por señal. Sin FLAG_GZIP llega con ResidualCodec;
+    // con FLAG_GZIP es el texto "ecg...;eda..." comprimido de los servidores antiguos
+    public static double[][] decodeFragment(Frame reply, PayloadReader payload) throws IOException {
+        if (!reply.hasFlag(Frame.FLAG_GZIP)) {
+            SignalBuffer signals = payload.readSignalBuffer();
+            if (signals == null) {
+                throw new ProtocolException("Missing signal data");
+            }
+            double[][] channels = new double[signals.getChannelCount()][];
+            for (int ch = 0; ch < channels.length; ch++) {
+                channels[ch] = signals.toDoubleArray(ch);
+            }
+            return channels;
+        }
+        ByteBuffer compressed = payload.readByteBuffer();
+        if (compressed == null) {
+            throw new ProtocolException("Missing compressed data");
+        }
+        return SignalTextDecoder.get().decodeGzip(compressed);
+    }
+
+    /**
+     * The pool's platform threads, to decode fragments outside a batch: {@link SignalTextDecoder}
+     * keeps one decoder per thread, which must not be created for every virtual thread.
+     */
+    public Executor executor() {
+        return pool;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+        if (screening.isShutdown()) return;
+        // La sesión se cierra en su hilo, detrás del cribado que quede en cola
+        screening.execute(() -> {
+            if (screener != null) screener.close();
+            screener = null;
+        });
+        screening.shutdown();
+    }
+
+    private static double[][] checked(double[][] fragment) throws ProtocolException {
+        if (fragment == null || fragment.length < 2) {
+            throw new ProtocolException("Fragment without ECG and EDA");
+        }
+        return fragment;
+    }
+
+    private record Detection(long[] offsets, Partial beats, List<EdaPipeline.Window> edaWindows,
+                             RecordingSummary summary) {
+    }
+
+    // Latidos (muestra absoluta, en orden) de un tramo de fragmentos
+    private record Partial(long[] beats, int beatCount) {
+
+        Partial merge(Partial right) {
+            long[] beats = Arrays.copyOf(this.beats, beatCount + right.beatCount);
+            System.arraycopy(right.beats, 0, beats, beatCount, right.beatCount);
+            return new Partial(beats, beats.length);
+        }
+    }
+
+    private static final class FragmentTask extends RecursiveTask<Partial> {
+        private final double[][][] fragments;
+        private final long[] offsets;
+        private final int lo;
+        private final int hi;
+
+        FragmentTask(double[][][] fragments, long[] offsets, int lo, int hi) {
+            this.fragments = fragments;
+            this.offsets = offsets;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (hi - lo == 1) {
+                return analyzeFragment(lo);
+            }
+            int mid = (lo + hi) >>> 1;
+            FragmentTask left = new FragmentTask(fragments, offsets, lo, mid);
+            left.fork();
+            Partial right = new FragmentTask(fragments, offsets, mid, hi).compute();
+            return left.join().merge(right);
+        }
+
+        private Partial analyzeFragment(int index) {
+            long start = offsets[index];
+            long end = offsets[index + 1];
+            long from = Math.max(0, start - (long) (WARM_UP_S * SAMPLING_RATE));
+            long to = Math.min(offsets[offsets.length - 1], end + (long) (LOOK_AHEAD_S * SAMPLING_RATE));
+
+            QrsDetector qrs = new QrsDetector(SAMPLING_RATE);
+            feed(qrs, from, to);
+
+            // Solo los latidos de este fragmento (los del margen son de los vecinos)
+            int first = qrs.firstBeatAtOrAfter(start - from);
+            int last = qrs.firstBeatAtOrAfter(end - from);
+            long[] beats = new long[last - first];
+            for (int i = first; i < last; i++) {
+                beats[i - first] = from + qrs.getBeat(i);
+            }
+            return new Partial(beats, beats.length);
+        }
+
+        // Pasa al detector las muestras [from, to) de la grabación, que pueden abarcar varios fragmentos
+        private void feed(QrsDetector qrs, long from, long to) {
+            int k = Arrays.binarySearch(offsets, from);
+            if (k < 0) k = -k - 2;
+            while (k < fragments.length && offsets[k] < to) {
+                int a = (int) (Math.max(from, offsets[k]) - offsets[k]);
+                int b = (int) (Math.min(to, offsets[k + 1]) - offsets[k]);
+                qrs.process(fragments[k][0], a, b);
+                k++;
+            }
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package executable;
+
+import common.protocol.Frame;
+import common.protocol.FrameTransport;
+import common.protocol.OpCode;
+import common.protocol.PayloadReader;
+import common.protocol.PayloadWriter;
+import common.protocol.ProtocolException;
+import pojos.DiagnosisFile;
+import pojos.SignalBuffer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Writes a recording as the "Time(ms);ECG;EDA" CSV straight to a {@link FileChannel}: rows are
+ * formatted by hand into one reusable direct buffer that is flushed whenever it fills, so the
+ * export never holds the text of the recording in memory. One row per sample: time in ms with
+ * three decimals ('.' whatever the locale), then the ECG and EDA values, separated by ';'.
+ *
+ * An instance is not thread safe; {@link #exportAll} uses one per worker thread.
+ */
+public final class RecordingCsvExporter {
+
+    public static final String HEADER = "Time(ms);ECG;EDA\n";
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+    // Fila más larga con enteros: 20 (tiempo) + 2 * 11 (int con signo) + 3 separadores
+    private static final int MAX_ROW = 64;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final byte[] digits = new byte[20];
+    private FileChannel channel;
+
+    public record Result(DiagnosisFile file, Path path, long bytes, Exception error) {
+        public boolean ok() {
+            return error == null;
+        }
+    }
+
+    // Respuesta de DOWNLOAD_RECORDING: SignalBuffer, o con FLAG_GZIP los dos textos de los servidores antiguos
+    public long export(Frame reply, Path file) throws IOException {
+        PayloadReader payload = reply.reader();
+        if (reply.hasFlag(Frame.FLAG_GZIP)) {
+            String ecgData = gunzip(payload);
+            String edaData = gunzip(payload);
+            return export(ecgData, edaData, file);
+        }
+        return export(payload.readSignalBuffer(), file);
+    }
+
+    public long export(SignalBuffer signals, Path file) throws IOException {
+        if (signals == null || signals.getChannelCount() < 2) {
+            throw new ProtocolException("Missing signal data");
+        }
+        try (FileChannel out = open(file)) {
+            return write(signals, out);
+        }
+    }
+
+    public long export(String ecgData, String edaData, Path file) throws IOException {
+        try (FileChannel out = open(file)) {
+            return write(ecgData, edaData, out);
+        }
+    }
+
+    public long write(SignalBuffer signals, FileChannel out) throws IOException {
+        begin(out);
+        int rate = signals.getSamplingRate();
+        int count = signals.getSampleCount();
+        // Copias por bloques: evita el get() con comprobación de límites por muestra
+        int block = 4096;
+        int[] ecg = new int[block];
+        int[] eda = new int[block];
+        for (int from = 0; from < count; from += block) {
+            int to = Math.min(count, from + block);
+            signals.copyTo(SignalBuffer.CHANNEL_ECG, from, to, ecg, 0);
+            signals.copyTo(SignalBuffer.CHANNEL_EDA, from, to, eda, 0);
+            for (int i = from; i < to; i++) {
+                if (buffer.remaining() < MAX_ROW) flush();
+                putTime(i, rate);
+                buffer.put((byte) ';');
+                putInt(ecg[i - from]);
+                buffer.put((byte) ';');
+                putInt(eda[i - from]);
+                buffer.put((byte) '\n');
+            }
+        }
+        return end();
+    }
+
+    /**
+     * Rows from the legacy comma-separated text, at {@link SignalBuffer#DEFAULT_SAMPLING_RATE}: the text
+     * drops the first character of the ECG and the last of the EDA, a missing sample is an empty column.
+     */
+    public long write(String ecgData, String edaData, FileChannel out) throws IOException {
+        if (ecgData == null || ecgData.isEmpty() || edaData == null || edaData.isEmpty()) {
+            throw new ProtocolException("Missing signal data");
+        }
+        begin(out);
+        Tokens ecg = new Tokens(ecgData, 1, ecgData.length());
+        Tokens eda = new Tokens(edaData, 0, edaData.length() - 1);
+        int rows = Math.max(ecg.count, eda.count);
+        for (int i = 0; i < rows; i++) {
+            if (buffer.remaining() < MAX_ROW) flush();
+            putTime(i, SignalBuffer.DEFAULT_SAMPLING_RATE);
+            buffer.put((byte) ';');
+            ecg.next();
+            putText(ecgData, ecg.start, ecg.end);
+            buffer.put((byte) ';');
+            eda.next();
+            putText(edaData, eda.start, eda.end);
+            buffer.put((byte) '\n');
+        }
+        return end();
+    }
+
+    /**
+     * Downloads and exports every file in {@code files} into {@code directory}, one worker per core.
+     * Each worker holds at most one recording at a time. A file that fails does not stop the rest;
+     * its result carries the error and its partial CSV is deleted.
+     */
+    public static List<Result> exportAll(FrameTransport connection, List<DiagnosisFile> files, Path directory)
+            throws IOException, InterruptedException {
+        if (connection == null) {
+            throw new IOException("Not connected to server");
+        }
+        Files.createDirectories(directory);
+        Result[] results = new Result[files.size()];
+        int threads = Math.min(files.size(), Runtime.getRuntime().availableProcessors());
+        if (threads == 0) return List.of();
+
+        AtomicInteger next = new AtomicInteger();
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(() -> {
+                RecordingCsvExporter exporter = new RecordingCsvExporter();
+                int i;
+                while ((i = next.getAndIncrement()) < results.length) {
+                    if (Thread.currentThread().isInterrupted()) throw new InterruptedException();
+                    results[i] = exporter.download(connection, files.get(i), directory);
+                }
+                return null;
+            });
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Void> f : pool.invokeAll(workers)) {
+                f.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("Export failed", e.getCause());
+        } finally {
+            // Si se cancela la exportación, se interrumpen las descargas en curso
+            pool.shutdownNow();
+        }
+        return Arrays.asList(results);
+    }
+
+    // Filtro por fecha; null en from/to = sin límite
+    public static List<DiagnosisFile> inRange(List<DiagnosisFile> files, LocalDate from, LocalDate to) {
+        List<DiagnosisFile> selected = new ArrayList<>();
+        for (DiagnosisFile df : files) {
+            LocalDate date = df.getDate();
+            if (from != null && (date == null || date.isBefore(from))) continue;
+            if (to != null && (date == null || date.isAfter(to))) continue;
+            selected.add(df);
+        }
+        return selected;
+    }
+
+    public static String fileName(DiagnosisFile df) {
+        return "recording_" + df.getId() + (df.getDate() != null ? "_" + df.getDate() : "") + ".csv";
+    }
+
+    private Result download(FrameTransport connection, DiagnosisFile df, Path directory) throws InterruptedException {
+        Path file = directory.resolve(fileName(df));
+        try {
+            Frame reply = connection.request(OpCode.DOWNLOAD_RECORDING, new PayloadWriter().writeInt(df.getId()));
+            return new Result(df, file, export(reply, file), null);
+        } catch (IOException | RuntimeException e) {
+            if (Thread.currentThread().isInterrupted()) throw new InterruptedException();
+            try { Files.deleteIfExists(file); } catch (IOException ignored) {}
+            return new Result(df, file, 0, e);
+        }
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+    }
+
+    private void begin(FileChannel out) throws IOException {
+        channel = out;
+        buffer.clear();
+        for (int i = 0; i < HEADER.length(); i++) {
+            buffer.put((byte) HEADER.charAt(i));
+        }
+    }
+
+    private long end() throws IOException {
+        flush();
+        long size = channel.position();
+        channel = null;
+        return size;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // "%.3f" de i * 1000 / rate con redondeo HALF_UP, en milésimas exactas (sin double)
+    private void putTime(long sample, int rate) {
+        long thousandths = (sample * 2_000_000L + rate) / (2L * rate);
+        putLong(thousandths / 1000);
+        int frac = (int) (thousandths % 1000);
+        buffer.put((byte) '.')
+                .put((byte) ('0' + frac / 100))
+                .put((byte) ('0' + frac / 10 % 10))
+                .put((byte) ('0' + frac % 10));
+    }
+
+    private void putInt(int value) {
+        putLong(value);
+    }
+
+    private void putLong(long value) {
+        if (value < 0) {
+            buffer.put((byte) '-');
+            if (value == Long.MIN_VALUE) {
+                buffer.put("9223372036854775808".getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+            value = -value;
+        }
+        int pos = digits.length;
+        do {
+            digits[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        buffer.put(digits, pos, digits.length - pos);
+    }
+
+    // Texto de una muestra del formato antiguo, recortado como String.trim()
+    private void putText(String s, int start, int end) throws IOException {
+        while (start < end && s.charAt(start) <= ' ') start++;
+        while (end > start && s.charAt(end - 1) <= ' ') end--;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                // No debería llegar (son números); se codifica el resto sin el atajo ASCII
+                byte[] bytes = s.substring(i, end).getBytes(StandardCharsets.UTF_8);
+                for (byte b : bytes) {
+                    if (!buffer.hasRemaining()) flush();
+                    buffer.put(b);
+                }
+                return;
+            }
+            if (buffer.remaining() < MAX_ROW) flush();
+            buffer.put((byte) c);
+        }
+    }
+
+    private static String gunzip(PayloadReader payload) throws IOException {
+        byte[] compressed = payload.readBytes();
+        if (compressed == null) {
+            throw new ProtocolException("Missing compressed data");
+        }
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Walks the comma separated samples of [from, to) without splitting, with the token count
+     * String.split(",") would give (trailing empty samples are dropped).
+     */
+    private static final class Tokens {
+        private final String s;
+        private final int to;
+        final int count;
+        int start;
+        int end;
+        private int pos;
+
+        Tokens(String s, int from, int to) {
+            this.s = s;
+            this.pos = from;
+            int last = to;
+            while (last > from && s.charAt(last - 1) == ',') last--;
+            int n = 0;
+            if (last == from) {
+                n = to == from ? 1 : 0;
+            } else {
+                n = 1;
+                for (int i = from; i < last; i++) {
+                    if (s.charAt(i) == ',') n++;
+                }
+            }
+            this.to = last;
+            this.count = n;
+        }
+
+        // Tras la última muestra deja start == end (columna vacía)
+        void next() {
+            if (pos > to) {
+                start = end = to;
+                return;
+            }
+            int comma = s.indexOf(',', pos);
+            if (comma < 0 || comma > to) comma = to;
+            start = pos;
+            end = comma;
+            pos = comma + 1;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package executable;
+
+/**
+ * Min/max envelope of a whole recording, built one fragment at a time as fragments arrive.
+ * Only a few bins per fragment are kept, so the overview strip costs O(pixels) to draw
+ * whatever the length of the recording.
+ */
+public class RecordingOverview {
+
+    // Columnas aproximadas de la tira de overview
+    private static final int TARGET_BINS = 1200;
+    private static final int MAX_BINS_PER_FRAGMENT = 64;
+
+    private final int fragmentCount;
+    private final double fragmentSeconds;
+    private final int binsPerFragment;
+    private final double[] min;
+    private final double[] max;
+    private final double[] binSeconds;   // duración real del bin (el último fragmento es más corto)
+    private final boolean[] loaded;
+    private int loadedCount;
+
+    public RecordingOverview(int fragmentCount, double fragmentSeconds) {
+        this.fragmentCount = Math.max(0, fragmentCount);
+        this.fragmentSeconds = fragmentSeconds;
+        this.binsPerFragment = Math.max(1, Math.min(MAX_BINS_PER_FRAGMENT,
+                TARGET_BINS / Math.max(1, this.fragmentCount)));
+        int bins = this.fragmentCount * binsPerFragment;
+        this.min = new double[bins];
+        this.max = new double[bins];
+        this.binSeconds = new double[this.fragmentCount];
+        this.loaded = new boolean[this.fragmentCount];
+    }
+
+    public synchronized void addFragment(int fragmentIndex, double[] values, int samplingRate) {
+        if (fragmentIndex < 0 || fragmentIndex >= fragmentCount || values == null || values.length == 0) {
+            return;
+        }
+        int n = values.length;
+        int base = fragmentIndex * binsPerFragment;
+        for (int b = 0; b < binsPerFragment; b++) {
+            int start = (int) ((long) n * b / binsPerFragment);
+            int end = Math.max(start + 1, (int) ((long) n * (b + 1) / binsPerFragment));
+            double lo = values[start];
+            double hi = values[start];
+            for (int i = start + 1; i < end && i < n; i++) {
+                double v = values[i];
+                if (v < lo) lo = v;
+                else if (v > hi) hi = v;
+            }
+            min[base + b] = lo;
+            max[base + b] = hi;
+        }
+        binSeconds[fragmentIndex] = (double) n / samplingRate / binsPerFragment;
+        if (!loaded[fragmentIndex]) {
+            loaded[fragmentIndex] = true;
+            loadedCount++;
+        }
+    }
+
+    public synchronized boolean isLoaded(int fragmentIndex) {
+        return fragmentIndex >= 0 && fragmentIndex < fragmentCount && loaded[fragmentIndex];
+    }
+
+    public synchronized boolean isComplete() {
+        return loadedCount == fragmentCount;
+    }
+
+    public int getFragmentCount() {
+        return fragmentCount;
+    }
+
+    public double getFragmentSeconds() {
+        return fragmentSeconds;
+    }
+
+    // Tamaño que deben tener los arrays de fill()
+    public int maxPoints() {
+        return 2 * fragmentCount * binsPerFragment;
+    }
+
+    /**
+     * Writes the envelope as a single zig-zag line (min, max, min, max...) over the loaded
+     * fragments into {@code xs}/{@code ys}; returns the number of points.
+     */
+    public synchronized int fill(double[] xs, double[] ys) {
+        int count = 0;
+        for (int f = 0; f < fragmentCount; f++) {
+            if (!loaded[f]) continue;
+            double start = f * fragmentSeconds;
+            for (int b = 0; b < binsPerFragment; b++) {
+                double x = start + b * binSeconds[f];
+                int bin = f * binsPerFragment + b;
+                xs[count] = x;
+                ys[count++] = min[bin];
+                xs[count] = x + binSeconds[f] / 2;
+                ys[count++] = max[bin];
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,172 @@
+package executable;
+
+import javax.swing.SwingUtilities;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs the GUI's server requests, one virtual thread each, instead of one SwingWorker per action.
+ *
+ * Every request has a deadline; when it expires the task is interrupted and the callback gets a
+ * {@link TimeoutException}. Requests submitted with a key replace the previous request with the same
+ * key (selecting a new fragment cancels the load of the old one), and {@link #cancelAllExcept(String)}
+ * drops what the screens the user leaves were waiting for. Callbacks run on the EDT and are skipped
+ * for cancelled requests.
+ */
+public class RequestExecutor implements AutoCloseable {
+
+    public static final Duration DEFAULT_DEADLINE = Duration.ofSeconds(30);
+
+    public interface Task<T> {
+        T call() throws Exception;
+    }
+
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "request-deadlines");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<String, Request<?>> latest = new ConcurrentHashMap<>();
+
+    /**
+     * A submitted request. {@link #cancel()} interrupts the task if it is still running;
+     * the callback is then never called, even if the result is already waiting on the EDT.
+     */
+    public static final class Request<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private volatile Future<?> running;
+        private volatile boolean cancelled;
+
+        public void cancel() {
+            cancelled = true;
+            if (result.cancel(false)) {
+                Future<?> f = running;
+                if (f != null) f.cancel(true);
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public boolean isDone() {
+            return result.isDone();
+        }
+
+        // Para componer con otros futures; completa en el hilo virtual de la tarea
+        public CompletableFuture<T> future() {
+            return result;
+        }
+    }
+
+    public <T> Request<T> submit(Task<T> task, BiConsumer<T, Throwable> onDone) {
+        return submit(null, DEFAULT_DEADLINE, task, onDone);
+    }
+
+    public <T> Request<T> submit(String key, Task<T> task, BiConsumer<T, Throwable> onDone) {
+        return submit(key, DEFAULT_DEADLINE, task, onDone);
+    }
+
+    /**
+     * Runs {@code task} on a virtual thread and calls {@code onDone(result, error)} on the EDT.
+     * {@code error} is the task's own exception (unwrapped), or a {@link TimeoutException} after {@code deadline}.
+     */
+    public <T> Request<T> submit(String key, Duration deadline, Task<T> task, BiConsumer<T, Throwable> onDone) {
+        Request<T> request = new Request<>();
+        if (key != null) {
+            Request<?> previous = latest.put(key, request);
+            if (previous != null) previous.cancel();
+        }
+        ScheduledFuture<?> timeout = deadlines.schedule(() -> {
+            if (request.result.completeExceptionally(
+                    new TimeoutException("Request timed out after " + deadline.toSeconds() + " s"))) {
+                Future<?> f = request.running;
+                if (f != null) f.cancel(true);
+            }
+        }, deadline.toMillis(), TimeUnit.MILLISECONDS);
+
+        request.result.whenComplete((value, error) -> {
+            timeout.cancel(false);
+            if (request.isCancelled()) {
+                if (key != null) latest.remove(key, request);
+                return;
+            }
+            Throwable cause = unwrap(error);
+            SwingUtilities.invokeLater(() -> {
+                // Sigue registrada hasta aquí: se puede cancelar mientras espera en la cola del EDT
+                if (key != null) latest.remove(key, request);
+                if (!request.isCancelled() && onDone != null) onDone.accept(value, cause);
+            });
+        });
+
+        try {
+            request.running = workers.submit(() -> {
+                try {
+                    request.result.complete(task.call());
+                } catch (CancellationException e) {
+                    request.cancel(); // la tarea esperaba algo que se canceló
+                } catch (Throwable t) {
+                    request.result.completeExceptionally(t);
+                }
+            });
+        } catch (RuntimeException e) {
+            request.result.completeExceptionally(e); // executor cerrado
+        }
+        // cancel() pudo llegar antes de asignar running
+        if (request.result.isDone() && request.running != null) {
+            request.running.cancel(true);
+        }
+        return request;
+    }
+
+    // Para encadenar trabajo de CPU (p.ej. decodificar) sin usar el common pool
+    public Executor executor() {
+        return workers;
+    }
+
+    public void cancel(String key) {
+        Request<?> request = latest.remove(key);
+        if (request != null) request.cancel();
+    }
+
+    public void cancelAll() {
+        cancelAllExcept(null);
+    }
+
+    // Al cambiar de pantalla: se cancela todo lo lanzado con otra clave
+    public void cancelAllExcept(String keep) {
+        for (String key : latest.keySet()) {
+            if (!key.equals(keep)) cancel(key);
+        }
+    }
+
+    @Override
+    public void close() {
+        cancelAll();
+        workers.shutdownNow();
+        deadlines.shutdownNow();
+    }
+
+    static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException)
+                && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
@@ -0,0 +1,113 @@
+package executable;
+
+import org.jfree.data.DomainOrder;
+import org.jfree.data.xy.AbstractXYDataset;
+
+/**
+ * Single-series XYDataset over primitive arrays, so JFreeChart reads the samples without
+ * an XYDataItem per point. The content is swapped in place with one change event per update.
+ *
+ * Two layouts:
+ * <ul>
+ *   <li>implicit time axis: y = values[i], x = x0 + i * dx (raw samples)</li>
+ *   <li>explicit points: x = xs[i], y = ys[i] (decimated output)</li>
+ * </ul>
+ * The arrays are referenced, not copied: callers update them on the EDT only.
+ */
+public class SignalXYDataset extends AbstractXYDataset {
+
+    private final Comparable<?> seriesKey;
+    private double[] xs;          // null -> eje de tiempo implícito
+    private double[] ys;
+    private int[] intYs;          // muestras enteras sin convertir
+    private double x0;
+    private double dx = 1.0;
+    private int count;
+
+    public SignalXYDataset(Comparable<?> seriesKey) {
+        this.seriesKey = seriesKey;
+    }
+
+    public void setSamples(double[] values, int count, double x0, double dx) {
+        checkCount(values.length, count);
+        this.xs = null;
+        this.ys = values;
+        this.intYs = null;
+        this.x0 = x0;
+        this.dx = dx;
+        this.count = count;
+        fireDatasetChanged();
+    }
+
+    public void setSamples(int[] values, int count, double x0, double dx) {
+        checkCount(values.length, count);
+        this.xs = null;
+        this.ys = null;
+        this.intYs = values;
+        this.x0 = x0;
+        this.dx = dx;
+        this.count = count;
+        fireDatasetChanged();
+    }
+
+    public void setPoints(double[] xs, double[] ys, int count) {
+        checkCount(Math.min(xs.length, ys.length), count);
+        this.xs = xs;
+        this.ys = ys;
+        this.intYs = null;
+        this.count = count;
+        fireDatasetChanged();
+    }
+
+    public void clear() {
+        if (count == 0) return;
+        count = 0;
+        fireDatasetChanged();
+    }
+
+    @Override
+    public int getSeriesCount() {
+        return 1;
+    }
+
+    @Override
+    public Comparable<?> getSeriesKey(int series) {
+        return seriesKey;
+    }
+
+    @Override
+    public DomainOrder getDomainOrder() {
+        return DomainOrder.ASCENDING;
+    }
+
+    @Override
+    public int getItemCount(int series) {
+        return count;
+    }
+
+    @Override
+    public double getXValue(int series, int item) {
+        return xs != null ? xs[item] : x0 + item * dx;
+    }
+
+    @Override
+    public double getYValue(int series, int item) {
+        return intYs != null ? intYs[item] : ys[item];
+    }
+
+    @Override
+    public Number getX(int series, int item) {
+        return getXValue(series, item);
+    }
+
+    @Override
+    public Number getY(int series, int item) {
+        return getYValue(series, item);
+    }
+
+    private static void checkCount(int length, int count) {
+        if (count < 0 || count > length) {
+            throw new IllegalArgumentException("count " + count + " out of 0.." + length);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package executable;
+
+import common.signal.SampleRingBuffer;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Sweep-style monitor trace (like a bedside monitor): the newest samples overwrite the
+ * oldest ones from left to right, with a small gap in front of the cursor.
+ * Channel 0 (ECG) is drawn on the top half and channel 1 (EDA) on the bottom half.
+ *
+ * Painting only reads the ring buffer, so the repaint rate is independent of how fast
+ * samples arrive; each paint is one min/max pass over the visible window.
+ */
+public class SweepPanel extends JComponent {
+
+    private static final Color[] TRACE_COLORS = {new Color(0, 160, 60), new Color(0, 112, 192)};
+    private static final String[] CHANNEL_NAMES = {"ECG", "EDA"};
+
+    private final String title;
+    private final SampleRingBuffer ring;
+    private final int samplingRate;
+    private final int windowSamples;
+
+    // Reutilizados entre repintados
+    private int[] columnMin = new int[0];
+    private int[] columnMax = new int[0];
+    private final double[] scaleMin = {Double.NaN, Double.NaN};
+    private final double[] scaleMax = {Double.NaN, Double.NaN};
+
+    public SweepPanel(String title, SampleRingBuffer ring, int samplingRate, double windowSeconds) {
+        if (windowSeconds * samplingRate > ring.getCapacity()) {
+            throw new IllegalArgumentException("Window does not fit in the ring buffer");
+        }
+        this.title = title;
+        this.ring = ring;
+        this.samplingRate = samplingRate;
+        this.windowSamples = (int) (windowSeconds * samplingRate);
+        setOpaque(true);
+        setBackground(Color.BLACK);
+        setPreferredSize(new Dimension(600, 160));
+    }
+
+    public SampleRingBuffer getRing() {
+        return ring;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        g.setColor(getBackground());
+        g.fillRect(0, 0, getWidth(), getHeight());
+
+        int width = getWidth() - 10;
+        int rowHeight = (getHeight() - 20) / 2;
+        if (width <= 0 || rowHeight <= 0) return;
+        if (columnMin.length < width) {
+            columnMin = new int[width];
+            columnMax = new int[width];
+        }
+
+        long write = ring.getWriteIndex();
+        g.setColor(Color.LIGHT_GRAY);
+        g.drawString(title + (write == 0 ? "  (waiting for data)" : "  " + (write / samplingRate) + " s"), 6, 14);
+
+        int channels = Math.min(2, ring.getChannelCount());
+        for (int ch = 0; ch < channels; ch++) {
+            paintChannel(g, ch, write, 5, 20 + ch * rowHeight, width, rowHeight - 4);
+        }
+    }
+
+    private void paintChannel(Graphics g, int channel, long write, int x0, int y0, int width, int height) {
+        long oldest = Math.max(0, write - ring.getCapacity());
+        int cursor = (int) (write % windowSamples);
+        long currentSweep = write - cursor;
+        int gap = Math.max(1, windowSamples / 50);
+
+        // Min/max por columna de píxeles
+        int lo = Integer.MAX_VALUE;
+        int hi = Integer.MIN_VALUE;
+        for (int c = 0; c < width; c++) {
+            int p0 = (int) ((long) windowSamples * c / width);
+            int p1 = Math.max(p0 + 1, (int) ((long) windowSamples * (c + 1) / width));
+            columnMin[c] = Integer.MAX_VALUE;
+            if (p0 >= cursor && p0 < cursor + gap) continue;
+
+            long start = (p0 < cursor ? currentSweep : currentSweep - windowSamples) + p0;
+            long end = Math.min(start + (p1 - p0), p0 < cursor ? write : currentSweep);
+            if (start < oldest) continue;
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (long i = start; i < end; i++) {
+                int v = ring.get(channel, i);
+                if (v < min) min = v;
+                if (v > max) max = v;
+            }
+            columnMin[c] = min;
+            columnMax[c] = max;
+            if (min < lo) lo = min;
+            if (max > hi) hi = max;
+        }
+        if (lo > hi) return;
+
+        // La escala crece al instante y se encoge despacio: el trazo no "salta" en cada repintado
+        double sMin = scaleMin[channel];
+        double sMax = scaleMax[channel];
+        sMin = Double.isNaN(sMin) || lo < sMin ? lo : sMin + (lo - sMin) * 0.05;
+        sMax = Double.isNaN(sMax) || hi > sMax ? hi : sMax + (hi - sMax) * 0.05;
+        scaleMin[channel] = sMin;
+        scaleMax[channel] = sMax;
+        double range = Math.max(1, sMax - sMin);
+
+        g.setColor(Color.DARK_GRAY);
+        g.drawString(CHANNEL_NAMES[channel], x0 + 2, y0 + 12);
+        g.setColor(TRACE_COLORS[channel]);
+        int prevY = -1;
+        for (int c = 0; c < width; c++) {
+            if (columnMin[c] == Integer.MAX_VALUE) {
+                prevY = -1;
+                continue;
+            }
+            int yTop = y0 + (int) ((sMax - columnMax[c]) / range * height);
+            int yBottom = y0 + (int) ((sMax - columnMin[c]) / range * height);
+            // Une con la columna anterior para que el trazo sea continuo
+            if (prevY >= 0) {
+                yTop = Math.min(yTop, prevY);
+                yBottom = Math.max(yBottom, prevY);
+            }
+            g.drawLine(x0 + c, yTop, x0 + c, yBottom);
+            prevY = y0 + (int) ((sMax - (columnMin[c] + columnMax[c]) / 2.0) / range * height);
+        }
+
+        // Cursor
+        int cursorX = x0 + (int) ((long) cursor * width / windowSamples);
+        g.setColor(Color.GRAY);
+        g.drawLine(cursorX, y0, cursorX, y0 + height);
+    }
+}
@@ -10,8 +10,7 @@ public class DiagnosisFile {
     private String medication;
     private LocalDate date;
     private int patientId;
-    private String sensorDataECG;
-    private String sensorDataEDA;
+    private SignalBuffer signals;
     private boolean status;
 
     public DiagnosisFile(int id) {
@@ -32,15 +31,14 @@ public class DiagnosisFile {
         this.patientId= patientId;
     }
 
-    public DiagnosisFile(int id, ArrayList<String> symptoms, String diagnosis, String medication, LocalDate date, int patientId, String sensorDataECG, String sensorDataEDA) {
+    public DiagnosisFile(int id, ArrayList<String> symptoms, String diagnosis, String medication, LocalDate date, int patientId, SignalBuffer signals) {
         this.id = id;
         this.symptoms = symptoms;
         this.diagnosis = diagnosis;
         this.medication = medication;
         this.date = date;
         this.patientId= patientId;
-        this.sensorDataECG = sensorDataECG;
-        this.sensorDataEDA = sensorDataEDA;
+        this.signals = signals;
         this.status = false;
     }
 
@@ -92,19 +90,12 @@ public class DiagnosisFile {
         this.patientId = id;
     }
 
-    public String getSensorDataECG() {
-        return sensorDataECG;
+    public SignalBuffer getSignals() {
+        return signals;
     }
 
-    public void setSensorDataECG(String sensorDataECG) {
-        this.sensorDataECG = sensorDataECG;
-    }
-
-    public String getSensorDataEDA() {
-        return sensorDataEDA;
-    }
-    public void setSensorDataEDA(String sensorDataEDA) {
-        this.sensorDataEDA = sensorDataEDA;
+    public void setSignals(SignalBuffer signals) {
+        this.signals = signals;
     }
 
     public boolean getStatus() {
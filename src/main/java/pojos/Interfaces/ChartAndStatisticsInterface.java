@@ -1,5 +1,50 @@
 package pojos.Interfaces;
 
+/**
+ * Heart rate variability of a recording, from its R peaks. Load the beats with {@link #setBeats};
+ * the getters refer to the last recording loaded. Values that cannot be computed (too few beats,
+ * or a recording too short for the frequency bands) are NaN.
+ *
+ * Only normal (NN) intervals are used: between {@link #MIN_RR_MS} and {@link #MAX_RR_MS}, and within
+ * {@link #MAX_RR_DEVIATION} of the median of the five intervals around them. The rest are missed or
+ * extra detections and ectopic beats, not heart rate.
+ */
 public interface ChartAndStatisticsInterface {
-    void showECGandEDAChartsFromStrings(String ecgData, String edaData, int sampleRate);
+
+    double MIN_RR_MS = 250;
+    double MAX_RR_MS = 2500;
+    double MAX_RR_DEVIATION = 0.20;
+
+    // Bandas de frecuencia (Hz) de la Task Force de 1996
+    double LF_LOW_HZ = 0.04;
+    double LF_HIGH_HZ = 0.15;
+    double HF_HIGH_HZ = 0.40;
+
+    /**
+     * @param beats R peak sample indices in ascending order, {@code beatCount} of them
+     */
+    void setBeats(long[] beats, int beatCount, int samplingRate);
+
+    // Intervalos NN
+    int getRrCount();
+
+    double getMeanRrMs();
+
+    double getMinRrMs();
+
+    double getMaxRrMs();
+
+    double getSdnnMs();
+
+    double getRmssdMs();
+
+    // Porcentaje de diferencias sucesivas de más de 50 ms
+    double getPnn50();
+
+    // Potencia en ms² del tacograma remuestreado (Welch)
+    double getLfPower();
+
+    double getHfPower();
+
+    double getLfHfRatio();
 }
@@ -1,107 +1,301 @@
-/**package pojos.Interfaces;
-import org.jfree.chart.ChartFactory;
-import org.jfree.chart.ChartPanel;
-import org.jfree.chart.JFreeChart;
-import org.jfree.chart.plot.PlotOrientation;
-import org.jfree.data.xy.XYSeries;
-import org.jfree.data.xy.XYSeriesCollection;
+package pojos.Interfaces;
 
-import javax.swing.*;
-import java.awt.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
+/**
+ * HRV statistics over primitive arrays. Time domain (SDNN, RMSSD, pNN50) comes straight from the
+ * NN intervals; frequency domain (LF, HF) from a Welch periodogram of the RR tachogram resampled
+ * at {@value #RESAMPLING_HZ} Hz by linear interpolation: {@value #SEGMENT}-point segments
+ * (64 s), 50% overlap, linear detrend and Hann window. Recordings shorter than one segment have
+ * no frequency domain values.
+ *
+ * The NN intervals, the resampled tachogram and the FFT buffers are kept between calls, so one
+ * instance can go through any number of recordings without allocating per beat. Not thread safe:
+ * use one instance per thread.
+ */
+public class ChartStatisticsRecording implements ChartAndStatisticsInterface {
+
+    public static final double RESAMPLING_HZ = 4.0;
+    public static final int SEGMENT = 256;
+    private static final int HALF = SEGMENT / 2;
+
+    private static final double[] WINDOW = new double[SEGMENT];
+    private static final double WINDOW_POWER;
+    private static final double[] COS = new double[HALF];
+    private static final double[] SIN = new double[HALF];
+    private static final int[] BIT_REVERSE = new int[SEGMENT];
+
+    static {
+        double power = 0;
+        for (int i = 0; i < SEGMENT; i++) {
+            WINDOW[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / SEGMENT);
+            power += WINDOW[i] * WINDOW[i];
+        }
+        WINDOW_POWER = power;
+        for (int i = 0; i < HALF; i++) {
+            COS[i] = Math.cos(2 * Math.PI * i / SEGMENT);
+            SIN[i] = -Math.sin(2 * Math.PI * i / SEGMENT);
+        }
+        int bits = Integer.numberOfTrailingZeros(SEGMENT);
+        for (int i = 0; i < SEGMENT; i++) {
+            BIT_REVERSE[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+    }
+
+    private int rrCount;
+    private double meanRr;
+    private double minRr;
+    private double maxRr;
+    private double sdnn;
+    private double rmssd;
+    private double pnn50;
+    private double lfPower;
+    private double hfPower;
+
+    // Buffers reutilizables
+    private double[] nn = new double[0];
+    private final double[] neighbours = new double[5];
+    private double[] tachogram = new double[0];
+    private final double[] re = new double[SEGMENT];
+    private final double[] im = new double[SEGMENT];
+    private final double[] psd = new double[HALF + 1];
 
-public class ChartStatisticsRecordings implements ChartAndStatisticsInterface{
     @Override
-    public void showECGandEDAChartsFromStrings(String ecgString, String edaString, int sampleRate) {
-        if (sampleRate <= 0) {
-            throw new IllegalArgumentException("sampleRate debe ser mayor que 0");
+    public void setBeats(long[] beats, int beatCount, int samplingRate) {
+        if (samplingRate <= 0) {
+            throw new IllegalArgumentException("samplingRate must be > 0");
         }
+        normalIntervals(beats, beatCount, samplingRate);
+        timeDomain(beatCount);
+        int n = resample(beats, beatCount, samplingRate);
+        welch(n);
+    }
 
-        int[] ecgData = parseSensorStringToIntArray(ecgString);
-        int[] edaData = parseSensorStringToIntArray(edaString);
+    @Override
+    public int getRrCount() {
+        return rrCount;
+    }
 
-        // Máximo de muestras a mostrar (10 segundos)
-        int maxSamplesECG = Math.min(ecgData.length, sampleRate * 10);
-        int maxSamplesEDA = Math.min(edaData.length, sampleRate * 10);
+    @Override
+    public double getMeanRrMs() {
+        return meanRr;
+    }
 
-        // Crear series y datasets
-        XYSeries ecgSeries = new XYSeries("ECG");
-        XYSeries edaSeries = new XYSeries("EDA");
+    @Override
+    public double getMinRrMs() {
+        return minRr;
+    }
 
-        for (int i = 0; i < maxSamplesECG; i++) {
-            double time = (double) i / sampleRate;
-            ecgSeries.add(time, ecgData[i]);
-        }
+    @Override
+    public double getMaxRrMs() {
+        return maxRr;
+    }
 
-        for (int i = 0; i < maxSamplesEDA; i++) {
-            double time = (double) i / sampleRate;
-            edaSeries.add(time, edaData[i]);
+    @Override
+    public double getSdnnMs() {
+        return sdnn;
+    }
+
+    @Override
+    public double getRmssdMs() {
+        return rmssd;
+    }
+
+    @Override
+    public double getPnn50() {
+        return pnn50;
+    }
+
+    @Override
+    public double getLfPower() {
+        return lfPower;
+    }
+
+    @Override
+    public double getHfPower() {
+        return hfPower;
+    }
+
+    @Override
+    public double getLfHfRatio() {
+        return hfPower > 0 ? lfPower / hfPower : Double.NaN;
+    }
+
+    /**
+     * {@code nn[i]} = interval between beats i and i + 1 in ms, or NaN if it is not a normal one.
+     */
+    private void normalIntervals(long[] beats, int beatCount, int samplingRate) {
+        int count = Math.max(0, beatCount - 1);
+        if (nn.length < count) {
+            nn = new double[count];
+        }
+        double msPerSample = 1000.0 / samplingRate;
+        for (int i = 0; i < count; i++) {
+            double rr = (beats[i + 1] - beats[i]) * msPerSample;
+            if (rr < MIN_RR_MS || rr > MAX_RR_MS) {
+                nn[i] = Double.NaN;
+                continue;
+            }
+            // Mediana de los cinco intervalos alrededor (ordenados por inserción, sin reservar nada)
+            int m = 0;
+            for (int j = Math.max(0, i - 2); j <= Math.min(count - 1, i + 2); j++) {
+                double v = (beats[j + 1] - beats[j]) * msPerSample;
+                int k = m++;
+                while (k > 0 && neighbours[k - 1] > v) {
+                    neighbours[k] = neighbours[k - 1];
+                    k--;
+                }
+                neighbours[k] = v;
+            }
+            double median = neighbours[m / 2];
+            nn[i] = Math.abs(rr - median) <= MAX_RR_DEVIATION * median ? rr : Double.NaN;
         }
+    }
 
-        XYSeriesCollection ecgDataset = new XYSeriesCollection();
-        ecgDataset.addSeries(ecgSeries);
-
-        XYSeriesCollection edaDataset = new XYSeriesCollection();
-        edaDataset.addSeries(edaSeries);
-
-        // Crear gráficos
-        JFreeChart ecgChart = ChartFactory.createXYLineChart(
-                "ECG Signal (max 10s)", "Time (s)", "Amplitude",
-                ecgDataset, PlotOrientation.VERTICAL, false, true, false
-        );
-
-        JFreeChart edaChart = ChartFactory.createXYLineChart(
-                "EDA Signal (max 10s)", "Time (s)", "Amplitude",
-                edaDataset, PlotOrientation.VERTICAL, false, true, false
-        );
-
-        // Paneles y frame
-        ChartPanel ecgPanel = new ChartPanel(ecgChart);
-        ChartPanel edaPanel = new ChartPanel(edaChart);
-        ecgPanel.setPreferredSize(new Dimension(900, 300));
-        edaPanel.setPreferredSize(new Dimension(900, 300));
-
-        JFrame frame = new JFrame("BITalino ECG/EDA Visualization");
-        frame.setLayout(new GridLayout(2, 1));
-        frame.add(ecgPanel);
-        frame.add(edaPanel);
-        frame.pack();
-        frame.setLocationRelativeTo(null);
-        frame.setVisible(true);
+    private void timeDomain(int beatCount) {
+        double sum = 0;
+        double sumSq = 0;
+        double min = Double.MAX_VALUE;
+        double max = 0;
+        int count = 0;
+        double diffSq = 0;
+        int diffCount = 0;
+        int over50 = 0;
+        double previousRr = Double.NaN;
+        for (int i = 0; i < beatCount - 1; i++) {
+            double rr = nn[i];
+            if (Double.isNaN(rr)) {
+                previousRr = Double.NaN; // la diferencia sucesiva no cruza un intervalo descartado
+                continue;
+            }
+            sum += rr;
+            sumSq += rr * rr;
+            min = Math.min(min, rr);
+            max = Math.max(max, rr);
+            count++;
+            if (!Double.isNaN(previousRr)) {
+                double d = rr - previousRr;
+                diffSq += d * d;
+                diffCount++;
+                if (Math.abs(d) > 50) over50++;
+            }
+            previousRr = rr;
+        }
+        rrCount = count;
+        meanRr = count > 0 ? sum / count : Double.NaN;
+        minRr = count > 0 ? min : Double.NaN;
+        maxRr = count > 0 ? max : Double.NaN;
+        sdnn = count > 1 ? Math.sqrt(Math.max(0, (sumSq - sum * meanRr) / (count - 1))) : Double.NaN;
+        rmssd = diffCount > 0 ? Math.sqrt(diffSq / diffCount) : Double.NaN;
+        pnn50 = diffCount > 0 ? 100.0 * over50 / diffCount : Double.NaN;
     }
+
     /**
-     * Parsear un string en formato "v1;v2;v3;..." a un int[].
-     * Ignora entradas vacías; si un token no es numérico lo salta.
+     * Tachogram: each NN interval is a point (time of the beat that closes it, RR in ms).
+     * Interpolates it on a regular grid from the first point to the last; the discarded intervals
+     * are bridged. Returns the number of samples written to {@link #tachogram}.
      */
-/**
-    private static int[] parseSensorStringToIntArray(String s) {
-        if (s == null || s.trim().isEmpty()) {
-            return new int[0];
+    private int resample(long[] beats, int beatCount, int samplingRate) {
+        if (beatCount < 2) return 0;
+        int capacity = (int) ((beats[beatCount - 1] - beats[0]) / (double) samplingRate * RESAMPLING_HZ) + 2;
+        if (tachogram.length < capacity) {
+            tachogram = new double[capacity];
+        }
+        double step = 1.0 / RESAMPLING_HZ;
+        double start = Double.NaN;
+        double previousT = Double.NaN;
+        double previousRr = Double.NaN;
+        int n = 0;
+        for (int i = 0; i < beatCount - 1; i++) {
+            double rr = nn[i];
+            if (Double.isNaN(rr)) continue;
+            double t = beats[i + 1] / (double) samplingRate;
+            if (n == 0) {
+                start = t;
+                tachogram[n++] = rr;
+            } else {
+                double grid;
+                while ((grid = start + n * step) <= t) {
+                    tachogram[n++] = previousRr + (rr - previousRr) * (grid - previousT) / (t - previousT);
+                }
+            }
+            previousT = t;
+            previousRr = rr;
         }
+        return n;
+    }
 
-        String[] parts = s.split(";");
-        List<Integer> list = new ArrayList<>(parts.length);
-
-        for (String p : parts) {
-            if (p == null) continue;
-            String token = p.trim();
-            if (token.isEmpty()) continue;
-            try {
-                // Reemplazar coma decimal si por error la usan (no habitual aquí)
-                token = token.replace(",", "");
-                int val = Integer.parseInt(token);
-                list.add(val);
-            } catch (NumberFormatException ex) {
-                // Saltar tokens no numéricos (puedes registrar un warning si quieres)
+    private void welch(int n) {
+        Arrays.fill(psd, 0);
+        int segments = 0;
+        double xMean = (SEGMENT - 1) / 2.0;
+        double xVar = 0;
+        for (int i = 0; i < SEGMENT; i++) xVar += (i - xMean) * (i - xMean);
+
+        for (int from = 0; from + SEGMENT <= n; from += HALF) {
+            // Quitar la tendencia lineal del segmento antes de la ventana
+            double yMean = 0;
+            for (int i = 0; i < SEGMENT; i++) yMean += tachogram[from + i];
+            yMean /= SEGMENT;
+            double cov = 0;
+            for (int i = 0; i < SEGMENT; i++) cov += (i - xMean) * (tachogram[from + i] - yMean);
+            double slope = cov / xVar;
+            for (int i = 0; i < SEGMENT; i++) {
+                re[i] = (tachogram[from + i] - yMean - slope * (i - xMean)) * WINDOW[i];
+                im[i] = 0;
+            }
+            fft(re, im);
+            for (int k = 0; k <= HALF; k++) {
+                psd[k] += re[k] * re[k] + im[k] * im[k];
             }
+            segments++;
+        }
+        if (segments == 0) {
+            lfPower = Double.NaN;
+            hfPower = Double.NaN;
+            return;
         }
 
-        // Convertir List<Integer> a int[]
-        int[] arr = new int[list.size()];
-        for (int i = 0; i < list.size(); i++) arr[i] = list.get(i);
-        return arr;
+        // Densidad espectral de un lado (ms²/Hz) por el ancho de cada bin
+        double df = RESAMPLING_HZ / SEGMENT;
+        double scale = 2.0 / (segments * RESAMPLING_HZ * WINDOW_POWER) * df;
+        double lf = 0;
+        double hf = 0;
+        for (int k = 1; k < HALF; k++) {
+            double f = k * df;
+            if (f >= LF_LOW_HZ && f < LF_HIGH_HZ) lf += psd[k] * scale;
+            else if (f >= LF_HIGH_HZ && f < HF_HIGH_HZ) hf += psd[k] * scale;
+        }
+        lfPower = lf;
+        hfPower = hf;
     }
 
-}*/
+    // FFT radix 2 en el sitio, de tamaño SEGMENT
+    private static void fft(double[] re, double[] im) {
+        for (int i = 0; i < SEGMENT; i++) {
+            int j = BIT_REVERSE[i];
+            if (j > i) {
+                double t = re[i]; re[i] = re[j]; re[j] = t;
+                t = im[i]; im[i] = im[j]; im[j] = t;
+            }
+        }
+        for (int size = 2; size <= SEGMENT; size <<= 1) {
+            int half = size >> 1;
+            int stride = SEGMENT / size;
+            for (int from = 0; from < SEGMENT; from += size) {
+                for (int k = 0; k < half; k++) {
+                    double wr = COS[k * stride];
+                    double wi = SIN[k * stride];
+                    int a = from + k;
+                    int b = a + half;
+                    double xr = re[b] * wr - im[b] * wi;
+                    double xi = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - xr;
+                    im[b] = im[a] - xi;
+                    re[a] += xr;
+                    im[a] += xi;
+                }
+            }
+        }
+    }
+}
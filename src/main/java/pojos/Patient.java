@@ -201,16 +201,17 @@ public class Patient implements PatientInterface {
     public void receiveData( List<int[]> sensorData) {
         DiagnosisFile diagnosis= new DiagnosisFile(this.idPatient);
 
-        String ecgDataString = fromAcquiredIntegerToString(sensorData, 0);
-        String edaDataString = fromAcquiredIntegerToString(sensorData, 1);
-        diagnosis.setSensorDataECG(ecgDataString);
-        diagnosis.setSensorDataEDA(edaDataString);
+        // Cada frame trae una muestra por canal: [ECG, EDA]
+        SignalBuffer signals = SignalBuffer.fromFrames(sensorData, 2,
+                SignalBuffer.DEFAULT_SAMPLING_RATE, System.currentTimeMillis());
+        signals.trimToSize();
+        diagnosis.setSignals(signals);
         this.addDiagnosisToDiagnosisList(diagnosis);
 
-        System.out.println("Paciente " + this.namePatient + " recibió datos: ECG="
-                + sensorData.get(0)+ " EDA=" + sensorData.get(1));
+        System.out.println("Paciente " + this.namePatient + " recibió datos: " + signals);
     }
 
+    // Solo para exportar en el formato de texto antiguo; receiveData ya no lo usa
     @Override
     public String fromAcquiredIntegerToString(List<int[]> sensorData, int channel) {
         // Verificación del canal
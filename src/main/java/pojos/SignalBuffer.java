@@ -0,0 +1,213 @@
+package pojos;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Raw BITalino samples of one recording, one primitive array per channel.
+ * Samples are kept as short (BITalino ADCs are 10 bit); a channel is widened to int
+ * only if a value does not fit. An hour at 1000 Hz is about 7 MB per channel instead of
+ * the tens of MB the comma separated Strings needed.
+ */
+public class SignalBuffer {
+
+    public static final int CHANNEL_ECG = 0;
+    public static final int CHANNEL_EDA = 1;
+    public static final int DEFAULT_SAMPLING_RATE = 1000;
+
+    private final int samplingRate;
+    private final long startTimestamp;
+    private final short[][] narrow;
+    private final int[][] wide;     // solo para canales que no caben en short
+    private int sampleCount;
+
+    public SignalBuffer(int channelCount, int samplingRate, long startTimestamp, int initialCapacity) {
+        if (channelCount <= 0) {
+            throw new IllegalArgumentException("channelCount must be > 0");
+        }
+        if (samplingRate <= 0) {
+            throw new IllegalArgumentException("samplingRate must be > 0");
+        }
+        this.samplingRate = samplingRate;
+        this.startTimestamp = startTimestamp;
+        this.narrow = new short[channelCount][Math.max(16, initialCapacity)];
+        this.wide = new int[channelCount][];
+    }
+
+    public SignalBuffer(int channelCount, int samplingRate, long startTimestamp) {
+        this(channelCount, samplingRate, startTimestamp, 10 * samplingRate);
+    }
+
+    /**
+     * Builds the buffer from acquired frames, each frame holding one sample per channel.
+     */
+    public static SignalBuffer fromFrames(List<int[]> frames, int channelCount, int samplingRate, long startTimestamp) {
+        SignalBuffer buffer = new SignalBuffer(channelCount, samplingRate, startTimestamp, frames.size());
+        for (int[] frame : frames) {
+            buffer.appendFrame(frame);
+        }
+        return buffer;
+    }
+
+    /**
+     * Wraps already separated channels (all of the same length).
+     */
+    public static SignalBuffer fromChannels(int[][] channels, int samplingRate, long startTimestamp) {
+        int n = channels.length == 0 ? 0 : channels[0].length;
+        SignalBuffer buffer = new SignalBuffer(channels.length, samplingRate, startTimestamp, n);
+        for (int ch = 0; ch < channels.length; ch++) {
+            if (channels[ch].length != n) {
+                throw new IllegalArgumentException("All channels must have the same length");
+            }
+            for (int i = 0; i < n; i++) {
+                buffer.store(ch, i, channels[ch][i]);
+            }
+        }
+        buffer.sampleCount = n;
+        return buffer;
+    }
+
+    public void appendFrame(int[] frame) {
+        if (frame.length < narrow.length) {
+            throw new IllegalArgumentException("Frame has " + frame.length + " values, expected " + narrow.length);
+        }
+        ensureCapacity(sampleCount + 1);
+        for (int ch = 0; ch < narrow.length; ch++) {
+            store(ch, sampleCount, frame[ch]);
+        }
+        sampleCount++;
+    }
+
+    public int get(int channel, int index) {
+        if (index < 0 || index >= sampleCount) {
+            throw new IndexOutOfBoundsException("Sample " + index + " of " + sampleCount);
+        }
+        int[] w = wide[channel];
+        return w != null ? w[index] : narrow[channel][index];
+    }
+
+    public int[] toIntArray(int channel) {
+        int[] values = new int[sampleCount];
+        copyTo(channel, 0, sampleCount, values, 0);
+        return values;
+    }
+
+    public double[] toDoubleArray(int channel) {
+        double[] values = new double[sampleCount];
+        copyTo(channel, 0, sampleCount, values, 0);
+        return values;
+    }
+
+    public void copyTo(int channel, int from, int to, int[] dst, int dstOffset) {
+        checkRange(from, to);
+        int[] w = wide[channel];
+        if (w != null) {
+            System.arraycopy(w, from, dst, dstOffset, to - from);
+            return;
+        }
+        short[] s = narrow[channel];
+        for (int i = from; i < to; i++) {
+            dst[dstOffset++] = s[i];
+        }
+    }
+
+    public void copyTo(int channel, int from, int to, double[] dst, int dstOffset) {
+        checkRange(from, to);
+        int[] w = wide[channel];
+        if (w != null) {
+            for (int i = from; i < to; i++) dst[dstOffset++] = w[i];
+            return;
+        }
+        short[] s = narrow[channel];
+        for (int i = from; i < to; i++) {
+            dst[dstOffset++] = s[i];
+        }
+    }
+
+    public int getChannelCount() {
+        return narrow.length;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public int getSamplingRate() {
+        return samplingRate;
+    }
+
+    public long getStartTimestamp() {
+        return startTimestamp;
+    }
+
+    public double getDurationSeconds() {
+        return (double) sampleCount / samplingRate;
+    }
+
+    // Memoria aproximada de las muestras (sin cabeceras de objeto)
+    public long getSizeInBytes() {
+        long bytes = 0;
+        for (int ch = 0; ch < narrow.length; ch++) {
+            bytes += wide[ch] != null ? 4L * wide[ch].length : 2L * narrow[ch].length;
+        }
+        return bytes;
+    }
+
+    public void trimToSize() {
+        for (int ch = 0; ch < narrow.length; ch++) {
+            if (wide[ch] != null) {
+                wide[ch] = Arrays.copyOf(wide[ch], sampleCount);
+            } else {
+                narrow[ch] = Arrays.copyOf(narrow[ch], sampleCount);
+            }
+        }
+    }
+
+    private void store(int channel, int index, int value) {
+        int[] w = wide[channel];
+        if (w != null) {
+            w[index] = value;
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            narrow[channel][index] = (short) value;
+        } else {
+            widen(channel)[index] = value;
+        }
+    }
+
+    private int[] widen(int channel) {
+        short[] s = narrow[channel];
+        int[] w = new int[s.length];
+        for (int i = 0; i < s.length; i++) w[i] = s[i];
+        wide[channel] = w;
+        narrow[channel] = new short[0];
+        return w;
+    }
+
+    private void ensureCapacity(int needed) {
+        for (int ch = 0; ch < narrow.length; ch++) {
+            if (wide[ch] != null) {
+                if (wide[ch].length < needed) {
+                    wide[ch] = Arrays.copyOf(wide[ch], Math.max(needed, wide[ch].length * 2));
+                }
+            } else if (narrow[ch].length < needed) {
+                narrow[ch] = Arrays.copyOf(narrow[ch], Math.max(needed, narrow[ch].length * 2));
+            }
+        }
+    }
+
+    private void checkRange(int from, int to) {
+        if (from < 0 || to > sampleCount || from > to) {
+            throw new IndexOutOfBoundsException("Range " + from + "-" + to + " of " + sampleCount);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SignalBuffer{" +
+                "channels=" + narrow.length +
+                ", samples=" + sampleCount +
+                ", samplingRate=" + samplingRate +
+                ", startTimestamp=" + startTimestamp +
+                '}';
+    }
+}
@@ -0,0 +1,54 @@
+package common.protocol;
+
+import common.enums.Sex;
+import org.junit.Test;
+import pojos.DiagnosisFile;
+import pojos.Patient;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class LegacyListParserTest {
+
+    @Test
+    public void readsWhatToStringWrites() {
+        DiagnosisFile df = new DiagnosisFile(3, new ArrayList<>(List.of("Mareo", "Palpitaciones")),
+                "Sinus rhythm", "None", LocalDate.of(2025, 1, 2), 1);
+        Patient p = new Patient();
+        p.setIdPatient(1);
+        p.setNamePatient("Ana");
+        p.setSurnamePatient("O'Brien");
+        p.setSexPatient(Sex.FEMALE);
+        p.setHealthInsuranceNumberPatient(1234);
+        p.setDiagnosisList(new ArrayList<>(List.of(df)));
+
+        Patient parsed = LegacyListParser.parsePatientList(List.of(p).toString()).get(0);
+        assertEquals(1, parsed.getIdPatient());
+        assertEquals("Ana", parsed.getNamePatient());
+        assertEquals("O'Brien", parsed.getSurnamePatient());
+        assertEquals(Sex.FEMALE, parsed.getSexPatient());
+        assertEquals(1234, parsed.getHealthInsuranceNumberPatient());
+        DiagnosisFile file = parsed.getDiagnosisList().get(0);
+        assertEquals(3, file.getId());
+        assertEquals(List.of("Mareo", "Palpitaciones"), file.getSymptoms());
+        assertEquals(LocalDate.of(2025, 1, 2), file.getDate());
+    }
+
+    @Test
+    public void skipsUnknownKeys() {
+        String text = "[Patient{idPatient=4, nickname='Pepe', namePatient='Luis', bloodType=A+, userId=9}]";
+        Patient parsed = LegacyListParser.parsePatientList(text).get(0);
+        assertEquals(4, parsed.getIdPatient());
+        assertEquals("Luis", parsed.getNamePatient());
+        assertEquals(9, parsed.getUserId());
+
+        List<DiagnosisFile> files = LegacyListParser.parseDiagnosisFileList(
+                "[MedicalRecord{id='5', ward='Cardio', diagnosis='AF', patientId=4}]");
+        assertEquals(5, files.get(0).getId());
+        assertEquals("AF", files.get(0).getDiagnosis());
+        assertEquals(4, files.get(0).getPatientId());
+    }
+}
@@ -0,0 +1,235 @@
+package common.screening;
+
+import common.enums.ArrhythmiaType;
+import common.signal.EdaPipeline;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import pojos.DiagnosisFile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the rules of the kjar (rules/screening.drl) on a real session, fed with beat sequences
+ * built fragment by fragment.
+ */
+public class ArrhythmiaScreenerTest {
+
+    private static final int FS = 1000;
+    private static final int FRAGMENT = 10 * FS;
+
+    // RR en ms de cada tipo de fragmento
+    private static final double NORMAL = 833;   // 72 lpm
+    private static final double SLOW = 1333;    // 45 lpm
+    private static final double FAST = 461;     // 130 lpm
+    private static final double IRREGULAR = -1; // 400-1000 ms al azar
+
+    private ArrhythmiaScreener screener;
+
+    @Before
+    public void openSession() {
+        screener = new ArrhythmiaScreener();
+    }
+
+    @After
+    public void closeSession() {
+        screener.close();
+    }
+
+    @Test
+    public void normalRhythmHasNoFindings() {
+        ScreeningResult result = screen(file(1), rhythm(NORMAL, 12));
+        assertFalse(result.toShortString(), result.isFlagged());
+        assertEquals(0, result.getPriority());
+    }
+
+    @Test
+    public void bradycardiaIsOneEpisode() {
+        double[] rr = rhythm(NORMAL, 12);
+        Arrays.fill(rr, 2, 7, SLOW);
+        ScreeningResult result = screen(file(2), rr);
+
+        Finding f = only(result, ArrhythmiaType.BRADYCARDIA);
+        assertEquals(2, f.getIndex());
+        assertEquals(6, f.getLastIndex());
+        assertEquals(20, f.getStartSeconds(), 0);
+        assertEquals(50, f.getDurationSeconds(), 0);
+        assertFalse(f.isSymptomatic());
+    }
+
+    @Test
+    public void tachycardiaIsOneEpisode() {
+        double[] rr = rhythm(NORMAL, 12);
+        Arrays.fill(rr, 3, 9, FAST);
+        Finding f = only(screen(file(3), rr), ArrhythmiaType.TACHYCARDIA);
+        assertEquals(3, f.getIndex());
+        assertEquals(8, f.getLastIndex());
+    }
+
+    @Test
+    public void singleFastFragmentIsNotTachycardia() {
+        double[] rr = rhythm(NORMAL, 12);
+        rr[5] = FAST;
+        assertFalse(screen(file(4), rr).isFlagged());
+    }
+
+    @Test
+    public void atrialFibrillationNeedsThirtySecondsAndCollapsesIntoEpisodes() {
+        double[] rr = rhythm(NORMAL, 20);
+        Arrays.fill(rr, 2, 6, IRREGULAR);   // 40 s
+        Arrays.fill(rr, 10, 16, IRREGULAR); // 60 s
+        rr[18] = IRREGULAR;                 // 10 s: demasiado corto
+        ScreeningResult result = screen(file(5), rr);
+
+        assertEquals(result.toShortString(), 2, result.count(ArrhythmiaType.AF));
+        assertEquals(result.findings().size(), result.count(ArrhythmiaType.AF));
+        Finding first = result.findings().get(0);
+        Finding second = result.findings().get(1);
+        assertEquals(2, first.getIndex());
+        assertTrue(first.getLastIndex() >= 5 && first.getLastIndex() < 10);
+        assertEquals(10, second.getIndex());
+        assertTrue(second.getLastIndex() >= 15 && second.getLastIndex() < 18);
+    }
+
+    @Test
+    public void pauseIsFoundInItsFragment() {
+        long[] beats = beats(rhythm(NORMAL, 8));
+        // Sin latidos entre 42.5 s y 45.5 s: un RR de unos 3 s que cierra en el fragmento 4
+        long[] withPause = Arrays.stream(beats).filter(b -> b < 42_500 || b > 45_500).toArray();
+        ScreeningResult result = screen(file(6), withPause, 8 * FRAGMENT);
+
+        Finding f = only(result, ArrhythmiaType.PAUSE);
+        assertEquals(4, f.getIndex());
+        assertEquals(ArrhythmiaType.PAUSE.getSeverity(), f.getSeverity());
+    }
+
+    @Test
+    public void gapsLongerThanTenSecondsAreSignalLossNotPauses() {
+        long[] beats = beats(rhythm(NORMAL, 8));
+        long[] withGap = Arrays.stream(beats).filter(b -> b < 30_000 || b > 42_000).toArray();
+        assertEquals(0, screen(file(7), withGap, 8 * FRAGMENT).count(ArrhythmiaType.PAUSE));
+    }
+
+    @Test
+    public void reportedSymptomRaisesSeverity() {
+        double[] rr = rhythm(NORMAL, 8);
+        Arrays.fill(rr, 2, 5, SLOW);
+
+        Finding f = only(screen(file(8, "Mareo"), rr), ArrhythmiaType.BRADYCARDIA);
+        assertTrue(f.isSymptomatic());
+        assertEquals(ArrhythmiaType.BRADYCARDIA.getSeverity() + 1, f.getSeverity());
+
+        Finding unrelated = only(screen(file(9, "headache"), rr), ArrhythmiaType.BRADYCARDIA);
+        assertFalse(unrelated.isSymptomatic());
+    }
+
+    @Test
+    public void tachycardiaWithEdaResponsesIsArousal() {
+        double[] rr = rhythm(NORMAL, 24);
+        Arrays.fill(rr, 3, 9, FAST);   // 30-90 s
+        Arrays.fill(rr, 18, 21, FAST); // 180-210 s
+        List<EdaPipeline.Window> eda = List.of(
+                edaWindow(0, 60, 0),
+                edaWindow(60, 60, 3),  // solapa con el primer episodio
+                edaWindow(120, 60, 0),
+                edaWindow(180, 60, 1));
+        ScreeningResult result = screen(file(10), beats(rr), rr.length * FRAGMENT, eda);
+
+        assertEquals(2, result.count(ArrhythmiaType.TACHYCARDIA));
+        Finding stress = result.findings().get(0);
+        Finding other = result.findings().get(1);
+        assertTrue(stress.isArousal());
+        assertEquals(ArrhythmiaType.TACHYCARDIA.getSeverity() - 1, stress.getSeverity());
+        assertFalse(other.isArousal());
+        // El de mayor severidad decide la prioridad del triaje
+        assertEquals(ArrhythmiaType.TACHYCARDIA.getSeverity(), result.getPriority());
+    }
+
+    @Test
+    public void recordingsScreenedTogetherDoNotMix() {
+        double[] slow = rhythm(NORMAL, 6);
+        Arrays.fill(slow, 1, 4, SLOW);
+        double[] normal = rhythm(NORMAL, 6);
+        long[] slowBeats = beats(slow);
+        long[] normalBeats = beats(normal);
+
+        screener.begin(file(11));
+        screener.begin(file(12));
+        for (int i = 0; i < 6; i++) {
+            screener.addFragment(11, i, (long) i * FRAGMENT, (long) (i + 1) * FRAGMENT, slowBeats, slowBeats.length, FS);
+            screener.addFragment(12, i, (long) i * FRAGMENT, (long) (i + 1) * FRAGMENT, normalBeats, normalBeats.length, FS);
+        }
+        assertEquals(1, screener.finish(11).count(ArrhythmiaType.BRADYCARDIA));
+        assertFalse(screener.finish(12).isFlagged());
+
+        // Sus hechos ya no están en la sesión: se puede volver a cribar desde cero
+        assertFalse(screen(file(11), normal).isFlagged());
+    }
+
+    private ScreeningResult screen(DiagnosisFile file, double[] rr) {
+        return screen(file, beats(rr), rr.length * FRAGMENT);
+    }
+
+    private ScreeningResult screen(DiagnosisFile file, long[] beats, long samples) {
+        return screen(file, beats, samples, List.of());
+    }
+
+    private ScreeningResult screen(DiagnosisFile file, long[] beats, long samples, List<EdaPipeline.Window> eda) {
+        int id = file.getId();
+        screener.begin(file);
+        for (int i = 0; (long) i * FRAGMENT < samples; i++) {
+            screener.addFragment(id, i, (long) i * FRAGMENT, Math.min(samples, (long) (i + 1) * FRAGMENT),
+                    beats, beats.length, FS);
+        }
+        for (EdaPipeline.Window w : eda) {
+            screener.addEda(id, w, FS);
+        }
+        return screener.finish(id);
+    }
+
+    private static Finding only(ScreeningResult result, ArrhythmiaType type) {
+        assertEquals(result.toShortString(), 1, result.findings().size());
+        Finding f = result.findings().get(0);
+        assertEquals(type, f.getType());
+        return f;
+    }
+
+    private static DiagnosisFile file(int id, String... symptoms) {
+        DiagnosisFile file = new DiagnosisFile(id);
+        file.setSymptoms(new ArrayList<>(List.of(symptoms)));
+        return file;
+    }
+
+    private static double[] rhythm(double rr, int fragments) {
+        double[] values = new double[fragments];
+        Arrays.fill(values, rr);
+        return values;
+    }
+
+    // Latidos de una grabación: el RR de cada latido lo decide el fragmento donde cae el anterior
+    private static long[] beats(double[] rrPerFragment) {
+        Random random = new Random(7);
+        long end = (long) rrPerFragment.length * FRAGMENT;
+        long[] beats = new long[(int) (end / 250) + 1];
+        int n = 0;
+        double t = 300;
+        while (t < end) {
+            beats[n++] = Math.round(t);
+            double rr = rrPerFragment[(int) (t / FRAGMENT)];
+            t += rr == IRREGULAR ? 400 + random.nextInt(600) : rr;
+        }
+        return Arrays.copyOf(beats, n);
+    }
+
+    private static EdaPipeline.Window edaWindow(int startSeconds, int seconds, int scrCount) {
+        return new EdaPipeline.Window((long) startSeconds * FS, seconds * FS, 300, 0, 0, 0,
+                scrCount, scrCount > 0 ? 50 : 0, scrCount > 0 ? 2 : 0);
+    }
+}
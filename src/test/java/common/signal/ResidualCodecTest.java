@@ -0,0 +1,155 @@
+package common.signal;
+
+import common.protocol.ProtocolException;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResidualCodecTest {
+
+    private static final int SAMPLING_RATE = 1000;
+    // No múltiplo de GROUP, para que el último grupo quede incompleto
+    private static final int SAMPLES = 10 * SAMPLING_RATE + 17;
+
+    private static int[] ecg;
+    private static int[] eda;
+
+    @BeforeClass
+    public static void fragment() {
+        // 10 s de ECG + EDA de 10 bits a 1000 Hz, semilla fija
+        ecg = new int[SAMPLES];
+        eda = new int[SAMPLES];
+        new BitalinoSimulator(SAMPLING_RATE, 72, 42).next(ecg, eda, 0, SAMPLES);
+    }
+
+    @Test
+    public void roundTripsEcgWithSecondOrder() throws ProtocolException {
+        assertRoundTrip(ecg, ResidualCodec.ORDER_2);
+    }
+
+    @Test
+    public void roundTripsEdaWithFirstOrder() throws ProtocolException {
+        assertRoundTrip(eda, ResidualCodec.ORDER_1);
+    }
+
+    @Test
+    public void roundTripsEveryChannelWithEitherOrder() throws ProtocolException {
+        assertRoundTrip(ecg, ResidualCodec.ORDER_1);
+        assertRoundTrip(eda, ResidualCodec.ORDER_2);
+    }
+
+    @Test
+    public void roundTripsIntegerExtremes() throws ProtocolException {
+        int[] jumps = {0, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE,
+                Integer.MIN_VALUE, -1, 1, Integer.MAX_VALUE, Integer.MAX_VALUE, 0};
+        assertRoundTrip(jumps, ResidualCodec.ORDER_1);
+        assertRoundTrip(jumps, ResidualCodec.ORDER_2);
+    }
+
+    @Test
+    public void roundTripsFullScaleJumpsInsideASmoothSignal() throws ProtocolException {
+        // Saturación del ADC (0 <-> 1023) en mitad de un grupo con residuos pequeños
+        int[] values = Arrays.copyOf(ecg, 3 * ResidualCodec.GROUP);
+        for (int i = 70; i < 80; i++) {
+            values[i] = i % 2 == 0 ? 0 : 1023;
+        }
+        values[150] = Integer.MIN_VALUE;
+        values[151] = Integer.MAX_VALUE;
+        assertRoundTrip(values, ResidualCodec.ORDER_1);
+        assertRoundTrip(values, ResidualCodec.ORDER_2);
+    }
+
+    @Test
+    public void roundTripsEmptyAndSingleSampleBlocks() throws ProtocolException {
+        assertRoundTrip(new int[0], ResidualCodec.ORDER_2);
+        assertRoundTrip(new int[]{1023}, ResidualCodec.ORDER_2);
+        assertRoundTrip(new int[]{Integer.MIN_VALUE}, ResidualCodec.ORDER_1);
+    }
+
+    @Test
+    public void encodesFragmentSmallerThanGzipText() throws IOException {
+        int encoded = ResidualCodec.encode(ecg, 0, SAMPLES, ResidualCodec.ORDER_2).length
+                + ResidualCodec.encode(eda, 0, SAMPLES, ResidualCodec.ORDER_1).length;
+        int gzip = gzipText(ecg, eda);
+        assertTrue("codec " + encoded + " bytes vs gzip " + gzip, encoded * 4 < gzip * 3);
+        // Menos de 6 bits por muestra, frente a un byte por residuo
+        assertTrue("codec " + encoded + " bytes", encoded * 8L < 2L * SAMPLES * 6);
+    }
+
+    @Test
+    public void leavesBufferRightAfterTheBlock() throws ProtocolException {
+        byte[] block = ResidualCodec.encode(ecg, 5, 1000, ResidualCodec.ORDER_2);
+        ByteBuffer in = ByteBuffer.allocate(block.length + 3);
+        in.put(block).put((byte) 7).put((byte) 8).put((byte) 9).flip();
+
+        assertEquals(1000, ResidualCodec.peekCount(in));
+        assertEquals(0, in.position());
+        int[] dst = new int[1010];
+        assertEquals(1000, ResidualCodec.decode(in, dst, 10));
+        assertArrayEquals(Arrays.copyOfRange(ecg, 5, 1005), Arrays.copyOfRange(dst, 10, 1010));
+        assertEquals(block.length, in.position());
+        assertEquals(7, in.get());
+    }
+
+    @Test
+    public void rejectsTruncatedBlocks() {
+        byte[] block = ResidualCodec.encode(ecg, 0, 500, ResidualCodec.ORDER_2);
+        for (int length : new int[]{0, 1, 2, block.length / 2, block.length - 1}) {
+            try {
+                ResidualCodec.decode(ByteBuffer.wrap(block, 0, length));
+                fail("decoded a block cut at " + length + " bytes");
+            } catch (ProtocolException expected) {
+                // esperado
+            }
+        }
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void rejectsUnknownOrder() throws ProtocolException {
+        ResidualCodec.decode(ByteBuffer.wrap(new byte[]{ResidualCodec.RICE | 3, 1, 0, 0}));
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void rejectsBlocksWithoutTheRiceFormatBit() throws ProtocolException {
+        ResidualCodec.decode(ByteBuffer.wrap(new byte[]{1, 3, 10, 3, 0}));
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void rejectsInvalidGroupHeader() throws ProtocolException {
+        ResidualCodec.decode(ByteBuffer.wrap(new byte[]{ResidualCodec.RICE | 1, 1, (byte) 0x61, 0}));
+    }
+
+    private static void assertRoundTrip(int[] values, int order) throws ProtocolException {
+        byte[] block = ResidualCodec.encode(values, 0, values.length, order);
+        assertTrue(block.length <= ResidualCodec.maxEncodedSize(values.length));
+        assertArrayEquals(values, ResidualCodec.decode(ByteBuffer.wrap(block)));
+    }
+
+    // El formato de texto de los fragmentos: "ecg1,ecg2,...;eda1,eda2,..."
+    private static int gzipText(int[]... channels) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int[] channel : channels) {
+            if (text.length() > 0) text.append(';');
+            for (int i = 0; i < channel.length; i++) {
+                if (i > 0) text.append(',');
+                text.append(channel[i]);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(text.toString().getBytes(StandardCharsets.US_ASCII));
+        }
+        return out.size();
+    }
+}
@@ -0,0 +1,67 @@
+package executable;
+
+import common.protocol.DiagnosisFileChanges;
+import org.junit.Test;
+import pojos.DiagnosisFile;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DiagnosisFileFeedTest {
+
+    @Test
+    public void fullListOnlyReportsFilesWhoseContentChanged() {
+        DiagnosisFileFeed feed = DiagnosisFileFeed.recentlyFinished();
+        assertTrue(feed.apply(full(1, file(1, "AF"), file(2, "Normal")), null));
+
+        // Mismo contenido en objetos nuevos: nada cambia
+        assertFalse(feed.apply(full(2, file(1, "AF"), file(2, "Normal")), null));
+
+        List<Integer> changed = new ArrayList<>();
+        DiagnosisFile updated = file(2, "Normal");
+        updated.setMedication("Bisoprolol");
+        assertTrue(feed.apply(full(3, file(1, "AF"), updated), new DiagnosisFileFeed.Listener() {
+            @Override
+            public void added(int index, DiagnosisFile file) {
+            }
+
+            @Override
+            public void changed(int index, DiagnosisFile file) {
+                changed.add(file.getId());
+            }
+
+            @Override
+            public void removed(int index, DiagnosisFile file) {
+            }
+        }));
+        assertEquals(List.of(2), changed);
+    }
+
+    @Test
+    public void sameContentComparesEveryListedField() {
+        assertTrue(DiagnosisFileFeed.sameContent(file(1, "AF"), file(1, "AF")));
+        assertFalse(DiagnosisFileFeed.sameContent(file(1, "AF"), file(1, "Flutter")));
+
+        DiagnosisFile reviewed = file(1, "AF");
+        reviewed.setStatus(true);
+        assertFalse(DiagnosisFileFeed.sameContent(file(1, "AF"), reviewed));
+
+        DiagnosisFile moreSymptoms = file(1, "AF");
+        moreSymptoms.getSymptoms().add("Mareo");
+        assertFalse(DiagnosisFileFeed.sameContent(file(1, "AF"), moreSymptoms));
+    }
+
+    private static DiagnosisFileChanges full(long version, DiagnosisFile... files) {
+        return new DiagnosisFileChanges(version, true, List.of(files), new int[0]);
+    }
+
+    private static DiagnosisFile file(int id, String diagnosis) {
+        return new DiagnosisFile(id, new ArrayList<>(List.of("Palpitaciones")), diagnosis, "None",
+                LocalDate.of(2025, 3, 1), 7);
+    }
+}